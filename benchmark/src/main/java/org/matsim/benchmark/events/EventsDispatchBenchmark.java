@@ -0,0 +1,173 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsDispatchBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.events;
+
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.events.handler.EventHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Dispatches a mix of network events to a set of analysis-like handlers, comparing the previous
+ * reflection-based dispatch of the EventsManagerImpl with the generated invokers, with and without
+ * synchronizing on the handlers.
+ * <p></p>
+ * Run with <code>java -cp matsim-benchmark.jar org.openjdk.jmh.Main EventsDispatchBenchmark</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventsDispatchBenchmark {
+
+	private static final int NUMBER_OF_EVENTS = 1024;
+
+	@Param({"20"})
+	public int numberOfHandlers;
+
+	private LegacyEventsManager legacy;
+	private EventsManagerImpl synchronizedManager;
+	private EventsManagerImpl unsynchronizedManager;
+	private Event[] events;
+
+	private long sink = 0;
+
+	@Setup
+	public void setup() {
+		this.legacy = new LegacyEventsManager();
+		this.synchronizedManager = new EventsManagerImpl(true);
+		this.unsynchronizedManager = new EventsManagerImpl(false);
+
+		for (int i = 0; i < this.numberOfHandlers; i++) {
+			switch (i % 5) {
+			case 0: {
+				LinkEnterEventHandler h = event -> this.sink += event.getLinkId().index();
+				this.legacy.addHandler(h, LinkEnterEventHandler.class, LinkEnterEvent.class);
+				addHandler(h);
+				break;
+			}
+			case 1: {
+				LinkLeaveEventHandler h = event -> this.sink += event.getVehicleId().index();
+				this.legacy.addHandler(h, LinkLeaveEventHandler.class, LinkLeaveEvent.class);
+				addHandler(h);
+				break;
+			}
+			case 2: {
+				PersonArrivalEventHandler h = event -> this.sink += event.getPersonId().index();
+				this.legacy.addHandler(h, PersonArrivalEventHandler.class, PersonArrivalEvent.class);
+				addHandler(h);
+				break;
+			}
+			case 3: {
+				// not in the list of "fast" event types of the old implementation, thus dispatched by reflection there
+				VehicleLeavesTrafficEventHandler h = event -> this.sink += event.getLinkId().index();
+				this.legacy.addHandler(h, VehicleLeavesTrafficEventHandler.class, VehicleLeavesTrafficEvent.class);
+				addHandler(h);
+				break;
+			}
+			default: {
+				BasicEventHandler h = event -> this.sink++;
+				this.legacy.addHandler(h, BasicEventHandler.class, Event.class);
+				addHandler(h);
+				break;
+			}
+			}
+		}
+
+		this.events = new Event[NUMBER_OF_EVENTS];
+		for (int i = 0; i < NUMBER_OF_EVENTS; i++) {
+			double time = i;
+			switch (i % 4) {
+			case 0:
+				this.events[i] = new LinkEnterEvent(time, Id.createVehicleId(i), Id.createLinkId(i % 100));
+				break;
+			case 1:
+				this.events[i] = new LinkLeaveEvent(time, Id.createVehicleId(i), Id.createLinkId(i % 100));
+				break;
+			case 2:
+				this.events[i] = new VehicleLeavesTrafficEvent(time, Id.createPersonId(i), Id.createLinkId(i % 100), Id.createVehicleId(i), "car", 1.0);
+				break;
+			default:
+				this.events[i] = new PersonArrivalEvent(time, Id.createPersonId(i), Id.createLinkId(i % 100), "car");
+				break;
+			}
+		}
+	}
+
+	private void addHandler(EventHandler handler) {
+		this.synchronizedManager.addHandler(handler);
+		this.unsynchronizedManager.addHandler(handler);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_EVENTS)
+	public void legacyDispatch(Blackhole bh) {
+		for (Event event : this.events) {
+			this.legacy.processEvent(event);
+		}
+		bh.consume(this.sink);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_EVENTS)
+	public void compiledDispatchSynchronized(Blackhole bh) {
+		for (Event event : this.events) {
+			this.synchronizedManager.processEvent(event);
+		}
+		bh.consume(this.sink);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_EVENTS)
+	public void compiledDispatchUnsynchronized(Blackhole bh) {
+		for (Event event : this.events) {
+			this.unsynchronizedManager.processEvent(event);
+		}
+		bh.consume(this.sink);
+	}
+
+}
@@ -0,0 +1,117 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LegacyEventsManager.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.events;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.events.handler.EventHandler;
+
+/**
+ * The dispatch loop of the EventsManagerImpl before it used generated invokers: a monitor per handler and
+ * event, a chain of class comparisons for the most frequent events, and reflection for everything else.
+ * Only kept as a baseline for {@link EventsDispatchBenchmark}; it only knows the handler types used there.
+ */
+final class LegacyEventsManager {
+
+	private static final class HandlerInfo {
+		final Class<?> eventClass;
+		final EventHandler eventHandler;
+		final Method method;
+
+		HandlerInfo(Class<?> eventClass, EventHandler eventHandler, Method method) {
+			this.eventClass = eventClass;
+			this.eventHandler = eventHandler;
+			this.method = method;
+		}
+	}
+
+	private final Map<Class<?>, List<HandlerInfo>> handlersByEventClass = new HashMap<>();
+	private final Map<Class<?>, HandlerInfo[]> cacheHandlers = new HashMap<>();
+
+	void addHandler(EventHandler handler, Class<?> handlerInterface, Class<?> eventClass) {
+		try {
+			Method method = handlerInterface.getMethod("handleEvent", eventClass);
+			this.handlersByEventClass.computeIfAbsent(eventClass, k -> new ArrayList<>()).add(new HandlerInfo(eventClass, handler, method));
+			this.cacheHandlers.clear();
+		} catch (NoSuchMethodException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	void processEvent(Event event) {
+		for (HandlerInfo info : getHandlersForClass(event.getClass())) {
+			synchronized(info.eventHandler) {
+				if (callHandlerFast(info.eventClass, event, info.eventHandler)) {
+					continue;
+				}
+				try {
+					info.method.invoke(info.eventHandler, event);
+				} catch (IllegalAccessException | InvocationTargetException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+	}
+
+	private HandlerInfo[] getHandlersForClass(Class<?> eventClass) {
+		HandlerInfo[] cache = this.cacheHandlers.get(eventClass);
+		if (cache == null) {
+			List<HandlerInfo> infos = new ArrayList<>();
+			for (Class<?> klass = eventClass; klass != Object.class; klass = klass.getSuperclass()) {
+				infos.addAll(this.handlersByEventClass.getOrDefault(klass, new ArrayList<>()));
+			}
+			cache = infos.toArray(new HandlerInfo[infos.size()]);
+			this.cacheHandlers.put(eventClass, cache);
+		}
+		return cache;
+	}
+
+	private static boolean callHandlerFast(final Class<?> klass, final Event ev, final EventHandler handler) {
+		if (klass == LinkLeaveEvent.class) {
+			((LinkLeaveEventHandler)handler).handleEvent((LinkLeaveEvent)ev);
+			return true;
+		} else if (klass == LinkEnterEvent.class) {
+			((LinkEnterEventHandler)handler).handleEvent((LinkEnterEvent)ev);
+			return true;
+		} else if (klass == PersonArrivalEvent.class) {
+			((PersonArrivalEventHandler)handler).handleEvent((PersonArrivalEvent)ev);
+			return true;
+		} else if (klass == Event.class) {
+			((BasicEventHandler)handler).handleEvent(ev);
+			return true;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,195 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetsimActiveElementsBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.qsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimActiveElements;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the QSim on a large grid network with sparse traffic, where only few links and nodes are active in every time
+ * step, comparing the bookkeeping of the active elements in lists with the one in index arrays.  The score is the
+ * time per simulated time step.
+ * <p></p>
+ * Run with <code>java -cp matsim-benchmark.jar org.openjdk.jmh.Main NetsimActiveElementsBenchmark</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class NetsimActiveElementsBenchmark {
+
+	private static final double LINK_LENGTH = 200.;
+	private static final double START_TIME = 6 * 3600.;
+	private static final double END_TIME = 10 * 3600.;
+	private static final int NUMBER_OF_TIME_STEPS = (int) (END_TIME - START_TIME);
+
+	@Param({"lists", "indexArrays"})
+	public NetsimActiveElements activeElements;
+
+	@Param({"1", "4"})
+	public int numberOfThreads;
+
+	@Param({"2000"})
+	public int numberOfAgents;
+
+	/**
+	 * the number of nodes in each direction
+	 */
+	@Param({"100", "300"})
+	public int gridSize;
+
+	private Scenario scenario;
+
+	@Setup
+	public void setup() {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setNetsimActiveElements(this.activeElements);
+		config.qsim().setNumberOfThreads(this.numberOfThreads);
+		config.qsim().setStartTime(START_TIME);
+		config.qsim().setEndTime(END_TIME);
+		this.scenario = ScenarioUtils.createScenario(config);
+
+		Network network = this.scenario.getNetwork();
+		Node[][] nodes = new Node[this.gridSize][this.gridSize];
+		for (int x = 0; x < this.gridSize; x++) {
+			for (int y = 0; y < this.gridSize; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(x * LINK_LENGTH, y * LINK_LENGTH));
+			}
+		}
+		Link[][] eastbound = new Link[this.gridSize][this.gridSize];
+		Link[][] northbound = new Link[this.gridSize][this.gridSize];
+		for (int x = 0; x < this.gridSize; x++) {
+			for (int y = 0; y < this.gridSize; y++) {
+				if (x > 0) {
+					eastbound[x][y] = createLink(network, nodes[x - 1][y], nodes[x][y]);
+					createLink(network, nodes[x][y], nodes[x - 1][y]);
+				}
+				if (y > 0) {
+					northbound[x][y] = createLink(network, nodes[x][y - 1], nodes[x][y]);
+					createLink(network, nodes[x][y], nodes[x][y - 1]);
+				}
+			}
+		}
+
+		// staircase routes towards the north-east, spread over the morning
+		Random random = new Random(4711);
+		PopulationFactory pf = this.scenario.getPopulation().getFactory();
+		for (int i = 0; i < this.numberOfAgents; i++) {
+			int x = 1 + random.nextInt(this.gridSize / 2);
+			int y = random.nextInt(this.gridSize / 2);
+			int steps = 10 + random.nextInt(this.gridSize / 2 - 10);
+			List<Id<Link>> links = new ArrayList<>();
+			for (int s = 0; s < steps; s++) {
+				if (s % 2 == 0) {
+					links.add(eastbound[x][y].getId());
+					x++;
+				} else {
+					y++;
+					links.add(northbound[x - 1][y].getId());
+				}
+			}
+
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", links.get(0));
+			home.setEndTime(6 * 3600. + random.nextInt(3 * 3600));
+			plan.addActivity(home);
+			Leg leg = pf.createLeg(TransportMode.car);
+			TripStructureUtils.setRoutingMode(leg, TransportMode.car);
+			NetworkRoute route = pf.getRouteFactories().createRoute(NetworkRoute.class, links.get(0), links.get(links.size() - 1));
+			route.setLinkIds(links.get(0), links.subList(1, links.size() - 1), links.get(links.size() - 1));
+			leg.setRoute(route);
+			plan.addLeg(leg);
+			plan.addActivity(pf.createActivityFromLinkId("w", links.get(links.size() - 1)));
+			person.addPlan(plan);
+			this.scenario.getPopulation().addPerson(person);
+		}
+
+		// an agent who leaves after the end time, so that every run simulates all time steps
+		Person sleeper = pf.createPerson(Id.createPersonId("sleeper"));
+		Plan plan = pf.createPlan();
+		Id<Link> homeLinkId = eastbound[1][0].getId();
+		Activity home = pf.createActivityFromLinkId("h", homeLinkId);
+		home.setEndTime(END_TIME + 3600.);
+		plan.addActivity(home);
+		Leg leg = pf.createLeg(TransportMode.car);
+		TripStructureUtils.setRoutingMode(leg, TransportMode.car);
+		leg.setRoute(pf.getRouteFactories().createRoute(NetworkRoute.class, homeLinkId, homeLinkId));
+		plan.addLeg(leg);
+		plan.addActivity(pf.createActivityFromLinkId("h", homeLinkId));
+		sleeper.addPlan(plan);
+		this.scenario.getPopulation().addPerson(sleeper);
+		PrepareForSimUtils.createDefaultPrepareForSim(this.scenario).run();
+	}
+
+	private static Link createLink(Network network, Node from, Node to) {
+		return NetworkUtils.createAndAddLink(network, Id.createLinkId(from.getId() + "-" + to.getId()), from, to,
+				LINK_LENGTH, 13.9, 1800., 1.);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_TIME_STEPS)
+	public void runQSim() {
+		new QSimBuilder(this.scenario.getConfig()).useDefaults()
+				.build(this.scenario, EventsUtils.createEventsManager())
+				.run();
+	}
+
+}
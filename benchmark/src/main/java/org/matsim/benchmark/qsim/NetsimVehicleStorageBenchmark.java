@@ -0,0 +1,145 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetsimVehicleStorageBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.qsim;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimVehicleStorage;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicleImpl;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.FIFOVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.IndexedFIFOVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.IndexedPassingVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.IndexedVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.PassingVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.QVehicleStore;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.VehicleQ;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Moves vehicles through the vehicle queues of many links like the netsim does: in every time step, every queue is
+ * checked for vehicles that have reached the end of their link, and these are moved on to another link.  Compares the
+ * queues of vehicle objects with the ones of indices into a {@link QVehicleStore}.
+ * <p></p>
+ * Run with <code>java -cp matsim-benchmark.jar org.openjdk.jmh.Main NetsimVehicleStorageBenchmark</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NetsimVehicleStorageBenchmark {
+
+	private static final int NUMBER_OF_LINKS = 20_000;
+	private static final int NUMBER_OF_TRAVEL_TIMES = 4096;
+
+	@Param({"objects", "primitiveArrays"})
+	public NetsimVehicleStorage storage;
+
+	@Param({"FIFO", "PassingQ"})
+	public LinkDynamics linkDynamics;
+
+	@Param({"200000"})
+	public int numberOfVehicles;
+
+	private VehicleQ<QVehicle>[] queues;
+	private IndexedVehicleQ[] indexedQueues;
+	private double[] travelTimes;
+	private int nextTravelTime = 0;
+	private double now = 0;
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	@Setup
+	public void setup() {
+		QVehicleStore store = new QVehicleStore();
+		this.queues = new VehicleQ[NUMBER_OF_LINKS];
+		this.indexedQueues = new IndexedVehicleQ[NUMBER_OF_LINKS];
+		boolean passing = this.linkDynamics == LinkDynamics.PassingQ;
+		for (int l = 0; l < NUMBER_OF_LINKS; l++) {
+			if (this.storage == NetsimVehicleStorage.primitiveArrays) {
+				this.indexedQueues[l] = passing ? new IndexedPassingVehicleQ(store) : new IndexedFIFOVehicleQ(store);
+				this.queues[l] = this.indexedQueues[l];
+			} else {
+				this.queues[l] = passing ? new PassingVehicleQ() : new FIFOVehicleQ();
+			}
+		}
+
+		Random random = new Random(4711);
+		this.travelTimes = new double[NUMBER_OF_TRAVEL_TIMES];
+		for (int i = 0; i < NUMBER_OF_TRAVEL_TIMES; i++) {
+			this.travelTimes[i] = 5 + random.nextInt(60);
+		}
+		VehicleType type = VehicleUtils.getDefaultVehicleType();
+		for (int v = 0; v < this.numberOfVehicles; v++) {
+			QVehicle vehicle = new QVehicleImpl(VehicleUtils.createVehicle(Id.create(v, Vehicle.class), type));
+			vehicle.setEarliestLinkExitTime(nextTravelTime());
+			this.queues[random.nextInt(NUMBER_OF_LINKS)].add(vehicle);
+		}
+	}
+
+	private double nextTravelTime() {
+		this.nextTravelTime = (this.nextTravelTime + 1) & (NUMBER_OF_TRAVEL_TIMES - 1);
+		return this.travelTimes[this.nextTravelTime];
+	}
+
+	private double peekEarliestLinkExitTime(int link) {
+		if (this.indexedQueues[link] != null) {
+			return this.indexedQueues[link].peekEarliestLinkExitTime();
+		}
+		QVehicle first = this.queues[link].peek();
+		return first == null ? Double.POSITIVE_INFINITY : first.getEarliestLinkExitTime();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_LINKS)
+	public int moveQueues() {
+		this.now++;
+		int moved = 0;
+		for (int l = 0; l < NUMBER_OF_LINKS; l++) {
+			while (peekEarliestLinkExitTime(l) <= this.now) {
+				QVehicle vehicle = this.queues[l].poll();
+				vehicle.setEarliestLinkExitTime(this.now + nextTravelTime());
+				this.queues[(l + 7919) % NUMBER_OF_LINKS].add(vehicle);
+				moved++;
+			}
+		}
+		return moved;
+	}
+
+}
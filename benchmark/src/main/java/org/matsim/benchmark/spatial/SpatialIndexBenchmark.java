@@ -0,0 +1,168 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpatialIndexBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.spatial;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.collections.PackedKdTree;
+import org.matsim.core.utils.collections.QuadTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the {@link QuadTree} with the {@link PackedKdTree} for nearest-neighbour and disk queries on randomly
+ * distributed points, as done e.g. when assigning activities to the nearest node or link, and for building the index.
+ * The points are clustered around a few centers, like the nodes of a real network.
+ * <p></p>
+ * Run with <code>java -cp matsim-benchmark.jar org.openjdk.jmh.Main SpatialIndexBenchmark</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpatialIndexBenchmark {
+
+	private static final int NUMBER_OF_QUERIES = 4096;
+	private static final double EXTENT = 100_000.0;
+
+	@Param({"10000", "1000000"})
+	public int numberOfPoints;
+
+	private List<Coord> points;
+	private QuadTree<Coord> quadTree;
+	private PackedKdTree<Coord> kdTree;
+	private double[] queryX;
+	private double[] queryY;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(4711);
+		int clusters = 50;
+		double[] centerX = new double[clusters];
+		double[] centerY = new double[clusters];
+		for (int c = 0; c < clusters; c++) {
+			centerX[c] = EXTENT * (0.1 + 0.8 * random.nextDouble());
+			centerY[c] = EXTENT * (0.1 + 0.8 * random.nextDouble());
+		}
+		this.points = new ArrayList<>(this.numberOfPoints);
+		for (int i = 0; i < this.numberOfPoints; i++) {
+			int c = random.nextInt(clusters);
+			double x = clamp(centerX[c] + random.nextGaussian() * EXTENT / 20);
+			double y = clamp(centerY[c] + random.nextGaussian() * EXTENT / 20);
+			this.points.add(new Coord(x, y));
+		}
+		this.quadTree = buildQuadTree();
+		this.kdTree = new PackedKdTree<>(this.points, coord -> coord);
+
+		this.queryX = new double[NUMBER_OF_QUERIES];
+		this.queryY = new double[NUMBER_OF_QUERIES];
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			this.queryX[i] = random.nextDouble() * EXTENT;
+			this.queryY[i] = random.nextDouble() * EXTENT;
+		}
+	}
+
+	private static double clamp(double value) {
+		return Math.max(0, Math.min(EXTENT, value));
+	}
+
+	private QuadTree<Coord> buildQuadTree() {
+		QuadTree<Coord> qt = new QuadTree<>(0, 0, EXTENT, EXTENT);
+		for (Coord coord : this.points) {
+			qt.put(coord.getX(), coord.getY(), coord);
+		}
+		return qt;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_QUERIES)
+	public void quadTreeClosest(Blackhole bh) {
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			bh.consume(this.quadTree.getClosest(this.queryX[i], this.queryY[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_QUERIES)
+	public void kdTreeClosest(Blackhole bh) {
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			bh.consume(this.kdTree.getClosest(this.queryX[i], this.queryY[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_QUERIES)
+	public void kdTreeClosestBatch(Blackhole bh) {
+		bh.consume(this.kdTree.getClosest(this.queryX, this.queryY, Runtime.getRuntime().availableProcessors()));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_QUERIES)
+	public void quadTreeDisk(Blackhole bh) {
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			bh.consume(this.quadTree.getDisk(this.queryX[i], this.queryY[i], 1000));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_QUERIES)
+	public void kdTreeDisk(Blackhole bh) {
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			bh.consume(this.kdTree.getDisk(this.queryX[i], this.queryY[i], 1000));
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 3)
+	@Measurement(iterations = 5)
+	public QuadTree<Coord> quadTreeBuild() {
+		return buildQuadTree();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 3)
+	@Measurement(iterations = 5)
+	public PackedKdTree<Coord> kdTreeBuild() {
+		return new PackedKdTree<>(this.points, coord -> coord);
+	}
+
+}
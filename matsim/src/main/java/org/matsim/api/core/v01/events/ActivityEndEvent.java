@@ -85,5 +85,19 @@ public final class ActivityEndEvent extends Event implements HasPersonId {
 		return attr;
 	}
 
+	@Override
+	public void writeAttributes(final EventAttributeSink sink) {
+		sink.attribute(ATTRIBUTE_TIME, getTime());
+		sink.attribute(ATTRIBUTE_TYPE, getEventType());
+		sink.attribute(ATTRIBUTE_PERSON, this.personId);
+		if (this.linkId != null) {
+			sink.attribute(ATTRIBUTE_LINK, this.linkId);
+		}
+		if (this.facilityId != null) {
+			sink.attribute(ATTRIBUTE_FACILITY, this.facilityId);
+		}
+		sink.attribute(ATTRIBUTE_ACTTYPE, this.acttype);
+	}
+
 	
 }
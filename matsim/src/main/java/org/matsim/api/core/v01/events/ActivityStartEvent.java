@@ -83,4 +83,22 @@ public class ActivityStartEvent extends Event implements HasPersonId {
 		attr.put(ATTRIBUTE_ACTTYPE, this.acttype);
 		return attr;
 	}
+
+	@Override
+	public void writeAttributes(final EventAttributeSink sink) {
+		if (isInstanceOfSubclass(ActivityStartEvent.class)) {
+			super.writeAttributes(sink);
+			return;
+		}
+		sink.attribute(ATTRIBUTE_TIME, getTime());
+		sink.attribute(ATTRIBUTE_TYPE, getEventType());
+		sink.attribute(ATTRIBUTE_PERSON, this.personId);
+		if (this.linkId != null) {
+			sink.attribute(ATTRIBUTE_LINK, this.linkId);
+		}
+		if (this.facilityId != null) {
+			sink.attribute(ATTRIBUTE_FACILITY, this.facilityId);
+		}
+		sink.attribute(ATTRIBUTE_ACTTYPE, this.acttype);
+	}
 }
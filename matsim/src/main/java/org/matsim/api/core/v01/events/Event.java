@@ -48,6 +48,30 @@ public abstract class Event {
 		return attr;
 	}
 
+	/**
+	 * Passes the attributes of this event to <code>sink</code>, in the same order and with the same values as
+	 * {@link #getAttributes()}.  The default implementation just iterates over {@link #getAttributes()}; frequent
+	 * event types override it to avoid building the map, see {@link #isInstanceOfSubclass(Class)}.
+	 */
+	public void writeAttributes(final EventAttributeSink sink) {
+		for (Map.Entry<String, String> entry : getAttributes().entrySet()) {
+			sink.attribute(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Overrides of {@link #writeAttributes(EventAttributeSink)} only know the attributes of their own class, but a
+	 * subclass may add attributes in {@link #getAttributes()} without overriding {@link #writeAttributes(EventAttributeSink)}
+	 * again.  So the overrides of non-final event classes must call the super implementation if this returns
+	 * <code>true</code> for their class.
+	 *
+	 * @return <code>true</code> if this event is an instance of a subclass of <code>eventClass</code>, and not of
+	 * 		<code>eventClass</code> itself.
+	 */
+	protected final boolean isInstanceOfSubclass(final Class<? extends Event> eventClass) {
+		return getClass() != eventClass;
+	}
+
 	/** @return a unique, descriptive name for this event type, used to identify event types in files. */
 	abstract public String getEventType();
 
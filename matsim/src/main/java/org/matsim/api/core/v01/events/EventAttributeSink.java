@@ -0,0 +1,48 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventAttributeSink.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01.events;
+
+import org.matsim.api.core.v01.Id;
+
+/**
+ * Receives the attributes of an {@link Event}, in the same order as they appear in {@link Event#getAttributes()},
+ * without the need to build a map and the attribute value strings for every event.
+ *
+ * @see Event#writeAttributes(EventAttributeSink)
+ */
+public interface EventAttributeSink {
+
+	/**
+	 * @param value may be <code>null</code>
+	 */
+	void attribute(String key, String value);
+
+	/**
+	 * Must be equivalent to <code>attribute(key, Double.toString(value))</code>.
+	 */
+	void attribute(String key, double value);
+
+	/**
+	 * Must be equivalent to <code>attribute(key, value == null ? null : value.toString())</code>.
+	 */
+	void attribute(String key, Id<?> value);
+
+}
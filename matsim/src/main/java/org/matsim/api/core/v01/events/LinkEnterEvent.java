@@ -76,4 +76,16 @@ public class LinkEnterEvent extends Event implements HasLinkId {
 		attr.put(ATTRIBUTE_LINK, this.linkId.toString());
 		return attr;
 	}
+
+	@Override
+	public void writeAttributes(final EventAttributeSink sink) {
+		if (isInstanceOfSubclass(LinkEnterEvent.class)) {
+			super.writeAttributes(sink);
+			return;
+		}
+		sink.attribute(ATTRIBUTE_TIME, getTime());
+		sink.attribute(ATTRIBUTE_TYPE, getEventType());
+		sink.attribute(ATTRIBUTE_VEHICLE, this.vehicleId);
+		sink.attribute(ATTRIBUTE_LINK, this.linkId);
+	}
 }
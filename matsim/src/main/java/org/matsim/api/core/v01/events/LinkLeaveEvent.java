@@ -78,4 +78,16 @@ public class LinkLeaveEvent extends Event implements HasLinkId {
 		attr.put(ATTRIBUTE_LINK, this.linkId.toString());
 		return attr;
 	}
+
+	@Override
+	public void writeAttributes(final EventAttributeSink sink) {
+		if (isInstanceOfSubclass(LinkLeaveEvent.class)) {
+			super.writeAttributes(sink);
+			return;
+		}
+		sink.attribute(ATTRIBUTE_TIME, getTime());
+		sink.attribute(ATTRIBUTE_TYPE, getEventType());
+		sink.attribute(ATTRIBUTE_VEHICLE, this.vehicleId);
+		sink.attribute(ATTRIBUTE_LINK, this.linkId);
+	}
 }
\ No newline at end of file
@@ -74,4 +74,19 @@ public class PersonDepartureEvent extends Event implements HasPersonId {
 		}
 		return attr;
 	}
+
+	@Override
+	public void writeAttributes(final EventAttributeSink sink) {
+		if (isInstanceOfSubclass(PersonDepartureEvent.class)) {
+			super.writeAttributes(sink);
+			return;
+		}
+		sink.attribute(ATTRIBUTE_TIME, getTime());
+		sink.attribute(ATTRIBUTE_TYPE, getEventType());
+		sink.attribute(ATTRIBUTE_PERSON, this.personId);
+		sink.attribute(ATTRIBUTE_LINK, this.linkId);
+		if (this.legMode != null) {
+			sink.attribute(ATTRIBUTE_LEGMODE, this.legMode);
+		}
+	}
 }
\ No newline at end of file
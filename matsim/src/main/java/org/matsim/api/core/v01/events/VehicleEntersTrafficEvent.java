@@ -94,4 +94,23 @@ public class VehicleEntersTrafficEvent extends Event implements HasPersonId, Has
 		attr.put(ATTRIBUTE_POSITION, Double.toString(this.relativePositionOnLink));
 		return attr;
 	}
+
+	@Override
+	public void writeAttributes(final EventAttributeSink sink) {
+		if (isInstanceOfSubclass(VehicleEntersTrafficEvent.class)) {
+			super.writeAttributes(sink);
+			return;
+		}
+		sink.attribute(ATTRIBUTE_TIME, getTime());
+		sink.attribute(ATTRIBUTE_TYPE, getEventType());
+		sink.attribute(ATTRIBUTE_DRIVER, this.driverId);
+		sink.attribute(ATTRIBUTE_LINK, this.linkId);
+		if (this.vehicleId != null) {
+			sink.attribute(ATTRIBUTE_VEHICLE, this.vehicleId);
+		}
+		if (this.networkMode != null) {
+			sink.attribute(ATTRIBUTE_NETWORKMODE, this.networkMode);
+		}
+		sink.attribute(ATTRIBUTE_POSITION, this.relativePositionOnLink);
+	}
 }
\ No newline at end of file
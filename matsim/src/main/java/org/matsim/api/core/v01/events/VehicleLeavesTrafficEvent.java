@@ -97,4 +97,23 @@ public class VehicleLeavesTrafficEvent extends Event implements HasPersonId, Has
 
 		return attr;
 	}
+
+	@Override
+	public void writeAttributes(final EventAttributeSink sink) {
+		if (isInstanceOfSubclass(VehicleLeavesTrafficEvent.class)) {
+			super.writeAttributes(sink);
+			return;
+		}
+		sink.attribute(ATTRIBUTE_TIME, getTime());
+		sink.attribute(ATTRIBUTE_TYPE, getEventType());
+		sink.attribute(ATTRIBUTE_DRIVER, this.driverId);
+		sink.attribute(ATTRIBUTE_LINK, this.linkId);
+		if (this.vehicleId != null) {
+			sink.attribute(ATTRIBUTE_VEHICLE, this.vehicleId);
+		}
+		if (this.networkMode != null) {
+			sink.attribute(ATTRIBUTE_NETWORKMODE, this.networkMode);
+		}
+		sink.attribute(ATTRIBUTE_POSITION, this.relativePositionOnLink);
+	}
 }
\ No newline at end of file
@@ -38,9 +38,9 @@ import java.util.Set;
 public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final Logger log = Logger.getLogger( ControlerConfigGroup.class );
 
-	public enum RoutingAlgorithmType {Dijkstra, AStarLandmarks, FastDijkstra, FastAStarLandmarks}
+	public enum RoutingAlgorithmType {Dijkstra, AStarLandmarks, FastDijkstra, FastAStarLandmarks, ContractionHierarchies, SpeedyDijkstra, SpeedyALT}
 
-	public enum EventsFileFormat {xml}
+	public enum EventsFileFormat {xml, binary}
 
 	public enum CompressionType {
 		none(""),
@@ -107,9 +107,18 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	public final Map<String, String> getComments() {
 		Map<String,String> map = super.getComments();
 		map.put(ROUTINGALGORITHM_TYPE, "The type of routing (least cost path) algorithm used, may have the values: " + RoutingAlgorithmType.Dijkstra + ", " + 
-				RoutingAlgorithmType.FastDijkstra + ", " + RoutingAlgorithmType.AStarLandmarks + " or "  + RoutingAlgorithmType.FastAStarLandmarks);
+				RoutingAlgorithmType.FastDijkstra + ", " + RoutingAlgorithmType.AStarLandmarks + ", "  + RoutingAlgorithmType.FastAStarLandmarks + ", "
+				+ RoutingAlgorithmType.ContractionHierarchies + ", " + RoutingAlgorithmType.SpeedyDijkstra + " or "
+				+ RoutingAlgorithmType.SpeedyALT + ".  "
+				+ RoutingAlgorithmType.SpeedyDijkstra + " and " + RoutingAlgorithmType.SpeedyALT + " share one compact copy of the network "
+				+ "between all threads; " + RoutingAlgorithmType.SpeedyALT + " only re-computes its landmark distances if the minimum "
+				+ "link costs have changed.  "
+				+ RoutingAlgorithmType.ContractionHierarchies + " preprocesses the network "
+				+ "once and re-computes the link costs per travel time bin in every iteration; it does not consider person-specific "
+				+ "randomization of the link costs when searching the path.");
 		map.put(RUNID, "An identifier for the current run which is used as prefix for output files and mentioned in output xml files etc.");
-		map.put(EVENTS_FILE_FORMAT, "Default="+EventsFileFormat.xml+"; Specifies the file format for writing events. Currently supported: xml."+IOUtils.NATIVE_NEWLINE+ "\t\t" +
+		map.put(EVENTS_FILE_FORMAT, "Default="+EventsFileFormat.xml+"; Specifies the file format for writing events. Currently supported: xml, binary. "
+				+ "The binary format is much smaller and faster to read again, but can only be read by MATSim."+IOUtils.NATIVE_NEWLINE+ "\t\t" +
 				"Multiple values can be specified separated by commas (',').");
 		map.put(WRITE_EVENTS_INTERVAL, "iterationNumber % writeEventsInterval == 0 defines in which iterations events are written " +
 				"to a file. `0' disables events writing completely.");
@@ -21,6 +21,7 @@
 package org.matsim.core.config.groups;
 
 import org.apache.log4j.Logger;
+import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigGroup;
 import org.matsim.core.config.ReflectiveConfigGroup;
 
@@ -87,6 +88,14 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 		comments.put(REMOVING_UNNECESSARY_PLAN_ATTRIBUTES, "(not tested) will remove plan attributes that are presumably not used, such as " +
                 "activityStartTime. default=false. Use with Caution!");
 
+		comments.put(COMPACTING_NON_SELECTED_PLANS, "If true, the plan elements of all non-selected plans are stored in a compact " +
+				"binary encoding before every mobsim, and only re-created as objects when they are accessed again, e.g. when the " +
+				"plan is selected or written.  Saves a lot of memory with many plans per person.  default=false.");
+
+		comments.put(NON_SELECTED_PLAN_ELEMENTS_DIRECTORY, "Option of " + COMPACTING_NON_SELECTED_PLANS + ", ignored without it.  If " +
+				"set, the compact encoding of the non-selected plans is kept in a temporary, memory-mapped file in this directory, which " +
+				"should be on a fast local disk, instead of on the heap.  default=null, i.e. on the heap.");
+
 		comments.put( INPUT_CRS , "The Coordinates Reference System in which the coordinates are expressed in the input file." +
 				" At import, the coordinates will be converted to the coordinate system defined in \"global\", and will" +
 				"be converted back at export. If not specified, no conversion happens." );
@@ -193,6 +202,41 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 		this.removingUnneccessaryPlanAttributes = removingUnneccessaryPlanAttributes;
 	}
 
+	// ---
+
+	private static final String COMPACTING_NON_SELECTED_PLANS = "compactingNonSelectedPlans";
+	private boolean compactingNonSelectedPlans = false;
+	@StringGetter(COMPACTING_NON_SELECTED_PLANS)
+	public boolean isCompactingNonSelectedPlans() {
+		return this.compactingNonSelectedPlans;
+	}
+	@StringSetter(COMPACTING_NON_SELECTED_PLANS)
+	public void setCompactingNonSelectedPlans(final boolean compactingNonSelectedPlans) {
+		this.compactingNonSelectedPlans = compactingNonSelectedPlans;
+	}
+
+	// ---
+
+	private static final String NON_SELECTED_PLAN_ELEMENTS_DIRECTORY = "nonSelectedPlanElementsDirectory";
+	private String nonSelectedPlanElementsDirectory = null;
+	@StringGetter(NON_SELECTED_PLAN_ELEMENTS_DIRECTORY)
+	public String getNonSelectedPlanElementsDirectory() {
+		return this.nonSelectedPlanElementsDirectory;
+	}
+	@StringSetter(NON_SELECTED_PLAN_ELEMENTS_DIRECTORY)
+	public void setNonSelectedPlanElementsDirectory(final String nonSelectedPlanElementsDirectory) {
+		this.nonSelectedPlanElementsDirectory = nonSelectedPlanElementsDirectory;
+	}
+
+
+	@Override
+	protected void checkConsistency(Config config) {
+		super.checkConsistency(config);
+		if (this.nonSelectedPlanElementsDirectory != null && !this.compactingNonSelectedPlans) {
+			Logger.getLogger(this.getClass()).warn(NON_SELECTED_PLAN_ELEMENTS_DIRECTORY + " is set, but it is only used with "
+					+ COMPACTING_NON_SELECTED_PLANS + "=true.  The non-selected plans are kept on the heap as objects.");
+		}
+	}
 
 	@StringGetter( INPUT_CRS )
 	public String getInputCRS() {
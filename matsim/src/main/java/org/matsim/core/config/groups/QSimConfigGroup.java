@@ -22,6 +22,7 @@ package org.matsim.core.config.groups;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 
@@ -270,6 +271,51 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		map.put(USE_PERSON_ID_FOR_MISSING_VEHICLE_ID, "If a route does not reference a vehicle, agents will use the vehicle with the same id as their own.");
 		map.put(USING_THREADPOOL, "if the qsim should use as many runners as there are threads (Christoph's dissertation version)"
 				+ " or more of them, together with a thread pool (seems to be faster in some situations, but is not tested).") ;
+		{
+			StringBuilder stb = new StringBuilder() ;
+			for ( NetsimPartitioning np : NetsimPartitioning.values() ) {
+				stb.append(" ").append(np.toString());
+			}
+			map.put(NETSIM_PARTITIONING, "How nodes and their out-links are distributed over the threads of the netsim. "
+					+ NetsimPartitioning.recursiveBisection + " keeps neighbouring nodes on the same thread and balances the threads "
+					+ "by link capacity.  Only relevant if numberOfThreads > 1.  Default: " + NetsimPartitioning.roundRobin + "; options:" + stb ) ;
+		}
+		map.put(NETSIM_REBALANCING_PERIOD, "time in seconds.  If larger than zero, active nodes and their out-links are moved from the slowest "
+				+ "to the fastest threads of the netsim every so many simulated seconds, based on the measured run times of the threads.  "
+				+ "Since this depends on wall clock times, the order of events may differ between otherwise identical runs.  "
+				+ "Only relevant if numberOfThreads > 1.  Default: 0 (off).") ;
+		map.put(NETSIM_ACTIVE_ELEMENTS, "How the threads of the netsim keep track of the active links and nodes. " + NetsimActiveElements.indexArrays
+				+ " keeps the indices of the links in an int array and the nodes in a bit set, so that activating them does not allocate "
+				+ "objects; the nodes are then moved in the order of their indices rather than in the order of their activation.  Options: "
+				+ Arrays.toString( NetsimActiveElements.values() ) + ".  Default: " + NetsimActiveElements.lists ) ;
+		map.put(NETSIM_VEHICLE_STORAGE, "How the link queues of the netsim keep their vehicles. " + NetsimVehicleStorage.primitiveArrays
+				+ " keeps the earliest link exit times of the vehicles in a primitive array, indexed by vehicle, and the queues only store "
+				+ "these indices.  The size in PCU and the flow efficiency are still taken from the vehicle type and the flow efficiency "
+				+ "calculator whenever needed, so the results are the same as with " + NetsimVehicleStorage.objects + ", also with a custom "
+				+ "flow efficiency calculator.  Not used with the " + LinkDynamics.SeepageQ + " link dynamics.  Options: "
+				+ Arrays.toString( NetsimVehicleStorage.values() ) + ".  Default: " + NetsimVehicleStorage.objects ) ;
+		map.put(ACTIVITY_END_QUEUE, "How the activity engine keeps the agents until their activities end. " + ActivityEndQueue.timingWheel
+				+ " puts them into one bucket per simulated second, which makes adding, rescheduling and removing agents independent of "
+				+ "the number of agents at activities.  Options: " + Arrays.toString( ActivityEndQueue.values() )
+				+ ".  Default: " + ActivityEndQueue.priorityQueue ) ;
+		map.put(NUMBER_OF_ACTIVITY_END_THREADS, "Number of threads on which the activity engine ends the activities that end in the same "
+				+ "time step.  Only relevant with " + ACTIVITY_END_QUEUE + "=" + ActivityEndQueue.timingWheel + ".  With more than one thread, "
+				+ "the order of the activity end events within a time step may differ between otherwise identical runs.  Default: 1.") ;
+		map.put(TELEPORTATION_ARRIVAL_QUEUE, "How the teleportation engine keeps the teleported agents until they arrive. "
+				+ TeleportationArrivalQueue.timingWheel + " puts them into one bucket per simulated second and only keeps visualization data "
+				+ "while a snapshot writer or visualizer asks for it.  Options: " + Arrays.toString( TeleportationArrivalQueue.values() )
+				+ ".  Default: " + TeleportationArrivalQueue.priorityQueue ) ;
+		map.put(SKIPPING_IDLE_TIME_STEPS, "If true, the qsim asks its engines and sim step listeners when they have something to do next "
+				+ "and advances the clock directly to that time, e.g. to the next activity end while no vehicle is on the network.  "
+				+ "Time steps are only skipped if all engines and sim step listeners can tell; otherwise, this has no effect.  "
+				+ "The events are the same as without skipping.  Default: false.") ;
+		map.put(EVENT_DRIVEN_LINK_TYPES, "Comma-separated link types on which vehicles are simulated event-driven: the link only becomes "
+				+ "active when the first vehicle reaches its end, instead of in every time step while vehicles are on it.  Only used with "
+				+ FAST_CAPACITY_UPDATE + "=true and " + TrafficDynamics.queue + " traffic dynamics, without " + LinkDynamics.SeepageQ
+				+ " and without lanes.  Default: none.") ;
+		map.put(EVENT_DRIVEN_LINK_MINIMUM_FLOW_CAPACITY, "Links with at least this flow capacity (in vehicles per hour, before "
+				+ "applying the flowCapacityFactor) are simulated event-driven, see " + EVENT_DRIVEN_LINK_TYPES + ".  Default: Infinity, i.e. "
+				+ "no link is selected by its capacity.") ;
 		map.put(FAST_CAPACITY_UPDATE, "If false, the qsim accumulates fractional flows up to one flow unit in every time step.  If true, "
 				+ "flows are updated only if an agent wants to enter the link or an agent is added to buffer. "
 				+ "Default is true.") ;
@@ -533,6 +579,129 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 	public void setUsingThreadpool( boolean val ) {
 		this.usingThreadpool = val ;
 	}
+	// ---
+	private static final String NETSIM_PARTITIONING = "netsimPartitioning" ;
+	public enum NetsimPartitioning { roundRobin, recursiveBisection }
+	private NetsimPartitioning netsimPartitioning = NetsimPartitioning.roundRobin ;
+	@StringGetter(NETSIM_PARTITIONING)
+	public NetsimPartitioning getNetsimPartitioning() {
+		return this.netsimPartitioning ;
+	}
+	@StringSetter(NETSIM_PARTITIONING)
+	public void setNetsimPartitioning( NetsimPartitioning val ) {
+		this.netsimPartitioning = val ;
+	}
+	// ---
+	private static final String NETSIM_REBALANCING_PERIOD = "netsimRebalancingPeriod" ;
+	@PositiveOrZero
+	private double netsimRebalancingPeriod = 0. ;
+	@StringGetter(NETSIM_REBALANCING_PERIOD)
+	public double getNetsimRebalancingPeriod() {
+		return this.netsimRebalancingPeriod ;
+	}
+	@StringSetter(NETSIM_REBALANCING_PERIOD)
+	public void setNetsimRebalancingPeriod( double val ) {
+		this.netsimRebalancingPeriod = val ;
+	}
+	// ---
+	private static final String NETSIM_ACTIVE_ELEMENTS = "netsimActiveElements" ;
+	public enum NetsimActiveElements { lists, indexArrays }
+	private NetsimActiveElements netsimActiveElements = NetsimActiveElements.lists ;
+	@StringGetter(NETSIM_ACTIVE_ELEMENTS)
+	public NetsimActiveElements getNetsimActiveElements() {
+		return this.netsimActiveElements ;
+	}
+	@StringSetter(NETSIM_ACTIVE_ELEMENTS)
+	public void setNetsimActiveElements( NetsimActiveElements val ) {
+		this.netsimActiveElements = val ;
+	}
+	// ---
+	private static final String NETSIM_VEHICLE_STORAGE = "netsimVehicleStorage" ;
+	public enum NetsimVehicleStorage { objects, primitiveArrays }
+	private NetsimVehicleStorage netsimVehicleStorage = NetsimVehicleStorage.objects ;
+	@StringGetter(NETSIM_VEHICLE_STORAGE)
+	public NetsimVehicleStorage getNetsimVehicleStorage() {
+		return this.netsimVehicleStorage ;
+	}
+	@StringSetter(NETSIM_VEHICLE_STORAGE)
+	public void setNetsimVehicleStorage( NetsimVehicleStorage val ) {
+		this.netsimVehicleStorage = val ;
+	}
+	// ---
+	private static final String ACTIVITY_END_QUEUE = "activityEndQueue" ;
+	public enum ActivityEndQueue { priorityQueue, timingWheel }
+	private ActivityEndQueue activityEndQueue = ActivityEndQueue.priorityQueue ;
+	@StringGetter(ACTIVITY_END_QUEUE)
+	public ActivityEndQueue getActivityEndQueue() {
+		return this.activityEndQueue ;
+	}
+	@StringSetter(ACTIVITY_END_QUEUE)
+	public void setActivityEndQueue( ActivityEndQueue val ) {
+		this.activityEndQueue = val ;
+	}
+	// ---
+	private static final String NUMBER_OF_ACTIVITY_END_THREADS = "numberOfActivityEndThreads" ;
+	@Positive
+	private int numberOfActivityEndThreads = 1 ;
+	@StringGetter(NUMBER_OF_ACTIVITY_END_THREADS)
+	public int getNumberOfActivityEndThreads() {
+		return this.numberOfActivityEndThreads ;
+	}
+	@StringSetter(NUMBER_OF_ACTIVITY_END_THREADS)
+	public void setNumberOfActivityEndThreads( int val ) {
+		this.numberOfActivityEndThreads = val ;
+	}
+	// ---
+	private static final String TELEPORTATION_ARRIVAL_QUEUE = "teleportationArrivalQueue" ;
+	public enum TeleportationArrivalQueue { priorityQueue, timingWheel }
+	private TeleportationArrivalQueue teleportationArrivalQueue = TeleportationArrivalQueue.priorityQueue ;
+	@StringGetter(TELEPORTATION_ARRIVAL_QUEUE)
+	public TeleportationArrivalQueue getTeleportationArrivalQueue() {
+		return this.teleportationArrivalQueue ;
+	}
+	@StringSetter(TELEPORTATION_ARRIVAL_QUEUE)
+	public void setTeleportationArrivalQueue( TeleportationArrivalQueue val ) {
+		this.teleportationArrivalQueue = val ;
+	}
+	// ---
+	private static final String SKIPPING_IDLE_TIME_STEPS = "skippingIdleTimeSteps" ;
+	private boolean skippingIdleTimeSteps = false ;
+	@StringGetter(SKIPPING_IDLE_TIME_STEPS)
+	public boolean isSkippingIdleTimeSteps() {
+		return this.skippingIdleTimeSteps ;
+	}
+	@StringSetter(SKIPPING_IDLE_TIME_STEPS)
+	public void setSkippingIdleTimeSteps( boolean val ) {
+		this.skippingIdleTimeSteps = val ;
+	}
+	// ---
+	private static final String EVENT_DRIVEN_LINK_TYPES = "eventDrivenLinkTypes" ;
+	private Collection<String> eventDrivenLinkTypes = Collections.emptySet() ;
+	@StringGetter(EVENT_DRIVEN_LINK_TYPES)
+	private String getEventDrivenLinkTypesAsString() {
+		return CollectionUtils.setToString(new HashSet<>(getEventDrivenLinkTypes())) ;
+	}
+	@StringSetter(EVENT_DRIVEN_LINK_TYPES)
+	private void setEventDrivenLinkTypes( String value ) {
+		setEventDrivenLinkTypes(CollectionUtils.stringToSet(value)) ;
+	}
+	public Collection<String> getEventDrivenLinkTypes() {
+		return this.eventDrivenLinkTypes ;
+	}
+	public void setEventDrivenLinkTypes( Collection<String> eventDrivenLinkTypes ) {
+		this.eventDrivenLinkTypes = eventDrivenLinkTypes ;
+	}
+	// ---
+	private static final String EVENT_DRIVEN_LINK_MINIMUM_FLOW_CAPACITY = "eventDrivenLinkMinimumFlowCapacity" ;
+	private double eventDrivenLinkMinimumFlowCapacity = Double.POSITIVE_INFINITY ;
+	@StringGetter(EVENT_DRIVEN_LINK_MINIMUM_FLOW_CAPACITY)
+	public double getEventDrivenLinkMinimumFlowCapacity() {
+		return this.eventDrivenLinkMinimumFlowCapacity ;
+	}
+	@StringSetter(EVENT_DRIVEN_LINK_MINIMUM_FLOW_CAPACITY)
+	public void setEventDrivenLinkMinimumFlowCapacity( double val ) {
+		this.eventDrivenLinkMinimumFlowCapacity = val ;
+	}
 
 	private static final String USE_LANES="useLanes" ;
 	private boolean useLanes = false ;
@@ -42,7 +42,9 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 
 	public static final String GROUPNAME = "travelTimeCalculator";
 
-	public enum TravelTimeCalculatorType {TravelTimeCalculatorArray,TravelTimeCalculatorHashMap}
+	public enum TravelTimeCalculatorType {TravelTimeCalculatorArray,TravelTimeCalculatorHashMap,TravelTimeCalculatorOffHeap}
+
+	public enum LinkDataStorage {hashMap,idIndexed}
 
 	private static final String TRAVEL_TIME_CALCULATOR = "travelTimeCalculator";
 	private static final String TRAVEL_TIME_BIN_SIZE = "travelTimeBinSize";
@@ -56,6 +58,8 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 	private static final String ANALYZEDMODES = "analyzedModes";
 	private static final String FILTERMODES = "filterModes";
 	private static final String SEPARATEMODES = "separateModes";
+	private static final String LINK_DATA_STORAGE = "linkDataStorage";
+	private static final String OFF_HEAP_TRAVEL_TIMES_FILE = "offHeapTravelTimesFile";
 
 	private TravelTimeCalculatorType travelTimeCalculator = TravelTimeCalculatorType.TravelTimeCalculatorArray;
 	private String travelTimeAggregator = "optimistic";
@@ -69,6 +73,8 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 	private Set<String> analyzedModes = new LinkedHashSet<>(  ) ;
 	private boolean filterModes = false;
 	private boolean separateModes = true;
+	private LinkDataStorage linkDataStorage = LinkDataStorage.hashMap;
+	private String offHeapTravelTimesFile = null;
 
 	public TravelTimeCalculatorConfigGroup() {
 		super(GROUPNAME);
@@ -90,7 +96,18 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 							 "respected by the travel time collector. 'car' is default which includes also buses from the pt simulation module.");
 		map.put(FILTERMODES, "(only for backwards compatiblity; only used if " + SEPARATEMODES + "==false)  Only modes included in analyzedModes are included." ) ;
 		map.put(SEPARATEMODES, "(only for backwards compatibility) If false, link travel times are measured and aggregated over all vehicles using the link." ) ;
-		map.put( TRAVEL_TIME_CALCULATOR, "possible values: " + Arrays.stream( TravelTimeCalculatorType.values() ).map( type -> type.toString() + ' ' ).collect( Collectors.joining() ) );
+		map.put( TRAVEL_TIME_CALCULATOR, "possible values: " + Arrays.stream( TravelTimeCalculatorType.values() ).map( type -> type.toString() + ' ' ).collect( Collectors.joining() ) +
+				". " + TravelTimeCalculatorType.TravelTimeCalculatorOffHeap + " keeps the link travel times of all links in one matrix outside of the Java heap. " +
+				"Without " + OFF_HEAP_TRAVEL_TIMES_FILE + ", the matrix takes 6 bytes per link and time bin of direct memory, which the JVM limits to the " +
+				"maximum heap size by default; raise the limit with -XX:MaxDirectMemorySize if needed. A mapped file does not count against this limit." );
+		map.put( OFF_HEAP_TRAVEL_TIMES_FILE, "(only used with " + TravelTimeCalculatorType.TravelTimeCalculatorOffHeap + ") If set, the travel time matrix " +
+				"is mapped to this file, which keeps the travel times after the run. A later run with the same network and time bins " +
+				"starts from the travel times in the file until the travel time calculator is reset for the first iteration. With " +
+				SEPARATEMODES + ", each mode uses its own file, named <mode>.<file name>." );
+		map.put( LINK_DATA_STORAGE, "How the per-link data and the link enter times of the vehicles on the network are stored. " +
+				"'hashMap' uses maps keyed by ids. 'idIndexed' uses arrays indexed by the ids' index, which avoids hash lookups and " +
+				"allocations for every event and needs less memory on large networks. Possible values: " +
+				Arrays.stream( LinkDataStorage.values() ).map( type -> type.toString() + ' ' ).collect( Collectors.joining() ) );
 		return map;
 	}
 
@@ -213,5 +230,25 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 	public void setSeparateModes(boolean separateModes) {
 		this.separateModes = separateModes;
 	}
+	// ---
+	@StringGetter( LINK_DATA_STORAGE )
+	public LinkDataStorage getLinkDataStorage() {
+		return this.linkDataStorage;
+	}
+
+	@StringSetter( LINK_DATA_STORAGE )
+	public void setLinkDataStorage( LinkDataStorage linkDataStorage ) {
+		this.linkDataStorage = linkDataStorage;
+	}
+	// ---
+	@StringGetter( OFF_HEAP_TRAVEL_TIMES_FILE )
+	public String getOffHeapTravelTimesFile() {
+		return this.offHeapTravelTimesFile;
+	}
+
+	@StringSetter( OFF_HEAP_TRAVEL_TIMES_FILE )
+	public void setOffHeapTravelTimesFile( String offHeapTravelTimesFile ) {
+		this.offHeapTravelTimesFile = offHeapTravelTimesFile;
+	}
 
 }
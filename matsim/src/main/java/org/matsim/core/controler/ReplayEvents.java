@@ -24,6 +24,7 @@ package org.matsim.core.controler;
 
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.GlobalConfigGroup;
 import org.matsim.core.controler.events.*;
 import org.matsim.core.controler.listener.*;
 import org.matsim.core.events.MatsimEventsReader;
@@ -53,6 +54,9 @@ public final class ReplayEvents {
     @Inject
     EventsManager eventsManager;
 
+    @Inject
+    GlobalConfigGroup globalConfigGroup;
+
     public static Results run(final Config config, final String eventsFilename, final AbstractModule... modules) {
         final com.google.inject.Injector injector = Injector.createInjector(
                 config,
@@ -95,7 +99,10 @@ public final class ReplayEvents {
                 ((BeforeMobsimListener) controlerListener).notifyBeforeMobsim(new BeforeMobsimEvent(null, iterationNumber));
             }
         }
-        new MatsimEventsReader(eventsManager).readFile(eventsFilename);
+        MatsimEventsReader reader = new MatsimEventsReader(eventsManager);
+        // binary events files are decompressed in parallel, the events are still passed on in their original order
+        reader.setNumberOfThreads(globalConfigGroup.getNumberOfThreads());
+        reader.readFile(eventsFilename);
         ((ControlerListenerManagerImpl) controlerListenerManager).fireControlerAfterMobsimEvent(iterationNumber);
         for (ControlerListener controlerListener : controlerListenersDeclaredByModules) {
             if (controlerListener instanceof AfterMobsimListener) {
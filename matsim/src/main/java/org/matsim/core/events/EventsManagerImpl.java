@@ -20,9 +20,15 @@
 
 package org.matsim.core.events;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -43,26 +49,10 @@ import org.matsim.api.core.v01.events.PersonMoneyEvent;
 import org.matsim.api.core.v01.events.PersonStuckEvent;
 import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
 import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
-import org.matsim.api.core.v01.events.handler.ActivityEndEventHandler;
-import org.matsim.api.core.v01.events.handler.ActivityStartEventHandler;
-import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
-import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
-import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
-import org.matsim.api.core.v01.events.handler.PersonDepartureEventHandler;
-import org.matsim.api.core.v01.events.handler.PersonEntersVehicleEventHandler;
-import org.matsim.api.core.v01.events.handler.PersonLeavesVehicleEventHandler;
-import org.matsim.api.core.v01.events.handler.PersonMoneyEventHandler;
-import org.matsim.api.core.v01.events.handler.PersonStuckEventHandler;
-import org.matsim.api.core.v01.events.handler.TransitDriverStartsEventHandler;
-import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
 import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
-import org.matsim.core.api.experimental.events.handler.AgentWaitingForPtEventHandler;
-import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
-import org.matsim.core.api.experimental.events.handler.VehicleDepartsAtFacilityEventHandler;
-import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.events.handler.EventHandler;
 
 /**
@@ -73,9 +63,15 @@ import org.matsim.core.events.handler.EventHandler;
  * <li>add method public void handleEvent(MyEvent event) to it</li>
  * <li>ready to go, just implement the interface somewhere and add a
  * HandlerObject with a call to <code>Events.addHandler(HandlerObject)</code></li>
- * <li>(optional) add an appropriate line in callHandlerFast() for speeding
- * up execution!</li>
  * </ol>
+ * For every handleEvent method, a small invoker class is generated (via {@link LambdaMetafactory}) the
+ * first time it is needed, so events are dispatched with plain interface calls and without reflection.
+ * The handlers for an event class are kept in an array that is built once and re-used until handlers
+ * are added or removed.
+ * <p></p>
+ * By default, every call to a handler is synchronized on that handler, since the same handler might be
+ * fed from several threads.  The parallel events managers, which make sure that every handler is only
+ * ever called from one thread, switch this off.
  *
  * @author dstrippgen
  * @author mrieser
@@ -84,6 +80,27 @@ public final class EventsManagerImpl implements EventsManager {
 
 	private static final Logger log = Logger.getLogger(EventsManagerImpl.class);
 
+	/**
+	 * Calls <code>handler.handleEvent(event)</code> for one specific handleEvent method.
+	 */
+	@FunctionalInterface
+	private interface EventHandlerInvoker {
+		void invoke(EventHandler handler, Event event);
+	}
+
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, EventHandler.class, Event.class);
+
+	/**
+	 * The event classes whose handlers have always been called directly, so that their exceptions reach the caller
+	 * unchanged.  Exceptions of all other handlers are wrapped, as when they were called by reflection.
+	 */
+	private static final Set<Class<?>> DIRECTLY_CALLED_EVENT_CLASSES = new HashSet<>(Arrays.asList(
+			LinkLeaveEvent.class, LinkEnterEvent.class, VehicleEntersTrafficEvent.class, PersonArrivalEvent.class,
+			PersonDepartureEvent.class, ActivityEndEvent.class, ActivityStartEvent.class, TransitDriverStartsEvent.class,
+			PersonStuckEvent.class, PersonMoneyEvent.class, AgentWaitingForPtEvent.class, PersonEntersVehicleEvent.class,
+			PersonLeavesVehicleEvent.class, VehicleDepartsAtFacilityEvent.class, VehicleArrivesAtFacilityEvent.class,
+			Event.class));
+
 	static private class HandlerData {
 
 		protected Class<?> eventklass;
@@ -101,12 +118,14 @@ public final class EventsManagerImpl implements EventsManager {
 	static private class HandlerInfo {
 		protected final Class<?> eventClass;
 		protected final EventHandler eventHandler;
-		protected final Method method;
+		protected final EventHandlerInvoker invoker;
+		protected final boolean wrappingExceptions;
 
-		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final Method method) {
+		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final EventHandlerInvoker invoker) {
 			this.eventClass = eventClass;
 			this.eventHandler = eventHandler;
-			this.method = method;
+			this.invoker = invoker;
+			this.wrappingExceptions = !DIRECTLY_CALLED_EVENT_CLASSES.contains(eventClass);
 		}
 	}
 
@@ -114,9 +133,26 @@ public final class EventsManagerImpl implements EventsManager {
 
 	private final Map<Class<?>, HandlerInfo[]> cacheHandlers = new ConcurrentHashMap<Class<?>, HandlerInfo[]>(15);
 
+	private final Map<Method, EventHandlerInvoker> compiledInvokers = new ConcurrentHashMap<Method, EventHandlerInvoker>();
+
+	private final boolean synchronizingOnHandlers;
+
 	private long counter = 0;
 	private long nextCounterMsg = 1;
 
+	public EventsManagerImpl() {
+		this(true);
+	}
+
+	/**
+	 * @param synchronizingOnHandlers whether every call to a handler is synchronized on the handler.  Only set this
+	 * to <code>false</code> if the handlers added to this events manager are never called concurrently, i.e. if this
+	 * events manager is fed by one thread at a time and the handlers are not registered anywhere else.
+	 */
+	public EventsManagerImpl(final boolean synchronizingOnHandlers) {
+		this.synchronizingOnHandlers = synchronizingOnHandlers;
+	}
+
 	private HandlerData findHandler(final Class<?> evklass) {
 		for (HandlerData handler : this.handlerData) {
 			if (handler.eventklass == evklass) {
@@ -217,19 +253,28 @@ public final class EventsManagerImpl implements EventsManager {
 	}
 
 	private void computeEvent(final Event event) {
-		for (HandlerInfo info : getHandlersForClass(event.getClass())) {
-			synchronized(info.eventHandler) {
-				if (callHandlerFast(info.eventClass, event, info.eventHandler)) {
-					continue;
-				}
-				try {
-					info.method.invoke(info.eventHandler, event);
-				} catch (IllegalArgumentException | IllegalAccessException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
-				} catch (InvocationTargetException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e.getCause());
+		HandlerInfo[] infos = getHandlersForClass(event.getClass());
+		if (this.synchronizingOnHandlers) {
+			for (HandlerInfo info : infos) {
+				synchronized(info.eventHandler) {
+					invoke(info, event);
 				}
 			}
+		} else {
+			for (HandlerInfo info : infos) {
+				invoke(info, event);
+			}
+		}
+	}
+
+	private static void invoke(final HandlerInfo info, final Event event) {
+		try {
+			info.invoker.invoke(info.eventHandler, event);
+		} catch (RuntimeException e) {
+			if (!info.wrappingExceptions) {
+				throw e;
+			}
+			throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
 		}
 	}
 
@@ -246,7 +291,7 @@ public final class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(klass);
 			if (dat != null) {
 				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(klass, handler, dat.method));
+					info.add(new HandlerInfo(klass, handler, getInvoker(klass, handler, dat.method)));
 				}
 			}
 			klass = klass.getSuperclass();
@@ -256,7 +301,7 @@ public final class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(intfc);
 			if (dat != null) {
 				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(intfc, handler, dat.method));
+					info.add(new HandlerInfo(intfc, handler, getInvoker(intfc, handler, dat.method)));
 				}
 			}
 		}
@@ -282,58 +327,57 @@ public final class EventsManagerImpl implements EventsManager {
 		return intfs;
 	}
 
-	// this method is purely for performance reasons and need not be implemented
-	private boolean callHandlerFast(final Class<?> klass, final Event ev, final EventHandler handler) {
-		if (klass == LinkLeaveEvent.class) {
-			((LinkLeaveEventHandler)handler).handleEvent((LinkLeaveEvent)ev);
-			return true;
-		} else if (klass == LinkEnterEvent.class) {
-			((LinkEnterEventHandler)handler).handleEvent((LinkEnterEvent)ev);
-			return true;
-		} else if (klass == VehicleEntersTrafficEvent.class) {
-			((VehicleEntersTrafficEventHandler)handler).handleEvent((VehicleEntersTrafficEvent)ev);
-			return true;
-		} else if (klass == PersonArrivalEvent.class) {
-			((PersonArrivalEventHandler)handler).handleEvent((PersonArrivalEvent)ev);
-			return true;
-		} else if (klass == PersonDepartureEvent.class) {
-			((PersonDepartureEventHandler)handler).handleEvent((PersonDepartureEvent)ev);
-			return true;
-		} else if (klass == ActivityEndEvent.class) {
-			((ActivityEndEventHandler)handler).handleEvent((ActivityEndEvent)ev);
-			return true;
-		} else if (klass == ActivityStartEvent.class) {
-			((ActivityStartEventHandler)handler).handleEvent((ActivityStartEvent)ev);
-			return true;
-		} else if (klass == TransitDriverStartsEvent.class) {
-			((TransitDriverStartsEventHandler) handler).handleEvent((TransitDriverStartsEvent) ev);
-			return true;
-		} else if (klass == PersonStuckEvent.class) {
-			((PersonStuckEventHandler)handler).handleEvent((PersonStuckEvent)ev);
-			return true;
-		} else if (klass == PersonMoneyEvent.class) {
-			((PersonMoneyEventHandler)handler).handleEvent((PersonMoneyEvent)ev);
-			return true;
-		} else if (klass == AgentWaitingForPtEvent.class) {
-			((AgentWaitingForPtEventHandler)handler).handleEvent((AgentWaitingForPtEvent)ev);
-			return true;
-		} else if (klass == PersonEntersVehicleEvent.class) {
-			((PersonEntersVehicleEventHandler)handler).handleEvent((PersonEntersVehicleEvent)ev);
-			return true;
-		} else if (klass == PersonLeavesVehicleEvent.class) {
-			((PersonLeavesVehicleEventHandler)handler).handleEvent((PersonLeavesVehicleEvent)ev);
-			return true;
-		} else if (klass == VehicleDepartsAtFacilityEvent.class) {
-			((VehicleDepartsAtFacilityEventHandler) handler).handleEvent((VehicleDepartsAtFacilityEvent) ev);
-			return true;
-		} else if (klass == VehicleArrivesAtFacilityEvent.class) {
-			((VehicleArrivesAtFacilityEventHandler) handler).handleEvent((VehicleArrivesAtFacilityEvent) ev);
-			return true;
-		} else if (klass == Event.class) {
-			((BasicEventHandler)handler).handleEvent(ev);
-			return true;
+	private EventHandlerInvoker getInvoker(final Class<?> eventClass, final EventHandler handler, final Method method) {
+		Method handlerMethod = method;
+		if (!method.getDeclaringClass().isInstance(handler)) {
+			// the handler implements another interface with a handleEvent method for the same event class
+			try {
+				handlerMethod = handler.getClass().getMethod("handleEvent", eventClass);
+			} catch (NoSuchMethodException e) {
+				throw new RuntimeException("EventHandler " + handler.getClass().getCanonicalName() + " has no method handleEvent(" + eventClass.getCanonicalName() + ")", e);
+			}
+		}
+		return this.compiledInvokers.computeIfAbsent(handlerMethod, EventsManagerImpl::compileInvoker);
+	}
+
+	private static EventHandlerInvoker compileInvoker(final Method method) {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			MethodHandle target = lookup.unreflect(method);
+			CallSite site = LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(EventHandlerInvoker.class),
+					INVOKER_TYPE, target, target.type());
+			return (EventHandlerInvoker) site.getTarget().invokeExact();
+		} catch (Throwable e) {
+			// e.g. a handler interface that is not public.  Fall back to reflection, which is slower but always works.
+			log.info("cannot compile an invoker for " + method + ", using reflection instead: " + e.getMessage());
+			return new ReflectiveEventHandlerInvoker(method);
+		}
+	}
+
+	private static final class ReflectiveEventHandlerInvoker implements EventHandlerInvoker {
+		private final Method method;
+
+		ReflectiveEventHandlerInvoker(final Method method) {
+			this.method = method;
+			this.method.setAccessible(true);
+		}
+
+		@Override
+		public void invoke(final EventHandler handler, final Event event) {
+			try {
+				this.method.invoke(handler, event);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			} catch (InvocationTargetException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw new RuntimeException(e.getCause());
+			}
 		}
-		return false;
 	}
 
 	public void printEventHandlers() {
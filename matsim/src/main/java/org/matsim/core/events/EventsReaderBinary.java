@@ -0,0 +1,689 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsReaderBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.internal.MatsimReader;
+import org.matsim.core.events.EventsReaderXMLv1.CustomEventMapper;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reads events files written by {@link EventWriterBinary}.
+ * <p></p>
+ * The frequent event types are created directly from the decoded columns.  All other events are passed as
+ * attributes to {@link EventsReaderXMLv1}, so they are created exactly as if they had been read from an xml file,
+ * including the handling of custom event mappers.
+ * <p></p>
+ * Decompressing the blocks can be done in parallel, see {@link #setNumberOfThreads(int)}.
+ */
+public final class EventsReaderBinary implements MatsimReader {
+
+	private static final int HEADER_LENGTH = EventWriterBinary.MAGIC.length + 4;
+
+	private final EventsManager events;
+	private final EventsReaderXMLv1 genericReader;
+
+	private final List<String> strings = new ArrayList<>();
+	private final List<IdDictionary> idDictionaries = new ArrayList<>();
+	private final List<Schema> schemas = new ArrayList<>();
+	private final AttributesImpl attributes = new AttributesImpl();
+
+	private int numberOfThreads = 1;
+	private int[] eventSchemas = new int[0];
+	private double[] eventTimes = new double[0];
+
+	public EventsReaderBinary(final EventsManager events) {
+		this.events = events;
+		this.genericReader = new EventsReaderXMLv1(events);
+	}
+
+	public void addCustomEventMapper(final String eventType, final CustomEventMapper<?> mapper) {
+		this.genericReader.addCustomEventMapper(eventType, mapper);
+	}
+
+	@Override
+	public void readFile(final String filename) {
+		readURL(IOUtils.resolveFileOrResource(filename));
+	}
+
+	/**
+	 * With more than one thread, local files are mapped into memory and their blocks are decompressed in
+	 * parallel.  The events are still passed to the events manager by the calling thread, in the order of the
+	 * file.  Defaults to 1.
+	 */
+	public void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
+
+	@Override
+	public void readURL(final URL url) {
+		if (this.numberOfThreads > 1 && "file".equals(url.getProtocol())) {
+			try {
+				parseParallel(new File(url.toURI()));
+			} catch (URISyntaxException e) {
+				throw new UncheckedIOException(e);
+			}
+			return;
+		}
+		try (InputStream stream = IOUtils.getInputStream(url)) {
+			parse(stream);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the given stream starts like a file written by {@link EventWriterBinary}.  The
+	 * stream must support {@link InputStream#mark(int)}, it is reset to its current position.
+	 */
+	public static boolean isBinaryEventsStream(final InputStream stream) {
+		byte[] magic = new byte[EventWriterBinary.MAGIC.length];
+		try {
+			stream.mark(magic.length);
+			int read = 0;
+			while (read < magic.length) {
+				int n = stream.read(magic, read, magic.length - read);
+				if (n < 0) {
+					break;
+				}
+				read += n;
+			}
+			stream.reset();
+			return read == magic.length && Arrays.equals(magic, EventWriterBinary.MAGIC);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Whole numbers are stored in a compact format, see {@link EventWriterBinary}.
+	 */
+	public static boolean isWholeNumber(final double value) {
+		return value == (long) value && Math.abs(value) < 1e15 && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0);
+	}
+
+	public void parse(final InputStream stream) {
+		DataInputStream in = new DataInputStream(stream);
+		Inflater inflater = new Inflater();
+		try {
+			byte[] header = new byte[HEADER_LENGTH];
+			in.readFully(header);
+			checkHeader(ByteBuffer.wrap(header));
+			byte[] compressed = new byte[0];
+			byte[] raw = new byte[0];
+			for (int rawLength = in.readInt(); rawLength > 0; rawLength = in.readInt()) {
+				int compressedLength = in.readInt();
+				if (compressed.length < compressedLength) {
+					compressed = new byte[compressedLength];
+				}
+				if (raw.length < rawLength) {
+					raw = new byte[rawLength];
+				}
+				in.readFully(compressed, 0, compressedLength);
+				inflate(inflater, compressed, compressedLength, raw, rawLength);
+				readBlock(new Cursor(raw));
+			}
+		} catch (EOFException e) {
+			throw new UncheckedIOException("Unexpected end of binary events file, the file seems to be truncated.", e);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Maps the file into memory and decompresses up to <code>2 * numberOfThreads</code> blocks ahead of the block
+	 * whose events are currently created.  Ids, events and calls to the events manager are still created on the
+	 * calling thread, in the order of the file.
+	 */
+	private void parseParallel(final File file) {
+		ExecutorService executor = Executors.newFixedThreadPool(this.numberOfThreads, runnable -> {
+			Thread thread = new Thread(runnable, "EventsReaderBinary");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			readFully(channel, header, 0);
+			checkHeader(header);
+
+			long position = HEADER_LENGTH;
+			ByteBuffer length = ByteBuffer.allocate(4);
+			Deque<Future<byte[]>> pending = new ArrayDeque<>();
+			boolean endOfFile = false;
+			while (true) {
+				while (!endOfFile && pending.size() < 2 * this.numberOfThreads) {
+					readFully(channel, length, position);
+					final int rawLength = length.getInt(0);
+					if (rawLength == 0) {
+						endOfFile = true;
+						break;
+					}
+					readFully(channel, length, position + 4);
+					final int compressedLength = length.getInt(0);
+					final MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, position + 8, compressedLength);
+					pending.add(executor.submit(() -> {
+						byte[] compressed = new byte[compressedLength];
+						block.get(compressed);
+						byte[] raw = new byte[rawLength];
+						Inflater inflater = new Inflater();
+						try {
+							inflate(inflater, compressed, compressedLength, raw, rawLength);
+						} finally {
+							inflater.end();
+						}
+						return raw;
+					}));
+					position += 8 + compressedLength;
+				}
+				Future<byte[]> next = pending.poll();
+				if (next == null) {
+					break;
+				}
+				readBlock(new Cursor(next.get()));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new UncheckedIOException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new UncheckedIOException("Unexpected end of binary events file, the file seems to be truncated.");
+			}
+		}
+	}
+
+	private static void checkHeader(final ByteBuffer header) {
+		byte[] magic = new byte[EventWriterBinary.MAGIC.length];
+		for (int i = 0; i < magic.length; i++) {
+			magic[i] = header.get(i);
+		}
+		if (!Arrays.equals(magic, EventWriterBinary.MAGIC)) {
+			throw new UncheckedIOException("Not a binary events file.");
+		}
+		int version = header.getInt(magic.length);
+		if (version != EventWriterBinary.VERSION) {
+			throw new UncheckedIOException("Unsupported version " + version + " of binary events file.");
+		}
+	}
+
+	private static void inflate(final Inflater inflater, final byte[] compressed, final int compressedLength,
+			final byte[] raw, final int rawLength) {
+		inflater.reset();
+		inflater.setInput(compressed, 0, compressedLength);
+		int inflated = 0;
+		try {
+			while (inflated < rawLength && !inflater.finished() && !inflater.needsInput()) {
+				inflated += inflater.inflate(raw, inflated, rawLength - inflated);
+			}
+		} catch (DataFormatException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (inflated != rawLength) {
+			throw new UncheckedIOException("Corrupt block in binary events file.");
+		}
+	}
+
+	private void readBlock(final Cursor cursor) {
+		for (int n = cursor.readVarInt(); n > 0; n--) {
+			this.strings.add(cursor.readString().intern());
+		}
+		for (int n = cursor.readVarInt(); n > 0; n--) {
+			idDictionary(cursor.readVarInt()).add(cursor.readString());
+		}
+		for (int n = cursor.readVarInt(); n > 0; n--) {
+			String eventType = this.strings.get(cursor.readVarInt());
+			int size = cursor.readVarInt();
+			String[] keys = new String[size];
+			byte[] kinds = new byte[size];
+			IdDictionary[] dictionaries = new IdDictionary[size];
+			for (int i = 0; i < size; i++) {
+				int keyCode = cursor.readVarInt();
+				keys[i] = this.strings.get(keyCode);
+				kinds[i] = cursor.readByte();
+				if (kinds[i] == EventWriterBinary.KIND_ID) {
+					dictionaries[i] = idDictionary(keyCode);
+				}
+			}
+			Schema schema = new Schema(eventType, keys, kinds, dictionaries, this.strings);
+			schema.decoder = createDecoder(schema);
+			this.schemas.add(schema);
+		}
+
+		int eventCount = cursor.readVarInt();
+		if (this.eventSchemas.length < eventCount) {
+			this.eventSchemas = new int[eventCount];
+			this.eventTimes = new double[eventCount];
+		}
+		for (int i = 0; i < eventCount; i++) {
+			int code = cursor.readVarInt();
+			this.eventSchemas[i] = code;
+			this.schemas.get(code).count++;
+		}
+		long previous = 0;
+		for (int i = 0; i < eventCount; i++) {
+			long encoded = cursor.readVarLong();
+			if (encoded == 1) {
+				this.eventTimes[i] = Double.longBitsToDouble(cursor.readLong());
+			} else {
+				previous += unZigZag(encoded >>> 1);
+				this.eventTimes[i] = previous;
+			}
+		}
+		for (Schema schema : this.schemas) {
+			if (schema.count > 0) {
+				schema.readColumns(cursor);
+			}
+		}
+
+		for (int i = 0; i < eventCount; i++) {
+			Schema schema = this.schemas.get(this.eventSchemas[i]);
+			schema.decoder.decode(schema.row++, this.eventTimes[i]);
+		}
+		for (Schema schema : this.schemas) {
+			schema.count = 0;
+			schema.row = 0;
+		}
+	}
+
+	private IdDictionary idDictionary(final int keyCode) {
+		while (this.idDictionaries.size() <= keyCode) {
+			this.idDictionaries.add(null);
+		}
+		IdDictionary dictionary = this.idDictionaries.get(keyCode);
+		if (dictionary == null) {
+			dictionary = new IdDictionary();
+			this.idDictionaries.set(keyCode, dictionary);
+		}
+		return dictionary;
+	}
+
+	private static long unZigZag(final long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private EventDecoder createDecoder(final Schema s) {
+		switch (s.eventType) {
+			case LinkEnterEvent.EVENT_TYPE: {
+				int vehicle = s.field(LinkEnterEvent.ATTRIBUTE_VEHICLE, EventWriterBinary.KIND_ID);
+				int link = s.field(LinkEnterEvent.ATTRIBUTE_LINK, EventWriterBinary.KIND_ID);
+				if (s.consistsOf(vehicle, link)) {
+					return (row, time) -> this.events.processEvent(new LinkEnterEvent(time,
+							s.id(vehicle, row, Vehicle.class), s.id(link, row, Link.class)));
+				}
+				break;
+			}
+			case LinkLeaveEvent.EVENT_TYPE: {
+				int vehicle = s.field(LinkLeaveEvent.ATTRIBUTE_VEHICLE, EventWriterBinary.KIND_ID);
+				int link = s.field(LinkLeaveEvent.ATTRIBUTE_LINK, EventWriterBinary.KIND_ID);
+				if (s.consistsOf(vehicle, link)) {
+					return (row, time) -> this.events.processEvent(new LinkLeaveEvent(time,
+							s.id(vehicle, row, Vehicle.class), s.id(link, row, Link.class)));
+				}
+				break;
+			}
+			case VehicleEntersTrafficEvent.EVENT_TYPE: {
+				int driver = s.field(VehicleEntersTrafficEvent.ATTRIBUTE_DRIVER, EventWriterBinary.KIND_ID);
+				int link = s.field(VehicleEntersTrafficEvent.ATTRIBUTE_LINK, EventWriterBinary.KIND_ID);
+				int vehicle = s.field(VehicleEntersTrafficEvent.ATTRIBUTE_VEHICLE, EventWriterBinary.KIND_ID);
+				int mode = s.field(VehicleEntersTrafficEvent.ATTRIBUTE_NETWORKMODE, EventWriterBinary.KIND_STRING);
+				int position = s.field(VehicleEntersTrafficEvent.ATTRIBUTE_POSITION, EventWriterBinary.KIND_DOUBLE);
+				if (driver >= 0 && position >= 0 && s.consistsOf(driver, link, vehicle, mode, position)) {
+					return (row, time) -> this.events.processEvent(new VehicleEntersTrafficEvent(time,
+							s.id(driver, row, Person.class), s.id(link, row, Link.class), s.id(vehicle, row, Vehicle.class),
+							s.string(mode, row), s.doubleValue(position, row)));
+				}
+				break;
+			}
+			case VehicleLeavesTrafficEvent.EVENT_TYPE: {
+				int driver = s.field(VehicleLeavesTrafficEvent.ATTRIBUTE_DRIVER, EventWriterBinary.KIND_ID);
+				int link = s.field(VehicleLeavesTrafficEvent.ATTRIBUTE_LINK, EventWriterBinary.KIND_ID);
+				int vehicle = s.field(VehicleLeavesTrafficEvent.ATTRIBUTE_VEHICLE, EventWriterBinary.KIND_ID);
+				int mode = s.field(VehicleLeavesTrafficEvent.ATTRIBUTE_NETWORKMODE, EventWriterBinary.KIND_STRING);
+				int position = s.field(VehicleLeavesTrafficEvent.ATTRIBUTE_POSITION, EventWriterBinary.KIND_DOUBLE);
+				if (driver >= 0 && position >= 0 && s.consistsOf(driver, link, vehicle, mode, position)) {
+					return (row, time) -> this.events.processEvent(new VehicleLeavesTrafficEvent(time,
+							s.id(driver, row, Person.class), s.id(link, row, Link.class), s.id(vehicle, row, Vehicle.class),
+							s.string(mode, row), s.doubleValue(position, row)));
+				}
+				break;
+			}
+			case PersonDepartureEvent.EVENT_TYPE: {
+				int person = s.field(PersonDepartureEvent.ATTRIBUTE_PERSON, EventWriterBinary.KIND_ID);
+				int link = s.field(PersonDepartureEvent.ATTRIBUTE_LINK, EventWriterBinary.KIND_ID);
+				int mode = s.field(PersonDepartureEvent.ATTRIBUTE_LEGMODE, EventWriterBinary.KIND_STRING);
+				if (person >= 0 && s.consistsOf(person, link, mode)) {
+					return (row, time) -> this.events.processEvent(new PersonDepartureEvent(time,
+							s.id(person, row, Person.class), s.id(link, row, Link.class), s.string(mode, row)));
+				}
+				break;
+			}
+			case PersonArrivalEvent.EVENT_TYPE: {
+				int person = s.field(PersonArrivalEvent.ATTRIBUTE_PERSON, EventWriterBinary.KIND_ID);
+				int link = s.field(PersonArrivalEvent.ATTRIBUTE_LINK, EventWriterBinary.KIND_ID);
+				int mode = s.field(PersonArrivalEvent.ATTRIBUTE_LEGMODE, EventWriterBinary.KIND_STRING);
+				if (person >= 0 && s.consistsOf(person, link, mode)) {
+					return (row, time) -> this.events.processEvent(new PersonArrivalEvent(time,
+							s.id(person, row, Person.class), s.id(link, row, Link.class), s.string(mode, row)));
+				}
+				break;
+			}
+			case ActivityStartEvent.EVENT_TYPE: {
+				int person = s.field(ActivityStartEvent.ATTRIBUTE_PERSON, EventWriterBinary.KIND_ID);
+				int link = s.field(ActivityStartEvent.ATTRIBUTE_LINK, EventWriterBinary.KIND_ID);
+				int facility = s.field(ActivityStartEvent.ATTRIBUTE_FACILITY, EventWriterBinary.KIND_ID);
+				int actType = s.field(ActivityStartEvent.ATTRIBUTE_ACTTYPE, EventWriterBinary.KIND_STRING);
+				if (person >= 0 && s.consistsOf(person, link, facility, actType)) {
+					return (row, time) -> this.events.processEvent(new ActivityStartEvent(time,
+							s.id(person, row, Person.class), s.id(link, row, Link.class),
+							s.id(facility, row, ActivityFacility.class), s.string(actType, row)));
+				}
+				break;
+			}
+			case ActivityEndEvent.EVENT_TYPE: {
+				int person = s.field(ActivityEndEvent.ATTRIBUTE_PERSON, EventWriterBinary.KIND_ID);
+				int link = s.field(ActivityEndEvent.ATTRIBUTE_LINK, EventWriterBinary.KIND_ID);
+				int facility = s.field(ActivityEndEvent.ATTRIBUTE_FACILITY, EventWriterBinary.KIND_ID);
+				int actType = s.field(ActivityEndEvent.ATTRIBUTE_ACTTYPE, EventWriterBinary.KIND_STRING);
+				if (person >= 0 && s.consistsOf(person, link, facility, actType)) {
+					return (row, time) -> this.events.processEvent(new ActivityEndEvent(time,
+							s.id(person, row, Person.class), s.id(link, row, Link.class),
+							s.id(facility, row, ActivityFacility.class), s.string(actType, row)));
+				}
+				break;
+			}
+			case PersonEntersVehicleEvent.EVENT_TYPE: {
+				int person = s.field(PersonEntersVehicleEvent.ATTRIBUTE_PERSON, EventWriterBinary.KIND_ID);
+				int vehicle = s.field(PersonEntersVehicleEvent.ATTRIBUTE_VEHICLE, EventWriterBinary.KIND_ID);
+				if (s.consistsOf(person, vehicle)) {
+					return (row, time) -> this.events.processEvent(new PersonEntersVehicleEvent(time,
+							s.id(person, row, Person.class), s.id(vehicle, row, Vehicle.class)));
+				}
+				break;
+			}
+			case PersonLeavesVehicleEvent.EVENT_TYPE: {
+				int person = s.field(PersonLeavesVehicleEvent.ATTRIBUTE_PERSON, EventWriterBinary.KIND_ID);
+				int vehicle = s.field(PersonLeavesVehicleEvent.ATTRIBUTE_VEHICLE, EventWriterBinary.KIND_ID);
+				if (s.consistsOf(person, vehicle)) {
+					return (row, time) -> this.events.processEvent(new PersonLeavesVehicleEvent(time,
+							s.id(person, row, Person.class), s.id(vehicle, row, Vehicle.class)));
+				}
+				break;
+			}
+			default:
+		}
+		return (row, time) -> {
+			this.attributes.clear();
+			addAttribute(Event.ATTRIBUTE_TIME, Double.toString(time));
+			addAttribute(Event.ATTRIBUTE_TYPE, s.eventType);
+			for (int field = 0; field < s.keys.length; field++) {
+				addAttribute(s.keys[field], s.string(field, row));
+			}
+			this.genericReader.startEvent(this.attributes);
+		};
+	}
+
+	private void addAttribute(final String key, final String value) {
+		this.attributes.addAttribute("", key, key, "CDATA", value);
+	}
+
+	@FunctionalInterface
+	private interface EventDecoder {
+		void decode(int row, double time);
+	}
+
+	/**
+	 * The decoded columns of all events with the same type and attribute keys in the current block.
+	 */
+	private static final class Schema {
+		final String eventType;
+		final String[] keys;
+		final byte[] kinds;
+		final IdDictionary[] dictionaries;
+		final List<String> strings;
+		final int[][] codes;
+		final double[][] doubles;
+		EventDecoder decoder;
+		int count = 0;
+		int row = 0;
+
+		Schema(final String eventType, final String[] keys, final byte[] kinds, final IdDictionary[] dictionaries,
+				final List<String> strings) {
+			this.eventType = eventType;
+			this.keys = keys;
+			this.kinds = kinds;
+			this.dictionaries = dictionaries;
+			this.strings = strings;
+			this.codes = new int[keys.length][];
+			this.doubles = new double[keys.length][];
+		}
+
+		int field(final String key, final byte kind) {
+			for (int i = 0; i < this.keys.length; i++) {
+				if (this.keys[i].equals(key)) {
+					return this.kinds[i] == kind ? i : Integer.MIN_VALUE;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * @return <code>true</code> if all given fields have the expected kind and there are no other fields.
+		 */
+		boolean consistsOf(final int... fields) {
+			int found = 0;
+			for (int field : fields) {
+				if (field == Integer.MIN_VALUE) {
+					return false;
+				}
+				if (field >= 0) {
+					found++;
+				}
+			}
+			return found == this.keys.length;
+		}
+
+		void readColumns(final Cursor cursor) {
+			for (int field = 0; field < this.keys.length; field++) {
+				if (this.kinds[field] == EventWriterBinary.KIND_DOUBLE) {
+					if (this.doubles[field] == null || this.doubles[field].length < this.count) {
+						this.doubles[field] = new double[this.count];
+					}
+					double[] column = this.doubles[field];
+					for (int i = 0; i < this.count; i++) {
+						long encoded = cursor.readVarLong();
+						column[i] = encoded == 1 ? Double.longBitsToDouble(cursor.readLong()) : unZigZag(encoded >>> 1);
+					}
+				} else {
+					if (this.codes[field] == null || this.codes[field].length < this.count) {
+						this.codes[field] = new int[this.count];
+					}
+					int[] column = this.codes[field];
+					for (int i = 0; i < this.count; i++) {
+						column[i] = cursor.readVarInt() - 1;
+					}
+				}
+			}
+		}
+
+		<T> Id<T> id(final int field, final int row, final Class<T> type) {
+			if (field < 0) {
+				return null;
+			}
+			int code = this.codes[field][row];
+			return code < 0 ? null : this.dictionaries[field].get(code, type);
+		}
+
+		String string(final int field, final int row) {
+			if (field < 0) {
+				return null;
+			}
+			switch (this.kinds[field]) {
+				case EventWriterBinary.KIND_DOUBLE:
+					return Double.toString(this.doubles[field][row]);
+				case EventWriterBinary.KIND_ID: {
+					int code = this.codes[field][row];
+					return code < 0 ? null : this.dictionaries[field].strings.get(code);
+				}
+				default: {
+					int code = this.codes[field][row];
+					return code < 0 ? null : this.strings.get(code);
+				}
+			}
+		}
+
+		double doubleValue(final int field, final int row) {
+			return this.doubles[field][row];
+		}
+	}
+
+	/**
+	 * The ids of one attribute key, created lazily with the type requested first.
+	 */
+	private static final class IdDictionary {
+		final List<String> strings = new ArrayList<>();
+		Id<?>[] ids = new Id<?>[16];
+		Class<?>[] types = new Class<?>[16];
+
+		void add(final String id) {
+			this.strings.add(id);
+			if (this.ids.length < this.strings.size()) {
+				this.ids = Arrays.copyOf(this.ids, 2 * this.ids.length);
+				this.types = Arrays.copyOf(this.types, this.ids.length);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		<T> Id<T> get(final int code, final Class<T> type) {
+			if (this.types[code] == type) {
+				return (Id<T>) this.ids[code];
+			}
+			Id<T> id = Id.create(this.strings.get(code), type);
+			if (this.types[code] == null) {
+				this.ids[code] = id;
+				this.types[code] = type;
+			}
+			return id;
+		}
+	}
+
+	private static final class Cursor {
+		private final byte[] data;
+		private int position = 0;
+
+		Cursor(final byte[] data) {
+			this.data = data;
+		}
+
+		byte readByte() {
+			return this.data[this.position++];
+		}
+
+		long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = this.data[this.position++];
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+
+		int readVarInt() {
+			return (int) readVarLong();
+		}
+
+		long readLong() {
+			long value = 0;
+			for (int i = 0; i < 8; i++) {
+				value = (value << 8) | (this.data[this.position++] & 0xFF);
+			}
+			return value;
+		}
+
+		String readString() {
+			int length = readVarInt();
+			String value = new String(this.data, this.position, length, StandardCharsets.UTF_8);
+			this.position += length;
+			return value;
+		}
+	}
+
+}
@@ -20,6 +20,7 @@
 
 package org.matsim.core.events;
 
+import java.io.BufferedInputStream;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.LinkedHashMap;
@@ -31,6 +32,7 @@ import org.apache.log4j.Logger;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.internal.MatsimReader;
 import org.matsim.core.events.EventsReaderXMLv1.CustomEventMapper;
+import org.matsim.core.events.algorithms.EventWriterBinary;
 import org.matsim.core.utils.io.MatsimXmlParser;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -46,9 +48,11 @@ public final class MatsimEventsReader implements MatsimReader {
 	private final static Logger log = Logger.getLogger(MatsimEventsReader.class);
 	private final EventsManager events;
 
-	private final Map<String, CustomEventMapper> map = new LinkedHashMap<>(  ) ;
+	private final Map<String, CustomEventMapper<?>> map = new LinkedHashMap<>(  ) ;
 
-	public void addCustomEventMapper( String eventType, CustomEventMapper mapper ) {
+	private int numberOfThreads = 1;
+
+	public void addCustomEventMapper( String eventType, CustomEventMapper<?> mapper ) {
 		map.put( eventType, mapper ) ;
 	}
 
@@ -61,6 +65,14 @@ public final class MatsimEventsReader implements MatsimReader {
 		this.events = events;
 	}
 
+	/**
+	 * Sets the number of threads used to decompress binary events files, see
+	 * {@link EventsReaderBinary#setNumberOfThreads(int)}.  Has no effect on xml events files.
+	 */
+	public void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = numberOfThreads;
+	}
+
 	/**
 	 * Parses the specified events file.
 	 *
@@ -71,6 +83,8 @@ public final class MatsimEventsReader implements MatsimReader {
 		String lcFilename = filename.toLowerCase(Locale.ROOT);
 		if (lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz")) {
 			new XmlEventsReader(this.events, map ).readFile(filename );
+		} else if (lcFilename.endsWith(EventWriterBinary.FILE_EXTENSION)) {
+			createBinaryReader().readFile(filename);
 		} else if (lcFilename.endsWith(".txt") || lcFilename.endsWith(".txt.gz")) {
 			throw new RuntimeException("text events are no longer supported. Please use MATSim 0.6.1 or earlier to read text events.");
 		} else {
@@ -79,12 +93,31 @@ public final class MatsimEventsReader implements MatsimReader {
 	}
 
 	public void readStream(final InputStream stream) {
-		new XmlEventsReader(this.events, map ).parse(stream );
+		InputStream in = stream.markSupported() ? stream : new BufferedInputStream(stream);
+		if (EventsReaderBinary.isBinaryEventsStream(in)) {
+			createBinaryReader().parse(in);
+		} else {
+			new XmlEventsReader(this.events, map ).parse(in );
+		}
 	}
 
 	@Override
 	public void readURL( final URL url ) {
-		new XmlEventsReader( this.events, map ).readURL( url );
+		if (url.getPath().toLowerCase(Locale.ROOT).endsWith(EventWriterBinary.FILE_EXTENSION)) {
+			createBinaryReader().readURL(url);
+		} else {
+			new XmlEventsReader( this.events, map ).readURL( url );
+		}
+	}
+
+	private EventsReaderBinary createBinaryReader() {
+		EventsReaderBinary reader = new EventsReaderBinary(this.events);
+		reader.setNumberOfThreads(this.numberOfThreads);
+		for (Map.Entry<String, CustomEventMapper<?>> entry : map.entrySet()) {
+			reader.addCustomEventMapper(entry.getKey(), entry.getValue());
+		}
+		log.info("using binary events reader.");
+		return reader;
 	}
 
 	private static class XmlEventsReader extends MatsimXmlParser {
@@ -93,9 +126,9 @@ public final class MatsimEventsReader implements MatsimReader {
 		private final static String EVENTS_V1 = "events_v1.dtd";
 		private MatsimXmlEventsParser delegate = null;
 
-		private final Map<String, CustomEventMapper> map ;
+		private final Map<String, CustomEventMapper<?>> map ;
 
-		private XmlEventsReader( final EventsManager events, Map<String, CustomEventMapper> map ) {
+		private XmlEventsReader( final EventsManager events, Map<String, CustomEventMapper<?>> map ) {
 			this.events = events;
 			this.map = map;
 			this.setValidating(false); // events-files have no DTD, thus they cannot validate
@@ -129,7 +162,7 @@ public final class MatsimEventsReader implements MatsimReader {
 			// Currently the only events-type is v1
 			if (EVENTS_V1.equals(doctype)) {
 				this.delegate = new EventsReaderXMLv1(this.events);
-				for( Map.Entry<String, CustomEventMapper> entry : map.entrySet() ){
+				for( Map.Entry<String, CustomEventMapper<?>> entry : map.entrySet() ){
 					this.delegate.addCustomEventMapper( entry.getKey(),entry.getValue() );
 				}
 				log.info("using events_v1-reader.");
@@ -165,7 +165,8 @@ public final class ParallelEventsManagerImpl implements EventsManager {
 		this.threads = new Thread[numberOfThreads];
 		// the additional 1 is for the simulation barrier
 		for (int i = 0; i < numberOfThreads; i++) {
-			events[i] = (EventsManagerImpl) EventsUtils.createEventsManager();
+			// every handler is added to exactly one of these, and only called by its ProcessEventThread
+			events[i] = new EventsManagerImpl(false);
 		}
 	}
 
@@ -0,0 +1,486 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.EventAttributeSink;
+import org.matsim.core.events.EventsReaderBinary;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes events into a compact binary file, to be read again with {@link EventsReaderBinary} or
+ * {@link org.matsim.core.events.MatsimEventsReader}.
+ * <p></p>
+ * The events are collected in blocks of {@value #EVENTS_PER_BLOCK} events.  Within a block, the data is stored
+ * column by column: one column with the schema (event type and attribute keys) of every event, one column with
+ * the times, and for every schema one column per attribute.  Ids are replaced by their number in a dictionary per
+ * attribute key, which is looked up by {@link Id#index()}, other strings by their number in a global string
+ * dictionary.  Times are stored as difference to the previous time.  Every block is compressed on its own.
+ * <p></p>
+ * File layout, all numbers big-endian:
+ * <pre>
+ * file   := MAGIC VERSION:int block* 0:int
+ * block  := rawLength:int compressedLength:int deflate(raw)
+ * raw    := newStrings newIds newSchemas eventCount:varint schemaColumn timeColumn attributeColumn*
+ * </pre>
+ * The dictionaries and schemas are only extended, entries defined in one block are used by all later blocks.
+ * The attributes are obtained through {@link Event#writeAttributes(EventAttributeSink)}, so events read back
+ * from the file have the same attributes as the events written.
+ */
+public class EventWriterBinary implements EventWriter, BasicEventHandler {
+
+	public static final String FILE_EXTENSION = ".bin";
+
+	public static final byte[] MAGIC = { 'M', 'A', 'T', 'S', 'i', 'm', 'E', 'v' };
+	public static final int VERSION = 1;
+
+	public static final byte KIND_ID = 1;
+	public static final byte KIND_STRING = 2;
+	public static final byte KIND_DOUBLE = 3;
+
+	static final int EVENTS_PER_BLOCK = 1 << 17;
+
+	private final DataOutputStream out;
+	// the columns are already compact, better compression levels cost much more time than they save space
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final AttributeCollector collector = new AttributeCollector();
+
+	private final Map<String, Integer> stringCodes = new HashMap<>();
+	private final List<String> newStrings = new ArrayList<>();
+	private final Map<String, IdDictionary> idDictionaries = new HashMap<>();
+	private final ByteColumn newIds = new ByteColumn();
+	private int newIdCount = 0;
+
+	private final Map<String, SchemaNode> schemaRoots = new HashMap<>();
+	private final List<Schema> schemas = new ArrayList<>();
+	private final List<Schema> newSchemas = new ArrayList<>();
+
+	private final ByteColumn schemaColumn = new ByteColumn();
+	private final ByteColumn timeColumn = new ByteColumn();
+	private final ByteColumn block = new ByteColumn();
+	private byte[] compressed = new byte[1024];
+	private int eventCount = 0;
+	private long previousTime = 0;
+
+	public EventWriterBinary(final String filename) {
+		try {
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		writeHeader();
+	}
+
+	public EventWriterBinary(final OutputStream stream) {
+		this.out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+		writeHeader();
+	}
+
+	private void writeHeader() {
+		try {
+			this.out.write(MAGIC);
+			this.out.writeInt(VERSION);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void reset(final int iteration) {
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		this.collector.reset();
+		event.writeAttributes(this.collector);
+		AttributeCollector c = this.collector;
+
+		SchemaNode node = this.schemaRoots.get(event.getEventType());
+		if (node == null) {
+			node = new SchemaNode(null, (byte) 0);
+			this.schemaRoots.put(event.getEventType(), node);
+		}
+		for (int i = 0; i < c.size; i++) {
+			node = node.child(c.keys[i], c.kinds[i]);
+		}
+		Schema schema = node.schema;
+		if (schema == null) {
+			schema = new Schema(this.schemas.size(), event.getEventType(), Arrays.copyOf(c.keys, c.size), Arrays.copyOf(c.kinds, c.size));
+			stringCode(schema.eventType);
+			for (String key : schema.keys) {
+				stringCode(key);
+			}
+			node.schema = schema;
+			this.schemas.add(schema);
+			this.newSchemas.add(schema);
+		}
+
+		this.schemaColumn.writeVarLong(schema.code);
+		this.previousTime = writeTime(this.timeColumn, event.getTime(), this.previousTime);
+		for (int i = 0; i < c.size; i++) {
+			ByteColumn column = schema.columns[i];
+			switch (c.kinds[i]) {
+				case KIND_ID:
+					column.writeVarLong(idCode(c.keys[i], c.ids[i]) + 1);
+					break;
+				case KIND_STRING:
+					column.writeVarLong(c.strings[i] == null ? 0 : stringCode(c.strings[i]) + 1);
+					break;
+				default:
+					writeTime(column, c.doubles[i], 0);
+			}
+		}
+		schema.count++;
+		this.eventCount++;
+		if (this.eventCount == EVENTS_PER_BLOCK) {
+			flushBlock();
+		}
+	}
+
+	@Override
+	public void closeFile() {
+		try {
+			if (this.eventCount > 0) {
+				flushBlock();
+			}
+			this.out.writeInt(0);
+			this.out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			this.deflater.end();
+		}
+	}
+
+	/**
+	 * Whole numbers are stored as variable length difference to <code>previous</code>, shifted by one bit,
+	 * everything else as a marker followed by the raw bits.
+	 *
+	 * @return the new value for <code>previous</code>
+	 */
+	private static long writeTime(final ByteColumn column, final double value, final long previous) {
+		if (EventsReaderBinary.isWholeNumber(value)) {
+			long whole = (long) value;
+			column.writeVarLong(zigZag(whole - previous) << 1);
+			return whole;
+		}
+		column.writeVarLong(1);
+		column.writeLong(Double.doubleToRawLongBits(value));
+		return previous;
+	}
+
+	private static long zigZag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private int stringCode(final String string) {
+		Integer code = this.stringCodes.get(string);
+		if (code == null) {
+			code = this.stringCodes.size();
+			this.stringCodes.put(string, code);
+			this.newStrings.add(string);
+		}
+		return code;
+	}
+
+	private int idCode(final String key, final Id<?> id) {
+		if (id == null) {
+			return -1;
+		}
+		IdDictionary dictionary = this.idDictionaries.get(key);
+		if (dictionary == null) {
+			dictionary = new IdDictionary(stringCode(key));
+			this.idDictionaries.put(key, dictionary);
+		}
+		int index = id.index();
+		if (index >= dictionary.codeByIndex.length) {
+			int oldLength = dictionary.codeByIndex.length;
+			dictionary.codeByIndex = Arrays.copyOf(dictionary.codeByIndex, Math.max(index + 1, 2 * oldLength));
+			Arrays.fill(dictionary.codeByIndex, oldLength, dictionary.codeByIndex.length, -1);
+		}
+		int code = dictionary.codeByIndex[index];
+		if (code >= 0 && dictionary.ids[code] == id) {
+			return code;
+		}
+		if (code >= 0) {
+			// an id of another type with the same index under the same key, which are looked up by the id itself
+			Integer otherCode = dictionary.otherCodes.get(id);
+			if (otherCode != null) {
+				return otherCode;
+			}
+		}
+		code = dictionary.size++;
+		if (code == dictionary.ids.length) {
+			dictionary.ids = Arrays.copyOf(dictionary.ids, 2 * code);
+		}
+		dictionary.ids[code] = id;
+		if (dictionary.codeByIndex[index] < 0) {
+			dictionary.codeByIndex[index] = code;
+		} else {
+			dictionary.otherCodes.put(id, code);
+		}
+		this.newIds.writeVarLong(dictionary.keyCode);
+		this.newIds.writeString(id.toString());
+		this.newIdCount++;
+		return code;
+	}
+
+	private void flushBlock() {
+		ByteColumn raw = this.block;
+		raw.length = 0;
+
+		raw.writeVarLong(this.newStrings.size());
+		for (String string : this.newStrings) {
+			raw.writeString(string);
+		}
+		this.newStrings.clear();
+
+		raw.writeVarLong(this.newIdCount);
+		raw.write(this.newIds);
+		this.newIds.length = 0;
+		this.newIdCount = 0;
+
+		raw.writeVarLong(this.newSchemas.size());
+		for (Schema schema : this.newSchemas) {
+			raw.writeVarLong(stringCode(schema.eventType));
+			raw.writeVarLong(schema.keys.length);
+			for (int i = 0; i < schema.keys.length; i++) {
+				raw.writeVarLong(stringCode(schema.keys[i]));
+				raw.writeByte(schema.kinds[i]);
+			}
+		}
+		this.newSchemas.clear();
+
+		raw.writeVarLong(this.eventCount);
+		raw.write(this.schemaColumn);
+		raw.write(this.timeColumn);
+		for (Schema schema : this.schemas) {
+			if (schema.count > 0) {
+				for (ByteColumn column : schema.columns) {
+					raw.write(column);
+					column.length = 0;
+				}
+				schema.count = 0;
+			}
+		}
+		this.schemaColumn.length = 0;
+		this.timeColumn.length = 0;
+		this.eventCount = 0;
+		this.previousTime = 0;
+
+		this.deflater.reset();
+		this.deflater.setInput(raw.data, 0, raw.length);
+		this.deflater.finish();
+		int compressedLength = 0;
+		while (!this.deflater.finished()) {
+			if (compressedLength == this.compressed.length) {
+				this.compressed = Arrays.copyOf(this.compressed, 2 * this.compressed.length);
+			}
+			compressedLength += this.deflater.deflate(this.compressed, compressedLength, this.compressed.length - compressedLength);
+		}
+		try {
+			this.out.writeInt(raw.length);
+			this.out.writeInt(compressedLength);
+			this.out.write(this.compressed, 0, compressedLength);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Collects the attributes of one event, skipping time and type which are stored separately.
+	 */
+	private static final class AttributeCollector implements EventAttributeSink {
+		String[] keys = new String[8];
+		byte[] kinds = new byte[8];
+		Id<?>[] ids = new Id<?>[8];
+		String[] strings = new String[8];
+		double[] doubles = new double[8];
+		int size = 0;
+		private int position = 0;
+
+		void reset() {
+			this.size = 0;
+			this.position = 0;
+		}
+
+		private boolean isTimeOrType(final String key) {
+			int pos = this.position++;
+			return (pos == 0 && Event.ATTRIBUTE_TIME.equals(key)) || (pos == 1 && Event.ATTRIBUTE_TYPE.equals(key));
+		}
+
+		private int add(final String key, final byte kind) {
+			if (this.size == this.keys.length) {
+				int length = 2 * this.size;
+				this.keys = Arrays.copyOf(this.keys, length);
+				this.kinds = Arrays.copyOf(this.kinds, length);
+				this.ids = Arrays.copyOf(this.ids, length);
+				this.strings = Arrays.copyOf(this.strings, length);
+				this.doubles = Arrays.copyOf(this.doubles, length);
+			}
+			this.keys[this.size] = key;
+			this.kinds[this.size] = kind;
+			return this.size++;
+		}
+
+		@Override
+		public void attribute(final String key, final String value) {
+			if (!isTimeOrType(key)) {
+				this.strings[add(key, KIND_STRING)] = value;
+			}
+		}
+
+		@Override
+		public void attribute(final String key, final double value) {
+			if (!isTimeOrType(key)) {
+				this.doubles[add(key, KIND_DOUBLE)] = value;
+			}
+		}
+
+		@Override
+		public void attribute(final String key, final Id<?> value) {
+			if (!isTimeOrType(key)) {
+				this.ids[add(key, KIND_ID)] = value;
+			}
+		}
+	}
+
+	/**
+	 * Finds the schema of an event from the sequence of its attribute keys and kinds without creating objects.
+	 */
+	private static final class SchemaNode {
+		final String key;
+		final byte kind;
+		SchemaNode[] children = new SchemaNode[0];
+		Schema schema = null;
+
+		SchemaNode(final String key, final byte kind) {
+			this.key = key;
+			this.kind = kind;
+		}
+
+		SchemaNode child(final String key, final byte kind) {
+			for (SchemaNode child : this.children) {
+				if (child.kind == kind && (child.key == key || child.key.equals(key))) {
+					return child;
+				}
+			}
+			SchemaNode child = new SchemaNode(key, kind);
+			this.children = Arrays.copyOf(this.children, this.children.length + 1);
+			this.children[this.children.length - 1] = child;
+			return child;
+		}
+	}
+
+	private static final class Schema {
+		final int code;
+		final String eventType;
+		final String[] keys;
+		final byte[] kinds;
+		final ByteColumn[] columns;
+		int count = 0;
+
+		Schema(final int code, final String eventType, final String[] keys, final byte[] kinds) {
+			this.code = code;
+			this.eventType = eventType;
+			this.keys = keys;
+			this.kinds = kinds;
+			this.columns = new ByteColumn[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				this.columns[i] = new ByteColumn();
+			}
+		}
+	}
+
+	private static final class IdDictionary {
+		final int keyCode;
+		int[] codeByIndex = new int[0];
+		Id<?>[] ids = new Id<?>[16];
+		final Map<Id<?>, Integer> otherCodes = new HashMap<>();
+		int size = 0;
+
+		IdDictionary(final int keyCode) {
+			this.keyCode = keyCode;
+		}
+	}
+
+	private static final class ByteColumn {
+		byte[] data = new byte[256];
+		int length = 0;
+
+		private void ensureCapacity(final int additional) {
+			if (this.length + additional > this.data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(this.length + additional, 2 * this.data.length));
+			}
+		}
+
+		void writeByte(final int value) {
+			ensureCapacity(1);
+			this.data[this.length++] = (byte) value;
+		}
+
+		void writeVarLong(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				this.data[this.length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			this.data[this.length++] = (byte) value;
+		}
+
+		void writeLong(final long value) {
+			ensureCapacity(8);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				this.data[this.length++] = (byte) (value >>> shift);
+			}
+		}
+
+		void writeString(final String value) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(bytes.length);
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, this.data, this.length, bytes.length);
+			this.length += bytes.length;
+		}
+
+		void write(final ByteColumn other) {
+			ensureCapacity(other.length);
+			System.arraycopy(other.data, 0, this.data, this.length, other.length);
+			this.length += other.length;
+		}
+	}
+
+}
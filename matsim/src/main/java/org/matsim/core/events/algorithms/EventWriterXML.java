@@ -20,23 +20,40 @@
 
 package org.matsim.core.events.algorithms;
 
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.EventAttributeSink;
 import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.ParallelGzipOutputStream;
 import org.matsim.core.utils.io.UncheckedIOException;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
 
+/**
+ * Writes events to an xml file.
+ * <p></p>
+ * The events pass their attributes to the writer through {@link Event#writeAttributes(EventAttributeSink)}, which
+ * are then encoded into a reused character buffer.  For the frequent event types, this does not allocate any
+ * memory per event.  Files ending with <code>.gz</code> are compressed in blocks on separate threads, see
+ * {@link ParallelGzipOutputStream}.
+ */
 public class EventWriterXML implements EventWriter, BasicEventHandler {
-	private final BufferedWriter out;
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+
+	private final Writer out;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position = 0;
+	private final EventAttributeSink attributeSink = new XmlAttributeSink();
 
 	public EventWriterXML(final String outfilename) {
-		this.out = IOUtils.getBufferedWriter(outfilename);
+		this.out = createWriter(outfilename);
 		this.writeHeader();
 	}
 
@@ -46,13 +63,24 @@ public class EventWriterXML implements EventWriter, BasicEventHandler {
 	 * @param stream
 	 */
 	public EventWriterXML(final OutputStream stream ) {
-		this.out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+		this.out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
 		this.writeHeader();
 	}
 
+	private static Writer createWriter(final String outfilename) {
+		if (outfilename.endsWith(".gz")) {
+			try {
+				return new OutputStreamWriter(new ParallelGzipOutputStream(outfilename), StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return IOUtils.getBufferedWriter(outfilename);
+	}
+
 	private void writeHeader() {
 		try {
-			this.out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
+			this.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
@@ -61,11 +89,12 @@ public class EventWriterXML implements EventWriter, BasicEventHandler {
 	@Override
 	public void closeFile() {
 		try {
-			this.out.write("</events>");
+			this.append("</events>");
 			// I added a "\n" to make it look nicer on the console.  Can't say if this may have unintended side
 			// effects anywhere else.  kai, oct'12
 			// fails signalsystems test (and presumably other tests in contrib/playground) since they compare
 			// checksums of event files.  Removed that change again.  kai, oct'12
+			this.flushBuffer();
 			this.out.close();
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
@@ -79,73 +108,146 @@ public class EventWriterXML implements EventWriter, BasicEventHandler {
 	@Override
 	public void handleEvent(final Event event) {
 		try {
-			this.out.append("\t<event ");
-			Map<String, String> attr = event.getAttributes();
-			for (Map.Entry<String, String> entry : attr.entrySet()) {
-				this.out.append(entry.getKey());
-				this.out.append("=\"");
-				this.out.append(encodeAttributeValue(entry.getValue()));
-				this.out.append("\" ");
-			}
-			this.out.append(" />\n");
-		} catch (IOException e) {
+			this.append("\t<event ");
+			event.writeAttributes(this.attributeSink);
+			this.append(" />\n");
+		} catch (IOException | UncheckedIOException e) {
 			e.printStackTrace();
 		}
 	}
 
+	private void flushBuffer() throws IOException {
+		this.out.write(this.buffer, 0, this.position);
+		this.position = 0;
+	}
+
+	private void append(final char ch) throws IOException {
+		if (this.position == this.buffer.length) {
+			flushBuffer();
+		}
+		this.buffer[this.position++] = ch;
+	}
+
+	private void append(final String str) throws IOException {
+		final int len = str.length();
+		int offset = 0;
+		while (offset < len) {
+			if (this.position == this.buffer.length) {
+				flushBuffer();
+			}
+			int count = Math.min(len - offset, this.buffer.length - this.position);
+			str.getChars(offset, offset + count, this.buffer, this.position);
+			this.position += count;
+			offset += count;
+		}
+	}
+
 	// the following method was taken from MatsimXmlWriter in order to correctly encode attributes, but
 	// to forego the overhead of using the full MatsimXmlWriter.
 	/**
-	 * Encodes the given string in such a way that it no longer contains
+	 * Appends the given string in such a way that it no longer contains
 	 * characters that have a special meaning in xml.
 	 * 
 	 * @see <a href="http://www.w3.org/International/questions/qa-escapes#use">http://www.w3.org/International/questions/qa-escapes#use</a>
 	 * @param attributeValue
-	 * @return String with some characters replaced by their xml-encoding.
 	 */
-	private String encodeAttributeValue(final String attributeValue) {
+	private void appendEncodedAttributeValue(final String attributeValue) throws IOException {
 		if (attributeValue == null) {
-			return null;
+			append("null");
+			return;
 		}
 		int len = attributeValue.length();
-		boolean encode = false;
 		for (int pos = 0; pos < len; pos++) {
 			char ch = attributeValue.charAt(pos);
 			if (ch == '<') {
-				encode = true;
-				break;
+				append("&lt;");
 			} else if (ch == '>') {
-				encode = true;
-				break;
+				append("&gt;");
 			} else if (ch == '\"') {
-				encode = true;
-				break;
+				append("&quot;");
 			} else if (ch == '&') {
-				encode = true;
-				break;
+				append("&amp;");
+			} else {
+				append(ch);
 			}
 		}
-		if (encode) {
-			StringBuilder bf = new StringBuilder(attributeValue.length() + 30);
-			for (int pos = 0; pos < len; pos++) {
-				char ch = attributeValue.charAt(pos);
-				if (ch == '<') {
-					bf.append("&lt;");
-				} else if (ch == '>') {
-					bf.append("&gt;");
-				} else if (ch == '\"') {
-					bf.append("&quot;");
-				} else if (ch == '&') {
-					bf.append("&amp;");
-				} else {
-					bf.append(ch);
-				}
+	}
+
+	/**
+	 * Appends the same characters as {@link Double#toString(double)}, without creating a string for the
+	 * typical case of whole seconds.
+	 */
+	private void appendDouble(final double value) throws IOException {
+		// Double.toString uses the plain notation "123.0" for whole numbers between 10^-3 and 10^7
+		if (Math.abs(value) < 1e7 && value == (long) value && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO_BITS) {
+			appendLong((long) value);
+			append(".0");
+		} else {
+			append(Double.toString(value));
+		}
+	}
+
+	private void appendLong(long value) throws IOException {
+		if (value < 0) {
+			append('-');
+			value = -value;
+		}
+		if (this.buffer.length - this.position < 20) {
+			flushBuffer();
+		}
+		int digits = 1;
+		for (long v = value / 10; v > 0; v /= 10) {
+			digits++;
+		}
+		int pos = this.position + digits;
+		this.position = pos;
+		do {
+			this.buffer[--pos] = (char) ('0' + (value % 10));
+			value /= 10;
+		} while (value > 0);
+	}
+
+	/**
+	 * Routes the attributes into the buffer of the enclosing writer.  The interface does not allow checked
+	 * exceptions, so they are wrapped here and unwrapped again in {@link EventWriterXML#handleEvent(Event)}.
+	 */
+	private final class XmlAttributeSink implements EventAttributeSink {
+
+		@Override
+		public void attribute(final String key, final String value) {
+			try {
+				append(key);
+				append("=\"");
+				appendEncodedAttributeValue(value);
+				append("\" ");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
-			
-			return bf.toString();
 		}
-		return attributeValue;
 
+		@Override
+		public void attribute(final String key, final double value) {
+			try {
+				append(key);
+				append("=\"");
+				appendDouble(value);
+				append("\" ");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void attribute(final String key, final Id<?> value) {
+			try {
+				append(key);
+				append("=\"");
+				appendEncodedAttributeValue(value == null ? null : value.toString());
+				append("\" ");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
 	}
 
 }
@@ -85,6 +85,19 @@ public class MessageQueue {
 		return m;
 	}
 
+	/**
+	 * @return the time stamp of the first message in the queue, without removing it, or
+	 * 		{@link Double#POSITIVE_INFINITY} if the queue is empty.
+	 */
+	public double getNextMessageArrivalTime() {
+		Message m;
+		// discard dead messages, which are not counted anymore anyway
+		while ((m = queue1.peek()) != null && !m.isAlive()) {
+			queue1.poll();
+		}
+		return m == null ? Double.POSITIVE_INFINITY : m.getMessageArrivalTime();
+	}
+
 	public boolean isEmpty() {
 		return queue1.size() == 0;
 	}
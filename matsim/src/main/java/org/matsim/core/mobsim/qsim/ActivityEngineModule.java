@@ -21,12 +21,19 @@
 
  package org.matsim.core.mobsim.qsim;
 
+import org.matsim.core.config.groups.QSimConfigGroup.ActivityEndQueue;
+
 public class ActivityEngineModule extends AbstractQSimModule {
 	public static final String COMPONENT_NAME = "ActivityEngine";
 
 	@Override
 	protected void configureQSim() {
-		bind( ActivityEngineDefaultImpl.class ).asEagerSingleton();
-		addNamedComponent( ActivityEngineDefaultImpl.class, COMPONENT_NAME );
+		if ( getConfig().qsim().getActivityEndQueue() == ActivityEndQueue.timingWheel ) {
+			bind( ActivityEngineTimingWheelImpl.class ).asEagerSingleton();
+			addNamedComponent( ActivityEngineTimingWheelImpl.class, COMPONENT_NAME );
+		} else {
+			bind( ActivityEngineDefaultImpl.class ).asEagerSingleton();
+			addNamedComponent( ActivityEngineDefaultImpl.class, COMPONENT_NAME );
+		}
 	}
 }
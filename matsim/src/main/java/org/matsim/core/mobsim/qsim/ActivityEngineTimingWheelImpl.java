@@ -0,0 +1,267 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ActivityEngineTimingWheelImpl.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.framework.MobsimAgent.State;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * An {@link ActivityEngine} which keeps the agents in an {@link AgentTimingWheel} instead of a priority queue.
+ * <p></p>
+ * Adding, rescheduling and removing an agent thus take constant time, independent of the number of agents at
+ * activities, and the activities end in the same order as with {@link ActivityEngineDefaultImpl}.
+ * <p></p>
+ * Agents handed over by other engines, possibly from several threads of the netsim, are first collected in a
+ * lock-free queue and only put into the wheel by the thread of this engine.
+ * <p></p>
+ * Optionally, the activities that end in the same time step are ended on several threads.  Only
+ * {@link MobsimAgent#endActivityAndComputeNextState(double)} runs in parallel; the agents are still handed on to
+ * their next state one after the other, in the order described above.
+ */
+public final class ActivityEngineTimingWheelImpl implements ActivityEngine, WakeUpTimeProvider {
+
+	/**
+	 * Smallest number of agents per thread for which ending the activities in parallel pays off.
+	 */
+	private static final int MIN_AGENTS_PER_THREAD = 256;
+
+	private final EventsManager eventsManager;
+	private final int numberOfThreads;
+	private InternalInterface internalInterface;
+	private ExecutorService pool;
+
+	private final AgentTimingWheel activityEnds = new AgentTimingWheel();
+	private final Map<MobsimAgent, AgentTimingWheel.Entry> entries = new IdentityHashMap<>();
+	private final Queue<MobsimAgent> pendingAgents = new ConcurrentLinkedQueue<>();
+
+	// See ActivityEngineDefaultImpl.handleActivity for the reason for this.
+	private boolean beforeFirstSimStep = true;
+
+	@Inject
+	ActivityEngineTimingWheelImpl(EventsManager eventsManager, QSimConfigGroup qsimConfig) {
+		this(eventsManager, qsimConfig.getNumberOfActivityEndThreads());
+	}
+
+	public ActivityEngineTimingWheelImpl(EventsManager eventsManager, int numberOfThreads) {
+		this.eventsManager = eventsManager;
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	@Override
+	public void onPrepareSim() {
+		if (this.numberOfThreads > 1) {
+			AtomicInteger threadCount = new AtomicInteger();
+			this.pool = Executors.newFixedThreadPool(this.numberOfThreads, runnable -> {
+				Thread thread = new Thread(runnable, "ActivityEngine_" + threadCount.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	@Override
+	public void doSimStep(double time) {
+		beforeFirstSimStep = false;
+		List<AgentTimingWheel.Entry> dueEntries;
+		while (!(dueEntries = pollDueEntries(time)).isEmpty()) {
+			endActivities(dueEntries, time);
+		}
+	}
+
+	@Override
+	public synchronized double getNextWakeUpTime(double now) {
+		addPendingAgents();
+		return this.activityEnds.getNextTime();
+	}
+
+	private synchronized List<AgentTimingWheel.Entry> pollDueEntries(double time) {
+		addPendingAgents();
+		List<AgentTimingWheel.Entry> due = this.activityEnds.pollDueEntries(time);
+		for (AgentTimingWheel.Entry entry : due) {
+			this.entries.remove(entry.agent);
+		}
+		return due;
+	}
+
+	private void endActivities(List<AgentTimingWheel.Entry> dueEntries, double time) {
+		if (this.pool == null || dueEntries.size() < 2 * MIN_AGENTS_PER_THREAD) {
+			// one agent after the other, like ActivityEngineDefaultImpl, so that the events come in the same order
+			for (AgentTimingWheel.Entry entry : dueEntries) {
+				unregisterAgentAtActivityLocation(entry.agent);
+				entry.agent.endActivityAndComputeNextState(time);
+				internalInterface.arrangeNextAgentState(entry.agent);
+			}
+			return;
+		}
+		for (AgentTimingWheel.Entry entry : dueEntries) {
+			unregisterAgentAtActivityLocation(entry.agent);
+		}
+		int chunks = Math.min(this.numberOfThreads, dueEntries.size() / MIN_AGENTS_PER_THREAD);
+		List<Callable<Void>> tasks = new ArrayList<>(chunks);
+		for (int c = 0; c < chunks; c++) {
+			final List<AgentTimingWheel.Entry> chunk = dueEntries.subList(c * dueEntries.size() / chunks, (c + 1) * dueEntries.size() / chunks);
+			tasks.add(() -> {
+				for (AgentTimingWheel.Entry entry : chunk) {
+					entry.agent.endActivityAndComputeNextState(time);
+				}
+				return null;
+			});
+		}
+		try {
+			for (Future<Void> future : this.pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		for (AgentTimingWheel.Entry entry : dueEntries) {
+			internalInterface.arrangeNextAgentState(entry.agent);
+		}
+	}
+
+	@Override
+	public void afterSim() {
+		double now = this.internalInterface.getMobsim().getSimTimer().getTimeOfDay();
+		List<AgentTimingWheel.Entry> remaining;
+		synchronized (this) {
+			addPendingAgents();
+			remaining = this.activityEnds.clear();
+			this.entries.clear();
+		}
+		for (AgentTimingWheel.Entry entry : remaining) {
+			if (entry.time!=Double.POSITIVE_INFINITY && entry.time!=Time.UNDEFINED_TIME) {
+				// since we are at an activity, it is not plausible to assume that the agents know mode or destination
+				// link id.  Thus generating the event with ``null'' in the corresponding entries.  kai, mar'12
+				eventsManager.processEvent(new PersonStuckEvent(now, entry.agent.getId(), null, null));
+			}
+		}
+		if (this.pool != null) {
+			this.pool.shutdown();
+			this.pool = null;
+		}
+	}
+
+	@Override
+	public void setInternalInterface(InternalInterface internalInterface) {
+		this.internalInterface = internalInterface;
+	}
+
+	/**
+	 * See {@link ActivityEngineDefaultImpl#handleActivity(MobsimAgent)}.  May be called from several threads at once.
+	 */
+	@Override
+	public boolean handleActivity(MobsimAgent agent) {
+		if (agent.getActivityEndTime() == Double.POSITIVE_INFINITY) {
+			// This is the last planned activity.
+			// So the agent goes to sleep.
+			internalInterface.getMobsim().getAgentCounter().decLiving();
+		} else if (agent.getActivityEndTime() <= internalInterface.getMobsim().getSimTimer().getTimeOfDay() && !beforeFirstSimStep) {
+			// This activity is already over (planned for 0 duration)
+			// So we proceed immediately.
+			agent.endActivityAndComputeNextState(internalInterface.getMobsim().getSimTimer().getTimeOfDay());
+			internalInterface.arrangeNextAgentState(agent) ;
+		} else {
+			// The agent commences an activity on this link.
+			this.pendingAgents.add(agent);
+			internalInterface.registerAdditionalAgentOnLink(agent);
+		}
+		return true;
+	}
+
+	/**
+	 * See {@link ActivityEngineDefaultImpl#rescheduleActivityEnd(MobsimAgent)}.
+	 */
+	@Override
+	public void rescheduleActivityEnd(final MobsimAgent agent) {
+		if ( agent.getState()!=State.ACTIVITY ) {
+			return ;
+		}
+
+		double newActivityEndTime = agent.getActivityEndTime();
+		AgentTimingWheel.Entry oldEntry;
+		synchronized (this) {
+			addPendingAgents();
+			oldEntry = this.entries.remove(agent);
+			if (oldEntry != null) {
+				this.activityEnds.remove(oldEntry);
+			}
+			if (newActivityEndTime != Double.POSITIVE_INFINITY) {
+				this.entries.put(agent, this.activityEnds.add(agent, newActivityEndTime));
+			}
+		}
+
+		if (oldEntry == null) {
+			if (newActivityEndTime != Double.POSITIVE_INFINITY) {
+				// re-activate the agent
+				internalInterface.registerAdditionalAgentOnLink(agent);
+				((org.matsim.core.mobsim.qsim.AgentCounter) internalInterface.getMobsim().getAgentCounter()).incLiving();
+			}
+		} else if (newActivityEndTime == Double.POSITIVE_INFINITY) {
+			/*
+			 * After the re-planning the agent's current activity has changed to its last activity.
+			 * Therefore the agent is de-activated. cdobler, oct'11
+			 */
+			unregisterAgentAtActivityLocation(agent);
+			internalInterface.getMobsim().getAgentCounter().decLiving();
+		}
+	}
+
+	private void addPendingAgents() {
+		MobsimAgent agent;
+		while ((agent = this.pendingAgents.poll()) != null) {
+			this.entries.put(agent, this.activityEnds.add(agent, agent.getActivityEndTime()));
+		}
+	}
+
+	private void unregisterAgentAtActivityLocation(final MobsimAgent agent) {
+		Id<Person> agentId = agent.getId();
+		Id<Link> linkId = agent.getCurrentLinkId();
+		if (linkId != null) { // may be bushwacking
+			internalInterface.unregisterAdditionalAgentOnLink(agentId, linkId);
+		}
+	}
+
+}
@@ -34,8 +34,9 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.internal.HasPersonId;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.qsim.agents.WithinDayAgentUtils;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
 
-public final class ActivityEngineWithWakeup implements ActivityEngine {
+public final class ActivityEngineWithWakeup implements ActivityEngine, WakeUpTimeProvider {
 
 	private final EventsManager eventsManager;
 	private PreplanningEngine preplanningEngine;
@@ -67,6 +68,16 @@ public final class ActivityEngineWithWakeup implements ActivityEngine {
 		delegate.doSimStep(now);
 	}
 
+	@Override
+	public double getNextWakeUpTime(double now) {
+		final AgentEntry next = wakeUpList.peek();
+		double wakeUpTime = next == null ? Double.POSITIVE_INFINITY : next.time;
+		if (delegate instanceof WakeUpTimeProvider) {
+			return Math.min(wakeUpTime, ((WakeUpTimeProvider) delegate).getNextWakeUpTime(now));
+		}
+		return now;
+	}
+
 	@Override
 	public void afterSim() {
 		delegate.afterSim();
@@ -0,0 +1,241 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AgentTimingWheel.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.matsim.core.mobsim.framework.MobsimAgent;
+
+/**
+ * A timing wheel (calendar queue) of agents, each waiting for some point in time, e.g. the end of an activity or the
+ * arrival of a teleported leg.
+ * <p></p>
+ * The wheel has one bucket per simulated second; an agent waiting until time <code>t</code> is put into the bucket of
+ * second <code>floor(t)</code>, modulo the size of the wheel.  Adding and removing an agent thus take constant time,
+ * independent of the number of waiting agents.  Agents of later rounds of the wheel share a bucket with the current
+ * round and are skipped until their round has come.
+ * <p></p>
+ * The due agents are returned ordered by time and, at the same time, with the agent with the larger id first, which is
+ * the order of the priority queues used by {@link ActivityEngineDefaultImpl} and {@link DefaultTeleportationEngine}.
+ * <p></p>
+ * Not thread-safe.
+ */
+final class AgentTimingWheel {
+
+	private static final int WHEEL_SIZE = 1 << 16;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+	private static final long NOT_PLACED = Long.MIN_VALUE;
+
+	static final Comparator<Entry> ORDER = (e0, e1) -> {
+		int cmp = Double.compare(e0.time, e1.time);
+		if (cmp == 0) {
+			return e1.agent.getId().compareTo(e0.agent.getId());
+		}
+		return cmp;
+	};
+
+	static final class Entry {
+		final MobsimAgent agent;
+		final double time;
+		private long second = NOT_PLACED;
+		private int positionInBucket;
+
+		private Entry(MobsimAgent agent, double time) {
+			this.agent = agent;
+			this.time = time;
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private final List<Entry>[] wheel = new List[WHEEL_SIZE];
+	/**
+	 * Agents added before the first call to {@link #pollDueEntries(double)}, when the current second is not known yet.
+	 */
+	private final List<Entry> notPlaced = new ArrayList<>();
+	private int size = 0;
+
+	/**
+	 * The second of the bucket that is processed next.
+	 */
+	private long currentSecond = NOT_PLACED;
+
+	/**
+	 * The earliest time of all agents, or <code>NaN</code> if it has to be looked up again.
+	 */
+	private double nextTime = Double.POSITIVE_INFINITY;
+
+	Entry add(MobsimAgent agent, double time) {
+		Entry entry = new Entry(agent, time);
+		place(entry);
+		this.size++;
+		if (time < this.nextTime) {
+			this.nextTime = time;
+		}
+		return entry;
+	}
+
+	private void place(Entry entry) {
+		List<Entry> bucket;
+		if (this.currentSecond == NOT_PLACED) {
+			entry.second = NOT_PLACED;
+			bucket = this.notPlaced;
+		} else {
+			// agents that should have been processed already are due now
+			entry.second = entry.time < this.currentSecond ? this.currentSecond : (long) Math.floor(entry.time);
+			int slot = (int) (entry.second & WHEEL_MASK);
+			bucket = this.wheel[slot];
+			if (bucket == null) {
+				bucket = new ArrayList<>();
+				this.wheel[slot] = bucket;
+			}
+		}
+		entry.positionInBucket = bucket.size();
+		bucket.add(entry);
+	}
+
+	void remove(Entry entry) {
+		List<Entry> bucket = entry.second == NOT_PLACED ? this.notPlaced : this.wheel[(int) (entry.second & WHEEL_MASK)];
+		Entry last = bucket.remove(bucket.size() - 1);
+		if (last != entry) {
+			bucket.set(entry.positionInBucket, last);
+			last.positionInBucket = entry.positionInBucket;
+		}
+		this.size--;
+		if (entry.time == this.nextTime) {
+			this.nextTime = this.size == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+		}
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * Removes the agents waiting until <code>time</code> or earlier, advancing the wheel as far as possible.  Returns
+	 * them in the order described above.  If the returned agents add further agents which are due at <code>time</code>,
+	 * those are returned by the next call.
+	 */
+	List<Entry> pollDueEntries(double time) {
+		long lastSecond = (long) Math.floor(time);
+		if (this.currentSecond == NOT_PLACED) {
+			this.currentSecond = lastSecond;
+			List<Entry> entries = new ArrayList<>(this.notPlaced);
+			this.notPlaced.clear();
+			for (Entry entry : entries) {
+				place(entry);
+			}
+		}
+		List<Entry> due = new ArrayList<>();
+		if (this.size == 0) {
+			this.currentSecond = Math.max(this.currentSecond, lastSecond);
+			return due;
+		}
+		while (this.currentSecond <= lastSecond) {
+			List<Entry> bucket = this.wheel[(int) (this.currentSecond & WHEEL_MASK)];
+			boolean remaining = false;
+			if (bucket != null) {
+				// (backwards, since removing an entry moves the last one to its position)
+				for (int i = bucket.size() - 1; i >= 0; i--) {
+					Entry entry = bucket.get(i);
+					if (entry.second == this.currentSecond) {
+						if (entry.time <= time) {
+							remove(entry);
+							due.add(entry);
+						} else {
+							remaining = true;
+						}
+					}
+				}
+			}
+			if (remaining || !due.isEmpty()) {
+				// (let the caller process the due agents before moving on, since that may add agents to this bucket)
+				break;
+			}
+			this.currentSecond++;
+		}
+		due.sort(ORDER);
+		return due;
+	}
+
+	/**
+	 * @return the earliest time an agent is waiting for, or {@link Double#POSITIVE_INFINITY} if there are no agents.
+	 * 		Agents waiting for a time that has passed already are due at that time.
+	 */
+	double getNextTime() {
+		if (Double.isNaN(this.nextTime)) {
+			this.nextTime = lookUpNextTime();
+		}
+		return this.nextTime;
+	}
+
+	private double lookUpNextTime() {
+		double min = Double.POSITIVE_INFINITY;
+		for (Entry entry : this.notPlaced) {
+			min = Math.min(min, entry.time);
+		}
+		if (this.currentSecond != NOT_PLACED) {
+			// the first bucket of the current round with agents has the earliest ones
+			for (long second = this.currentSecond; second < this.currentSecond + WHEEL_SIZE; second++) {
+				List<Entry> bucket = this.wheel[(int) (second & WHEEL_MASK)];
+				if (bucket != null) {
+					for (Entry entry : bucket) {
+						if (entry.second == second) {
+							min = Math.min(min, entry.time);
+						}
+					}
+				}
+				if (min < Double.POSITIVE_INFINITY) {
+					return min;
+				}
+			}
+			// all agents wait for later rounds of the wheel
+			for (List<Entry> bucket : this.wheel) {
+				if (bucket != null) {
+					for (Entry entry : bucket) {
+						min = Math.min(min, entry.time);
+					}
+				}
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Removes all agents and returns them in the order described above.
+	 */
+	List<Entry> clear() {
+		List<Entry> all = new ArrayList<>(this.size);
+		all.addAll(this.notPlaced);
+		this.notPlaced.clear();
+		for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+			if (this.wheel[slot] != null) {
+				all.addAll(this.wheel[slot]);
+				this.wheel[slot] = null;
+			}
+		}
+		this.size = 0;
+		this.nextTime = Double.POSITIVE_INFINITY;
+		all.sort(ORDER);
+		return all;
+	}
+}
@@ -28,6 +28,7 @@ import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
 import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
 import org.matsim.core.mobsim.framework.listeners.*;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
 import org.matsim.core.utils.misc.ClassUtils;
 
 import javax.swing.event.EventListenerList;
@@ -107,4 +108,23 @@ class MobsimListenerManager implements MatsimManager {
         }
 	}
 
+	/**
+	 * @return the earliest time at which one of the before or after sim step listeners needs a time step, see
+	 * 		{@link WakeUpTimeProvider}; <code>now</code> if one of them is not a {@link WakeUpTimeProvider}.
+	 */
+	double getNextWakeUpTime(double now) {
+		double wakeUpTime = Double.POSITIVE_INFINITY;
+		for (MobsimListener listener : this.listenerList.getListeners(MobsimBeforeSimStepListener.class)) {
+			wakeUpTime = Math.min(wakeUpTime, getNextWakeUpTime(listener, now));
+		}
+		for (MobsimListener listener : this.listenerList.getListeners(MobsimAfterSimStepListener.class)) {
+			wakeUpTime = Math.min(wakeUpTime, getNextWakeUpTime(listener, now));
+		}
+		return wakeUpTime;
+	}
+
+	private static double getNextWakeUpTime(MobsimListener listener, double now) {
+		return listener instanceof WakeUpTimeProvider ? ((WakeUpTimeProvider) listener).getNextWakeUpTime(now) : now;
+	}
+
 }
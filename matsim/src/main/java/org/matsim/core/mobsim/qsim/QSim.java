@@ -46,6 +46,7 @@ import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.Netsim;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
 import org.matsim.core.mobsim.qsim.qnetsimengine.NetsimEngine;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine;
 import org.matsim.core.network.NetworkChangeEvent;
@@ -217,7 +218,8 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 	@Inject
 	private QSim( final Scenario sc, EventsManager events, Injector childInjector ) {
 		this.scenario = sc;
-		if ( sc.getConfig().qsim().getNumberOfThreads() > 1) {
+		if ( sc.getConfig().qsim().getNumberOfThreads() > 1 || sc.getConfig().qsim().getNumberOfActivityEndThreads() > 1 ) {
+			// (the agents of ActivityEngineTimingWheelImpl end their activities on several threads)
 			this.events = EventsUtils.getParallelFeedableInstance( events );
 		} else {
 			this.events = events;
@@ -422,7 +424,11 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		}
 
 		if (doContinue) {
-			this.simTimer.incrementTime();
+			if (qsimConfigGroup.isSkippingIdleTimeSteps()) {
+				this.simTimer.setTime(this.getNextSimStepTime(now, qsimConfigGroup));
+			} else {
+				this.simTimer.incrementTime();
+			}
 		}
 		
 		if (analyzeRunTimes) this.qSimInternalTime += System.nanoTime() - this.startTime;
@@ -529,6 +535,46 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		return firstAgentStartTime;
 	}
 
+	/**
+	 * @return the time of the next time step in which an engine or a sim step listener has something to do, see
+	 * 		{@link WakeUpTimeProvider}, but not later than the last time step of the simulation.
+	 */
+	private double getNextSimStepTime(final double now, final QSimConfigGroup qsimConfigGroup) {
+		final double stepSize = this.simTimer.getSimTimestepSize();
+		final double nextTime = now + stepSize;
+		double wakeUpTime = Double.POSITIVE_INFINITY;
+		for (MobsimEngine mobsimEngine : this.mobsimEngines) {
+			if (!(mobsimEngine instanceof WakeUpTimeProvider)) {
+				return nextTime;
+			}
+			wakeUpTime = Math.min(wakeUpTime, ((WakeUpTimeProvider) mobsimEngine).getNextWakeUpTime(now));
+			if (wakeUpTime <= nextTime) {
+				return nextTime;
+			}
+		}
+		wakeUpTime = Math.min(wakeUpTime, this.listenerManager.getNextWakeUpTime(now));
+		if (wakeUpTime <= nextTime) {
+			return nextTime;
+		}
+
+		// the last time step is the first one at or after the stop time, or after the end time
+		final boolean onlyUseEndtime = qsimConfigGroup.getSimEndtimeInterpretation() == EndtimeInterpretation.onlyUseEndtime;
+		final double lastTime = onlyUseEndtime ? qsimConfigGroup.getEndTime() : this.stopTime;
+		if (wakeUpTime == Double.POSITIVE_INFINITY && lastTime == Double.MAX_VALUE) {
+			// nothing will happen anymore, but the simulation does not end either
+			return nextTime;
+		}
+		double steps;
+		if (wakeUpTime <= lastTime) {
+			steps = Math.ceil((wakeUpTime - now) / stepSize);
+		} else if (onlyUseEndtime) {
+			steps = Math.floor((lastTime - now) / stepSize) + 1;
+		} else {
+			steps = Math.ceil((lastTime - now) / stepSize);
+		}
+		return now + Math.max(1, steps) * stepSize;
+	}
+
 	// ############################################################################################################################
 	// utility methods (presumably no state change)
 	// ############################################################################################################################
@@ -536,7 +582,8 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 	private void printSimLog(final double time) {
 		if (time >= this.infoTime) {
 			//		if(true){
-			this.infoTime += INFO_PERIOD;
+			// (time steps may have been skipped)
+			this.infoTime += Math.floor((time - this.infoTime) / INFO_PERIOD + 1) * INFO_PERIOD;
 			Date endtime = new Date();
 			long diffreal = (endtime.getTime() - this.realWorldStarttime
 					.getTime()) / 1000;
@@ -0,0 +1,152 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TeleportationEngineTimingWheelImpl.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
+import org.matsim.vis.snapshotwriters.TeleportationVisData;
+
+/**
+ * A {@link TeleportationEngine} which keeps the teleported agents in an {@link AgentTimingWheel} instead of a
+ * priority queue of boxed arrival times, so departures and arrivals take constant time, independent of the number of
+ * agents on teleported legs.  The agents arrive in the same order as with {@link DefaultTeleportationEngine}.
+ * <p></p>
+ * The visualization data is only kept once {@link #addAgentSnapshotInfo(Collection)} has been called, i.e. once a
+ * snapshot writer or visualizer is interested in it.  Agents which departed before are not shown.
+ */
+public final class TeleportationEngineTimingWheelImpl implements TeleportationEngine, WakeUpTimeProvider {
+
+	private final AgentTimingWheel arrivals = new AgentTimingWheel();
+	private final LinkedHashMap<Id<Person>, TeleportationVisData> teleportationData = new LinkedHashMap<>();
+	private boolean keepingVisData = false;
+	private InternalInterface internalInterface;
+	private final Scenario scenario;
+	private final EventsManager eventsManager;
+
+	private final boolean withTravelTimeCheck ;
+
+	@Inject
+	public TeleportationEngineTimingWheelImpl(Scenario scenario, EventsManager eventsManager) {
+		this.scenario = scenario;
+		this.eventsManager = eventsManager;
+
+		withTravelTimeCheck = scenario.getConfig().qsim().isUsingTravelTimeCheckInTeleportation() ;
+	}
+
+	@Override
+	public boolean handleDeparture(double now, MobsimAgent agent, Id<Link> linkId) {
+		if ( agent.getExpectedTravelTime()==null || agent.getExpectedTravelTime()==Time.UNDEFINED_TIME ) {
+			Logger.getLogger( this.getClass() ).info( "mode: " + agent.getMode() );
+			throw new RuntimeException("teleportation does not work when travel time is undefined.  There is also really no magic fix for this,"
+					+ " since we cannot guess travel times for arbitrary modes and arbitrary landscapes.  kai/mz, apr'15 & feb'16") ;
+		}
+
+		double travelTime = agent.getExpectedTravelTime() ;
+		if ( withTravelTimeCheck ) {
+			Double speed = scenario.getConfig().plansCalcRoute().getTeleportedModeSpeeds().get( agent.getMode() ) ;
+			travelTime = DefaultTeleportationEngine.travelTimeCheck(travelTime, speed, agent.getCurrentFacility(), agent.getDestinationFacility());
+		}
+
+		this.arrivals.add(agent, now + travelTime);
+
+		// === below here is only visualization, no dynamics ===
+		if (this.keepingVisData) {
+			Link currLink = this.scenario.getNetwork().getLinks().get(linkId);
+			Link destLink = this.scenario.getNetwork().getLinks().get(agent.getDestinationLinkId());
+			this.teleportationData.put(agent.getId(), new TeleportationVisData(now, agent.getId(),
+					currLink.getToNode().getCoord(), destLink.getToNode().getCoord(), travelTime));
+		}
+
+		return true;
+	}
+
+	@Override
+	public Collection<AgentSnapshotInfo> addAgentSnapshotInfo(Collection<AgentSnapshotInfo> snapshotList) {
+		this.keepingVisData = true;
+		double time = internalInterface.getMobsim().getSimTimer().getTimeOfDay();
+		for (TeleportationVisData teleportationVisData : teleportationData.values()) {
+			teleportationVisData.updatePosition(time);
+			snapshotList.add(teleportationVisData);
+		}
+		return snapshotList;
+	}
+
+	@Override
+	public void doSimStep(double time) {
+		double now = internalInterface.getMobsim().getSimTimer().getTimeOfDay();
+		List<AgentTimingWheel.Entry> dueEntries;
+		while (!(dueEntries = this.arrivals.pollDueEntries(now)).isEmpty()) {
+			for (AgentTimingWheel.Entry entry : dueEntries) {
+				MobsimAgent personAgent = entry.agent;
+				personAgent.notifyArrivalOnLinkByNonNetworkMode(personAgent.getDestinationLinkId());
+				double distance = personAgent.getExpectedTravelDistance();
+				this.eventsManager.processEvent(new TeleportationArrivalEvent(now, personAgent.getId(), distance));
+				personAgent.endLegAndComputeNextState(now);
+				if (this.keepingVisData) {
+					this.teleportationData.remove(personAgent.getId());
+				}
+				internalInterface.arrangeNextAgentState(personAgent);
+			}
+		}
+	}
+
+	@Override
+	public double getNextWakeUpTime(double now) {
+		return this.arrivals.getNextTime();
+	}
+
+	@Override
+	public void onPrepareSim() {
+
+	}
+
+	@Override
+	public void afterSim() {
+		double now = internalInterface.getMobsim().getSimTimer().getTimeOfDay();
+		for (AgentTimingWheel.Entry entry : this.arrivals.clear()) {
+			MobsimAgent agent = entry.agent;
+			eventsManager.processEvent(new PersonStuckEvent(now, agent.getId(), agent.getDestinationLinkId(), agent.getMode()));
+		}
+		this.teleportationData.clear();
+	}
+
+	@Override
+	public void setInternalInterface(InternalInterface internalInterface) {
+		this.internalInterface = internalInterface;
+	}
+
+}
@@ -21,12 +21,19 @@
 
  package org.matsim.core.mobsim.qsim;
 
+import org.matsim.core.config.groups.QSimConfigGroup.TeleportationArrivalQueue;
+
 public class TeleportationModule extends AbstractQSimModule {
 	public final static String COMPONENT_NAME = "TeleportationEngine";
 
 	@Override
 	protected void configureQSim() {
-		bind(DefaultTeleportationEngine.class).asEagerSingleton();
-		addNamedComponent(DefaultTeleportationEngine.class, COMPONENT_NAME);
+		if (getConfig().qsim().getTeleportationArrivalQueue() == TeleportationArrivalQueue.timingWheel) {
+			bind(TeleportationEngineTimingWheelImpl.class).asEagerSingleton();
+			addNamedComponent(TeleportationEngineTimingWheelImpl.class, COMPONENT_NAME);
+		} else {
+			bind(DefaultTeleportationEngine.class).asEagerSingleton();
+			addNamedComponent(DefaultTeleportationEngine.class, COMPONENT_NAME);
+		}
 	}
 }
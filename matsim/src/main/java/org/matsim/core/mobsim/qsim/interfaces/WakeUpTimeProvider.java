@@ -0,0 +1,47 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * WakeUpTimeProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.interfaces;
+
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.qsim.QSim;
+
+/**
+ * Implemented by {@link MobsimEngine}s and by {@link MobsimBeforeSimStepListener}s or {@link MobsimAfterSimStepListener}s
+ * which know when they have something to do next.
+ * <p></p>
+ * If skipping idle time steps is switched on, the {@link QSim} asks all of them after every time step, and advances the
+ * clock directly to the earliest of the returned times instead of running all the time steps in between, in which
+ * nothing would happen.  If only one of the engines or listeners of a QSim does not implement this interface, no time
+ * steps are skipped.
+ */
+public interface WakeUpTimeProvider {
+
+	/**
+	 * Called after the time step at <code>now</code>, before the next one.
+	 *
+	 * @return the earliest time at which a time step is needed, e.g. the next activity end.  Any time up to the next
+	 * 		time step, e.g. <code>now</code>, if the next time step is needed, and {@link Double#POSITIVE_INFINITY} if
+	 * 		nothing happens until some other engine or listener does something.
+	 */
+	double getNextWakeUpTime(double now);
+
+}
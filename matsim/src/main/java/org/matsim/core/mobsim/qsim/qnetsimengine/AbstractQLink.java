@@ -546,6 +546,10 @@ abstract class AbstractQLink implements QLinkI {
 			AbstractQLink.this.activateLink();
 		}
 		
+		public void wakeUpLinkAt(double time) {
+			AbstractQLink.this.netElementActivationRegistry.registerLinkForWakeUp(AbstractQLink.this, time);
+		}
+		
 		public double getMaximumVelocityFromLinkSpeedCalculator(QVehicle veh, double now) {
 			final LinkSpeedCalculator linkSpeedCalculator = AbstractQLink.this.linkSpeedCalculator;
 			Gbl.assertNotNull(linkSpeedCalculator);
@@ -81,12 +81,11 @@ public final class ConfigurableQNetworkFactory implements QNetworkFactory {
 		// vehicleQFactory, flowEfficiencyCalculator and so on based on the config.
 		// We should only override that choice if the configured properties are explicitly set. Janek 11.19
 		QLinkImpl.Builder linkBuilder = new QLinkImpl.Builder(context, netsimEngine);
-		{
-			QueueWithBuffer.Builder laneFactory = new QueueWithBuffer.Builder(context);
-			vehicleQFactory.ifPresent(factory -> laneFactory.setVehicleQueue(factory.createVehicleQ()));
-			flowEfficiencyCalculator.ifPresent(laneFactory::setFlowEfficiencyCalculator);
-			linkBuilder.setLaneFactory(laneFactory);
-		}
+		QueueWithBuffer.Builder laneFactory = new QueueWithBuffer.Builder(context);
+		vehicleQFactory.ifPresent(factory -> laneFactory.setVehicleQueue(factory.createVehicleQ()));
+		flowEfficiencyCalculator.ifPresent(laneFactory::setFlowEfficiencyCalculator);
+		laneFactory.setEventDriven(QueueWithBuffer.isEventDriven(link, qsimConfig));
+		linkBuilder.setLaneFactory(laneFactory);
 		linkSpeedCalculator.ifPresent(linkBuilder::setLinkSpeedCalculator);
 		vehicleHandler.ifPresent(linkBuilder::setVehicleHandler);
 
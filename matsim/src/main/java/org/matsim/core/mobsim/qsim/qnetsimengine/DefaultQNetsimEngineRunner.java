@@ -0,0 +1,151 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DefaultQNetsimEngineRunner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Phaser;
+
+/**
+ * Keeps the active nodes and links in lists, in the order of their activation.
+ */
+final class DefaultQNetsimEngineRunner extends QNetsimEngineRunner {
+
+	/*
+	 * This needs to be thread-safe since QNodes could be activated concurrently
+	 * from multiple threads. In previous implementations, this data structure was
+	 * a Map since it was possible that the same node was activated concurrently.
+	 * Now, the implementation of the QNode was adapted in a way that this is not
+	 * possible anymore.
+	 * cdobler, sep'14
+	 */
+	private final Queue<QNodeI> nodesQueue = new ConcurrentLinkedQueue<>();
+
+	/*
+	 * Needs not to be thread-safe since links are only activated from nodes which
+	 * are handled (by design) from links handled by the same thread. Therefore,
+	 * no concurrent add operation can occur.
+	 * cdobler, sep'14
+	 */
+	private final List<QLinkI> linksList = new LinkedList<>();
+
+	DefaultQNetsimEngineRunner(Phaser startBarrier, Phaser separationBarrier, Phaser endBarrier) {
+		super(startBarrier, separationBarrier, endBarrier);
+	}
+
+	DefaultQNetsimEngineRunner() {
+		super();
+	}
+
+	@Override
+	int moveActiveNodes(double time) {
+		int count = 0;
+		Iterator<QNodeI> simNodes = this.nodesQueue.iterator();
+		while (simNodes.hasNext()) {
+			QNodeI node = simNodes.next();
+			boolean remainsActive = node.doSimStep(time);
+			count++;
+			if (!remainsActive) simNodes.remove();
+		}
+		return count;
+	}
+
+	@Override
+	int moveActiveLinks() {
+		int count = 0;
+		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
+		while (simLinks.hasNext()) {
+			QLinkI link = simLinks.next();
+			boolean remainsActive = link.doSimStep();
+			count++;
+			if (!remainsActive) simLinks.remove();
+		}
+		return count;
+	}
+
+	@Override
+	void addActiveNode(QNodeI node) {
+		this.nodesQueue.add(node);
+	}
+
+	@Override
+	void addActiveLink(QLinkI link) {
+		this.linksList.add(link);
+	}
+
+	/*
+	 * Note that the size() method is O(n) for a ConcurrentLinkedQueue as used
+	 * for the nodesQueue. However, this method is only called once every simulated
+	 * hour for the log message. Therefore, it should be okay.
+	 * cdobler, sep'14
+	 */
+	@Override
+	public int getNumberOfSimulatedNodes() {
+		return this.nodesQueue.size();
+	}
+
+	@Override
+	public int getNumberOfSimulatedLinks() {
+		return this.linksList.size();
+	}
+
+	@Override
+	boolean isIdle() {
+		return this.nodesQueue.isEmpty() && this.linksList.isEmpty();
+	}
+
+	@Override
+	List<AbstractQNode> removeActiveNodes(int maxCount) {
+		List<AbstractQNode> removed = new ArrayList<>(maxCount);
+		Iterator<QNodeI> simNodes = this.nodesQueue.iterator();
+		while (simNodes.hasNext() && removed.size() < maxCount) {
+			QNodeI node = simNodes.next();
+			if (node instanceof AbstractQNode) {
+				simNodes.remove();
+				removed.add((AbstractQNode) node);
+			}
+		}
+		return removed;
+	}
+
+	@Override
+	List<QLinkI> removeActiveLinks(Set<QLinkI> links) {
+		List<QLinkI> removed = new ArrayList<>();
+		if (links.isEmpty()) {
+			return removed;
+		}
+		Iterator<QLinkI> simLinks = this.linksList.iterator();
+		while (simLinks.hasNext()) {
+			QLinkI link = simLinks.next();
+			if (links.contains(link)) {
+				simLinks.remove();
+				removed.add(link);
+			}
+		}
+		return removed;
+	}
+}
@@ -55,6 +55,8 @@ import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
  * <li> Most functionality of {@link QLinkImpl} is actually in {@link AbstractQLink}, which
  * can also be used as basic infrastructure by other qnetworks.  
  * <li> {@link QueueWithBuffer} is an instance of {@link QLaneI} and can be replaced accordingly.  
+ * <li> On the links selected by {@link QSimConfigGroup#getEventDrivenLinkTypes()} and
+ * {@link QSimConfigGroup#getEventDrivenLinkMinimumFlowCapacity()}, the {@link QueueWithBuffer} is event-driven.
  * <li> One can also replace the {@link VehicleQ} that works inside {@link QueueWithBuffer}. 
  * </ul>
  * 
@@ -90,6 +92,11 @@ public final class DefaultQNetworkFactory implements QNetworkFactory {
 	@Override
 	public QLinkI createNetsimLink( final Link link, final QNodeI toQueueNode ) {
 		QLinkImpl.Builder linkBuilder = new QLinkImpl.Builder(context, netsimEngine) ;
+		if ( QueueWithBuffer.isEventDriven( link, context.qsimConfig ) ) {
+			QueueWithBuffer.Builder laneFactory = new QueueWithBuffer.Builder( context ) ;
+			laneFactory.setEventDriven( true ) ;
+			linkBuilder.setLaneFactory( laneFactory ) ;
+		}
 		return linkBuilder.build(link, toQueueNode) ;
 	}
 	@Override
@@ -0,0 +1,218 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IndexedQNetsimEngineRunner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Keeps the active nodes and links by the {@linkplain org.matsim.api.core.v01.Id#index() indices} of their ids, so that
+ * activating and deactivating them does not allocate any objects, and moving them iterates over dense primitive arrays
+ * instead of pointer-chained lists.
+ * <p></p>
+ * The active links are kept in an int array in the order of their activation, like in {@link DefaultQNetsimEngineRunner}.
+ * The active nodes are kept in a bit set over all node indices, since nodes are activated concurrently by the links of
+ * all runners; they are moved in the order of their indices, which does not depend on the timing of the threads.  A
+ * second bit set marks the words of the first one which may contain active nodes, so that a runner only looks at the
+ * words of its active nodes, and not at all words of the network in every time step.
+ */
+final class IndexedQNetsimEngineRunner extends QNetsimEngineRunner {
+
+	private static final LongBinaryOperator OR = (a, b) -> a | b;
+	private static final LongBinaryOperator AND = (a, b) -> a & b;
+
+	/**
+	 * all nodes and links of the network by their index, shared by all runners
+	 */
+	private final QNodeI[] nodes;
+	private final QLinkI[] links;
+
+	private final AtomicLongArray activeNodes;
+	/**
+	 * one bit per word of activeNodes, set if the word may be non-zero
+	 */
+	private final AtomicLongArray activeNodeWords;
+	private final AtomicInteger activeNodeCount = new AtomicInteger();
+
+	private int[] activeLinks = new int[64];
+	private int activeLinkCount = 0;
+
+	IndexedQNetsimEngineRunner(QNodeI[] nodes, QLinkI[] links, Phaser startBarrier, Phaser separationBarrier, Phaser endBarrier) {
+		super(startBarrier, separationBarrier, endBarrier);
+		this.nodes = nodes;
+		this.links = links;
+		this.activeNodes = new AtomicLongArray((nodes.length + 63) >>> 6);
+		this.activeNodeWords = new AtomicLongArray((this.activeNodes.length() + 63) >>> 6);
+	}
+
+	IndexedQNetsimEngineRunner(QNodeI[] nodes, QLinkI[] links) {
+		super();
+		this.nodes = nodes;
+		this.links = links;
+		this.activeNodes = new AtomicLongArray((nodes.length + 63) >>> 6);
+		this.activeNodeWords = new AtomicLongArray((this.activeNodes.length() + 63) >>> 6);
+	}
+
+	@Override
+	int moveActiveNodes(double time) {
+		if (this.activeNodeCount.get() == 0) {
+			return 0;
+		}
+		// no node is activated while the nodes are moved, so the words can be updated without compare-and-set
+		int count = 0;
+		int deactivated = 0;
+		for (int s = 0; s < this.activeNodeWords.length(); s++) {
+			long originalWords = this.activeNodeWords.get(s);
+			long words = originalWords;
+			long remainingWords = originalWords;
+			while (words != 0) {
+				long wordBit = Long.lowestOneBit(words);
+				words ^= wordBit;
+				int w = (s << 6) + Long.numberOfTrailingZeros(wordBit);
+				long original = this.activeNodes.get(w);
+				long word = original;
+				long remaining = original;
+				while (word != 0) {
+					long bit = Long.lowestOneBit(word);
+					word ^= bit;
+					QNodeI node = this.nodes[(w << 6) + Long.numberOfTrailingZeros(bit)];
+					count++;
+					if (!node.doSimStep(time)) {
+						remaining ^= bit;
+						deactivated++;
+					}
+				}
+				if (remaining != original) {
+					this.activeNodes.set(w, remaining);
+				}
+				if (remaining == 0) {
+					remainingWords ^= wordBit;
+				}
+			}
+			if (remainingWords != originalWords) {
+				this.activeNodeWords.set(s, remainingWords);
+			}
+		}
+		this.activeNodeCount.addAndGet(-deactivated);
+		return count;
+	}
+
+	@Override
+	int moveActiveLinks() {
+		int count = this.activeLinkCount;
+		int remaining = 0;
+		for (int i = 0; i < count; i++) {
+			int index = this.activeLinks[i];
+			if (this.links[index].doSimStep()) {
+				this.activeLinks[remaining++] = index;
+			}
+		}
+		this.activeLinkCount = remaining;
+		return count;
+	}
+
+	@Override
+	void addActiveNode(QNodeI node) {
+		int index = node.getNode().getId().index();
+		long bit = 1L << (index & 63);
+		int w = index >>> 6;
+		long previous = this.activeNodes.getAndAccumulate(w, bit, OR);
+		if ((previous & bit) == 0) {
+			this.activeNodeCount.incrementAndGet();
+			if (previous == 0) {
+				// (the nodes are only moved after all activations of the time step, so this is visible by then)
+				this.activeNodeWords.getAndAccumulate(w >>> 6, 1L << (w & 63), OR);
+			}
+		}
+	}
+
+	@Override
+	void addActiveLink(QLinkI link) {
+		if (this.activeLinkCount == this.activeLinks.length) {
+			this.activeLinks = Arrays.copyOf(this.activeLinks, 2 * this.activeLinks.length);
+		}
+		this.activeLinks[this.activeLinkCount++] = link.getLink().getId().index();
+	}
+
+	@Override
+	public int getNumberOfSimulatedNodes() {
+		return this.activeNodeCount.get();
+	}
+
+	@Override
+	public int getNumberOfSimulatedLinks() {
+		return this.activeLinkCount;
+	}
+
+	@Override
+	boolean isIdle() {
+		return this.activeNodeCount.get() == 0 && this.activeLinkCount == 0;
+	}
+
+	@Override
+	List<AbstractQNode> removeActiveNodes(int maxCount) {
+		List<AbstractQNode> removed = new ArrayList<>(maxCount);
+		for (int w = 0; w < this.activeNodes.length() && removed.size() < maxCount; w++) {
+			long word = this.activeNodes.get(w);
+			long remaining = word;
+			while (word != 0 && removed.size() < maxCount) {
+				long bit = Long.lowestOneBit(word);
+				word ^= bit;
+				QNodeI node = this.nodes[(w << 6) + Long.numberOfTrailingZeros(bit)];
+				if (node instanceof AbstractQNode) {
+					remaining ^= bit;
+					removed.add((AbstractQNode) node);
+				}
+			}
+			this.activeNodes.set(w, remaining);
+			if (remaining == 0) {
+				this.activeNodeWords.getAndAccumulate(w >>> 6, ~(1L << (w & 63)), AND);
+			}
+		}
+		this.activeNodeCount.addAndGet(-removed.size());
+		return removed;
+	}
+
+	@Override
+	List<QLinkI> removeActiveLinks(Set<QLinkI> links) {
+		List<QLinkI> removed = new ArrayList<>();
+		if (links.isEmpty()) {
+			return removed;
+		}
+		int remaining = 0;
+		for (int i = 0; i < this.activeLinkCount; i++) {
+			QLinkI link = this.links[this.activeLinks[i]];
+			if (links.contains(link)) {
+				removed.add(link);
+			} else {
+				this.activeLinks[remaining++] = this.activeLinks[i];
+			}
+		}
+		this.activeLinkCount = remaining;
+		return removed;
+	}
+}
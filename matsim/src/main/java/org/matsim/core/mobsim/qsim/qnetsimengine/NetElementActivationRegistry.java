@@ -30,5 +30,11 @@ abstract class NetElementActivationRegistry {
 	
 	abstract void registerLinkAsActive(final QLinkI link);
 
+	/**
+	 * Lets a currently inactive link become active again at the given time, e.g. when the first vehicle on an
+	 * event-driven {@link QueueWithBuffer} reaches the end of the link.  Waking up a link that is active anyway has no effect.
+	 */
+	abstract void registerLinkForWakeUp(final AbstractQLink link, final double time);
+
 	abstract int getNumberOfSimulatedLinks();
 } 
\ No newline at end of file
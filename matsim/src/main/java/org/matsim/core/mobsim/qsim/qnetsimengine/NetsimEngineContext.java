@@ -23,8 +23,11 @@
 
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimVehicleStorage;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.QVehicleStore;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
 
 public class NetsimEngineContext {
@@ -35,6 +38,10 @@ public class NetsimEngineContext {
 	final QSimConfigGroup qsimConfig;
 	private final MobsimTimer mobsimTimer;
 	final SnapshotLinkWidthCalculator linkWidthCalculator;
+	/**
+	 * null unless the vehicles of the lanes are to be kept in primitive arrays
+	 */
+	final QVehicleStore vehicleStore;
 
 	public NetsimEngineContext(EventsManager events, double effectiveCellSize, AgentCounter agentCounter,
 			AbstractAgentSnapshotInfoBuilder snapshotInfoBuilder, QSimConfigGroup qsimConfig, MobsimTimer mobsimTimer, 
@@ -46,6 +53,12 @@ public class NetsimEngineContext {
 		this.qsimConfig = qsimConfig;
 		this.mobsimTimer = mobsimTimer ;
 		this.linkWidthCalculator = linkWidthCalculator;
+		if ( qsimConfig.getNetsimVehicleStorage() == NetsimVehicleStorage.primitiveArrays
+				&& qsimConfig.getLinkDynamics() != LinkDynamics.SeepageQ ) {
+			this.vehicleStore = new QVehicleStore() ;
+		} else {
+			this.vehicleStore = null ;
+		}
 	}
 
 	MobsimTimer getSimTimer() {
@@ -25,11 +25,13 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimActiveElements;
 import org.matsim.core.config.groups.QSimConfigGroup.SnapshotStyle;
 import org.matsim.core.config.groups.QSimConfigGroup.StarttimeInterpretation;
 import org.matsim.core.config.groups.QSimConfigGroup.VehicleBehavior;
@@ -43,6 +45,10 @@ import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
+import org.matsim.core.mobsim.qsim.qnetsimengine.partitioning.NetsimNetworkPartitioner;
+import org.matsim.core.mobsim.qsim.qnetsimengine.partitioning.RecursiveBisectionNetsimNetworkPartitioner;
+import org.matsim.core.mobsim.qsim.qnetsimengine.partitioning.RoundRobinNetsimNetworkPartitioner;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
@@ -69,7 +75,7 @@ import java.util.concurrent.ThreadFactory;
  * @author dgrether
  * @author dstrippgen
  */
-public class QNetsimEngine implements MobsimEngine, NetsimEngine {
+public class QNetsimEngine implements MobsimEngine, NetsimEngine, WakeUpTimeProvider {
 
 	public interface NetsimInternalInterface {
 		QNetwork getNetsimNetwork();
@@ -119,6 +125,14 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 	private ExecutorService pool;
 
 	private final boolean usingThreadpool;
+
+	private NetsimNetworkPartitioner partitioner;
+
+	private final double rebalancingPeriod;
+
+	private final NetsimActiveElements netsimActiveElements;
+
+	private QNetsimEngineLoadBalancer loadBalancer = null;
 	
 	// for detailed run time analysis - used in combination with QSim.analyzeRunTimes
 	public static int numObservedTimeSteps = 24*3600;
@@ -177,6 +191,26 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		network.initialize(this, sim.getAgentCounter(), sim.getSimTimer() );
 
 		this.numOfThreads = sim.getScenario().getConfig().qsim().getNumberOfThreads();
+		this.rebalancingPeriod = qSimConfigGroup.getNetsimRebalancingPeriod();
+		this.netsimActiveElements = qSimConfigGroup.getNetsimActiveElements();
+
+		switch (qSimConfigGroup.getNetsimPartitioning()) {
+		case roundRobin:
+			this.partitioner = new RoundRobinNetsimNetworkPartitioner();
+			break;
+		case recursiveBisection:
+			this.partitioner = new RecursiveBisectionNetsimNetworkPartitioner();
+			break;
+		default:
+			throw new RuntimeException("Unknown netsim partitioning option.");
+		}
+	}
+
+	/**
+	 * Replaces the partitioner selected in the config.  Needs to be called before the mobsim is prepared.
+	 */
+	public final void setNetsimNetworkPartitioner(NetsimNetworkPartitioner partitioner) {
+		this.partitioner = partitioner;
 	}
 
 	private static int wrnCnt = 0;
@@ -240,6 +274,11 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 			engine.afterSim();
 		}
 
+		printRunnerLoads();
+		if (this.loadBalancer != null) {
+			this.loadBalancer.printStatistics();
+		}
+
 		if (this.usingThreadpool) {
 			this.pool.shutdown();
 		} else {
@@ -272,6 +311,20 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		this.printSimLog(time);
 	}
 
+	@Override
+	public double getNextWakeUpTime(double now) {
+		// active links and nodes move in every time step, and links only become active by departures, which are started
+		// by other engines, or by the wake-ups which event-driven lanes have scheduled
+		double nextWakeUpTime = Double.POSITIVE_INFINITY;
+		for (QNetsimEngineRunner engine : this.engines) {
+			if (!engine.isIdle()) {
+				return now;
+			}
+			nextWakeUpTime = Math.min(nextWakeUpTime, engine.getNextLinkWakeUpTime());
+		}
+		return nextWakeUpTime;
+	}
+
 	/*
 	 * The Threads are waiting at the startBarrier.
 	 * We trigger them by reaching this Barrier. Now the
@@ -335,12 +388,18 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 			this.startBarrier.arriveAndAwaitAdvance();
 			this.endBarrier.arriveAndAwaitAdvance();
 		}
+
+		// all runners are idle now, so nodes and links can be moved between them
+		if (this.loadBalancer != null) {
+			this.loadBalancer.afterSimStep(time);
+		}
 	}
 
 
 	/*package*/ void printSimLog(double time) {
 		if (time >= this.infoTime) {
-			this.infoTime += INFO_PERIOD;
+			// (time steps may have been skipped)
+			this.infoTime += Math.floor((time - this.infoTime) / INFO_PERIOD + 1) * INFO_PERIOD;
 			int nofActiveLinks = this.getNumberOfSimulatedLinks();
 			int nofActiveNodes = this.getNumberOfSimulatedNodes();
 			log.info("SIMULATION (QNetsimEngine) AT " + Time.writeTime(time)
@@ -435,13 +494,28 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 					new NamedThreadFactory());
 		}
 
+		QNodeI[] nodesByIndex = null;
+		QLinkI[] linksByIndex = null;
+		if (this.netsimActiveElements == NetsimActiveElements.indexArrays) {
+			nodesByIndex = new QNodeI[Id.getNumberOfIds(Node.class)];
+			for (QNodeI node : network.getNetsimNodes().values()) {
+				nodesByIndex[node.getNode().getId().index()] = node;
+			}
+			linksByIndex = new QLinkI[Id.getNumberOfIds(Link.class)];
+			for (QLinkI link : network.getNetsimLinks().values()) {
+				linksByIndex[link.getLink().getId().index()] = link;
+			}
+		}
+
 		// setup threads
 		for (int i = 0; i < numOfRunners; i++) {
 			QNetsimEngineRunner engine ;
 			if (this.usingThreadpool) {
-				engine = new QNetsimEngineRunner();
+				engine = nodesByIndex == null ? new DefaultQNetsimEngineRunner()
+						: new IndexedQNetsimEngineRunner(nodesByIndex, linksByIndex);
 			} else {
-				engine = new QNetsimEngineRunner(this.startBarrier, separationBarrier, endBarrier);
+				engine = nodesByIndex == null ? new DefaultQNetsimEngineRunner(this.startBarrier, separationBarrier, endBarrier)
+						: new IndexedQNetsimEngineRunner(nodesByIndex, linksByIndex, this.startBarrier, separationBarrier, endBarrier);
 				Thread thread = new Thread(engine);
 				thread.setName("QNetsimEngineRunner_" + i);
 				thread.setDaemon(true);	// make the Thread Daemons so they will terminate automatically
@@ -456,6 +530,10 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		 *  should become obsolete.
 		 */
 		assignNetElementActivators();
+
+		if (this.rebalancingPeriod > 0 && this.numOfRunners > 1) {
+			this.loadBalancer = new QNetsimEngineLoadBalancer(this.network, this.engines, this.rebalancingPeriod);
+		}
 	}
 
 	/*
@@ -468,10 +546,21 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		// only for statistics
 		int nodes[] = new int[numOfRunners];
 		int links[] = new int[numOfRunners];
+		double capacities[] = new double[numOfRunners];
 
-		int roundRobin = 0;
-		for (QNodeI node : network.getNetsimNodes().values()) {
-			int i = roundRobin % this.numOfRunners;
+		List<QNodeI> qNodes = new ArrayList<>(network.getNetsimNodes().values());
+		List<Node> netNodes = new ArrayList<>(qNodes.size());
+		for (QNodeI node : qNodes) {
+			netNodes.add(node.getNode());
+		}
+		int[] parts = this.partitioner.partition(netNodes, this.numOfRunners);
+
+		for (int n = 0; n < qNodes.size(); n++) {
+			QNodeI node = qNodes.get(n);
+			int i = parts[n];
+			if (i < 0 || i >= this.numOfRunners) {
+				throw new RuntimeException("partitioner assigned node " + node.getNode().getId() + " to non-existing runner " + i);
+			}
 			if( node instanceof AbstractQNode){
 				((AbstractQNode) node).setNetElementActivationRegistry(this.engines.get(i));
 			}
@@ -495,20 +584,61 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 				}
 
 				links[i]++;
-
+				capacities[i] += outLink.getFlowCapacityPerSec();
 			}
-
-			roundRobin++;
 		}
 
 		// print some statistics
+		Map<Id<Node>, Integer> runnerOfNode = new HashMap<>();
+		for (int n = 0; n < netNodes.size(); n++) {
+			runnerOfNode.put(netNodes.get(n).getId(), parts[n]);
+		}
+		int cutLinks = 0;
+		for (int n = 0; n < netNodes.size(); n++) {
+			for (Link outLink : netNodes.get(n).getOutLinks().values()) {
+				Integer toRunner = runnerOfNode.get(outLink.getToNode().getId());
+				if (toRunner != null && toRunner != parts[n]) {
+					cutLinks++;
+				}
+			}
+		}
+		log.info(cutLinks + " links connect nodes of different QSimEngineRunners.");
+		double totalCapacity = 0.;
 		for (int i = 0; i < this.engines.size(); i++) {
-			log.info("Assigned " + nodes[i] + " nodes and " + links[i] + " links to QSimEngineRunner #" + i);
+			totalCapacity += capacities[i];
+			log.info("Assigned " + nodes[i] + " nodes and " + links[i] + " links with a flow capacity of "
+					+ Math.round(capacities[i] * 3600.) + " veh/h to QSimEngineRunner #" + i);
+		}
+		double maxCapacity = 0.;
+		for (double capacity : capacities) {
+			maxCapacity = Math.max(maxCapacity, capacity);
+		}
+		if (totalCapacity > 0.) {
+			log.info("capacity imbalance of the netsim partitioning (max/mean): " + maxCapacity * this.numOfRunners / totalCapacity);
 		}
 
 		this.linksToActivateInitially.clear();
 	}
 
+	private void printRunnerLoads() {
+		if (this.engines.size() < 2) {
+			return;
+		}
+		long total = 0;
+		long max = 0;
+		for (int i = 0; i < this.engines.size(); i++) {
+			QNetsimEngineRunner runner = this.engines.get(i);
+			long load = runner.getNodeSimStepCount() + runner.getLinkSimStepCount();
+			total += load;
+			max = Math.max(max, load);
+			log.info("QSimEngineRunner #" + i + " did " + runner.getNodeSimStepCount() + " node and "
+					+ runner.getLinkSimStepCount() + " link sim steps.");
+		}
+		if (total > 0) {
+			log.info("load imbalance of the netsim runners (max/mean sim steps): " + (double) max * this.engines.size() / total);
+		}
+	}
+
 	public void printEngineRunTimes() {
 		if (!QSim.analyzeRunTimes) return;
 		
@@ -0,0 +1,148 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetsimEngineLoadBalancer.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * Moves active nodes, together with their out-links, from slow to fast {@link QNetsimEngineRunner}s.
+ * <p></p>
+ * Congestion moves through the network over the day, so a static partitioning of the network cannot keep the
+ * runners balanced all day long.  Every <code>period</code> seconds, the runners are sorted by the wall clock time
+ * they needed since the last rebalancing, and the slowest runner hands a share of its currently active nodes to the
+ * fastest one, the second slowest to the second fastest, and so on.  A node always takes its out-links along, which
+ * keeps the invariant that a link is handled by the runner of the node that puts vehicles onto it.
+ * <p></p>
+ * Must only be called while the runners are waiting for the next time step.
+ */
+final class QNetsimEngineLoadBalancer {
+
+	private static final Logger log = Logger.getLogger(QNetsimEngineLoadBalancer.class);
+
+	/**
+	 * Runners whose run times differ by less than this factor are considered balanced.
+	 */
+	private static final double IMBALANCE_THRESHOLD = 1.2;
+
+	private final QNetwork network;
+	private final List<QNetsimEngineRunner> runners;
+	private final double period;
+
+	private double nextRebalancingTime = Double.NEGATIVE_INFINITY;
+	private long movedNodes = 0;
+	private long rebalancings = 0;
+
+	QNetsimEngineLoadBalancer(QNetwork network, List<QNetsimEngineRunner> runners, double period) {
+		this.network = network;
+		this.runners = runners;
+		this.period = period;
+	}
+
+	void afterSimStep(double time) {
+		if (this.runners.size() < 2) {
+			return;
+		}
+		if (this.nextRebalancingTime == Double.NEGATIVE_INFINITY) {
+			// first time step: only start measuring
+			this.nextRebalancingTime = time + this.period;
+			for (QNetsimEngineRunner runner : this.runners) {
+				runner.getAndResetMeasuredRunTime();
+			}
+			return;
+		}
+		if (time < this.nextRebalancingTime) {
+			return;
+		}
+		this.nextRebalancingTime = time + this.period;
+
+		List<MeasuredRunner> measured = new ArrayList<>(this.runners.size());
+		for (QNetsimEngineRunner runner : this.runners) {
+			measured.add(new MeasuredRunner(runner, runner.getAndResetMeasuredRunTime()));
+		}
+		measured.sort(Comparator.comparingLong(m -> m.runTime));
+
+		for (int fast = 0, slow = measured.size() - 1; fast < slow; fast++, slow--) {
+			MeasuredRunner from = measured.get(slow);
+			MeasuredRunner to = measured.get(fast);
+			if (from.runTime <= IMBALANCE_THRESHOLD * to.runTime) {
+				break;
+			}
+			// moving this share of the work equalizes the run times if the work is spread evenly over the active nodes
+			double share = (from.runTime - to.runTime) / (2.0 * from.runTime);
+			int nodesToMove = (int) (share * from.runner.getNumberOfSimulatedNodes());
+			if (nodesToMove > 0) {
+				int moved = moveActiveNodes(from.runner, to.runner, nodesToMove);
+				this.movedNodes += moved;
+				if (log.isDebugEnabled()) {
+					log.debug("at " + Time.writeTime(time) + ": moved " + moved + " active nodes from runner with run time "
+							+ from.runTime + "ns to runner with run time " + to.runTime + "ns.");
+				}
+			}
+		}
+		this.rebalancings++;
+	}
+
+	private int moveActiveNodes(QNetsimEngineRunner from, QNetsimEngineRunner to, int count) {
+		List<AbstractQNode> nodes = from.removeActiveNodes(count);
+		Set<QLinkI> outLinks = new HashSet<>();
+		for (AbstractQNode node : nodes) {
+			node.setNetElementActivationRegistry(to);
+			to.registerNodeAsActive(node);
+			for (Link link : node.getNode().getOutLinks().values()) {
+				AbstractQLink qLink = (AbstractQLink) this.network.getNetsimLink(link.getId());
+				qLink.setNetElementActivationRegistry(to);
+				outLinks.add(qLink);
+			}
+		}
+		for (QLinkI link : from.removeActiveLinks(outLinks)) {
+			to.registerLinkAsActive(link);
+		}
+		for (QNetsimEngineRunner.LinkWakeUp wakeUp : from.removeLinkWakeUps(outLinks)) {
+			to.registerLinkForWakeUp(wakeUp.link, wakeUp.time);
+		}
+		return nodes.size();
+	}
+
+	void printStatistics() {
+		if (this.rebalancings > 0) {
+			log.info("netsim load balancing moved " + this.movedNodes + " active nodes between runners in " + this.rebalancings + " rebalancings.");
+		}
+	}
+
+	private static final class MeasuredRunner {
+		final QNetsimEngineRunner runner;
+		final long runTime;
+
+		MeasuredRunner(QNetsimEngineRunner runner, long runTime) {
+			this.runner = runner;
+			this.runTime = runTime;
+		}
+	}
+
+}
@@ -25,16 +25,18 @@ import org.matsim.core.mobsim.qsim.QSim;
 
 import java.util.*;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Phaser;
 
 /**
  * These are the "threads" of the {@link QNetsimEngine}. The "run()" method is implicitly called by starting the thread.
+ * <p></p>
+ * How the active nodes and links are kept is left to the subclasses, see {@link DefaultQNetsimEngineRunner} and
+ * {@link IndexedQNetsimEngineRunner}.
  * 
  * @author (of this documentation) nagel
  *
  */
-class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnable, Callable<Boolean> {
+abstract class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnable, Callable<Boolean> {
 
 	private double time = 0.0;
 
@@ -45,29 +47,18 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	private final Phaser endBarrier;
 
 	/*
-	 * This needs to be thread-safe since QNodes could be activated concurrently
-	 * from multiple threads. In previous implementations, this data structure was
-	 * a Map since it was possible that the same node was activated concurrently.
-	 * Now, the implementation of the QNode was adapted in a way that this is not
-	 * possible anymore.
-	 * cdobler, sep'14
-	 */
-	private final Queue<QNodeI> nodesQueue = new ConcurrentLinkedQueue<>();
-
-	/*
-	 * Needs not to be thread-safe since links are only activated from nodes which
-	 * are handled (by design) from links handled by the same thread. Therefore,
-	 * no concurrent add operation can occur.
-	 * cdobler, sep'14
+	 * Inactive links that need to become active again at a given time, e.g. because the first vehicle of an
+	 * event-driven QueueWithBuffer reaches the end of the link.  Like the active links, this is only accessed by the thread
+	 * of this runner.
 	 */
-	private final List<QLinkI> linksList = new LinkedList<>();
+	private final PriorityQueue<LinkWakeUp> linkWakeUps = new PriorityQueue<>();
 
 	/*
 	 * Ensure that nodes and links are only activate during times where we expect it.
 	 * Otherwise this could result in unpredictable behavior. Therefore we throw
 	 * an exception then.
-	 * Doing so allows us adding nodes and links directly to the nodesQueue respectively
-	 * the linksList. Previously, we had to cache them in other data structures and copy
+	 * Doing so allows us adding nodes and links directly to the active nodes respectively
+	 * the active links. Previously, we had to cache them in other data structures and copy
 	 * them at a later point in time.
 	 * cdobler, sep'14
 	 */
@@ -76,6 +67,14 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 
 	private boolean movingNodes;
 
+	// only for statistics
+	private long nodeSimStepCount = 0;
+	private long linkSimStepCount = 0;
+
+	// wall clock time spent in moveNodes() and moveLinks(), for the QNetsimEngineLoadBalancer.  Excludes the time waiting
+	// at the separationBarrier, which would otherwise make every runner report about the time of the slowest one.
+	private long measuredRunTime = 0;
+
 	/*package*/ long[] runTimes;
 	private long startTime = 0;
 	{	
@@ -116,11 +115,13 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			return false;
 		}
 
+		long start = System.nanoTime();
 		if (this.movingNodes) {
 			moveNodes();
 		} else {
 			moveLinks();
 		}
+		this.measuredRunTime += System.nanoTime() - start;
 		return true ;
 	}
 
@@ -136,8 +137,9 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			 */
 			startBarrier.arriveAndAwaitAdvance();
 
-			if (QSim.analyzeRunTimes) this.startTime = System.nanoTime();
-			
+			long start = System.nanoTime();
+			if (QSim.analyzeRunTimes) this.startTime = start;
+
 			// Check if Simulation is still running. Otherwise print CPU usage and end thread.
 			if (!this.simulationRunning) {
 				Gbl.printCurrentThreadCpuTime();
@@ -145,11 +147,14 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			}
 
 			moveNodes();
+			this.measuredRunTime += System.nanoTime() - start;
 
 			// After moving the QNodes all we use a Phaser to synchronize the threads.
 			this.separationBarrier.arriveAndAwaitAdvance();
 
+			long linksStart = System.nanoTime();
 			moveLinks();
+			this.measuredRunTime += System.nanoTime() - linksStart;
 
 			if (QSim.analyzeRunTimes) {
 				long end = System.nanoTime();
@@ -165,30 +170,43 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		}
 	}
 	private void moveNodes() {
-		boolean remainsActive;
 		this.lockNodes = true;
-		QNodeI node;
-		Iterator<QNodeI> simNodes = this.nodesQueue.iterator();
-		while (simNodes.hasNext()) {
-			node = simNodes.next();
-			remainsActive = node.doSimStep(time);
-			if (!remainsActive) simNodes.remove();
-		}
+		this.nodeSimStepCount += moveActiveNodes(time);
 		this.lockNodes = false;
 	}
 	private void moveLinks() {
-		boolean remainsActive;
+		wakeUpLinks();
 		lockLinks = true;
-		QLinkI link;
-		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
-		while (simLinks.hasNext()) {
-			link = simLinks.next();
+		this.linkSimStepCount += moveActiveLinks();
+		lockLinks = false;
+	}
+
+	/**
+	 * Calls doSimStep(...) of all active nodes, and deactivates those which do not remain active.
+	 *
+	 * @return the number of node sim steps
+	 */
+	abstract int moveActiveNodes(double time);
 
-			remainsActive = link.doSimStep();
+	/**
+	 * Calls doSimStep() of all active links, and deactivates those which do not remain active.
+	 *
+	 * @return the number of link sim steps
+	 */
+	abstract int moveActiveLinks();
+
+	/**
+	 * Needs to be thread-safe since nodes are activated by the links of all runners.
+	 */
+	abstract void addActiveNode(QNodeI node);
 
-			if (!remainsActive) simLinks.remove();
+	abstract void addActiveLink(QLinkI link);
+
+	private void wakeUpLinks() {
+		while (!this.linkWakeUps.isEmpty() && this.linkWakeUps.peek().time <= time) {
+			// (activating a link which is active anyway does nothing)
+			this.linkWakeUps.poll().link.getInternalInterface().activateLink();
 		}
-		lockLinks = false;
 	}
 
 	/*
@@ -198,13 +216,25 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	 */
 	@Override
 	protected void registerLinkAsActive(QLinkI link) {
-		if (!lockLinks) linksList.add(link);
+		if (!lockLinks) addActiveLink(link);
 		else throw new RuntimeException("Tried to activate a QLink at a time where this was not allowed. Aborting!");
 	}
 
+	/*
+	 * In contrast to registerLinkAsActive(...), this may also be called while the links are moved, since the wake-ups
+	 * are only processed before.
+	 */
 	@Override
-	public int getNumberOfSimulatedLinks() {
-		return this.linksList.size();
+	void registerLinkForWakeUp(AbstractQLink link, double time) {
+		this.linkWakeUps.add(new LinkWakeUp(link, time));
+	}
+
+	/**
+	 * @return the earliest time at which an inactive link needs to become active again, or infinity.
+	 */
+	/*package*/ double getNextLinkWakeUpTime() {
+		LinkWakeUp next = this.linkWakeUps.peek();
+		return next == null ? Double.POSITIVE_INFINITY : next.time;
 	}
 
 	/*
@@ -214,22 +244,66 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	 */
 	@Override
 	protected void registerNodeAsActive(QNodeI node) {
-		if (!this.lockNodes) this.nodesQueue.add(node);
+		if (!this.lockNodes) addActiveNode(node);
 		else throw new RuntimeException("Tried to activate a QNode at a time where this was not allowed. Aborting!");
 	}
 
+	/*package*/ abstract boolean isIdle();
+
 	/*
-	 * Note that the size() method is O(n) for a ConcurrentLinkedQueue as used
-	 * for the nodesQueue. However, this method is only called once every simulated
-	 * hour for the log message. Therefore, it should be okay.
-	 * cdobler, sep'14
+	 * The following methods are used by the QNetsimEngineLoadBalancer.  They must only be called while
+	 * the runners are waiting for the next time step.
 	 */
-	@Override
-	public int getNumberOfSimulatedNodes() {
-		return this.nodesQueue.size();
+	/*package*/ long getAndResetMeasuredRunTime() {
+		long runTime = this.measuredRunTime;
+		this.measuredRunTime = 0;
+		return runTime;
+	}
+
+	/*package*/ abstract List<AbstractQNode> removeActiveNodes(int maxCount);
+
+	/*package*/ abstract List<QLinkI> removeActiveLinks(Set<QLinkI> links);
+
+	/*package*/ List<LinkWakeUp> removeLinkWakeUps(Set<QLinkI> links) {
+		List<LinkWakeUp> removed = new ArrayList<>();
+		if (links.isEmpty()) {
+			return removed;
+		}
+		Iterator<LinkWakeUp> wakeUps = this.linkWakeUps.iterator();
+		while (wakeUps.hasNext()) {
+			LinkWakeUp wakeUp = wakeUps.next();
+			if (links.contains(wakeUp.link)) {
+				wakeUps.remove();
+				removed.add(wakeUp);
+			}
+		}
+		return removed;
+	}
+
+	/*package*/ long getNodeSimStepCount() {
+		return this.nodeSimStepCount;
+	}
+
+	/*package*/ long getLinkSimStepCount() {
+		return this.linkSimStepCount;
 	}
 
 	public void setMovingNodes(boolean movingNodes) {
 		this.movingNodes = movingNodes;
 	}
+
+	/*package*/ static final class LinkWakeUp implements Comparable<LinkWakeUp> {
+		final AbstractQLink link;
+		final double time;
+
+		LinkWakeUp(AbstractQLink link, double time) {
+			this.link = link;
+			this.time = time;
+		}
+
+		@Override
+		public int compareTo(LinkWakeUp o) {
+			return Double.compare(this.time, o.time);
+		}
+	}
 }
\ No newline at end of file
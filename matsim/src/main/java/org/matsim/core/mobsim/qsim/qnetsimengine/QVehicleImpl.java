@@ -28,6 +28,7 @@ import org.matsim.core.mobsim.framework.DriverAgent;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.PassengerAgent;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.QVehicleStore;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleCapacity;
 
@@ -62,6 +63,11 @@ public class QVehicleImpl implements QVehicle {
 	private Link currentLink = null;
 	private final Vehicle vehicle;
 	private final int passengerCapacity;
+	/**
+	 * If set, the earliest link exit time is kept there rather than in this object.
+	 */
+	private QVehicleStore store = null;
+	private int storeIndex = -1;
 
 	public QVehicleImpl(final Vehicle basicVehicle) {
 		this.id = basicVehicle.getId();
@@ -126,12 +132,33 @@ public class QVehicleImpl implements QVehicle {
 
 	@Override
 	public double getEarliestLinkExitTime() {
+		if (this.store != null) {
+			return this.store.getEarliestLinkExitTime(this.storeIndex);
+		}
 		return this.earliestLinkExitTime;
 	}
 
 	@Override
 	public void setEarliestLinkExitTime(final double time) {
-		this.earliestLinkExitTime = time;
+		if (this.store != null) {
+			this.store.setEarliestLinkExitTime(this.storeIndex, time);
+		} else {
+			this.earliestLinkExitTime = time;
+		}
+	}
+
+	/**
+	 * Adds this vehicle to the store unless it is already there, see {@link QVehicleStore#indexOf(QVehicle)}.
+	 *
+	 * @return the index of this vehicle in the store.
+	 */
+	public final int getIndexIn(final QVehicleStore store) {
+		if (this.store != store) {
+			int index = store.add(this, getEarliestLinkExitTime());
+			this.store = store;
+			this.storeIndex = index;
+		}
+		return this.storeIndex;
 	}
 
 	@Override
@@ -43,8 +43,12 @@ import org.matsim.core.mobsim.qsim.qnetsimengine.flow_efficiency.DefaultFlowEffi
 import org.matsim.core.mobsim.qsim.qnetsimengine.flow_efficiency.FlowEfficiencyCalculator;
 import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.LinkSpeedCalculator;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.FIFOVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.IndexedFIFOVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.IndexedPassingVehicleQ;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.IndexedVehicleQ;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.PassingVehicleQ;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.VehicleQ;
+import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.lanes.Lane;
 import org.matsim.vehicles.Vehicle;
@@ -66,6 +70,12 @@ import java.util.*;
  * where flowCap and nEffectiveLanes may, in the multiple lanes implementation, vary by lane (for the same link), while
  * speed uses {@link LinkSpeedCalculator}, which does not have the link freeSpeed as a parameter and thus is a "pull"
  * method.</li>
+ * <li>On mostly uncongested links, the lane can be event-driven, see {@link #isEventDriven(Link, QSimConfigGroup)}.  The
+ * link then does not stay active while vehicles are on it.  It goes to sleep as soon as the first vehicle cannot leave
+ * yet, and it asks its {@link NetElementActivationRegistry} to wake it up at the earliest link exit time of that vehicle.
+ * Flow and storage capacity are then only looked at when vehicles enter the link and when they reach its end.  Everything
+ * else is the same, so the events are the same as with regular lanes and fast capacity update, except for the order of
+ * events of different links within the same time step.</li>
  * </ul>
  *
  * @author nagel
@@ -81,9 +91,17 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		private Double flowCapacity_s = null ;
  		private final NetsimEngineContext context;
  		private FlowEfficiencyCalculator flowEfficiencyCalculator;
+		private boolean eventDriven = false ;
 		Builder( final NetsimEngineContext context ) {
 			this.context = context ;
-			if (context.qsimConfig.getLinkDynamics() == QSimConfigGroup.LinkDynamics.PassingQ ||
+			if ( context.vehicleStore != null ) {
+				// (not for SeepageQ, see NetsimEngineContext)
+				if (context.qsimConfig.getLinkDynamics() == QSimConfigGroup.LinkDynamics.PassingQ) {
+					this.vehicleQueue = new IndexedPassingVehicleQ( context.vehicleStore ) ;
+				} else {
+					this.vehicleQueue = new IndexedFIFOVehicleQ( context.vehicleStore ) ;
+				}
+			} else if (context.qsimConfig.getLinkDynamics() == QSimConfigGroup.LinkDynamics.PassingQ ||
 						context.qsimConfig.getLinkDynamics() == QSimConfigGroup.LinkDynamics.SeepageQ) {
 				this.vehicleQueue = new PassingVehicleQ() ;
 			}
@@ -94,6 +112,10 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		void setEffectiveNumberOfLanes(Double effectiveNumberOfLanes) { this.effectiveNumberOfLanes = effectiveNumberOfLanes; }
 		void setFlowCapacity_s(Double flowCapacity_s) { this.flowCapacity_s = flowCapacity_s; }
 		void setFlowEfficiencyCalculator(FlowEfficiencyCalculator flowEfficiencyCalculator) { this.flowEfficiencyCalculator = flowEfficiencyCalculator; }
+		/**
+		 * Only for links for which {@link QueueWithBuffer#isEventDriven(Link, QSimConfigGroup)} is true.
+		 */
+		void setEventDriven(boolean eventDriven) { this.eventDriven = eventDriven; }
 		@Override public QueueWithBuffer createLane( AbstractQLink qLink ) {
 			// a number of things I cannot configure before I have the qlink:
 			if ( id==null ) { id = Id.create( qLink.getLink().getId() , Lane.class ) ; }
@@ -101,8 +123,25 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 			if ( effectiveNumberOfLanes==null ) { effectiveNumberOfLanes = qLink.getLink().getNumberOfLanes() ; }
 			if ( flowCapacity_s==null ) { flowCapacity_s = ((Link)qLink.getLink()).getFlowCapacityPerSec() ; }
 			if (flowEfficiencyCalculator == null) { flowEfficiencyCalculator = new DefaultFlowEfficiencyCalculator(); }
-			return new QueueWithBuffer( qLink.getInternalInterface(), vehicleQueue, id, length, effectiveNumberOfLanes, flowCapacity_s, context, flowEfficiencyCalculator ) ;
+			return new QueueWithBuffer( qLink.getInternalInterface(), vehicleQueue, id, length, effectiveNumberOfLanes, flowCapacity_s, context,
+					flowEfficiencyCalculator, eventDriven ) ;
+		}
+	}
+
+	/**
+	 * @return true if the link is selected for event-driven simulation by {@link QSimConfigGroup#getEventDrivenLinkTypes()}
+	 * or {@link QSimConfigGroup#getEventDrivenLinkMinimumFlowCapacity()}, and if the config allows it at all.  Only
+	 * {@link TrafficDynamics#queue} with fast capacity update is supported, without {@link LinkDynamics#SeepageQ} and
+	 * without lanes.  Without fast capacity update, the events would differ from those of regular lanes, so all links then
+	 * are regular.
+	 */
+	static boolean isEventDriven( Link link, QSimConfigGroup qsimConfig ) {
+		if ( qsimConfig.getTrafficDynamics() != TrafficDynamics.queue || !qsimConfig.isUsingFastCapacityUpdate()
+				|| qsimConfig.getLinkDynamics() == LinkDynamics.SeepageQ || qsimConfig.isUseLanes() ) {
+			return false ;
 		}
+		return qsimConfig.getEventDrivenLinkTypes().contains( NetworkUtils.getType( link ) )
+				|| link.getFlowCapacityPerSec() * 3600. >= qsimConfig.getEventDrivenLinkMinimumFlowCapacity() ;
 	}
 	
 	/**
@@ -156,6 +195,10 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 	 * according to the free travel speed of the link
 	 */
 	private final VehicleQ<QVehicle> vehQueue;
+	/**
+	 * The same as vehQueue if it keeps its vehicles in the vehicle store, otherwise null.
+	 */
+	private final IndexedVehicleQ indexedVehQueue;
 
 	private double storageCapacity;
 	private double usedStorageCapacity;
@@ -190,9 +233,18 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 	
 	private final FlowEfficiencyCalculator flowEfficiencyCalculator;
 
+	/**
+	 * If true, the link is not kept active while vehicles are on it, but woken up when the first vehicle reaches its end.
+	 */
+	private final boolean eventDriven;
+	/**
+	 * The time at which the event-driven link will be woken up for the first vehicle; only meaningful if in the future.
+	 */
+	private double wakeUpTime = Double.NEGATIVE_INFINITY ;
+
 	private QueueWithBuffer(AbstractQLink.QLinkInternalInterface qlink, final VehicleQ<QVehicle> vehicleQueue, Id<Lane> laneId,
 							double length, double effectiveNumberOfLanes, double flowCapacity_s, final NetsimEngineContext context,
-							FlowEfficiencyCalculator flowEfficiencyCalculator) {
+							FlowEfficiencyCalculator flowEfficiencyCalculator, boolean eventDriven) {
 		// the general idea is to give this object no longer access to "everything".  Objects get back pointers (here qlink), but they
 		// do not present the back pointer to the outside.  In consequence, this object can go up to qlink, but not any further. kai, mar'16
 		// Now I am even trying to get rid of the full qLink back pointer (since it allows, e.g., going back to Link). kai, feb'18
@@ -200,10 +252,12 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 //		log.setLevel(Level.DEBUG);
 
 		this.flowEfficiencyCalculator = flowEfficiencyCalculator;
+		this.eventDriven = eventDriven;
 		this.qLink = qlink;
 		this.id = laneId ;
 		this.context = context ;
 		this.vehQueue = vehicleQueue ;
+		this.indexedVehQueue = vehicleQueue instanceof IndexedVehicleQ ? (IndexedVehicleQ) vehicleQueue : null ;
 		this.length = length;
 		this.unscaledFlowCapacity_s = flowCapacity_s ;
 		this.effectiveNumberOfLanes = effectiveNumberOfLanes;
@@ -454,6 +508,9 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 			default: throw new RuntimeException("The traffic dynmics "+context.qsimConfig.getTrafficDynamics()+" is not implemented yet.");
 		}
 		this.moveQueueToBuffer();
+		if ( this.eventDriven ) {
+			this.wakeUpForFirstVehicle() ;
+		}
 		return true ;
 	}
 
@@ -476,7 +533,7 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		QVehicle veh;
 		while((veh = peekFromVehQueue()) !=null){
 			//we have an original QueueLink behaviour
-			if (veh.getEarliestLinkExitTime() > now){
+			if (getEarliestLinkExitTimeOfFirstVehicle(veh) > now){
 				return;
 			}
 
@@ -575,6 +632,12 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 
 	@Override
 	public final boolean isActive() {
+		if ( this.eventDriven ) {
+			// the link only needs to stay active while the first vehicle has reached the end of the link, but could not leave
+			// it yet.  Otherwise, it sleeps until that vehicle reaches the end, see wakeUpForFirstVehicle().
+			QVehicle first = this.vehQueue.peek() ;
+			return first != null && getEarliestLinkExitTimeOfFirstVehicle( first ) <= context.getSimTimer().getTimeOfDay() ;
+		}
 		if( context.qsimConfig.isUsingFastCapacityUpdate() ){
 			return (!this.vehQueue.isEmpty())
 					|| (!this.isNotOfferingVehicle() && context.qsimConfig.isUseLanes()) // if lanes, the buffer needs to be active in order to move vehicles over an internal node
@@ -587,6 +650,30 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		}
 	}
 
+	/**
+	 * Lets the event-driven link be woken up when the first vehicle reaches the end of the link, unless it is there already.
+	 * Called whenever the first vehicle may have changed, i.e. after moving vehicles to the buffer, and when a vehicle enters.
+	 */
+	private void wakeUpForFirstVehicle() {
+		QVehicle first = this.vehQueue.peek() ;
+		if ( first == null ) {
+			return ;
+		}
+		double earliestLinkExitTime = getEarliestLinkExitTimeOfFirstVehicle( first ) ;
+		if ( earliestLinkExitTime > context.getSimTimer().getTimeOfDay() ) {
+			wakeUpAt( earliestLinkExitTime ) ;
+		}
+	}
+
+	private void wakeUpAt( double time ) {
+		if ( this.wakeUpTime > context.getSimTimer().getTimeOfDay() && this.wakeUpTime <= time ) {
+			// the link is woken up early enough anyway
+			return ;
+		}
+		this.wakeUpTime = time ;
+		qLink.wakeUpLinkAt( time ) ;
+	}
+
 	@Override
 	public final void setSignalStateAllTurningMoves( final SignalGroupState state) {
 		qSignalizedItem.setSignalStateAllTurningMoves(state);
@@ -770,8 +857,10 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 			}
 		}
 
-		// activate link since there is now action on it:
-		qLink.activateLink();
+		// activate link since there is now action on it (an event-driven link is woken up once the vehicle reaches its end instead):
+		if ( !this.eventDriven ) {
+			qLink.activateLink();
+		}
 
 		if(context.qsimConfig.isSeepModeStorageFree() && context.qsimConfig.getSeepModes().contains( veh.getVehicle().getType().getId().toString() ) ){
 			// do nothing
@@ -798,6 +887,9 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 //		veh.setCurrentLink(qLink.getLink());
 		this.qLink.setCurrentLinkToVehicle( veh ) ;
 		vehQueue.add(veh);
+		if ( this.eventDriven && this.vehQueue.peek() == veh ) {
+			wakeUpAt( veh.getEarliestLinkExitTime() ) ;
+		}
 
 		switch (context.qsimConfig.getTrafficDynamics()) {
 			case queue:
@@ -993,6 +1085,14 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		return usedStorageCapacity;
 	}
 	
+	/**
+	 * With the vehicle store, this reads the earliest link exit time without touching the vehicle object.  Only valid for
+	 * the first vehicle of vehQueue, which is what peekFromVehQueue() returns unless with SeepageQ.
+	 */
+	private double getEarliestLinkExitTimeOfFirstVehicle(QVehicle first) {
+		return this.indexedVehQueue != null ? this.indexedVehQueue.peekEarliestLinkExitTime() : first.getEarliestLinkExitTime();
+	}
+
 	private double getFlowCapacityConsumptionInEquivalents(QVehicle vehicle) {
 		double flowEfficiency = flowEfficiencyCalculator.calculateFlowEfficiency(vehicle.getVehicle(), qLink.getLink());
 		return vehicle.getSizeInEquivalents() / flowEfficiency;
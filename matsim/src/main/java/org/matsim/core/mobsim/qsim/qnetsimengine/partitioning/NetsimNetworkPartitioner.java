@@ -0,0 +1,40 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetsimNetworkPartitioner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.partitioning;
+
+import java.util.List;
+
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * Decides which QNetsimEngineRunner handles which node.  The out-links of a node are always handled by the
+ * same runner as the node itself, so a partitioning of the nodes is a partitioning of the whole network.
+ */
+public interface NetsimNetworkPartitioner {
+
+	/**
+	 * @param nodes the nodes of the network, in the order in which the netsim iterates over them
+	 * @param numberOfParts the number of runners
+	 * @return for every node (same index as in <code>nodes</code>) the index of the runner, in <code>[0, numberOfParts)</code>
+	 */
+	int[] partition(List<? extends Node> nodes, int numberOfParts);
+
+}
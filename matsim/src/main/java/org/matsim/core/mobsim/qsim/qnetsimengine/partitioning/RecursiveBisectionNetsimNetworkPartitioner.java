@@ -0,0 +1,146 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RecursiveBisectionNetsimNetworkPartitioner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.partitioning;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * Spatial domain decomposition by recursive coordinate bisection: the set of nodes is split along the wider
+ * side of its bounding box such that both halves carry a weight proportional to the number of runners they
+ * will be given, and the halves are split again until there is one part per runner.
+ * <p></p>
+ * The weight of a node approximates the work of its runner: one unit for the node itself plus, for every
+ * out-link, its flow capacity relative to the mean flow capacity of the network.  Neighbouring nodes and
+ * their links thus end up on the same runner, which is better for cache locality and means that most
+ * runners only exchange vehicles with few other runners.
+ * <p></p>
+ * Falls back to round robin if some node has no coordinate.
+ */
+public final class RecursiveBisectionNetsimNetworkPartitioner implements NetsimNetworkPartitioner {
+
+	private static final Logger log = Logger.getLogger(RecursiveBisectionNetsimNetworkPartitioner.class);
+
+	@Override
+	public int[] partition(List<? extends Node> nodes, int numberOfParts) {
+		final int n = nodes.size();
+		int[] parts = new int[n];
+		if (numberOfParts <= 1 || n == 0) {
+			return parts;
+		}
+
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			Coord coord = nodes.get(i).getCoord();
+			if (coord == null) {
+				log.warn("node " + nodes.get(i).getId() + " has no coordinate, cannot partition the network spatially. Using round robin instead.");
+				return new RoundRobinNetsimNetworkPartitioner().partition(nodes, numberOfParts);
+			}
+			x[i] = coord.getX();
+			y[i] = coord.getY();
+		}
+
+		double[] weights = computeWeights(nodes);
+
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		bisect(order, 0, n, 0, numberOfParts, x, y, weights, parts);
+		return parts;
+	}
+
+	private static double[] computeWeights(List<? extends Node> nodes) {
+		double capacitySum = 0.0;
+		int linkCount = 0;
+		for (Node node : nodes) {
+			for (Link link : node.getOutLinks().values()) {
+				capacitySum += link.getFlowCapacityPerSec();
+				linkCount++;
+			}
+		}
+		double meanCapacity = linkCount == 0 ? 1.0 : capacitySum / linkCount;
+		if (meanCapacity <= 0.0) {
+			meanCapacity = 1.0;
+		}
+
+		double[] weights = new double[nodes.size()];
+		for (int i = 0; i < weights.length; i++) {
+			double w = 1.0;
+			for (Link link : nodes.get(i).getOutLinks().values()) {
+				w += link.getFlowCapacityPerSec() / meanCapacity;
+			}
+			weights[i] = w;
+		}
+		return weights;
+	}
+
+	/**
+	 * Assigns the nodes <code>order[from..to)</code> to the parts <code>[firstPart, firstPart + numberOfParts)</code>.
+	 */
+	private static void bisect(Integer[] order, int from, int to, int firstPart, int numberOfParts,
+			double[] x, double[] y, double[] weights, int[] parts) {
+		if (numberOfParts == 1 || to - from <= 1) {
+			for (int i = from; i < to; i++) {
+				parts[order[i]] = firstPart;
+			}
+			return;
+		}
+
+		double minX = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		double totalWeight = 0.0;
+		for (int i = from; i < to; i++) {
+			int idx = order[i];
+			minX = Math.min(minX, x[idx]);
+			maxX = Math.max(maxX, x[idx]);
+			minY = Math.min(minY, y[idx]);
+			maxY = Math.max(maxY, y[idx]);
+			totalWeight += weights[idx];
+		}
+
+		final double[] key = (maxX - minX) >= (maxY - minY) ? x : y;
+		// the index as tie breaker keeps the result independent of the sorting algorithm
+		Arrays.sort(order, from, to, Comparator.<Integer>comparingDouble(idx -> key[idx]).thenComparingInt(idx -> idx));
+
+		int leftParts = numberOfParts / 2;
+		double leftTarget = totalWeight * leftParts / numberOfParts;
+		double cumulated = 0.0;
+		int split = from;
+		while (split < to - 1 && cumulated + weights[order[split]] / 2.0 < leftTarget) {
+			cumulated += weights[order[split]];
+			split++;
+		}
+
+		bisect(order, from, split, firstPart, leftParts, x, y, weights, parts);
+		bisect(order, split, to, firstPart + leftParts, numberOfParts - leftParts, x, y, weights, parts);
+	}
+
+}
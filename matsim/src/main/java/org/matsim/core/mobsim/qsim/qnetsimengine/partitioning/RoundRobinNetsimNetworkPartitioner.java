@@ -0,0 +1,42 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoundRobinNetsimNetworkPartitioner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.partitioning;
+
+import java.util.List;
+
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * Hands out the nodes to the runners one after the other.  This is what the QNetsimEngine always did; it
+ * balances the number of nodes per runner, but ignores both the topology and the load of the network.
+ */
+public final class RoundRobinNetsimNetworkPartitioner implements NetsimNetworkPartitioner {
+
+	@Override
+	public int[] partition(List<? extends Node> nodes, int numberOfParts) {
+		int[] parts = new int[nodes.size()];
+		for (int i = 0; i < parts.length; i++) {
+			parts[i] = i % numberOfParts;
+		}
+		return parts;
+	}
+
+}
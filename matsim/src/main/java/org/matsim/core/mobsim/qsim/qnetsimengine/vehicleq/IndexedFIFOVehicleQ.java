@@ -0,0 +1,134 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IndexedFIFOVehicleQ.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+
+/**
+ * The same as {@link FIFOVehicleQ}, but keeping the store indices of the vehicles in a ring buffer.
+ */
+public final class IndexedFIFOVehicleQ extends IndexedVehicleQ {
+
+	private int[] indices = new int[8];
+	private int head = 0;
+	private int size = 0;
+
+	public IndexedFIFOVehicleQ(QVehicleStore store) {
+		super(store);
+	}
+
+	@Override
+	public boolean offer(QVehicle e) {
+		int index = this.store.indexOf(e);
+		ensureCapacity();
+		this.indices[(this.head + this.size) & (this.indices.length - 1)] = index;
+		this.size++;
+		return true;
+	}
+
+	@Override
+	public void addFirst(QVehicle e) {
+		int index = this.store.indexOf(e);
+		ensureCapacity();
+		this.head = (this.head - 1) & (this.indices.length - 1);
+		this.indices[this.head] = index;
+		this.size++;
+	}
+
+	private void ensureCapacity() {
+		if (this.size == this.indices.length) {
+			// unroll the ring, so that the head is at 0 again
+			int[] grown = new int[2 * this.indices.length];
+			int firstPart = this.indices.length - this.head;
+			System.arraycopy(this.indices, this.head, grown, 0, firstPart);
+			System.arraycopy(this.indices, 0, grown, firstPart, this.head);
+			this.indices = grown;
+			this.head = 0;
+		}
+	}
+
+	@Override
+	int peekIndex() {
+		return this.size == 0 ? -1 : this.indices[this.head];
+	}
+
+	@Override
+	public QVehicle poll() {
+		if (this.size == 0) {
+			return null;
+		}
+		int index = this.indices[this.head];
+		this.head = (this.head + 1) & (this.indices.length - 1);
+		this.size--;
+		return this.store.getVehicle(index);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int mask = this.indices.length - 1;
+		for (int i = 0; i < this.size; i++) {
+			if (this.store.getVehicle(this.indices[(this.head + i) & mask]).equals(o)) {
+				for (int j = i + 1; j < this.size; j++) {
+					this.indices[(this.head + j - 1) & mask] = this.indices[(this.head + j) & mask];
+				}
+				this.size--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void clear() {
+		this.head = 0;
+		this.size = 0;
+	}
+
+	@Override
+	public Iterator<QVehicle> iterator() {
+		return new Iterator<QVehicle>() {
+			private int position = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.position < IndexedFIFOVehicleQ.this.size;
+			}
+
+			@Override
+			public QVehicle next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				int[] indices = IndexedFIFOVehicleQ.this.indices;
+				return IndexedFIFOVehicleQ.this.store.getVehicle(indices[(IndexedFIFOVehicleQ.this.head + this.position++) & (indices.length - 1)]);
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+}
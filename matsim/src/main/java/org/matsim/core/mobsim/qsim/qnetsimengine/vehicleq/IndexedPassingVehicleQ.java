@@ -0,0 +1,171 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IndexedPassingVehicleQ.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+
+/**
+ * The same as {@link PassingVehicleQ}, but keeping the store indices of the vehicles in a binary heap, which compares
+ * the earliest link exit times directly in the arrays of the store.
+ * <p></p>
+ * The heap operations are the same as the ones of {@link java.util.PriorityQueue}, so that vehicles with equal earliest
+ * link exit times leave in the same order as from a {@link PassingVehicleQ}.
+ */
+public final class IndexedPassingVehicleQ extends IndexedVehicleQ {
+
+	private int[] heap = new int[11];
+	private int size = 0;
+
+	public IndexedPassingVehicleQ(QVehicleStore store) {
+		super(store);
+	}
+
+	@Override
+	public boolean offer(QVehicle e) {
+		int index = this.store.indexOf(e);
+		if (this.size == this.heap.length) {
+			this.heap = Arrays.copyOf(this.heap, 2 * this.heap.length);
+		}
+		int k = this.size++;
+		siftUp(k, index);
+		return true;
+	}
+
+	@Override
+	public void addFirst(QVehicle qveh) {
+		qveh.setEarliestLinkExitTime(Double.NEGATIVE_INFINITY);
+		offer(qveh);
+	}
+
+	@Override
+	int peekIndex() {
+		return this.size == 0 ? -1 : this.heap[0];
+	}
+
+	@Override
+	public QVehicle poll() {
+		if (this.size == 0) {
+			return null;
+		}
+		int first = this.heap[0];
+		int s = --this.size;
+		if (s != 0) {
+			siftDown(0, this.heap[s]);
+		}
+		return this.store.getVehicle(first);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		for (int i = 0; i < this.size; i++) {
+			if (this.store.getVehicle(this.heap[i]).equals(o)) {
+				removeAt(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void removeAt(int i) {
+		int s = --this.size;
+		if (s != i) {
+			int moved = this.heap[s];
+			siftDown(i, moved);
+			if (this.heap[i] == moved) {
+				siftUp(i, moved);
+			}
+		}
+	}
+
+	private void siftUp(int k, int index) {
+		double time = this.store.getEarliestLinkExitTime(index);
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			int e = this.heap[parent];
+			if (Double.compare(time, this.store.getEarliestLinkExitTime(e)) >= 0) {
+				break;
+			}
+			this.heap[k] = e;
+			k = parent;
+		}
+		this.heap[k] = index;
+	}
+
+	private void siftDown(int k, int index) {
+		double time = this.store.getEarliestLinkExitTime(index);
+		int half = this.size >>> 1;
+		while (k < half) {
+			int child = (k << 1) + 1;
+			int c = this.heap[child];
+			double childTime = this.store.getEarliestLinkExitTime(c);
+			int right = child + 1;
+			if (right < this.size) {
+				double rightTime = this.store.getEarliestLinkExitTime(this.heap[right]);
+				if (Double.compare(childTime, rightTime) > 0) {
+					child = right;
+					c = this.heap[child];
+					childTime = rightTime;
+				}
+			}
+			if (Double.compare(time, childTime) <= 0) {
+				break;
+			}
+			this.heap[k] = c;
+			k = child;
+		}
+		this.heap[k] = index;
+	}
+
+	@Override
+	public void clear() {
+		this.size = 0;
+	}
+
+	@Override
+	public Iterator<QVehicle> iterator() {
+		return new Iterator<QVehicle>() {
+			private int position = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.position < IndexedPassingVehicleQ.this.size;
+			}
+
+			@Override
+			public QVehicle next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return IndexedPassingVehicleQ.this.store.getVehicle(IndexedPassingVehicleQ.this.heap[this.position++]);
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+}
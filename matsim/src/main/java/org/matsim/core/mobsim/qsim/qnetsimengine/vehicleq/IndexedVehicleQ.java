@@ -0,0 +1,59 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IndexedVehicleQ.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import java.util.AbstractQueue;
+
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+
+/**
+ * A {@link VehicleQ} that only stores the indices of its vehicles in a {@link QVehicleStore}, so that it can
+ * be scanned without touching the vehicle objects.
+ */
+public abstract class IndexedVehicleQ extends AbstractQueue<QVehicle> implements VehicleQ<QVehicle> {
+
+	final QVehicleStore store;
+
+	IndexedVehicleQ(QVehicleStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * @return the store index of the first vehicle, or -1 if the queue is empty.
+	 */
+	abstract int peekIndex();
+
+	/**
+	 * @return the earliest link exit time of the first vehicle, or <code>Double.POSITIVE_INFINITY</code> if the queue
+	 * 		is empty.
+	 */
+	public final double peekEarliestLinkExitTime() {
+		int index = peekIndex();
+		return index < 0 ? Double.POSITIVE_INFINITY : this.store.getEarliestLinkExitTime(index);
+	}
+
+	@Override
+	public final QVehicle peek() {
+		int index = peekIndex();
+		return index < 0 ? null : this.store.getVehicle(index);
+	}
+
+}
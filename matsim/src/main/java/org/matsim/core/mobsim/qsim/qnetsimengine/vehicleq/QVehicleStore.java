@@ -0,0 +1,103 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QVehicleStore.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicleImpl;
+
+/**
+ * Keeps the fields of the vehicles that the link queues need most often in primitive arrays, indexed by a running
+ * vehicle index, so that the queues can store ints and read these fields without touching the vehicle objects.
+ * <p></p>
+ * A {@link QVehicleImpl} is added to the store when it is first put into a queue that uses it, and from then on
+ * reads and writes its earliest link exit time here.  The queues compare the earliest link exit times of their first
+ * vehicles in every time step.  The size in PCU and the flow efficiency are only needed when a vehicle enters or
+ * leaves a link, and are still taken from the vehicle type and the flow efficiency calculator then, so they may
+ * change during the simulation as with the vehicles kept as objects.
+ * <p></p>
+ * The arrays are split into pages that are never moved, and the directory of the pages is allocated once for the
+ * largest possible number of vehicles and never replaced.  So adding a vehicle, which happens under a lock, never
+ * changes anything that a thread reading another vehicle can see.  Reading does not need a lock, since a vehicle
+ * added by one thread of the netsim only reaches another thread after the next barrier between the threads.
+ */
+public final class QVehicleStore {
+
+	private static final int PAGE_BITS = 14;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private static final class Page {
+		final QVehicle[] vehicles = new QVehicle[PAGE_SIZE];
+		final double[] earliestLinkExitTimes = new double[PAGE_SIZE];
+	}
+
+	private final Page[] pages = new Page[1 << (Integer.SIZE - 1 - PAGE_BITS)];
+	private int size = 0;
+
+	/**
+	 * @return the index of the vehicle in this store, after adding it if necessary.
+	 * @throws IllegalArgumentException if the vehicle is no {@link QVehicleImpl}.
+	 */
+	public int indexOf(QVehicle vehicle) {
+		if (!(vehicle instanceof QVehicleImpl)) {
+			throw new IllegalArgumentException("The vehicle " + vehicle.getId() + " is a " + vehicle.getClass().getName()
+					+ ", but storing vehicles in primitive arrays only works for " + QVehicleImpl.class.getName() + ".");
+		}
+		return ((QVehicleImpl) vehicle).getIndexIn(this);
+	}
+
+	/**
+	 * Only to be called by {@link QVehicleImpl#getIndexIn(QVehicleStore)}; use {@link #indexOf(QVehicle)} otherwise.
+	 */
+	public synchronized int add(QVehicle vehicle, double earliestLinkExitTime) {
+		int index = this.size;
+		if (index == Integer.MAX_VALUE) {
+			throw new IllegalStateException("Cannot store more than " + Integer.MAX_VALUE + " vehicles.");
+		}
+		Page page = this.pages[index >>> PAGE_BITS];
+		if (page == null) {
+			page = new Page();
+			this.pages[index >>> PAGE_BITS] = page;
+		}
+		int offset = index & PAGE_MASK;
+		page.vehicles[offset] = vehicle;
+		page.earliestLinkExitTimes[offset] = earliestLinkExitTime;
+		this.size++;
+		return index;
+	}
+
+	public synchronized int size() {
+		return this.size;
+	}
+
+	public QVehicle getVehicle(int index) {
+		return this.pages[index >>> PAGE_BITS].vehicles[index & PAGE_MASK];
+	}
+
+	public double getEarliestLinkExitTime(int index) {
+		return this.pages[index >>> PAGE_BITS].earliestLinkExitTimes[index & PAGE_MASK];
+	}
+
+	public void setEarliestLinkExitTime(int index, double time) {
+		this.pages[index >>> PAGE_BITS].earliestLinkExitTimes[index & PAGE_MASK] = time;
+	}
+
+}
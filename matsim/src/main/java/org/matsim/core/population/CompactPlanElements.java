@@ -0,0 +1,409 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPlanElements.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.routes.GenericRouteImpl;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * The plan elements of a plan in a compact binary encoding, which replaces the activity, leg, route, coordinate and
+ * id list objects by a byte array:  ids are stored by their {@linkplain Id#index() index}, times and distances as
+ * variable-length integers where possible, and the links of network routes as differences of their indices.  Strings
+ * and non-empty attributes are kept by reference.  The encoded data is either kept in a byte array or, to free the
+ * heap from it, in a {@link CompactPlanElementsStore}.
+ * <p></p>
+ * Only the standard implementations of activities, legs and routes can be encoded, since their state is known
+ * completely; {@link #create(List)} returns <code>null</code> for all other plans.  Decoding creates new plan element
+ * objects with the same state.
+ */
+/* deliberately package */ final class CompactPlanElements {
+
+	private static final byte ACTIVITY = 0;
+	private static final byte LEG = 1;
+
+	private static final byte NO_ROUTE = 0;
+	private static final byte NETWORK_ROUTE = 1;
+	private static final byte GENERIC_ROUTE = 2;
+
+	private static final int HAS_COORD = 1;
+	private static final int HAS_Z = 2;
+	private static final int HAS_ATTRIBUTES = 4;
+
+	private static final byte NEGATIVE_INFINITY = 0;
+	private static final byte NAN = 1;
+	private static final byte WHOLE_NUMBER = 2;
+	private static final byte RAW_DOUBLE = 3;
+
+	private final byte[] data; // null if the data is in the store
+	private final CompactPlanElementsStore store;
+	private final long position;
+	private final int length;
+	private final Object[] objects; // strings and attributes, in the order of their first use
+
+	private CompactPlanElements(byte[] data, Object[] objects, CompactPlanElementsStore store) {
+		this.objects = objects;
+		this.length = data.length;
+		long position = store == null ? -1 : store.append(data);
+		if (position < 0) {
+			this.data = data;
+			this.store = null;
+			this.position = -1;
+		} else {
+			this.data = null;
+			this.store = store;
+			this.position = position;
+		}
+	}
+
+	/**
+	 * @param store the file to store the encoded data in, or <code>null</code> to keep it on the heap.
+	 * @return the encoded plan elements, or <code>null</code> if they contain non-standard implementations.
+	 */
+	static CompactPlanElements create(List<PlanElement> planElements, CompactPlanElementsStore store) {
+		Encoder encoder = new Encoder();
+		for (PlanElement pe : planElements) {
+			if (pe.getClass() == ActivityImpl.class) {
+				encoder.writeByte(ACTIVITY);
+				encodeActivity((ActivityImpl) pe, encoder);
+			} else if (pe.getClass() == LegImpl.class) {
+				Route route = ((LegImpl) pe).getRoute();
+				if (route != null && !RouteUtils.isLinkNetworkRouteImpl(route) && !(route instanceof GenericRouteImpl)) {
+					return null;
+				}
+				encoder.writeByte(LEG);
+				encodeLeg((LegImpl) pe, encoder);
+			} else {
+				return null;
+			}
+		}
+		return new CompactPlanElements(Arrays.copyOf(encoder.data, encoder.size), encoder.objects.toArray(), store);
+	}
+
+	private static void encodeActivity(ActivityImpl act, Encoder encoder) {
+		encoder.writeObject(act.getType());
+		Coord coord = act.getCoord();
+		int flags = (coord != null ? HAS_COORD : 0) | (coord != null && coord.hasZ() ? HAS_Z : 0)
+				| (act.getAttributes().isEmpty() ? 0 : HAS_ATTRIBUTES);
+		encoder.writeByte(flags);
+		encoder.writeDouble(act.getStartTime());
+		encoder.writeDouble(act.getEndTime());
+		encoder.writeDouble(act.getMaximumDuration());
+		if (coord != null) {
+			encoder.writeDouble(coord.getX());
+			encoder.writeDouble(coord.getY());
+			if (coord.hasZ()) {
+				encoder.writeDouble(coord.getZ());
+			}
+		}
+		encoder.writeId(act.getLinkId());
+		encoder.writeId(act.getFacilityId());
+		if ((flags & HAS_ATTRIBUTES) != 0) {
+			encoder.writeObject(act.getAttributes());
+		}
+	}
+
+	private static void encodeLeg(LegImpl leg, Encoder encoder) {
+		encoder.writeObject(leg.getMode());
+		encoder.writeByte(leg.getAttributes().isEmpty() ? 0 : HAS_ATTRIBUTES);
+		encoder.writeDouble(leg.getDepartureTime());
+		encoder.writeDouble(leg.getTravelTime());
+		if (!leg.getAttributes().isEmpty()) {
+			encoder.writeObject(leg.getAttributes());
+		}
+
+		Route route = leg.getRoute();
+		if (route == null) {
+			encoder.writeByte(NO_ROUTE);
+			return;
+		}
+		encoder.writeByte(route instanceof NetworkRoute ? NETWORK_ROUTE : GENERIC_ROUTE);
+		encoder.writeId(route.getStartLinkId());
+		encoder.writeId(route.getEndLinkId());
+		encoder.writeDouble(route.getDistance());
+		encoder.writeDouble(route.getTravelTime());
+		if (route instanceof NetworkRoute) {
+			NetworkRoute networkRoute = (NetworkRoute) route;
+			encoder.writeDouble(networkRoute.getTravelCost());
+			encoder.writeId(networkRoute.getVehicleId());
+			List<Id<Link>> linkIds = networkRoute.getLinkIds();
+			encoder.writeInt(linkIds.size());
+			int previous = route.getStartLinkId() == null ? 0 : route.getStartLinkId().index();
+			for (Id<Link> linkId : linkIds) {
+				int index = linkId.index();
+				int delta = index - previous;
+				encoder.writeInt((delta << 1) ^ (delta >> 31)); // zig-zag, so that small negative differences stay small
+				previous = index;
+			}
+		} else {
+			encoder.writeObject(route.getRouteDescription());
+		}
+	}
+
+	/**
+	 * @return new plan element objects with the encoded state.
+	 */
+	List<PlanElement> createPlanElements() {
+		Decoder decoder = new Decoder(getData(), this.objects);
+		ArrayList<PlanElement> planElements = new ArrayList<>();
+		while (decoder.position < this.length) {
+			if (decoder.readByte() == ACTIVITY) {
+				planElements.add(decodeActivity(decoder));
+			} else {
+				planElements.add(decodeLeg(decoder));
+			}
+		}
+		return planElements;
+	}
+
+	private static ActivityImpl decodeActivity(Decoder decoder) {
+		ActivityImpl act = new ActivityImpl((String) decoder.readObject());
+		int flags = decoder.readByte();
+		act.setStartTime(decoder.readDouble());
+		act.setEndTime(decoder.readDouble());
+		act.setMaximumDuration(decoder.readDouble());
+		if ((flags & HAS_COORD) != 0) {
+			double x = decoder.readDouble();
+			double y = decoder.readDouble();
+			act.setCoord((flags & HAS_Z) != 0 ? new Coord(x, y, decoder.readDouble()) : new Coord(x, y));
+		}
+		act.setLinkId(decoder.readId(Link.class));
+		act.setFacilityId(decoder.readId(ActivityFacility.class));
+		if ((flags & HAS_ATTRIBUTES) != 0) {
+			copyAttributes((Attributes) decoder.readObject(), act.getAttributes());
+		}
+		return act;
+	}
+
+	private static LegImpl decodeLeg(Decoder decoder) {
+		LegImpl leg = new LegImpl((String) decoder.readObject());
+		int flags = decoder.readByte();
+		leg.setDepartureTime(decoder.readDouble());
+		leg.setTravelTime(decoder.readDouble());
+		if ((flags & HAS_ATTRIBUTES) != 0) {
+			copyAttributes((Attributes) decoder.readObject(), leg.getAttributes());
+		}
+
+		byte routeType = decoder.readByte();
+		if (routeType == NO_ROUTE) {
+			return leg;
+		}
+		Id<Link> startLinkId = decoder.readId(Link.class);
+		Id<Link> endLinkId = decoder.readId(Link.class);
+		double distance = decoder.readDouble();
+		double travelTime = decoder.readDouble();
+		Route route;
+		if (routeType == NETWORK_ROUTE) {
+			double travelCost = decoder.readDouble();
+			Id<Vehicle> vehicleId = decoder.readId(Vehicle.class);
+			int linkCount = decoder.readInt();
+			List<Id<Link>> linkIds = new ArrayList<>(linkCount);
+			int previous = startLinkId == null ? 0 : startLinkId.index();
+			for (int i = 0; i < linkCount; i++) {
+				int zigZag = decoder.readInt();
+				previous += (zigZag >>> 1) ^ -(zigZag & 1);
+				linkIds.add(Id.get(previous, Link.class));
+			}
+			NetworkRoute networkRoute = RouteUtils.createLinkNetworkRouteImpl(startLinkId, linkIds, endLinkId);
+			networkRoute.setTravelCost(travelCost);
+			networkRoute.setVehicleId(vehicleId);
+			route = networkRoute;
+		} else {
+			route = new GenericRouteImpl(startLinkId, endLinkId);
+			route.setRouteDescription((String) decoder.readObject());
+		}
+		route.setDistance(distance);
+		route.setTravelTime(travelTime);
+		leg.setRoute(route);
+		return leg;
+	}
+
+	private static void copyAttributes(Attributes from, Attributes to) {
+		for (Map.Entry<String, Object> e : from.getAsMap().entrySet()) {
+			to.putAttribute(e.getKey(), e.getValue());
+		}
+	}
+
+	private byte[] getData() {
+		return this.data != null ? this.data : this.store.read(this.position, this.length);
+	}
+
+	/**
+	 * @return the same plan elements with their data in the given store, or on the heap if it is <code>null</code>.
+	 */
+	CompactPlanElements moveTo(CompactPlanElementsStore newStore) {
+		return new CompactPlanElements(getData(), this.objects, newStore);
+	}
+
+	/**
+	 * @return the number of bytes of the encoded data.
+	 */
+	int getDataLength() {
+		return this.length;
+	}
+
+	/**
+	 * @return the approximate number of bytes used on the heap, without the referenced objects.
+	 */
+	int getHeapSizeInBytes() {
+		return 40 + (this.data == null ? 0 : 16 + this.data.length) + 16 + 4 * this.objects.length;
+	}
+
+	boolean isInStore(CompactPlanElementsStore store) {
+		return this.store == store;
+	}
+
+	private static final class Encoder {
+		private byte[] data = new byte[64];
+		private int size = 0;
+		private final List<Object> objects = new ArrayList<>();
+
+		void writeByte(int b) {
+			if (this.size == this.data.length) {
+				this.data = Arrays.copyOf(this.data, this.data.length * 2);
+			}
+			this.data[this.size++] = (byte) b;
+		}
+
+		/**
+		 * Writes a non-negative int with 7 bits per byte.
+		 */
+		void writeInt(int value) {
+			writeLong(value & 0xffffffffL);
+		}
+
+		void writeLong(long value) {
+			while ((value & ~0x7fL) != 0) {
+				writeByte((int) ((value & 0x7f) | 0x80));
+				value >>>= 7;
+			}
+			writeByte((int) value);
+		}
+
+		void writeDouble(double value) {
+			if (value == Double.NEGATIVE_INFINITY) {
+				writeByte(NEGATIVE_INFINITY);
+			} else if (Double.isNaN(value)) {
+				writeByte(NAN);
+			} else if (value >= 0 && value < (1L << 53) && value == Math.rint(value) && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0)) {
+				// times in seconds and rounded distances, e.g. from the routers
+				writeByte(WHOLE_NUMBER);
+				writeLong((long) value);
+			} else {
+				writeByte(RAW_DOUBLE);
+				long bits = Double.doubleToRawLongBits(value);
+				for (int i = 0; i < 8; i++) {
+					writeByte((int) (bits >>> (8 * i)));
+				}
+			}
+		}
+
+		/**
+		 * Writes the index of the id plus one, or zero for <code>null</code>.
+		 */
+		void writeId(Id<?> id) {
+			writeInt(id == null ? 0 : id.index() + 1);
+		}
+
+		/**
+		 * Writes the index of the object in the list of objects, which is only extended for new objects.
+		 */
+		void writeObject(Object o) {
+			for (int i = 0; i < this.objects.size(); i++) {
+				if (this.objects.get(i) == o) {
+					writeInt(i);
+					return;
+				}
+			}
+			writeInt(this.objects.size());
+			this.objects.add(o);
+		}
+	}
+
+	private static final class Decoder {
+		private final byte[] data;
+		private final Object[] objects;
+		private int position = 0;
+
+		Decoder(byte[] data, Object[] objects) {
+			this.data = data;
+			this.objects = objects;
+		}
+
+		byte readByte() {
+			return this.data[this.position++];
+		}
+
+		int readInt() {
+			return (int) readLong();
+		}
+
+		long readLong() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = readByte();
+				value |= (long) (b & 0x7f) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		double readDouble() {
+			byte type = readByte();
+			if (type == NEGATIVE_INFINITY) {
+				return Double.NEGATIVE_INFINITY;
+			} else if (type == NAN) {
+				return Double.NaN;
+			} else if (type == WHOLE_NUMBER) {
+				return readLong();
+			}
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits |= (long) (readByte() & 0xff) << (8 * i);
+			}
+			return Double.longBitsToDouble(bits);
+		}
+
+		<T> Id<T> readId(Class<T> type) {
+			int index = readInt();
+			return index == 0 ? null : Id.get(index - 1, type);
+		}
+
+		Object readObject() {
+			return this.objects[readInt()];
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPlanElementsStore.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * An append-only file holding encoded plan elements, see {@link CompactPlanElements}, so that they do not occupy
+ * the Java heap.  The file is mapped into memory in chunks, and the operating system keeps the recently used parts in
+ * its page cache.
+ * <p></p>
+ * Records are never overwritten:  plans which are compacted again after having been accessed are appended anew, and
+ * the space of their old records is only reclaimed by moving all live records into a new store, see
+ * {@link NonSelectedPlansCompactor}.  Appending is synchronized, reading is possible from any number of threads.
+ * <p></p>
+ * The file is deleted when the store is closed, or at the latest when the JVM exits.
+ */
+/* deliberately package */ final class CompactPlanElementsStore implements AutoCloseable {
+
+	private static final Logger log = Logger.getLogger(CompactPlanElementsStore.class);
+
+	private static final int CHUNK_BITS = 28;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS; // 256 MB
+
+	private final Path file;
+	private final FileChannel channel;
+	private final List<ByteBuffer> chunks = new ArrayList<>();
+	private long size = 0;
+
+	CompactPlanElementsStore(Path file) {
+		this.file = file;
+		try {
+			this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		file.toFile().deleteOnExit();
+	}
+
+	/**
+	 * @return the position of the record, to be passed to {@link #read(long, int)}, or -1 if the data is too large to
+	 * 		be stored in the file.
+	 */
+	synchronized long append(byte[] data) {
+		if (data.length > CHUNK_SIZE) {
+			return -1;
+		}
+		int offset = (int) (this.size & (CHUNK_SIZE - 1));
+		if (this.size == (long) this.chunks.size() << CHUNK_BITS || offset + data.length > CHUNK_SIZE) {
+			// records do not span chunks, so start a new one
+			this.size = (long) this.chunks.size() << CHUNK_BITS;
+			offset = 0;
+			try {
+				this.chunks.add(this.channel.map(FileChannel.MapMode.READ_WRITE, this.size, CHUNK_SIZE));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		long position = this.size;
+		ByteBuffer chunk = this.chunks.get((int) (position >>> CHUNK_BITS)).duplicate();
+		chunk.position(offset);
+		chunk.put(data);
+		this.size += data.length;
+		return position;
+	}
+
+	byte[] read(long position, int length) {
+		ByteBuffer chunk;
+		synchronized (this) {
+			chunk = this.chunks.get((int) (position >>> CHUNK_BITS));
+		}
+		ByteBuffer buffer = chunk.duplicate();
+		buffer.position((int) (position & (CHUNK_SIZE - 1)));
+		byte[] data = new byte[length];
+		buffer.get(data);
+		return data;
+	}
+
+	/**
+	 * @return the number of bytes appended so far, including the unused ends of chunks.
+	 */
+	synchronized long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Closes and deletes the file.  The records of this store must not be read afterwards.
+	 */
+	@Override
+	public synchronized void close() {
+		// the chunks stay mapped until they are garbage collected, so drop them before deleting the file
+		this.chunks.clear();
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			Files.deleteIfExists(this.file);
+		} catch (IOException e) {
+			// e.g. on Windows, where a file cannot be deleted while parts of it are mapped
+			log.warn("Could not delete " + this.file + " yet, it will be deleted when the JVM exits: " + e.getMessage());
+		}
+	}
+}
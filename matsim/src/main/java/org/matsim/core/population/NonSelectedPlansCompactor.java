@@ -0,0 +1,126 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NonSelectedPlansCompactor.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.config.groups.PlansConfigGroup;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Compacts the plan elements of all non-selected plans after replanning, see {@link PlanImpl#compact(CompactPlanElementsStore)}.
+ * Plans which are already compacted are skipped, so each plan is only encoded again after it has been accessed.
+ * <p></p>
+ * If a {@linkplain PlansConfigGroup#getNonSelectedPlanElementsDirectory() directory} is configured, the encoded data is
+ * appended to a file there.  Once the file is more than twice as large as the data of all compacted plans, they are
+ * moved to a new file and the old one is deleted.  The last file is kept until the end of the JVM, since the plans
+ * are still read when they are written at the end of the run.  The plan objects themselves stay on the heap in
+ * either case.
+ */
+/* deliberately package */ final class NonSelectedPlansCompactor implements BeforeMobsimListener {
+
+	private static final Logger log = Logger.getLogger(NonSelectedPlansCompactor.class);
+
+	private static final long MIN_STORE_SIZE_TO_CLEAN_UP = 1L << 30;
+
+	@Inject private Population population;
+	@Inject private PlansConfigGroup plansConfigGroup;
+
+	private CompactPlanElementsStore store = null;
+
+	@Override
+	public void notifyBeforeMobsim(BeforeMobsimEvent event) {
+		long start = System.currentTimeMillis();
+		if (this.store == null && this.plansConfigGroup.getNonSelectedPlanElementsDirectory() != null) {
+			this.store = createStore();
+		}
+
+		int compacted = 0;
+		int notCompacted = 0;
+		long heapBytes = 0;
+		long storedBytes = 0;
+		for (Person person : this.population.getPersons().values()) {
+			Plan selectedPlan = person.getSelectedPlan();
+			for (Plan plan : person.getPlans()) {
+				if (!(plan instanceof PlanImpl)) {
+					continue;
+				}
+				PlanImpl planImpl = (PlanImpl) plan;
+				if (plan != selectedPlan && !planImpl.compact(this.store)) {
+					notCompacted++;
+				}
+				// selected plans may still be compacted if they have not been accessed since their selection
+				CompactPlanElements compactPlanElements = planImpl.getCompactPlanElements();
+				if (compactPlanElements != null) {
+					compacted++;
+					heapBytes += compactPlanElements.getHeapSizeInBytes();
+					if (this.store != null && compactPlanElements.isInStore(this.store)) {
+						storedBytes += compactPlanElements.getDataLength();
+					}
+				}
+			}
+		}
+		log.info("Compacted " + compacted + " plans into about " + (heapBytes / 1024 / 1024) + " MB on the heap and "
+				+ (storedBytes / 1024 / 1024) + " MB on disk in " + (System.currentTimeMillis() - start) + " ms; "
+				+ notCompacted + " plans contain non-standard plan elements and could not be compacted.");
+
+		if (this.store != null && this.store.getSize() > MIN_STORE_SIZE_TO_CLEAN_UP && this.store.getSize() > 2 * storedBytes) {
+			cleanUpStore();
+		}
+	}
+
+	private CompactPlanElementsStore createStore() {
+		try {
+			Path file = Files.createTempFile(Paths.get(this.plansConfigGroup.getNonSelectedPlanElementsDirectory()), "nonSelectedPlanElements", ".bin");
+			return new CompactPlanElementsStore(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void cleanUpStore() {
+		long start = System.currentTimeMillis();
+		long oldSize = this.store.getSize();
+		CompactPlanElementsStore newStore = createStore();
+		for (Person person : this.population.getPersons().values()) {
+			for (Plan plan : person.getPlans()) {
+				if (plan instanceof PlanImpl && ((PlanImpl) plan).getCompactPlanElements() != null) {
+					((PlanImpl) plan).moveCompactPlanElements(newStore);
+				}
+			}
+		}
+		this.store.close();
+		this.store = newStore;
+		log.info("Moved the compacted plans to a new file of " + (newStore.getSize() / 1024 / 1024) + " MB instead of "
+				+ (oldSize / 1024 / 1024) + " MB in " + (System.currentTimeMillis() - start) + " ms.");
+	}
+}
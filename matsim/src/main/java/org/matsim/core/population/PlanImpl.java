@@ -36,7 +36,10 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 
 /* deliberately package */  final class PlanImpl implements Plan {
 
-	private ArrayList<PlanElement> actsLegs = new ArrayList<>();
+	private List<PlanElement> actsLegs = new ArrayList<>();
+
+	// replaces actsLegs while the plan is compacted, see compact()
+	private CompactPlanElements compactActsLegs = null;
 
 	private Double score = null;
 	private Person person = null;
@@ -122,17 +125,51 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 
 	@Override
 	public final List<PlanElement> getPlanElements() {
+		if (this.compactActsLegs != null) {
+			this.actsLegs = this.compactActsLegs.createPlanElements();
+			this.compactActsLegs = null;
+		}
 		return this.actsLegs;
 	}
 
 	@Override
 	public final void addLeg(final Leg leg) {
-		this.actsLegs.add(leg);
+		getPlanElements().add(leg);
 	}
 
 	@Override
 	public final void addActivity(final Activity act) {
-		this.actsLegs.add(act);
+		getPlanElements().add(act);
+	}
+
+	/**
+	 * Replaces the plan elements by a compact encoding, from which they are re-created when they are accessed the
+	 * next time.  So code must not keep references to the plan elements of a plan that may be compacted.
+	 *
+	 * @param store the file to store the encoding in, or <code>null</code> to keep it on the heap.
+	 * @return <code>false</code> if the plan elements cannot be encoded, see {@link CompactPlanElements}.
+	 */
+	/* package */ final boolean compact(final CompactPlanElementsStore store) {
+		if (this.compactActsLegs == null) {
+			CompactPlanElements compacted = CompactPlanElements.create(this.actsLegs, store);
+			if (compacted == null) {
+				return false;
+			}
+			this.compactActsLegs = compacted;
+			this.actsLegs = null;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the encoded plan elements, or <code>null</code> if the plan is not compacted.
+	 */
+	/* package */ final CompactPlanElements getCompactPlanElements() {
+		return this.compactActsLegs;
+	}
+
+	/* package */ final void moveCompactPlanElements(final CompactPlanElementsStore store) {
+		this.compactActsLegs = this.compactActsLegs.moveTo(store);
 	}
 
 	@Override
@@ -0,0 +1,284 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationReaderMatsimV6.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Parallel implementation of the PopulationReaderMatsimV6. The parsing thread only
+ * tokenises the file: for every person it creates an empty person object, which is
+ * added to the population right away so that the order of the persons is preserved,
+ * and collects the tags of the person. The tags of several persons are handed over
+ * in batches to worker threads, which interpret them and fill in the plans and attributes.
+ * Elements outside of the persons (the population attributes) are handled by the
+ * parsing thread itself.
+ * <p></p>
+ * This approach is not compatible with population streaming. When this feature is
+ * activated, the non-parallel reader is used.
+ */
+/* deliberately package */ class ParallelPopulationReaderMatsimV6 extends PopulationReaderMatsimV6 {
+
+	private static final Logger log = Logger.getLogger(ParallelPopulationReaderMatsimV6.class);
+
+	/*package*/ static final int PERSONS_PER_BATCH = 100;
+	/*package*/ static final List<Tag> END_OF_INPUT = new ArrayList<>(0);
+
+	private final boolean isPopulationStreaming;
+	private final Scenario scenario;
+	private final int numThreads;
+	private final Map<Class<?>, AttributeConverter<?>> attributeConverters = new HashMap<>();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	private BlockingQueue<List<Tag>> queue = null;
+	private Thread[] threads = null;
+	private List<Tag> currentBatch = null;
+	private int personsInCurrentBatch = 0;
+	private boolean inPerson = false;
+
+	ParallelPopulationReaderMatsimV6(
+			final String inputCRS,
+			final String targetCRS,
+			final Scenario scenario) {
+		super(inputCRS, targetCRS, scenario);
+		this.scenario = scenario;
+
+		if (scenario.getPopulation() instanceof StreamingPopulationReader.StreamingPopulation) {
+			log.warn("Population streaming is activated - cannot use " + ParallelPopulationReaderMatsimV6.class.getName() + "!");
+			this.isPopulationStreaming = true;
+			this.numThreads = 1;
+		} else {
+			this.isPopulationStreaming = false;
+			this.numThreads = Math.max(1, scenario.getConfig().global().getNumberOfThreads());
+		}
+	}
+
+	@Override
+	public void putAttributeConverter(final Class<?> clazz, final AttributeConverter<?> converter) {
+		super.putAttributeConverter(clazz, converter);
+		this.attributeConverters.put(clazz, converter);
+	}
+
+	@Override
+	public void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		super.putAttributeConverters(converters);
+		this.attributeConverters.putAll(converters);
+	}
+
+	/*
+	 * The threads are only started with the first person, as the coordinate transformation
+	 * may still be changed by the attributes of the population.
+	 */
+	private void initThreads() {
+		log.info("Start parallel population reading with " + this.numThreads + " threads...");
+		this.queue = new ArrayBlockingQueue<>(4 * this.numThreads);
+		this.threads = new Thread[this.numThreads];
+		for (int i = 0; i < this.numThreads; i++) {
+			ParallelPopulationReaderMatsimV6Runner runner =
+					new ParallelPopulationReaderMatsimV6Runner(
+							this.coordinateTransformation,
+							this.scenario,
+							this.attributeConverters,
+							this.queue,
+							this.failure);
+
+			Thread thread = new Thread(runner);
+			thread.setDaemon(true);
+			thread.setName(ParallelPopulationReaderMatsimV6Runner.class.getSimpleName() + i);
+			this.threads[i] = thread;
+			thread.start();
+		}
+		this.currentBatch = new ArrayList<>();
+	}
+
+	@Override
+	public void startTag(final String name, final Attributes atts, final Stack<String> context) {
+		// if population streaming is activated, use non-parallel reader
+		if (this.isPopulationStreaming) {
+			super.startTag(name, atts, context);
+			return;
+		}
+
+		if (PERSON.equals(name)) {
+			if (this.threads == null) {
+				initThreads();
+			}
+			Person person = PopulationUtils.getFactory().createPerson(Id.create(atts.getValue("id"), Person.class));
+			this.scenario.getPopulation().addPerson(person);
+			this.currentBatch.add(new PersonTag(person));
+			this.inPerson = true;
+		} else if (this.inPerson) {
+			// We have to create copies of the attributes because the object is re-used by the parser!
+			this.currentBatch.add(new StartTag(name, new AttributesImpl(atts)));
+		} else {
+			super.startTag(name, atts, context);
+		}
+	}
+
+	@Override
+	public void endTag(final String name, final String content, final Stack<String> context) {
+		// if population streaming is activated, use non-parallel reader
+		if (this.isPopulationStreaming) {
+			super.endTag(name, content, context);
+			return;
+		}
+
+		if (this.inPerson) {
+			this.currentBatch.add(new EndTag(name, content));
+			if (PERSON.equals(name)) {
+				this.inPerson = false;
+				this.personsInCurrentBatch++;
+				if (this.personsInCurrentBatch == PERSONS_PER_BATCH) {
+					handOver(this.currentBatch);
+					this.currentBatch = new ArrayList<>();
+					this.personsInCurrentBatch = 0;
+				}
+			}
+		} else if (POPULATION.equals(name)) {
+			if (this.threads != null) {
+				finishThreads();
+				log.info("Finished parallel population reading...");
+			}
+			super.endTag(name, content, context);
+		} else {
+			super.endTag(name, content, context);
+		}
+	}
+
+	private void finishThreads() {
+		if (!this.currentBatch.isEmpty()) {
+			handOver(this.currentBatch);
+		}
+		this.currentBatch = null;
+
+		// signal the threads that they should end parsing
+		for (int i = 0; i < this.numThreads; i++) {
+			handOver(END_OF_INPUT);
+		}
+
+		// wait for the threads to finish
+		try {
+			for (Thread thread : this.threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		checkForFailure();
+	}
+
+	/*
+	 * The parsing thread failed, so the end of the input will never be handed over.  Stops
+	 * the threads instead, which would otherwise wait for the next batch for good.
+	 */
+	@Override
+	protected void abortParsing() {
+		if (this.threads == null) {
+			return;
+		}
+		for (Thread thread : this.threads) {
+			thread.interrupt();
+		}
+		try {
+			for (Thread thread : this.threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		this.currentBatch = null;
+	}
+
+	private void handOver(final List<Tag> batch) {
+		try {
+			this.queue.put(batch);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		checkForFailure();
+	}
+
+	/*
+	 * Re-throws the first exception from one of the worker threads in the parsing thread,
+	 * so that it is reported the same way as with the non-parallel reader.
+	 */
+	private void checkForFailure() {
+		Throwable t = this.failure.get();
+		if (t != null) {
+			for (Thread thread : this.threads) {
+				thread.interrupt();
+			}
+			if (t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			}
+			if (t instanceof Error) {
+				throw (Error) t;
+			}
+			throw new RuntimeException(t);
+		}
+	}
+
+	/*package*/ static abstract class Tag {
+	}
+
+	/*package*/ static final class PersonTag extends Tag {
+		final Person person;
+
+		PersonTag(final Person person) {
+			this.person = person;
+		}
+	}
+
+	/*package*/ static final class StartTag extends Tag {
+		final String name;
+		final Attributes atts;
+
+		StartTag(final String name, final Attributes atts) {
+			this.name = name;
+			this.atts = atts;
+		}
+	}
+
+	/*package*/ static final class EndTag extends Tag {
+		final String name;
+		final String content;
+
+		EndTag(final String name, final String content) {
+			this.name = name;
+			this.content = content;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationReaderMatsimV6Runner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.population.io.ParallelPopulationReaderMatsimV6.EndTag;
+import org.matsim.core.population.io.ParallelPopulationReaderMatsimV6.PersonTag;
+import org.matsim.core.population.io.ParallelPopulationReaderMatsimV6.StartTag;
+import org.matsim.core.population.io.ParallelPopulationReaderMatsimV6.Tag;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.utils.objectattributes.AttributeConverter;
+
+/**
+ * Runnable used by ParallelPopulationReaderMatsimV6.
+ * Interprets the batches of person tags taken from a BlockingQueue which is filled
+ * by the parsing thread. The persons have already been added to the population
+ * by the parsing thread, so they are only filled in here.
+ */
+/* deliberately package */ class ParallelPopulationReaderMatsimV6Runner extends PopulationReaderMatsimV6 implements Runnable {
+
+	private final BlockingQueue<List<Tag>> queue;
+	private final AtomicReference<Throwable> failure;
+
+	// replaces the context maintained by the xml parser, persons are always nested in the population
+	private final Stack<String> context = new Stack<>();
+
+	ParallelPopulationReaderMatsimV6Runner(
+			final CoordinateTransformation coordinateTransformation,
+			final Scenario scenario,
+			final Map<Class<?>, AttributeConverter<?>> attributeConverters,
+			final BlockingQueue<List<Tag>> queue,
+			final AtomicReference<Throwable> failure) {
+		super(null, null, scenario);
+		this.coordinateTransformation = coordinateTransformation;
+		putAttributeConverters(attributeConverters);
+		this.queue = queue;
+		this.failure = failure;
+		this.context.push(POPULATION);
+	}
+
+	@Override
+	public void run() {
+		/*
+		 * The thread will go on with the parsing until the end of the input is signalled.
+		 * After an exception, the remaining batches are only taken from the queue, so that
+		 * the parsing thread does not block before it notices the failure.
+		 */
+		while (true) {
+			List<Tag> tags;
+			try {
+				tags = this.queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (tags == ParallelPopulationReaderMatsimV6.END_OF_INPUT) {
+				return;
+			}
+			if (this.failure.get() != null) {
+				continue;
+			}
+			try {
+				process(tags);
+			} catch (Throwable t) {
+				this.failure.compareAndSet(null, t);
+			}
+		}
+	}
+
+	private void process(final List<Tag> tags) {
+		for (Tag tag : tags) {
+			if (tag instanceof PersonTag) {
+				this.currperson = ((PersonTag) tag).person;
+				this.context.push(PERSON);
+			} else if (tag instanceof StartTag) {
+				StartTag startTag = (StartTag) tag;
+				this.startTag(startTag.name, startTag.atts, this.context);
+				this.context.push(startTag.name);
+			} else {
+				EndTag endTag = (EndTag) tag;
+				this.context.pop();
+				/*
+				 * If it is a person tag, we reset the current person. We do not hand the
+				 * tag over to the super class because the person has already been added
+				 * to the population.
+				 */
+				if (PERSON.equals(endTag.name)) {
+					this.currperson = null;
+				} else {
+					this.endTag(endTag.name, endTag.content, this.context);
+				}
+			}
+		}
+	}
+}
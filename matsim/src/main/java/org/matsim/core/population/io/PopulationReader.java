@@ -101,6 +101,13 @@ public final class PopulationReader extends MatsimXmlParser {
 		this.delegate.endTag(name, content, context);
 	}
 
+	@Override
+	protected void abortParsing() {
+		if (this.delegate instanceof ParallelPopulationReaderMatsimV6) {
+			((ParallelPopulationReaderMatsimV6) this.delegate).abortParsing();
+		}
+	}
+
 	@Override
 	protected void setDoctype(final String doctype) {
 		super.setDoctype(doctype);
@@ -114,11 +121,19 @@ public final class PopulationReader extends MatsimXmlParser {
 
 		switch ( doctype ) {
 			case POPULATION_V6:
-				this.delegate =
-						new PopulationReaderMatsimV6(
-						        inputCRS,
-						        targetCRS,
-								this.scenario);
+				if (this.scenario.getConfig().global().getNumberOfThreads() > 1) {
+					this.delegate =
+							new ParallelPopulationReaderMatsimV6(
+									inputCRS,
+									targetCRS,
+									this.scenario);
+				} else {
+					this.delegate =
+							new PopulationReaderMatsimV6(
+									inputCRS,
+									targetCRS,
+									this.scenario);
+				}
 				((PopulationReaderMatsimV6) delegate).putAttributeConverters( attributeConverters );
 				log.info("using population_v6-reader.");
 				break;
@@ -268,6 +268,14 @@ public class RouteUtils {
 		return new GenericRouteImpl(startLinkId, endLinkId);
 	}
 
+	/**
+	 * @return <code>true</code> if the route was created by one of the <code>createLinkNetworkRouteImpl</code> methods,
+	 * 		i.e. contains no state beyond that of a {@link NetworkRoute}.
+	 */
+	public static boolean isLinkNetworkRouteImpl(Route route) {
+		return route instanceof LinkNetworkRouteImpl;
+	}
+
 	public static NetworkRoute createLinkNetworkRouteImpl(Id<Link> startLinkId, Id<Link> endLinkId) {
 		return new LinkNetworkRouteImpl(startLinkId, endLinkId);
 	}
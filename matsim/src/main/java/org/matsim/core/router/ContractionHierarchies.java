@@ -0,0 +1,217 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchies.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.priorityqueue.BinaryMinHeap;
+import org.matsim.core.router.util.ArrayRoutingNetworkNode;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A bidirectional Dijkstra search on a {@link ContractionHierarchy}, going upwards in the hierarchy from both the
+ * from- and the to-node.
+ * <p></p>
+ * The path is searched with the link costs of the time bin of the start time, see
+ * {@link ContractionHierarchiesFactory}.  The travel time and cost of the path found are then computed link by link
+ * with the given travel time and disutility, just like in {@link Dijkstra}.
+ * <p></p>
+ * Like the other routers, instances are not thread-safe; they are cheap to create and share the hierarchy and its
+ * customizations.
+ */
+public final class ContractionHierarchies implements LeastCostPathCalculator {
+
+	private static final Logger log = Logger.getLogger(ContractionHierarchies.class);
+
+	private final ContractionHierarchy hierarchy;
+	/*package (for tests)*/ final ContractionHierarchiesFactory.TimeBinCustomizations customizations;
+	private final TravelDisutility travelCosts;
+	private final TravelTime travelTimes;
+
+	private final Search forward;
+	private final Search backward;
+	private int iteration = 0;
+
+	ContractionHierarchies(ContractionHierarchy hierarchy, ContractionHierarchiesFactory.TimeBinCustomizations customizations,
+			TravelDisutility travelCosts, TravelTime travelTimes) {
+		this.hierarchy = hierarchy;
+		this.customizations = customizations;
+		this.travelCosts = travelCosts;
+		this.travelTimes = travelTimes;
+		this.forward = new Search(hierarchy.nodes.length);
+		this.backward = new Search(hierarchy.nodes.length);
+	}
+
+	@Override
+	public Path calcLeastCostPath(Node fromNode, Node toNode, double starttime, Person person, Vehicle vehicle) {
+		ArrayRoutingNetworkNode from = getRoutingNode(fromNode);
+		ArrayRoutingNetworkNode to = getRoutingNode(toNode);
+		List<Link> links = new ArrayList<>();
+
+		if (from != to) {
+			ContractionHierarchy.Customization customization = this.customizations.getCustomization(starttime);
+			int meetingNode = search(customization, from, to);
+			if (meetingNode < 0) {
+				log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ".  Is the network connected?");
+				log.warn("This will now return null, but it may fail later with a null pointer exception.");
+				return null;
+			}
+			List<Link> upwardLinks = new ArrayList<>();
+			for (int node = meetingNode; this.forward.parentEdge[node] >= 0; node = this.hierarchy.lowerNode[this.forward.parentEdge[node]]) {
+				int edge = this.forward.parentEdge[node];
+				int size = upwardLinks.size();
+				customization.unpack(edge, true, upwardLinks);
+				reverse(upwardLinks, size);
+			}
+			for (int i = upwardLinks.size() - 1; i >= 0; i--) {
+				links.add(upwardLinks.get(i));
+			}
+			for (int node = meetingNode; this.backward.parentEdge[node] >= 0; node = this.hierarchy.lowerNode[this.backward.parentEdge[node]]) {
+				customization.unpack(this.backward.parentEdge[node], false, links);
+			}
+		}
+
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(from.getNode());
+		double time = starttime;
+		double cost = 0.0;
+		for (Link link : links) {
+			nodes.add(link.getToNode());
+			cost += this.travelCosts.getLinkTravelDisutility(link, time, person, vehicle);
+			time += this.travelTimes.getLinkTravelTime(link, time, person, vehicle);
+		}
+		return new Path(nodes, links, time - starttime, cost);
+	}
+
+	private ArrayRoutingNetworkNode getRoutingNode(Node node) {
+		ArrayRoutingNetworkNode routingNode = (ArrayRoutingNetworkNode) this.hierarchy.routingNetwork.getNodes().get(node.getId());
+		if (routingNode == null) {
+			throw new IllegalArgumentException("The node " + node.getId() + " is not part of the network stored by "
+					+ getClass().getSimpleName() + ": the validity of the results cannot be guaranteed. Aborting!");
+		}
+		return routingNode;
+	}
+
+	private static void reverse(List<Link> links, int from) {
+		for (int i = from, j = links.size() - 1; i < j; i++, j--) {
+			links.set(i, links.set(j, links.get(i)));
+		}
+	}
+
+	/**
+	 * @return the highest node of the cheapest path, or -1 if there is none.
+	 */
+	private int search(ContractionHierarchy.Customization customization, ArrayRoutingNetworkNode from, ArrayRoutingNetworkNode to) {
+		this.iteration++;
+		if (this.iteration == Integer.MAX_VALUE) {
+			// reset the stamps, otherwise nodes of very old searches would look as if they belonged to this one
+			Arrays.fill(this.forward.visited, 0);
+			Arrays.fill(this.backward.visited, 0);
+			this.iteration = 1;
+		}
+		this.forward.start(from, this.iteration);
+		this.backward.start(to, this.iteration);
+		double bestCost = Double.POSITIVE_INFINITY;
+		int meetingNode = -1;
+		while (true) {
+			double forwardCost = this.forward.peekCost();
+			double backwardCost = this.backward.peekCost();
+			if (Math.min(forwardCost, backwardCost) >= bestCost) {
+				return meetingNode;
+			}
+			Search search = forwardCost <= backwardCost ? this.forward : this.backward;
+			Search other = search == this.forward ? this.backward : this.forward;
+			int node = search.settleNext(this.hierarchy, search == this.forward ? customization.upCost : customization.downCost);
+			if (other.visited[node] == this.iteration) {
+				double cost = search.cost[node] + other.cost[node];
+				if (cost < bestCost) {
+					bestCost = cost;
+					meetingNode = node;
+				}
+			}
+		}
+	}
+
+	/**
+	 * One direction of the search, only going upwards in the hierarchy.
+	 */
+	private static final class Search {
+		final BinaryMinHeap<ArrayRoutingNetworkNode> heap;
+		final int[] visited;
+		final double[] cost;
+		final int[] parentEdge;
+		private int iteration;
+
+		Search(int numberOfNodes) {
+			this.heap = new BinaryMinHeap<>(numberOfNodes);
+			this.visited = new int[numberOfNodes];
+			this.cost = new double[numberOfNodes];
+			this.parentEdge = new int[numberOfNodes];
+		}
+
+		void start(ArrayRoutingNetworkNode node, int iteration) {
+			this.iteration = iteration;
+			this.heap.reset();
+			int index = node.getArrayIndex();
+			this.visited[index] = iteration;
+			this.cost[index] = 0.0;
+			this.parentEdge[index] = -1;
+			this.heap.add(node, 0.0);
+		}
+
+		double peekCost() {
+			ArrayRoutingNetworkNode node = this.heap.peek();
+			return node == null ? Double.POSITIVE_INFINITY : this.cost[node.getArrayIndex()];
+		}
+
+		int settleNext(ContractionHierarchy hierarchy, float[] edgeCosts) {
+			int node = this.heap.poll().getArrayIndex();
+			double nodeCost = this.cost[node];
+			for (int edge = hierarchy.firstUpEdge[node]; edge < hierarchy.firstUpEdge[node + 1]; edge++) {
+				double newCost = nodeCost + edgeCosts[edge];
+				if (newCost == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				int higher = hierarchy.higherNode[edge];
+				if (this.visited[higher] != this.iteration) {
+					this.visited[higher] = this.iteration;
+					this.cost[higher] = newCost;
+					this.parentEdge[higher] = edge;
+					this.heap.add(hierarchy.nodes[higher], newCost);
+				} else if (newCost < this.cost[higher]) {
+					this.cost[higher] = newCost;
+					this.parentEdge[higher] = edge;
+					this.heap.decreaseKey(hierarchy.nodes[higher], newCost);
+				}
+			}
+			return node;
+		}
+	}
+}
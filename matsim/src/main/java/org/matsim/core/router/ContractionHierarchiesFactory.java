@@ -0,0 +1,192 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.router.costcalculators.RandomizingTimeDistanceTravelDisutilityFactory;
+import org.matsim.core.router.util.ArrayRoutingNetworkFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.RandomizedTravelDisutility;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link ContractionHierarchies} routers.
+ * <p></p>
+ * The {@link ContractionHierarchy} of a network is computed once and kept for the whole run.  Its link costs are
+ * customized per time bin of the travel time calculator, lazily when the first route starting in that bin is
+ * requested, and shared by all routers created for the same network and travel time.  Since the travel times change
+ * from iteration to iteration, all customizations are dropped at the start of every iteration; outside of the
+ * controler, call {@link #invalidateCustomizations()} after changing the travel times.
+ * <p></p>
+ * Customizing means one pass over the links and the lower triangles of the hierarchy, which is much cheaper than
+ * computing the hierarchy again.  The link costs are customized with the travel disutility
+ * {@link RandomizedTravelDisutility#getTravelDisutilityWithoutRandomization() without its random part}, so the
+ * randomization, e.g. of {@link org.matsim.core.router.costcalculators.RandomizingTimeDistanceTravelDisutility}, is
+ * not considered when searching the path, but in its cost.  Routers share the customizations if their travel
+ * disutilities without the random part are {@link Object#equals(Object) equal}, i.e. the same instance unless the
+ * class defines equality by its parameters, as the one of {@link RandomizingTimeDistanceTravelDisutilityFactory}
+ * does.  Otherwise, the routers created with new instances of the same travel disutility in every thread customize
+ * the link costs once per thread.  Apart from the random part, the travel disutilities must neither depend on the
+ * person nor be random.  Only one time bin is customized at a time, so the travel disutility used for customizing
+ * does not need to be thread-safe.
+ */
+@Singleton
+public class ContractionHierarchiesFactory implements LeastCostPathCalculatorFactory, IterationStartsListener {
+
+	private final ArrayRoutingNetworkFactory routingNetworkFactory = new ArrayRoutingNetworkFactory();
+	private final Map<Network, ContractionHierarchy> hierarchies = new HashMap<>();
+	private final Map<CustomizationKey, TimeBinCustomizations> customizations = new HashMap<>();
+
+	private final int timeBinSize;
+	private final int numberOfTimeBins;
+
+	@Inject
+	public ContractionHierarchiesFactory(final TravelTimeCalculatorConfigGroup travelTimeCalculatorConfigGroup) {
+		this(travelTimeCalculatorConfigGroup.getTraveltimeBinSize(), travelTimeCalculatorConfigGroup.getMaxTime());
+	}
+
+	/**
+	 * @param timeBinSize the time span in seconds for which the link costs are assumed to be constant.
+	 * @param maxTime the time after which the link costs of the last time bin are used.
+	 */
+	public ContractionHierarchiesFactory(final int timeBinSize, final int maxTime) {
+		this.timeBinSize = timeBinSize;
+		this.numberOfTimeBins = maxTime / timeBinSize + 1;
+	}
+
+	@Override
+	public synchronized LeastCostPathCalculator createPathCalculator(final Network network,
+			final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		ContractionHierarchy hierarchy = this.hierarchies.get(network);
+		if (hierarchy == null) {
+			hierarchy = new ContractionHierarchy(this.routingNetworkFactory.createRoutingNetwork(network));
+			this.hierarchies.put(network, hierarchy);
+		}
+
+		TravelDisutility customizationCosts = travelCosts instanceof RandomizedTravelDisutility
+				? ((RandomizedTravelDisutility) travelCosts).getTravelDisutilityWithoutRandomization() : travelCosts;
+		CustomizationKey key = new CustomizationKey(network, travelTimes, customizationCosts);
+		TimeBinCustomizations timeBinCustomizations = this.customizations.get(key);
+		if (timeBinCustomizations == null) {
+			timeBinCustomizations = new TimeBinCustomizations(hierarchy, customizationCosts, this.timeBinSize, this.numberOfTimeBins);
+			this.customizations.put(key, timeBinCustomizations);
+		}
+
+		return new ContractionHierarchies(hierarchy, timeBinCustomizations, travelCosts, travelTimes);
+	}
+
+	/**
+	 * Lets all routers customize the link costs again, keeping the hierarchies.  Routers created afterwards get new
+	 * customizations, so the ones of travel times and disutilities which are not used anymore can be collected.
+	 */
+	public synchronized void invalidateCustomizations() {
+		for (TimeBinCustomizations timeBinCustomizations : this.customizations.values()) {
+			timeBinCustomizations.invalidate();
+		}
+		this.customizations.clear();
+	}
+
+	@Override
+	public void notifyIterationStarts(IterationStartsEvent event) {
+		invalidateCustomizations();
+	}
+
+	/**
+	 * The customizations of one hierarchy for all time bins, computed when first needed.
+	 */
+	static final class TimeBinCustomizations {
+		private final ContractionHierarchy hierarchy;
+		private final TravelDisutility travelDisutility;
+		private final int timeBinSize;
+		private final ContractionHierarchy.Customization[] customizations;
+		private final int[] generations;
+		private int generation = 0;
+
+		TimeBinCustomizations(ContractionHierarchy hierarchy, TravelDisutility travelDisutility, int timeBinSize, int numberOfTimeBins) {
+			this.hierarchy = hierarchy;
+			this.travelDisutility = travelDisutility;
+			this.timeBinSize = timeBinSize;
+			this.customizations = new ContractionHierarchy.Customization[numberOfTimeBins];
+			this.generations = new int[numberOfTimeBins];
+		}
+
+		synchronized void invalidate() {
+			this.generation++;
+		}
+
+		ContractionHierarchy.Customization getCustomization(double time) {
+			int bin = (int) Math.max(0, Math.min(this.customizations.length - 1, Math.floor(time / this.timeBinSize)));
+			// (customized while holding the lock of all bins, so the travel disutility is only used by one thread at a time)
+			synchronized (this) {
+				ContractionHierarchy.Customization customization = this.customizations[bin];
+				if (customization == null) {
+					customization = new ContractionHierarchy.Customization(this.hierarchy);
+					this.customizations[bin] = customization;
+					this.generations[bin] = this.generation - 1;
+				}
+				if (this.generations[bin] != this.generation) {
+					customization.customize(this.travelDisutility, bin * (double) this.timeBinSize);
+					this.generations[bin] = this.generation;
+				}
+				return customization;
+			}
+		}
+	}
+
+	private static final class CustomizationKey {
+		private final Network network;
+		private final TravelTime travelTime;
+		private final TravelDisutility travelDisutility;
+
+		CustomizationKey(Network network, TravelTime travelTime, TravelDisutility travelDisutility) {
+			this.network = network;
+			this.travelTime = travelTime;
+			this.travelDisutility = travelDisutility;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof CustomizationKey)) {
+				return false;
+			}
+			CustomizationKey other = (CustomizationKey) obj;
+			return this.network == other.network && this.travelTime == other.travelTime
+					&& this.travelDisutility.equals(other.travelDisutility);
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 31 * System.identityHashCode(this.network) + System.identityHashCode(this.travelTime);
+			return 31 * hash + this.travelDisutility.hashCode();
+		}
+	}
+}
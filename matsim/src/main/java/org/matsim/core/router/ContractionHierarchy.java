@@ -0,0 +1,355 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchy.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.router.util.ArrayRoutingNetwork;
+import org.matsim.core.router.util.ArrayRoutingNetworkNode;
+import org.matsim.core.router.util.RoutingNetworkLink;
+import org.matsim.core.router.util.RoutingNetworkNode;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * The metric-independent part of a customizable contraction hierarchy on top of an {@link ArrayRoutingNetwork}.
+ * <p></p>
+ * The nodes are contracted in a nested dissection order, see {@link NestedDissection}, adding shortcuts between all
+ * remaining neighbors of a contracted node, without any witness search.  The resulting shortcuts
+ * therefore do not depend on the link costs, and a {@link Customization} computes the costs of all edges of the
+ * hierarchy for one set of link costs in a single pass over the lower triangles of the edges.
+ * <p></p>
+ * Every edge connects a lower and a higher ranked node and has a cost in both directions.  The edges are stored per
+ * lower node (by array index of the {@link ArrayRoutingNetworkNode}), sorted by the rank of the higher node.
+ */
+final class ContractionHierarchy {
+
+	private static final Logger log = Logger.getLogger(ContractionHierarchy.class);
+
+	final ArrayRoutingNetwork routingNetwork;
+	final ArrayRoutingNetworkNode[] nodes;
+	final int[] rank;
+	final int[] order;
+
+	// edges, by lower node
+	final int[] firstUpEdge;
+	final int[] lowerNode;
+	final int[] higherNode;
+	// edges, by higher node
+	private final int[] firstDownEdge;
+	private final int[] downEdges;
+
+	private final Link[] links;
+	private final int[] linkEdge;
+	private final boolean[] linkUpward;
+	// links, by edge
+	private final int[] firstEdgeLink;
+	private final int[] edgeLinks;
+
+	ContractionHierarchy(ArrayRoutingNetwork routingNetwork) {
+		this.routingNetwork = routingNetwork;
+		int numberOfNodes = routingNetwork.getNodes().size();
+		this.nodes = new ArrayRoutingNetworkNode[numberOfNodes];
+		for (RoutingNetworkNode node : routingNetwork.getNodes().values()) {
+			ArrayRoutingNetworkNode arrayNode = (ArrayRoutingNetworkNode) node;
+			this.nodes[arrayNode.getArrayIndex()] = arrayNode;
+		}
+
+		// undirected adjacency, without loops and parallel links
+		IntList[] neighbors = new IntList[numberOfNodes];
+		for (int i = 0; i < numberOfNodes; i++) {
+			neighbors[i] = new IntList();
+		}
+		List<Link> linkList = new ArrayList<>();
+		for (ArrayRoutingNetworkNode node : this.nodes) {
+			for (RoutingNetworkLink link : node.getOutLinksArray()) {
+				int from = node.getArrayIndex();
+				int to = ((ArrayRoutingNetworkNode) link.getToNode()).getArrayIndex();
+				if (from != to) {
+					neighbors[from].add(to);
+					neighbors[to].add(from);
+					linkList.add(link.getLink());
+				}
+			}
+		}
+		int[][] adjacency = new int[numberOfNodes][];
+		for (int i = 0; i < numberOfNodes; i++) {
+			adjacency[i] = neighbors[i].toSortedSet();
+			neighbors[i] = null;
+		}
+
+		this.order = new NestedDissection(this.nodes, adjacency).computeOrder();
+		this.rank = new int[numberOfNodes];
+		for (int r = 0; r < numberOfNodes; r++) {
+			this.rank[this.order[r]] = r;
+		}
+
+		/*
+		 * Contract the nodes in this order, connecting all higher neighbors of a contracted node.  It is sufficient to
+		 * connect the lowest of them to all others, since they become its higher neighbors which it connects in turn.
+		 */
+		IntList[] higherNeighbors = new IntList[numberOfNodes];
+		for (int i = 0; i < numberOfNodes; i++) {
+			higherNeighbors[i] = new IntList();
+			for (int neighbor : adjacency[i]) {
+				if (this.rank[neighbor] > this.rank[i]) {
+					higherNeighbors[i].add(neighbor);
+				}
+			}
+		}
+		adjacency = null;
+		this.firstUpEdge = new int[numberOfNodes + 1];
+		int[][] sortedHigherNeighbors = new int[numberOfNodes][];
+		int numberOfEdges = 0;
+		for (int r = 0; r < numberOfNodes; r++) {
+			int node = this.order[r];
+			int[] higher = higherNeighbors[node].toSortedSet();
+			higherNeighbors[node] = null;
+			// by rank instead of array index
+			for (int i = 0; i < higher.length; i++) {
+				higher[i] = this.rank[higher[i]];
+			}
+			Arrays.sort(higher);
+			for (int i = 0; i < higher.length; i++) {
+				higher[i] = this.order[higher[i]];
+			}
+			if (higher.length > 1) {
+				IntList parent = higherNeighbors[higher[0]];
+				for (int i = 1; i < higher.length; i++) {
+					parent.add(higher[i]);
+				}
+			}
+			sortedHigherNeighbors[node] = higher;
+			numberOfEdges += higher.length;
+		}
+
+		// edges, grouped by lower node and sorted by the rank of the higher node
+		this.lowerNode = new int[numberOfEdges];
+		this.higherNode = new int[numberOfEdges];
+		int edge = 0;
+		for (int node = 0; node < numberOfNodes; node++) {
+			this.firstUpEdge[node] = edge;
+			for (int higher : sortedHigherNeighbors[node]) {
+				this.lowerNode[edge] = node;
+				this.higherNode[edge] = higher;
+				edge++;
+			}
+			sortedHigherNeighbors[node] = null;
+		}
+		this.firstUpEdge[numberOfNodes] = edge;
+
+		this.links = linkList.toArray(new Link[linkList.size()]);
+		this.linkEdge = new int[this.links.length];
+		this.linkUpward = new boolean[this.links.length];
+		for (int l = 0; l < this.links.length; l++) {
+			int from = ((ArrayRoutingNetworkNode) routingNetwork.getNodes().get(this.links[l].getFromNode().getId())).getArrayIndex();
+			int to = ((ArrayRoutingNetworkNode) routingNetwork.getNodes().get(this.links[l].getToNode().getId())).getArrayIndex();
+			this.linkUpward[l] = this.rank[from] < this.rank[to];
+			this.linkEdge[l] = this.linkUpward[l] ? findEdge(from, to) : findEdge(to, from);
+		}
+		this.firstEdgeLink = new int[numberOfEdges + 1];
+		this.edgeLinks = groupBy(this.linkEdge, this.firstEdgeLink);
+		this.firstDownEdge = new int[numberOfNodes + 1];
+		this.downEdges = groupBy(this.higherNode, this.firstDownEdge);
+		log.info("contraction hierarchy with " + numberOfNodes + " nodes, " + this.links.length + " links and "
+				+ numberOfEdges + " edges created.");
+	}
+
+	int getNumberOfEdges() {
+		return this.lowerNode.length;
+	}
+
+	/**
+	 * @param first filled with the position of the first element of every group in the returned array, plus one
+	 * 			additional entry with its length.
+	 * @return the indices of <code>groups</code>, ordered by their group.
+	 */
+	private static int[] groupBy(int[] groups, int[] first) {
+		for (int group : groups) {
+			first[group + 1]++;
+		}
+		for (int g = 1; g < first.length; g++) {
+			first[g] += first[g - 1];
+		}
+		int[] next = Arrays.copyOf(first, first.length - 1);
+		int[] grouped = new int[groups.length];
+		for (int i = 0; i < groups.length; i++) {
+			grouped[next[groups[i]]++] = i;
+		}
+		return grouped;
+	}
+
+	/**
+	 * @return the edge between the given nodes, the first one being the lower ranked one, or -1.
+	 */
+	int findEdge(int lower, int higher) {
+		int higherRank = this.rank[higher];
+		int low = this.firstUpEdge[lower];
+		int high = this.firstUpEdge[lower + 1] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midRank = this.rank[this.higherNode[mid]];
+			if (midRank < higherRank) {
+				low = mid + 1;
+			} else if (midRank > higherRank) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The costs of all links and edges of a {@link ContractionHierarchy} for one set of link costs.  A customization
+	 * can be repeated for new link costs, re-using its arrays.
+	 */
+	static final class Customization {
+
+		/**
+		 * Since the hierarchy is shared by all persons, person-specific parts of the travel disutility are not
+		 * considered; this person only exists for travel disutilities which cannot do without one.
+		 */
+		private static final Person CUSTOMIZATION_PERSON = PopulationUtils.getFactory().createPerson(
+				Id.createPersonId("contractionHierarchyCustomization"));
+
+		final ContractionHierarchy hierarchy;
+		private final float[] linkCost;
+		/**
+		 * Cost from the lower to the higher node of an edge.
+		 */
+		final float[] upCost;
+		/**
+		 * Cost from the higher to the lower node of an edge.
+		 */
+		final float[] downCost;
+
+		Customization(ContractionHierarchy hierarchy) {
+			this.hierarchy = hierarchy;
+			this.linkCost = new float[hierarchy.links.length];
+			this.upCost = new float[hierarchy.getNumberOfEdges()];
+			this.downCost = new float[hierarchy.getNumberOfEdges()];
+		}
+
+		/**
+		 * Computes the costs of all edges for the link costs at the given time.
+		 */
+		void customize(TravelDisutility travelDisutility, double time) {
+			ContractionHierarchy h = this.hierarchy;
+			Arrays.fill(this.upCost, Float.POSITIVE_INFINITY);
+			Arrays.fill(this.downCost, Float.POSITIVE_INFINITY);
+			for (int l = 0; l < h.links.length; l++) {
+				float cost = (float) travelDisutility.getLinkTravelDisutility(h.links[l], time, CUSTOMIZATION_PERSON, null);
+				this.linkCost[l] = cost;
+				float[] edgeCost = h.linkUpward[l] ? this.upCost : this.downCost;
+				edgeCost[h.linkEdge[l]] = Math.min(edgeCost[h.linkEdge[l]], cost);
+			}
+
+			// lower triangles: for the nodes in the order of contraction, all pairs of higher neighbors are connected
+			for (int r = 0; r < h.order.length; r++) {
+				int via = h.order[r];
+				int last = h.firstUpEdge[via + 1];
+				for (int e1 = h.firstUpEdge[via]; e1 < last; e1++) {
+					int lower = h.higherNode[e1];
+					int e3 = h.firstUpEdge[lower];
+					for (int e2 = e1 + 1; e2 < last; e2++) {
+						int higher = h.higherNode[e2];
+						// both lists are sorted by rank, so the edge from lower to higher is found by advancing e3
+						while (h.higherNode[e3] != higher) {
+							e3++;
+						}
+						this.upCost[e3] = Math.min(this.upCost[e3], this.downCost[e1] + this.upCost[e2]);
+						this.downCost[e3] = Math.min(this.downCost[e3], this.downCost[e2] + this.upCost[e1]);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Appends the links of the given edge, in the given direction, to the list.  The links and lower triangles
+		 * making up the edge are found again by their costs, which is cheaper than storing them for every edge.
+		 */
+		void unpack(int edge, boolean upward, List<Link> links) {
+			ContractionHierarchy h = this.hierarchy;
+			float cost = upward ? this.upCost[edge] : this.downCost[edge];
+			for (int i = h.firstEdgeLink[edge]; i < h.firstEdgeLink[edge + 1]; i++) {
+				int l = h.edgeLinks[i];
+				if (h.linkUpward[l] == upward && this.linkCost[l] == cost) {
+					links.add(h.links[l]);
+					return;
+				}
+			}
+			int lower = h.lowerNode[edge];
+			int higher = h.higherNode[edge];
+			for (int i = h.firstDownEdge[lower]; i < h.firstDownEdge[lower + 1]; i++) {
+				int lowerEdge = h.downEdges[i];
+				int higherEdge = h.findEdge(h.lowerNode[lowerEdge], higher);
+				if (higherEdge < 0) {
+					continue;
+				}
+				if (upward && this.downCost[lowerEdge] + this.upCost[higherEdge] == cost) {
+					unpack(lowerEdge, false, links);
+					unpack(higherEdge, true, links);
+					return;
+				} else if (!upward && this.downCost[higherEdge] + this.upCost[lowerEdge] == cost) {
+					unpack(higherEdge, false, links);
+					unpack(lowerEdge, true, links);
+					return;
+				}
+			}
+			throw new IllegalStateException("cannot unpack the edge between node " + h.nodes[lower].getId() + " and node "
+					+ h.nodes[higher].getId() + "; has the customization been changed while routing?");
+		}
+	}
+
+	/**
+	 * A minimal growable list of ints.
+	 */
+	private static final class IntList {
+		int[] values = new int[4];
+		int size = 0;
+
+		void add(int value) {
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, this.size * 2);
+			}
+			this.values[this.size++] = value;
+		}
+
+		int[] toSortedSet() {
+			int[] sorted = Arrays.copyOf(this.values, this.size);
+			Arrays.sort(sorted);
+			int distinct = 0;
+			for (int i = 0; i < sorted.length; i++) {
+				if (i == 0 || sorted[i] != sorted[i - 1]) {
+					sorted[distinct++] = sorted[i];
+				}
+			}
+			return Arrays.copyOf(sorted, distinct);
+		}
+	}
+}
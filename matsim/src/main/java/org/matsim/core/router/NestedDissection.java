@@ -0,0 +1,183 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NestedDissection.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.router.util.ArrayRoutingNetworkNode;
+
+/**
+ * Orders the nodes of a network for a {@link ContractionHierarchy} by geometric nested dissection: the nodes are split
+ * at the median of their coordinates along the axis, out of four, which needs the fewest separator nodes to
+ * disconnect both halves.  The separator nodes get the highest ranks, and both halves are ordered recursively.
+ * <p></p>
+ * Since road networks have small separators along such lines, the hierarchy gets much fewer shortcuts than with
+ * local heuristics like the minimum degree.
+ */
+final class NestedDissection {
+
+	private static final int[][] DIRECTIONS = { { 1, 0 }, { 0, 1 }, { 1, 1 }, { 1, -1 } };
+
+	private final double[] x;
+	private final double[] y;
+	private final int[][] adjacency;
+	/**
+	 * The side of the current split each node is on, valid while <code>side[node] &gt;= sideOffset</code>.
+	 */
+	private final int[] side;
+	private int sideOffset = 0;
+
+	private final int[] order;
+	private int nextRank;
+
+	/**
+	 * @param adjacency the undirected neighbors of every node, by array index.
+	 */
+	NestedDissection(ArrayRoutingNetworkNode[] nodes, int[][] adjacency) {
+		this.x = new double[nodes.length];
+		this.y = new double[nodes.length];
+		for (ArrayRoutingNetworkNode node : nodes) {
+			Coord coord = node.getCoord();
+			this.x[node.getArrayIndex()] = coord.getX();
+			this.y[node.getArrayIndex()] = coord.getY();
+		}
+		this.adjacency = adjacency;
+		this.side = new int[nodes.length];
+		this.order = new int[nodes.length];
+	}
+
+	/**
+	 * @return the array indices of the nodes, from the lowest to the highest rank.
+	 */
+	int[] computeOrder() {
+		int[] all = new int[this.order.length];
+		for (int i = 0; i < all.length; i++) {
+			all[i] = i;
+		}
+		this.nextRank = this.order.length;
+		dissect(all);
+		return this.order;
+	}
+
+	/**
+	 * Ranks the given nodes, filling the order from the end.
+	 */
+	private void dissect(int[] part) {
+		while (part.length > 2) {
+			int[] bestFirst = null;
+			int[] bestSecond = null;
+			int[] bestSeparator = null;
+			for (int[] direction : DIRECTIONS) {
+				int[][] split = split(part, direction);
+				if (bestSeparator == null || split[2].length < bestSeparator.length) {
+					bestFirst = split[0];
+					bestSecond = split[1];
+					bestSeparator = split[2];
+				}
+			}
+			for (int i = bestSeparator.length - 1; i >= 0; i--) {
+				this.order[--this.nextRank] = bestSeparator[i];
+			}
+			// recurse into the smaller half, iterate over the larger one
+			if (bestFirst.length < bestSecond.length) {
+				dissect(bestFirst);
+				part = bestSecond;
+			} else {
+				dissect(bestSecond);
+				part = bestFirst;
+			}
+		}
+		for (int i = part.length - 1; i >= 0; i--) {
+			this.order[--this.nextRank] = part[i];
+		}
+	}
+
+	/**
+	 * @return the first half, the second half and the separator, i.e. the nodes of the smaller boundary.
+	 */
+	private int[][] split(int[] part, int[] direction) {
+		long[] keys = new long[part.length];
+		for (int i = 0; i < part.length; i++) {
+			int node = part[i];
+			float projection = (float) (direction[0] * this.x[node] + direction[1] * this.y[node]);
+			keys[i] = ((long) sortable(projection) << 32) | i;
+		}
+		Arrays.sort(keys);
+
+		int half = part.length / 2;
+		int firstSide = this.sideOffset;
+		int secondSide = this.sideOffset + 1;
+		this.sideOffset += 2;
+		for (int i = 0; i < keys.length; i++) {
+			this.side[part[(int) keys[i]]] = i < half ? firstSide : secondSide;
+		}
+
+		// the boundary nodes of both halves
+		int firstBoundary = 0;
+		int secondBoundary = 0;
+		boolean[] boundary = new boolean[part.length];
+		for (int i = 0; i < part.length; i++) {
+			int node = part[i];
+			int ownSide = this.side[node];
+			int otherSide = ownSide == firstSide ? secondSide : firstSide;
+			for (int neighbor : this.adjacency[node]) {
+				if (this.side[neighbor] == otherSide) {
+					boundary[i] = true;
+					if (ownSide == firstSide) {
+						firstBoundary++;
+					} else {
+						secondBoundary++;
+					}
+					break;
+				}
+			}
+		}
+
+		int separatorSide = firstBoundary <= secondBoundary ? firstSide : secondSide;
+		int[] first = new int[part.length];
+		int[] second = new int[part.length];
+		int[] separator = new int[Math.min(firstBoundary, secondBoundary)];
+		int firstSize = 0;
+		int secondSize = 0;
+		int separatorSize = 0;
+		for (int i = 0; i < keys.length; i++) {
+			int index = (int) keys[i];
+			int node = part[index];
+			if (boundary[index] && this.side[node] == separatorSide) {
+				separator[separatorSize++] = node;
+			} else if (this.side[node] == firstSide) {
+				first[firstSize++] = node;
+			} else {
+				second[secondSize++] = node;
+			}
+		}
+		return new int[][] { Arrays.copyOf(first, firstSize), Arrays.copyOf(second, secondSize), separator };
+	}
+
+	/**
+	 * @return an int with the same order as the float.
+	 */
+	private static int sortable(float value) {
+		int bits = Float.floatToIntBits(value);
+		return bits >= 0 ? bits : bits ^ Integer.MAX_VALUE;
+	}
+}
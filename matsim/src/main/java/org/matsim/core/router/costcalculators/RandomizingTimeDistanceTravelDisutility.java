@@ -23,6 +23,7 @@ package org.matsim.core.router.costcalculators;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.router.util.RandomizedTravelDisutility;
 import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.vehicles.Vehicle;
@@ -32,7 +33,7 @@ import java.util.Random;
 /**
  * @author mrieser
  */
-final class RandomizingTimeDistanceTravelDisutility implements TravelDisutility {
+final class RandomizingTimeDistanceTravelDisutility implements RandomizedTravelDisutility {
 
 	private final TravelTime timeCalculator;
 	private final double marginalCostOfTime;
@@ -103,4 +104,37 @@ final class RandomizingTimeDistanceTravelDisutility implements TravelDisutility
 		return (link.getLength() / link.getFreespeed()) * this.marginalCostOfTime + this.marginalCostOfDistance * link.getLength();
 	}
 
+	@Override
+	public TravelDisutility getTravelDisutilityWithoutRandomization() {
+		return new RandomizingTimeDistanceTravelDisutility(this.timeCalculator, this.marginalCostOfTime, this.marginalCostOfDistance, 1., 0.);
+	}
+
+	/**
+	 * Instances without randomization are equal if they give the same costs, i.e. have the same travel time and marginal
+	 * costs, so that routers which pre-compute the link costs can share them.  Randomizing instances are only equal to
+	 * themselves.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (this.sigma != 0. || !(obj instanceof RandomizingTimeDistanceTravelDisutility)) {
+			return false;
+		}
+		RandomizingTimeDistanceTravelDisutility other = (RandomizingTimeDistanceTravelDisutility) obj;
+		return other.sigma == 0. && this.timeCalculator == other.timeCalculator
+				&& Double.compare(this.marginalCostOfTime, other.marginalCostOfTime) == 0
+				&& Double.compare(this.marginalCostOfDistance, other.marginalCostOfDistance) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		if (this.sigma != 0.) {
+			return System.identityHashCode(this);
+		}
+		int hash = 31 * System.identityHashCode(this.timeCalculator) + Double.hashCode(this.marginalCostOfTime);
+		return 31 * hash + Double.hashCode(this.marginalCostOfDistance);
+	}
+
 }
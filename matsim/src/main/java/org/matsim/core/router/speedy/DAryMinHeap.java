@@ -0,0 +1,136 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DAryMinHeap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.Arrays;
+
+/**
+ * A d-ary min-heap of int elements, e.g. node indices, with double costs and decrease-key, without any objects.
+ * A fan-out of 4 or so makes the heap shallower and more cache friendly than a binary heap.
+ */
+public final class DAryMinHeap {
+
+	private final int[] heap;
+	private final double[] costs;
+	private final int[] positions;
+	private final int d;
+	private int size = 0;
+
+	/**
+	 * @param maxElement the elements must be smaller than this.
+	 */
+	public DAryMinHeap(int maxElement, int d) {
+		this.heap = new int[maxElement];
+		this.costs = new double[maxElement];
+		this.positions = new int[maxElement];
+		Arrays.fill(this.positions, -1);
+		this.d = d;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public boolean contains(int element) {
+		return this.positions[element] >= 0;
+	}
+
+	public void clear() {
+		for (int i = 0; i < this.size; i++) {
+			this.positions[this.heap[i]] = -1;
+		}
+		this.size = 0;
+	}
+
+	/**
+	 * Adds the element, or decreases its cost if it is already contained.
+	 */
+	public void insertOrDecrease(int element, double cost) {
+		int position = this.positions[element];
+		if (position < 0) {
+			position = this.size++;
+		} else if (cost >= this.costs[position]) {
+			return;
+		}
+		siftUp(position, element, cost);
+	}
+
+	/**
+	 * @return the cost of the smallest element; only valid if the heap is not empty.
+	 */
+	public double peekCost() {
+		return this.costs[0];
+	}
+
+	public int poll() {
+		int element = this.heap[0];
+		this.positions[element] = -1;
+		this.size--;
+		if (this.size > 0) {
+			siftDown(0, this.heap[this.size], this.costs[this.size]);
+		}
+		return element;
+	}
+
+	private void siftUp(int position, int element, double cost) {
+		while (position > 0) {
+			int parent = (position - 1) / this.d;
+			if (this.costs[parent] <= cost) {
+				break;
+			}
+			set(position, this.heap[parent], this.costs[parent]);
+			position = parent;
+		}
+		set(position, element, cost);
+	}
+
+	private void siftDown(int position, int element, double cost) {
+		while (true) {
+			int firstChild = position * this.d + 1;
+			if (firstChild >= this.size) {
+				break;
+			}
+			int lastChild = Math.min(firstChild + this.d, this.size);
+			int minChild = firstChild;
+			for (int child = firstChild + 1; child < lastChild; child++) {
+				if (this.costs[child] < this.costs[minChild]) {
+					minChild = child;
+				}
+			}
+			if (this.costs[minChild] >= cost) {
+				break;
+			}
+			set(position, this.heap[minChild], this.costs[minChild]);
+			position = minChild;
+		}
+		set(position, element, cost);
+	}
+
+	private void set(int position, int element, double cost) {
+		this.heap[position] = element;
+		this.costs[position] = cost;
+		this.positions[element] = position;
+	}
+}
@@ -0,0 +1,129 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ManyToManyCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Calculates the travel times and costs from many origins to many destinations, e.g. for zone-to-zone skims or
+ * accessibilities, with one search per origin which stops as soon as all destinations are found.  The origins are
+ * distributed over several threads, which share the {@link SpeedyGraph} and the resulting {@link ManyToManyMatrix}.
+ * <p></p>
+ * The travel times and costs are those of the least-cost paths departing at the given time, with the same
+ * time-dependent link costs as {@link SpeedyDijkstra}.  The travel time and disutility must be thread-safe.
+ * <p></p>
+ * Example:<br>
+ * <code>
+ * ManyToManyCalculator calculator = new ManyToManyCalculator(new SpeedyGraph(network), travelTime, travelDisutility, 4);<br>
+ * ManyToManyMatrix matrix = calculator.calculate(zoneNodes, zoneNodes, 8 * 3600);<br>
+ * double travelTime = matrix.getTravelTime(0, 1);
+ * </code>
+ */
+public final class ManyToManyCalculator {
+
+	private static final Logger log = Logger.getLogger(ManyToManyCalculator.class);
+
+	private final SpeedyGraph graph;
+	private final TravelTime travelTime;
+	private final TravelDisutility travelDisutility;
+	private final int numberOfThreads;
+
+	public ManyToManyCalculator(SpeedyGraph graph, TravelTime travelTime, TravelDisutility travelDisutility, int numberOfThreads) {
+		this.graph = graph;
+		this.travelTime = travelTime;
+		this.travelDisutility = travelDisutility;
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	public ManyToManyMatrix calculate(List<Node> origins, List<Node> destinations, double departureTime) {
+		return calculate(origins, destinations, departureTime, null, null);
+	}
+
+	/**
+	 * @param person passed to the travel time and disutility, may be <code>null</code>.
+	 * @param vehicle passed to the travel time and disutility, may be <code>null</code>.
+	 * @throws IllegalArgumentException if there are more pairs of origins and destinations than fit into an array.
+	 */
+	public ManyToManyMatrix calculate(List<Node> origins, List<Node> destinations, double departureTime,
+			Person person, Vehicle vehicle) {
+		int[] originNodes = new int[origins.size()];
+		for (int i = 0; i < originNodes.length; i++) {
+			originNodes[i] = this.graph.getIndex(origins.get(i));
+		}
+		int[] destinationNodes = new int[destinations.size()];
+		boolean[] isDestination = new boolean[this.graph.getNodeCount()];
+		int destinationNodeCount = 0;
+		for (int i = 0; i < destinationNodes.length; i++) {
+			destinationNodes[i] = this.graph.getIndex(destinations.get(i));
+			if (!isDestination[destinationNodes[i]]) {
+				isDestination[destinationNodes[i]] = true;
+				destinationNodeCount++;
+			}
+		}
+
+		ManyToManyMatrix matrix = new ManyToManyMatrix(new ArrayList<>(origins), new ArrayList<>(destinations));
+		if (originNodes.length == 0 || destinationNodeCount == 0) {
+			return matrix;
+		}
+
+		int nOfThreads = Math.max(1, Math.min(this.numberOfThreads, originNodes.length));
+		log.info("Calculating the travel times from " + originNodes.length + " origins to " + destinationNodes.length
+				+ " destinations using " + nOfThreads + " threads...");
+		long start = System.currentTimeMillis();
+		AtomicInteger nextOrigin = new AtomicInteger();
+		final int finalDestinationNodeCount = destinationNodeCount;
+		ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < nOfThreads; t++) {
+				futures.add(executor.submit(() -> {
+					OneToManySearch search = new OneToManySearch(this.graph, this.travelTime, this.travelDisutility,
+							person, vehicle, destinationNodes, isDestination, finalDestinationNodeCount);
+					for (int row = nextOrigin.getAndIncrement(); row < originNodes.length; row = nextOrigin.getAndIncrement()) {
+						search.search(originNodes[row], departureTime, matrix, row);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			executor.shutdown();
+		}
+		log.info("done in " + (System.currentTimeMillis() - start) + " ms");
+		return matrix;
+	}
+}
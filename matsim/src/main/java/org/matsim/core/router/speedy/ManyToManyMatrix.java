@@ -0,0 +1,78 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ManyToManyMatrix.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * The travel times and costs between all origins and destinations of a {@link ManyToManyCalculator}, stored row by
+ * row in float arrays.  Destinations which cannot be reached from an origin have infinite travel times and costs.
+ */
+public final class ManyToManyMatrix {
+
+	private final List<Node> origins;
+	private final List<Node> destinations;
+	private final float[] travelTimes;
+	private final float[] travelCosts;
+
+	ManyToManyMatrix(List<Node> origins, List<Node> destinations) {
+		this.origins = Collections.unmodifiableList(origins);
+		this.destinations = Collections.unmodifiableList(destinations);
+		int size;
+		try {
+			size = Math.multiplyExact(origins.size(), destinations.size());
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("The matrix of " + origins.size() + " origins and " + destinations.size()
+					+ " destinations has more entries than fit into an array, calculate it in several parts.", e);
+		}
+		this.travelTimes = new float[size];
+		this.travelCosts = new float[size];
+	}
+
+	void set(int origin, int destination, double travelTime, double travelCost) {
+		int index = origin * this.destinations.size() + destination;
+		this.travelTimes[index] = (float) travelTime;
+		this.travelCosts[index] = (float) travelCost;
+	}
+
+	/**
+	 * @param origin the index of the origin in {@link #getOrigins()}.
+	 * @param destination the index of the destination in {@link #getDestinations()}.
+	 */
+	public double getTravelTime(int origin, int destination) {
+		return this.travelTimes[origin * this.destinations.size() + destination];
+	}
+
+	public double getTravelCost(int origin, int destination) {
+		return this.travelCosts[origin * this.destinations.size() + destination];
+	}
+
+	public List<Node> getOrigins() {
+		return this.origins;
+	}
+
+	public List<Node> getDestinations() {
+		return this.destinations;
+	}
+}
@@ -0,0 +1,133 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * OneToManySearch.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A Dijkstra from one origin which stops as soon as all destinations are settled, with its search state kept like in
+ * {@link SpeedyDijkstra}.  One instance per thread, used by {@link ManyToManyCalculator}.
+ */
+final class OneToManySearch {
+
+	private final SpeedyGraph graph;
+	private final TravelTime travelTime;
+	private final TravelDisutility travelDisutility;
+	private final Person person;
+	private final Vehicle vehicle;
+
+	// shared by all searches of a calculation, and only read
+	private final int[] destinations;
+	private final boolean[] isDestination;
+	private final int destinationNodeCount;
+
+	private final double[] data; // cost and time of every node, interleaved
+	private final int[] iterationIds;
+	private int currentIteration = Integer.MIN_VALUE;
+	private final DAryMinHeap pq;
+
+	OneToManySearch(SpeedyGraph graph, TravelTime travelTime, TravelDisutility travelDisutility, Person person,
+			Vehicle vehicle, int[] destinations, boolean[] isDestination, int destinationNodeCount) {
+		this.graph = graph;
+		this.travelTime = travelTime;
+		this.travelDisutility = travelDisutility;
+		this.person = person;
+		this.vehicle = vehicle;
+		this.destinations = destinations;
+		this.isDestination = isDestination;
+		this.destinationNodeCount = destinationNodeCount;
+		this.data = new double[graph.getNodeCount() * 2];
+		this.iterationIds = new int[graph.getNodeCount()];
+		Arrays.fill(this.iterationIds, Integer.MIN_VALUE);
+		this.pq = new DAryMinHeap(graph.getNodeCount(), 6);
+	}
+
+	/**
+	 * Searches from the origin and stores the travel times and costs to all destinations in the given row of the
+	 * matrix.
+	 */
+	void search(int originNode, double departureTime, ManyToManyMatrix matrix, int row) {
+		this.currentIteration++;
+		if (this.currentIteration == Integer.MAX_VALUE) {
+			// reset the stamps, otherwise nodes of very old searches would look as if they belonged to this one
+			Arrays.fill(this.iterationIds, Integer.MIN_VALUE);
+			this.currentIteration = Integer.MIN_VALUE + 1;
+		}
+		this.pq.clear();
+
+		setData(originNode, 0, departureTime);
+		this.pq.insertOrDecrease(originNode, 0);
+
+		int remainingDestinations = this.destinationNodeCount;
+		while (!this.pq.isEmpty()) {
+			int nodeIdx = this.pq.poll();
+			if (this.isDestination[nodeIdx]) {
+				remainingDestinations--;
+				if (remainingDestinations == 0) {
+					break;
+				}
+			}
+			double currTime = getTime(nodeIdx);
+			double currCost = getCost(nodeIdx);
+			for (int l = this.graph.getOutLinksStart(nodeIdx); l < this.graph.getOutLinksEnd(nodeIdx); l++) {
+				Link link = this.graph.getLink(l);
+				int toNode = this.graph.getToNode(l);
+				double newTime = currTime + this.travelTime.getLinkTravelTime(link, currTime, this.person, this.vehicle);
+				double newCost = currCost + this.travelDisutility.getLinkTravelDisutility(link, currTime, this.person, this.vehicle);
+				if (this.iterationIds[toNode] != this.currentIteration
+						|| (newCost < getCost(toNode) && this.pq.contains(toNode))) {
+					setData(toNode, newCost, newTime);
+					this.pq.insertOrDecrease(toNode, newCost);
+				}
+			}
+		}
+
+		// all destinations reached are settled now, either because all were found or because the queue is empty
+		for (int column = 0; column < this.destinations.length; column++) {
+			int node = this.destinations[column];
+			if (this.iterationIds[node] == this.currentIteration) {
+				matrix.set(row, column, getTime(node) - departureTime, getCost(node));
+			} else {
+				matrix.set(row, column, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+			}
+		}
+	}
+
+	private double getCost(int nodeIndex) {
+		return this.data[nodeIndex * 2];
+	}
+
+	private double getTime(int nodeIndex) {
+		return this.data[nodeIndex * 2 + 1];
+	}
+
+	private void setData(int nodeIndex, double cost, double time) {
+		this.data[nodeIndex * 2] = cost;
+		this.data[nodeIndex * 2 + 1] = time;
+		this.iterationIds[nodeIndex] = this.currentIteration;
+	}
+}
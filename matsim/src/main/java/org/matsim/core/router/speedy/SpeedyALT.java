@@ -0,0 +1,205 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpeedyALT.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A* with landmarks (ALT) on a shared {@link SpeedyGraph}, using the lower bounds of a {@link SpeedyALTData}.
+ * <p></p>
+ * For every search, the {@value #MAX_ACTIVE_LANDMARKS} landmarks which give the best estimate between the start and
+ * the end node are used.  The search state is kept like in {@link SpeedyDijkstra}.  Not thread-safe.
+ */
+public class SpeedyALT implements LeastCostPathCalculator {
+
+	private static final Logger log = Logger.getLogger(SpeedyALT.class);
+
+	static final int MAX_ACTIVE_LANDMARKS = 4;
+
+	private final SpeedyGraph graph;
+	private final SpeedyALTData altData;
+	private final TravelTime travelTime;
+	private final TravelDisutility travelDisutility;
+
+	private final double[] data; // cost, time and estimated remaining cost of every node, interleaved
+	private final int[] comingFrom;
+	private final int[] iterationIds;
+	private int currentIteration = Integer.MIN_VALUE;
+	private final DAryMinHeap pq;
+
+	private final int[] activeLandmarks;
+	private int activeLandmarkCount;
+
+	public SpeedyALT(SpeedyALTData altData, TravelTime travelTime, TravelDisutility travelDisutility) {
+		this.graph = altData.getGraph();
+		this.altData = altData;
+		this.travelTime = travelTime;
+		this.travelDisutility = travelDisutility;
+		this.data = new double[this.graph.getNodeCount() * 3];
+		this.comingFrom = new int[this.graph.getNodeCount()];
+		this.iterationIds = new int[this.graph.getNodeCount()];
+		Arrays.fill(this.iterationIds, Integer.MIN_VALUE);
+		this.pq = new DAryMinHeap(this.graph.getNodeCount(), 6);
+		this.activeLandmarks = new int[Math.min(MAX_ACTIVE_LANDMARKS, altData.getLandmarkCount())];
+	}
+
+	@Override
+	public Path calcLeastCostPath(Node startNode, Node endNode, double startTime, Person person, Vehicle vehicle) {
+		int startNodeIndex = this.graph.getIndex(startNode);
+		int endNodeIndex = this.graph.getIndex(endNode);
+
+		this.currentIteration++;
+		if (this.currentIteration == Integer.MAX_VALUE) {
+			// reset the stamps, otherwise nodes of very old searches would look as if they belonged to this one
+			Arrays.fill(this.iterationIds, Integer.MIN_VALUE);
+			this.currentIteration = Integer.MIN_VALUE + 1;
+		}
+		this.pq.clear();
+		initializeActiveLandmarks(startNodeIndex, endNodeIndex);
+
+		double estimate = estimateRemainingCost(startNodeIndex, endNodeIndex);
+		setData(startNodeIndex, 0, startTime, estimate, -1);
+		this.pq.insertOrDecrease(startNodeIndex, estimate);
+
+		boolean foundEndNode = false;
+		while (!this.pq.isEmpty()) {
+			int nodeIdx = this.pq.poll();
+			if (nodeIdx == endNodeIndex) {
+				foundEndNode = true;
+				break;
+			}
+			double currTime = getTime(nodeIdx);
+			double currCost = getCost(nodeIdx);
+			for (int l = this.graph.getOutLinksStart(nodeIdx); l < this.graph.getOutLinksEnd(nodeIdx); l++) {
+				Link link = this.graph.getLink(l);
+				int toNode = this.graph.getToNode(l);
+				double newTime = currTime + this.travelTime.getLinkTravelTime(link, currTime, person, vehicle);
+				double newCost = currCost + this.travelDisutility.getLinkTravelDisutility(link, currTime, person, vehicle);
+				if (this.iterationIds[toNode] != this.currentIteration) {
+					double remainingCost = estimateRemainingCost(toNode, endNodeIndex);
+					setData(toNode, newCost, newTime, remainingCost, l);
+					this.pq.insertOrDecrease(toNode, newCost + remainingCost);
+				} else if (newCost < getCost(toNode)) {
+					// the node may already have been removed from the queue if the estimates are not consistent
+					// because of rounding, so it is re-inserted in that case
+					double remainingCost = getEstimatedRemainingCost(toNode);
+					setData(toNode, newCost, newTime, remainingCost, l);
+					this.pq.insertOrDecrease(toNode, newCost + remainingCost);
+				}
+			}
+		}
+
+		if (!foundEndNode) {
+			log.warn("No route was found from node " + startNode.getId() + " to node " + endNode.getId() + ". Some possible reasons:");
+			log.warn("  * Network is not connected.  Run NetworkCleaner().") ;
+			log.warn("  * Network for considered mode does not even exist.  Modes need to be entered for each link in network.xml.");
+			log.warn("  * Network for considered mode is not connected to starting or ending point of route.  Setting insertingAccessEgressWalk to true may help.");
+			log.warn("This will now return null, but it may fail later with a null pointer exception.");
+			return null;
+		}
+
+		return constructPath(endNodeIndex, startTime);
+	}
+
+	private void initializeActiveLandmarks(int startNodeIndex, int endNodeIndex) {
+		// insertion sort of the landmarks by their estimate, keeping only the best ones
+		double[] estimates = new double[this.activeLandmarks.length];
+		this.activeLandmarkCount = 0;
+		for (int i = 0, n = this.altData.getLandmarkCount(); i < n; i++) {
+			double estimate = this.altData.estimateRemainingCost(startNodeIndex, endNodeIndex, i);
+			int position = this.activeLandmarkCount;
+			while (position > 0 && estimates[position - 1] < estimate) {
+				position--;
+			}
+			if (position < this.activeLandmarks.length) {
+				int last = Math.min(this.activeLandmarkCount, this.activeLandmarks.length - 1);
+				for (int j = last; j > position; j--) {
+					estimates[j] = estimates[j - 1];
+					this.activeLandmarks[j] = this.activeLandmarks[j - 1];
+				}
+				estimates[position] = estimate;
+				this.activeLandmarks[position] = i;
+				if (this.activeLandmarkCount < this.activeLandmarks.length) {
+					this.activeLandmarkCount++;
+				}
+			}
+		}
+	}
+
+	private double estimateRemainingCost(int nodeIndex, int endNodeIndex) {
+		double best = 0;
+		for (int i = 0; i < this.activeLandmarkCount; i++) {
+			double estimate = this.altData.estimateRemainingCost(nodeIndex, endNodeIndex, this.activeLandmarks[i]);
+			if (estimate > best) {
+				best = estimate;
+			}
+		}
+		return best;
+	}
+
+	private Path constructPath(int endNodeIndex, double startTime) {
+		List<Node> nodes = new ArrayList<>();
+		List<Link> links = new ArrayList<>();
+		nodes.add(this.graph.getNode(endNodeIndex));
+		int link = this.comingFrom[endNodeIndex];
+		while (link >= 0) {
+			links.add(this.graph.getLink(link));
+			int fromNode = this.graph.getFromNode(link);
+			nodes.add(this.graph.getNode(fromNode));
+			link = this.comingFrom[fromNode];
+		}
+		Collections.reverse(nodes);
+		Collections.reverse(links);
+		return new Path(nodes, links, getTime(endNodeIndex) - startTime, getCost(endNodeIndex));
+	}
+
+	private double getCost(int nodeIndex) {
+		return this.data[nodeIndex * 3];
+	}
+
+	private double getTime(int nodeIndex) {
+		return this.data[nodeIndex * 3 + 1];
+	}
+
+	private double getEstimatedRemainingCost(int nodeIndex) {
+		return this.data[nodeIndex * 3 + 2];
+	}
+
+	private void setData(int nodeIndex, double cost, double time, double estimatedRemainingCost, int comingFromLink) {
+		this.data[nodeIndex * 3] = cost;
+		this.data[nodeIndex * 3 + 1] = time;
+		this.data[nodeIndex * 3 + 2] = estimatedRemainingCost;
+		this.comingFrom[nodeIndex] = comingFromLink;
+		this.iterationIds[nodeIndex] = this.currentIteration;
+	}
+}
@@ -0,0 +1,204 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpeedyALTData.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * The landmark distances used by {@link SpeedyALT}, for all nodes of a {@link SpeedyGraph} in one flat float array.
+ * <p></p>
+ * The distances are computed with the {@linkplain TravelDisutility#getLinkMinimumTravelDisutility(org.matsim.api.core.v01.network.Link)
+ * minimum link costs}, so they remain valid lower bounds for every travel disutility whose minimum costs are not
+ * smaller.  {@link #needsRefresh(TravelDisutility, double)} checks this, and a refreshed instance keeps the landmarks
+ * of the previous one.  Instances are immutable, so routers created before a refresh may continue to use them.
+ */
+public final class SpeedyALTData {
+
+	private static final Logger log = Logger.getLogger(SpeedyALTData.class);
+
+	// the distances are stored as floats, so their difference might slightly overestimate the remaining cost otherwise
+	private static final double ROUNDING_TOLERANCE = 1e-6;
+
+	private final SpeedyGraph graph;
+	private final Node[] landmarks;
+	private final int[] landmarkNodes;
+
+	private final float[] linkMinCosts; // the costs the bounds are based on, rounded down
+	private final double linkMinCostSum;
+
+	// per node and landmark: the distance from the landmark to the node, and from the node to the landmark
+	private final float[] bounds;
+
+	public SpeedyALTData(SpeedyGraph graph, Node[] landmarks, TravelDisutility travelDisutility, int numberOfThreads) {
+		this.graph = graph;
+		this.landmarks = landmarks.clone();
+		this.landmarkNodes = new int[landmarks.length];
+		for (int i = 0; i < landmarks.length; i++) {
+			this.landmarkNodes[i] = graph.getIndex(landmarks[i]);
+		}
+
+		this.linkMinCosts = new float[graph.getLinkCount()];
+		double sum = 0;
+		for (int l = 0; l < this.linkMinCosts.length; l++) {
+			double cost = travelDisutility.getLinkMinimumTravelDisutility(graph.getLink(l));
+			float roundedCost = (float) cost;
+			if (roundedCost > cost) {
+				roundedCost = Math.nextDown(roundedCost);
+			}
+			this.linkMinCosts[l] = roundedCost;
+			sum += cost;
+		}
+		this.linkMinCostSum = sum;
+
+		this.bounds = new float[graph.getNodeCount() * landmarks.length * 2];
+		calcBounds(numberOfThreads);
+	}
+
+	private void calcBounds(int numberOfThreads) {
+		int nOfThreads = Math.max(1, Math.min(numberOfThreads, this.landmarkNodes.length));
+		log.info("Calculating the distances from and to " + this.landmarkNodes.length + " landmarks using " + nOfThreads + " threads...");
+		long start = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < this.landmarkNodes.length; i++) {
+				final int landmarkIndex = i;
+				futures.add(executor.submit(() -> {
+					calcLandmarkDistances(landmarkIndex, true);
+					calcLandmarkDistances(landmarkIndex, false);
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			executor.shutdown();
+		}
+		log.info("done in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * A Dijkstra from (or, backwards, to) the landmark over the whole graph.
+	 */
+	private void calcLandmarkDistances(int landmarkIndex, boolean fromLandmark) {
+		int nodeCount = this.graph.getNodeCount();
+		double[] distances = new double[nodeCount];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		DAryMinHeap pq = new DAryMinHeap(nodeCount, 6);
+
+		int landmark = this.landmarkNodes[landmarkIndex];
+		distances[landmark] = 0;
+		pq.insertOrDecrease(landmark, 0);
+		while (!pq.isEmpty()) {
+			int node = pq.poll();
+			double distance = distances[node];
+			if (fromLandmark) {
+				for (int l = this.graph.getOutLinksStart(node); l < this.graph.getOutLinksEnd(node); l++) {
+					relax(this.graph.getToNode(l), distance + this.linkMinCosts[l], distances, pq);
+				}
+			} else {
+				for (int p = this.graph.getInLinksStart(node); p < this.graph.getInLinksEnd(node); p++) {
+					int l = this.graph.getInLink(p);
+					relax(this.graph.getFromNode(l), distance + this.linkMinCosts[l], distances, pq);
+				}
+			}
+		}
+
+		int offset = fromLandmark ? 0 : 1;
+		for (int n = 0; n < nodeCount; n++) {
+			this.bounds[(n * this.landmarkNodes.length + landmarkIndex) * 2 + offset] = (float) distances[n];
+		}
+	}
+
+	private static void relax(int node, double distance, double[] distances, DAryMinHeap pq) {
+		if (distance < distances[node]) {
+			distances[node] = distance;
+			pq.insertOrDecrease(node, distance);
+		}
+	}
+
+	/**
+	 * @param refreshThreshold the relative increase of the sum of all minimum link costs from which on the bounds are
+	 * 		considered too loose to be useful any longer.
+	 * @return <code>true</code> if the bounds are not admissible for the given travel disutility, because at least one
+	 * 		minimum link cost is smaller than the one they are based on, or if they have become too loose.
+	 */
+	public boolean needsRefresh(TravelDisutility travelDisutility, double refreshThreshold) {
+		double sum = 0;
+		for (int l = 0; l < this.linkMinCosts.length; l++) {
+			double cost = travelDisutility.getLinkMinimumTravelDisutility(this.graph.getLink(l));
+			if (cost < this.linkMinCosts[l]) {
+				return true;
+			}
+			sum += cost;
+		}
+		return sum > this.linkMinCostSum * (1 + refreshThreshold);
+	}
+
+	public SpeedyGraph getGraph() {
+		return this.graph;
+	}
+
+	public Node[] getLandmarks() {
+		return this.landmarks.clone();
+	}
+
+	public int getLandmarkCount() {
+		return this.landmarkNodes.length;
+	}
+
+	/**
+	 * @return a lower bound of the cost from the node to the target node, derived from the given landmark.
+	 */
+	public double estimateRemainingCost(int node, int target, int landmarkIndex) {
+		int nodeOffset = (node * this.landmarkNodes.length + landmarkIndex) * 2;
+		int targetOffset = (target * this.landmarkNodes.length + landmarkIndex) * 2;
+		double fromLandmarkToNode = this.bounds[nodeOffset];
+		double fromNodeToLandmark = this.bounds[nodeOffset + 1];
+		double fromLandmarkToTarget = this.bounds[targetOffset];
+		double fromTargetToLandmark = this.bounds[targetOffset + 1];
+
+		// triangle inequalities; skipped if one of the nodes is not connected to the landmark
+		double estimate = 0;
+		if (fromLandmarkToNode < Float.POSITIVE_INFINITY && fromLandmarkToTarget < Float.POSITIVE_INFINITY) {
+			estimate = fromLandmarkToTarget - fromLandmarkToNode - ROUNDING_TOLERANCE * (fromLandmarkToTarget + fromLandmarkToNode);
+		}
+		if (fromNodeToLandmark < Float.POSITIVE_INFINITY && fromTargetToLandmark < Float.POSITIVE_INFINITY) {
+			double estimate2 = fromNodeToLandmark - fromTargetToLandmark - ROUNDING_TOLERANCE * (fromNodeToLandmark + fromTargetToLandmark);
+			if (estimate2 > estimate) {
+				estimate = estimate2;
+			}
+		}
+		return estimate;
+	}
+}
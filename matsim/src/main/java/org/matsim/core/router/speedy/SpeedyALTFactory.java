@@ -0,0 +1,154 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpeedyALTFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.PieSlicesLandmarker;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link SpeedyALT} routers which share one {@link SpeedyGraph} and one {@link SpeedyALTData} per network.
+ * <p></p>
+ * The landmarks of a network are placed once and kept for the whole run.  The distances to the landmarks are only
+ * computed again if the minimum link costs of the travel disutility of a new router have become smaller, so that the
+ * current ones would no longer be lower bounds, or have increased by more than the refresh threshold in total.  With
+ * the usual travel disutilities, whose minimum costs are based on the free speed, this happens only once.
+ * <p></p>
+ * Checking the minimum costs of all links takes a while, so it is done only once per iteration for every travel
+ * disutility instance, and not for every router.  Outside of the controler, call {@link #checkMinimumCostsAgain()}
+ * after changing the travel disutility.
+ * The time spent on checking and computing the landmark distances is logged at the end of every iteration.
+ */
+@Singleton
+public class SpeedyALTFactory implements LeastCostPathCalculatorFactory, IterationStartsListener, IterationEndsListener {
+
+	private static final Logger log = Logger.getLogger(SpeedyALTFactory.class);
+
+	private static final int LANDMARK_COUNT = 16;
+	private static final double DEFAULT_REFRESH_THRESHOLD = 0.1;
+
+	private final Map<Network, SpeedyALTData> altData = new IdentityHashMap<>();
+	private final Map<Network, Set<TravelDisutility>> checkedMinimumCosts = new IdentityHashMap<>();
+	private final int numberOfThreads;
+	private final double refreshThreshold;
+
+	/*package (for tests)*/ int checkCount = 0;
+	private long checkMillis = 0;
+	private int refreshCount = 0;
+	private long refreshMillis = 0;
+
+	@Inject
+	public SpeedyALTFactory(final GlobalConfigGroup globalConfigGroup) {
+		this(globalConfigGroup.getNumberOfThreads(), DEFAULT_REFRESH_THRESHOLD);
+	}
+
+	/**
+	 * @param refreshThreshold the relative increase of the sum of all minimum link costs from which on the landmark
+	 * 		distances are computed again, although they would still be valid.
+	 */
+	public SpeedyALTFactory(final int numberOfThreads, final double refreshThreshold) {
+		this.numberOfThreads = numberOfThreads;
+		this.refreshThreshold = refreshThreshold;
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(Network network, TravelDisutility travelCosts, TravelTime travelTimes) {
+		return new SpeedyALT(getALTData(network, travelCosts), travelTimes, travelCosts);
+	}
+
+	synchronized SpeedyALTData getALTData(Network network, TravelDisutility travelCosts) {
+		SpeedyALTData data = this.altData.get(network);
+		Set<TravelDisutility> checked = this.checkedMinimumCosts.computeIfAbsent(network, n -> Collections.newSetFromMap(new IdentityHashMap<>()));
+		if (data != null && !checked.add(travelCosts)) {
+			return data;
+		}
+		if (data == null) {
+			long start = System.currentTimeMillis();
+			log.info("Putting landmarks on network...");
+			Node[] landmarks = new PieSlicesLandmarker(new Rectangle2D.Double()).identifyLandmarks(LANDMARK_COUNT, network);
+			data = new SpeedyALTData(new SpeedyGraph(network), landmarks, travelCosts, this.numberOfThreads);
+			this.altData.put(network, data);
+			checked.add(travelCosts);
+			this.refreshCount++;
+			this.refreshMillis += System.currentTimeMillis() - start;
+			return data;
+		}
+
+		long start = System.currentTimeMillis();
+		boolean needsRefresh = data.needsRefresh(travelCosts, this.refreshThreshold);
+		this.checkCount++;
+		this.checkMillis += System.currentTimeMillis() - start;
+		if (needsRefresh) {
+			start = System.currentTimeMillis();
+			log.info("The minimum link costs have changed, refreshing the landmark distances...");
+			data = new SpeedyALTData(data.getGraph(), data.getLandmarks(), travelCosts, this.numberOfThreads);
+			this.altData.put(network, data);
+			// the travel disutilities checked before must be checked against the new landmark distances
+			checked.clear();
+			checked.add(travelCosts);
+			this.refreshCount++;
+			this.refreshMillis += System.currentTimeMillis() - start;
+		}
+		return data;
+	}
+
+	/**
+	 * Lets the next router of every travel disutility check the minimum link costs again.
+	 */
+	public synchronized void checkMinimumCostsAgain() {
+		this.checkedMinimumCosts.clear();
+	}
+
+	@Override
+	public void notifyIterationStarts(IterationStartsEvent event) {
+		checkMinimumCostsAgain();
+	}
+
+	@Override
+	public synchronized void notifyIterationEnds(IterationEndsEvent event) {
+		log.info("Landmark preprocessing in iteration " + event.getIteration() + ": " + this.refreshCount
+				+ " computations of the landmark distances took " + this.refreshMillis + " ms, " + this.checkCount
+				+ " checks of the minimum link costs took " + this.checkMillis + " ms.");
+		this.checkCount = 0;
+		this.checkMillis = 0;
+		this.refreshCount = 0;
+		this.refreshMillis = 0;
+	}
+}
@@ -0,0 +1,152 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpeedyDijkstra.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Dijkstra's algorithm on a shared {@link SpeedyGraph}, with the same time-dependent link costs as
+ * {@link org.matsim.core.router.Dijkstra}; only paths of equal cost may be chosen differently.
+ * <p></p>
+ * All search state lives in primitive arrays indexed by node, which are not cleared between searches: a node's
+ * entries are only valid if its iteration stamp equals the current search.  So one instance per thread costs a few
+ * bytes per node and no objects.  Not thread-safe.
+ */
+public class SpeedyDijkstra implements LeastCostPathCalculator {
+
+	private static final Logger log = Logger.getLogger(SpeedyDijkstra.class);
+
+	private final SpeedyGraph graph;
+	private final TravelTime travelTime;
+	private final TravelDisutility travelDisutility;
+
+	private final double[] data; // cost and time of every node, interleaved
+	private final int[] comingFrom;
+	private final int[] iterationIds;
+	private int currentIteration = Integer.MIN_VALUE;
+	private final DAryMinHeap pq;
+
+	public SpeedyDijkstra(SpeedyGraph graph, TravelTime travelTime, TravelDisutility travelDisutility) {
+		this.graph = graph;
+		this.travelTime = travelTime;
+		this.travelDisutility = travelDisutility;
+		this.data = new double[graph.getNodeCount() * 2];
+		this.comingFrom = new int[graph.getNodeCount()];
+		this.iterationIds = new int[graph.getNodeCount()];
+		Arrays.fill(this.iterationIds, Integer.MIN_VALUE);
+		this.pq = new DAryMinHeap(graph.getNodeCount(), 6);
+	}
+
+	@Override
+	public Path calcLeastCostPath(Node startNode, Node endNode, double startTime, Person person, Vehicle vehicle) {
+		int startNodeIndex = this.graph.getIndex(startNode);
+		int endNodeIndex = this.graph.getIndex(endNode);
+
+		this.currentIteration++;
+		if (this.currentIteration == Integer.MAX_VALUE) {
+			// reset the stamps, otherwise nodes of very old searches would look as if they belonged to this one
+			Arrays.fill(this.iterationIds, Integer.MIN_VALUE);
+			this.currentIteration = Integer.MIN_VALUE + 1;
+		}
+		this.pq.clear();
+
+		setData(startNodeIndex, 0, startTime, -1);
+		this.pq.insertOrDecrease(startNodeIndex, 0);
+
+		boolean foundEndNode = false;
+		while (!this.pq.isEmpty()) {
+			int nodeIdx = this.pq.poll();
+			if (nodeIdx == endNodeIndex) {
+				foundEndNode = true;
+				break;
+			}
+			double currTime = getTime(nodeIdx);
+			double currCost = getCost(nodeIdx);
+			for (int l = this.graph.getOutLinksStart(nodeIdx); l < this.graph.getOutLinksEnd(nodeIdx); l++) {
+				Link link = this.graph.getLink(l);
+				int toNode = this.graph.getToNode(l);
+				double newTime = currTime + this.travelTime.getLinkTravelTime(link, currTime, person, vehicle);
+				double newCost = currCost + this.travelDisutility.getLinkTravelDisutility(link, currTime, person, vehicle);
+				if (this.iterationIds[toNode] != this.currentIteration) {
+					setData(toNode, newCost, newTime, l);
+					this.pq.insertOrDecrease(toNode, newCost);
+				} else if (newCost < getCost(toNode) && this.pq.contains(toNode)) {
+					setData(toNode, newCost, newTime, l);
+					this.pq.insertOrDecrease(toNode, newCost);
+				}
+			}
+		}
+
+		if (!foundEndNode) {
+			log.warn("No route was found from node " + startNode.getId() + " to node " + endNode.getId() + ". Some possible reasons:");
+			log.warn("  * Network is not connected.  Run NetworkCleaner().") ;
+			log.warn("  * Network for considered mode does not even exist.  Modes need to be entered for each link in network.xml.");
+			log.warn("  * Network for considered mode is not connected to starting or ending point of route.  Setting insertingAccessEgressWalk to true may help.");
+			log.warn("This will now return null, but it may fail later with a null pointer exception.");
+			return null;
+		}
+
+		return constructPath(endNodeIndex, startTime);
+	}
+
+	private Path constructPath(int endNodeIndex, double startTime) {
+		List<Node> nodes = new ArrayList<>();
+		List<Link> links = new ArrayList<>();
+		nodes.add(this.graph.getNode(endNodeIndex));
+		int link = this.comingFrom[endNodeIndex];
+		while (link >= 0) {
+			links.add(this.graph.getLink(link));
+			int fromNode = this.graph.getFromNode(link);
+			nodes.add(this.graph.getNode(fromNode));
+			link = this.comingFrom[fromNode];
+		}
+		Collections.reverse(nodes);
+		Collections.reverse(links);
+		return new Path(nodes, links, getTime(endNodeIndex) - startTime, getCost(endNodeIndex));
+	}
+
+	private double getCost(int nodeIndex) {
+		return this.data[nodeIndex * 2];
+	}
+
+	private double getTime(int nodeIndex) {
+		return this.data[nodeIndex * 2 + 1];
+	}
+
+	private void setData(int nodeIndex, double cost, double time, int comingFromLink) {
+		this.data[nodeIndex * 2] = cost;
+		this.data[nodeIndex * 2 + 1] = time;
+		this.comingFrom[nodeIndex] = comingFromLink;
+		this.iterationIds[nodeIndex] = this.currentIteration;
+	}
+}
@@ -0,0 +1,163 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpeedyGraph.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * An immutable, compact representation of the topology of a network for routing, meant to be shared by all routers
+ * of all threads.
+ * <p></p>
+ * The nodes are indexed by the {@linkplain Id#index() index of their ids}, so that no lookup is needed to find them.
+ * The out- and in-links of every node are stored consecutively in int arrays (compressed sparse rows), and the
+ * routers keep their search state in primitive arrays indexed the same way.
+ */
+public final class SpeedyGraph {
+
+	private final Node[] nodes;
+	private final Link[] links;
+	private final int[] linkFromNode;
+	private final int[] linkToNode;
+
+	private final int[] firstOutLink;
+	private final int[] firstInLink;
+	private final int[] inLinks;
+
+	public SpeedyGraph(Network network) {
+		int nodeCount = Id.getNumberOfIds(Node.class);
+		int linkCount = network.getLinks().size();
+		this.nodes = new Node[nodeCount];
+		for (Node node : network.getNodes().values()) {
+			this.nodes[node.getId().index()] = node;
+		}
+
+		// the links, ordered by their from-nodes
+		this.firstOutLink = new int[nodeCount + 1];
+		for (Link link : network.getLinks().values()) {
+			this.firstOutLink[link.getFromNode().getId().index() + 1]++;
+		}
+		for (int n = 0; n < nodeCount; n++) {
+			this.firstOutLink[n + 1] += this.firstOutLink[n];
+		}
+		int[] nextOutLink = new int[nodeCount];
+		System.arraycopy(this.firstOutLink, 0, nextOutLink, 0, nodeCount);
+		this.links = new Link[linkCount];
+		this.linkFromNode = new int[linkCount];
+		this.linkToNode = new int[linkCount];
+		for (Node node : network.getNodes().values()) {
+			// in the order of the out-links of the node, like the other routers
+			for (Link link : node.getOutLinks().values()) {
+				int l = nextOutLink[node.getId().index()]++;
+				this.links[l] = link;
+				this.linkFromNode[l] = node.getId().index();
+				this.linkToNode[l] = link.getToNode().getId().index();
+			}
+		}
+
+		// the same links, ordered by their to-nodes
+		this.firstInLink = new int[nodeCount + 1];
+		for (int l = 0; l < linkCount; l++) {
+			this.firstInLink[this.linkToNode[l] + 1]++;
+		}
+		for (int n = 0; n < nodeCount; n++) {
+			this.firstInLink[n + 1] += this.firstInLink[n];
+		}
+		int[] nextInLink = new int[nodeCount];
+		System.arraycopy(this.firstInLink, 0, nextInLink, 0, nodeCount);
+		this.inLinks = new int[linkCount];
+		for (int l = 0; l < linkCount; l++) {
+			this.inLinks[nextInLink[this.linkToNode[l]]++] = l;
+		}
+	}
+
+	/**
+	 * @return the number of node indices, which is larger than the number of nodes if the network does not contain
+	 * 		all nodes ever created.
+	 */
+	public int getNodeCount() {
+		return this.nodes.length;
+	}
+
+	public int getLinkCount() {
+		return this.links.length;
+	}
+
+	/**
+	 * @return the node with the given index, or <code>null</code> if it is not part of the network.
+	 */
+	public Node getNode(int index) {
+		return this.nodes[index];
+	}
+
+	public Link getLink(int link) {
+		return this.links[link];
+	}
+
+	public int getFromNode(int link) {
+		return this.linkFromNode[link];
+	}
+
+	public int getToNode(int link) {
+		return this.linkToNode[link];
+	}
+
+	/**
+	 * @return the first out-link of the node; its out-links are the links up to {@link #getOutLinksEnd(int)}.
+	 */
+	public int getOutLinksStart(int node) {
+		return this.firstOutLink[node];
+	}
+
+	public int getOutLinksEnd(int node) {
+		return this.firstOutLink[node + 1];
+	}
+
+	/**
+	 * @return the position of the first in-link of the node; its in-links are
+	 * 		<code>getInLink(getInLinksStart(node))</code> up to, but excluding, the position {@link #getInLinksEnd(int)}.
+	 */
+	public int getInLinksStart(int node) {
+		return this.firstInLink[node];
+	}
+
+	public int getInLinksEnd(int node) {
+		return this.firstInLink[node + 1];
+	}
+
+	public int getInLink(int position) {
+		return this.inLinks[position];
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the node is not part of this graph.
+	 */
+	public int getIndex(Node node) {
+		int index = node.getId().index();
+		if (index >= this.nodes.length || this.nodes[index] != node) {
+			throw new IllegalArgumentException("The node " + node.getId() + " is not part of the network of this graph: "
+					+ "the validity of the results cannot be guaranteed. Aborting!");
+		}
+		return index;
+	}
+}
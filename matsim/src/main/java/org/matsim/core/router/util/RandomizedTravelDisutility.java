@@ -0,0 +1,37 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RandomizedTravelDisutility.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.util;
+
+/**
+ * A {@link TravelDisutility} whose link costs contain a random part, e.g. one drawn per person.
+ * <p></p>
+ * Routers which pre-compute the link costs for all persons, like
+ * {@link org.matsim.core.router.ContractionHierarchies}, use the travel disutility without this random part.
+ */
+public interface RandomizedTravelDisutility extends TravelDisutility {
+
+	/**
+	 * @return a travel disutility with the same costs apart from the random part, which gives the same cost for a link
+	 * and time on every call.
+	 */
+	TravelDisutility getTravelDisutilityWithoutRandomization();
+
+}
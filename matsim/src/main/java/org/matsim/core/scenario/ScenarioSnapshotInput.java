@@ -0,0 +1,184 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotInput.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Reads the primitive values written by {@link ScenarioSnapshotOutput}.  The file is memory-mapped in chunks, so
+ * reading is done by bulk accesses to the page cache instead of going through streams.  Values may span the
+ * boundary between two chunks.
+ */
+/* deliberately package */ final class ScenarioSnapshotInput implements AutoCloseable {
+
+	private static final int CHUNK_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final ByteBuffer[] chunks;
+	private int currentChunk = 0;
+	private ByteBuffer buffer;
+	private final List<String> sharedStrings = new ArrayList<>();
+	private final Map<Class<?>, List<Id<?>>> ids = new HashMap<>();
+
+	ScenarioSnapshotInput(Path file) {
+		try {
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			long size = this.channel.size();
+			int chunkCount = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+			this.chunks = new ByteBuffer[Math.max(1, chunkCount)];
+			this.chunks[0] = ByteBuffer.allocate(0);
+			for (int i = 0; i < chunkCount; i++) {
+				long position = (long) i * CHUNK_SIZE;
+				this.chunks[i] = this.channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE, size - position));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.buffer = this.chunks[0];
+	}
+
+	private void nextChunk() {
+		this.currentChunk++;
+		if (this.currentChunk >= this.chunks.length) {
+			throw new IllegalStateException("Unexpected end of the scenario snapshot.");
+		}
+		this.buffer = this.chunks[this.currentChunk];
+	}
+
+	byte readByte() {
+		if (!this.buffer.hasRemaining()) {
+			nextChunk();
+		}
+		return this.buffer.get();
+	}
+
+	boolean readBoolean() {
+		return readByte() != 0;
+	}
+
+	int readInt() {
+		if (this.buffer.remaining() >= 4) {
+			return this.buffer.getInt();
+		}
+		int value = 0;
+		for (int i = 0; i < 4; i++) {
+			value = (value << 8) | (readByte() & 0xff);
+		}
+		return value;
+	}
+
+	int readVarInt() {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = readByte();
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	long readLong() {
+		if (this.buffer.remaining() >= 8) {
+			return this.buffer.getLong();
+		}
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (readByte() & 0xff);
+		}
+		return value;
+	}
+
+	double readDouble() {
+		if (this.buffer.remaining() >= 8) {
+			return this.buffer.getDouble();
+		}
+		return Double.longBitsToDouble(readLong());
+	}
+
+	String readString() {
+		int length = readVarInt() - 1;
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		int offset = 0;
+		while (offset < length) {
+			if (!this.buffer.hasRemaining()) {
+				nextChunk();
+			}
+			int n = Math.min(length - offset, this.buffer.remaining());
+			this.buffer.get(bytes, offset, n);
+			offset += n;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	String readSharedString() {
+		int number = readVarInt() - 1;
+		if (number < 0) {
+			return null;
+		}
+		if (number < this.sharedStrings.size()) {
+			return this.sharedStrings.get(number);
+		}
+		String value = readString();
+		this.sharedStrings.add(value);
+		return value;
+	}
+
+	@SuppressWarnings("unchecked")
+	<T> Id<T> readId(Class<T> type) {
+		int number = readVarInt() - 1;
+		if (number < 0) {
+			return null;
+		}
+		List<Id<?>> known = this.ids.computeIfAbsent(type, k -> new ArrayList<>());
+		if (number < known.size()) {
+			return (Id<T>) known.get(number);
+		}
+		Id<T> id = Id.create(readString(), type);
+		known.add(id);
+		return id;
+	}
+
+	@Override
+	public void close() {
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
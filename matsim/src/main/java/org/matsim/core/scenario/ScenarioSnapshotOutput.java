@@ -0,0 +1,179 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotOutput.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Buffered output of the primitive values of a scenario snapshot, see {@link ScenarioSnapshotInput} for the
+ * counterpart.  Ids and frequently repeated strings (modes, activity types, attribute names) are only written at their
+ * first occurrence and referenced by their number afterwards.
+ */
+/* deliberately package */ final class ScenarioSnapshotOutput implements AutoCloseable {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final Map<String, Integer> sharedStrings = new HashMap<>();
+	private final Map<Class<?>, Map<Id<?>, Integer>> ids = new HashMap<>();
+
+	ScenarioSnapshotOutput(Path file) {
+		try {
+			this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void ensureRemaining(int bytes) {
+		if (this.buffer.remaining() < bytes) {
+			flush();
+		}
+	}
+
+	private void flush() {
+		this.buffer.flip();
+		try {
+			while (this.buffer.hasRemaining()) {
+				this.channel.write(this.buffer);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.buffer.clear();
+	}
+
+	void writeByte(int value) {
+		ensureRemaining(1);
+		this.buffer.put((byte) value);
+	}
+
+	void writeBoolean(boolean value) {
+		writeByte(value ? 1 : 0);
+	}
+
+	void writeInt(int value) {
+		ensureRemaining(4);
+		this.buffer.putInt(value);
+	}
+
+	/** Writes a non-negative value in 1 to 5 bytes. */
+	void writeVarInt(int value) {
+		ensureRemaining(5);
+		while ((value & ~0x7f) != 0) {
+			this.buffer.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		this.buffer.put((byte) value);
+	}
+
+	void writeLong(long value) {
+		ensureRemaining(8);
+		this.buffer.putLong(value);
+	}
+
+	void writeDouble(double value) {
+		ensureRemaining(8);
+		this.buffer.putDouble(value);
+	}
+
+	/** Writes a string which may be <code>null</code>. */
+	void writeString(String value) {
+		if (value == null) {
+			writeVarInt(0);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length + 1);
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (!this.buffer.hasRemaining()) {
+				flush();
+			}
+			int length = Math.min(bytes.length - offset, this.buffer.remaining());
+			this.buffer.put(bytes, offset, length);
+			offset += length;
+		}
+	}
+
+	/**
+	 * Writes a string which may be <code>null</code> and which is expected to occur many times in the snapshot.
+	 * Such strings are read back as the same instance.
+	 */
+	void writeSharedString(String value) {
+		if (value == null) {
+			writeVarInt(0);
+			return;
+		}
+		Integer number = this.sharedStrings.get(value);
+		if (number != null) {
+			writeVarInt(number + 1);
+		} else {
+			int newNumber = this.sharedStrings.size();
+			this.sharedStrings.put(value, newNumber);
+			writeVarInt(newNumber + 1);
+			writeString(value);
+		}
+	}
+
+	/**
+	 * Writes an id which may be <code>null</code>.  Ids are canonical per type, so they are looked up by identity.
+	 */
+	void writeId(Id<?> id, Class<?> type) {
+		if (id == null) {
+			writeVarInt(0);
+			return;
+		}
+		Map<Id<?>, Integer> numbers = this.ids.computeIfAbsent(type, k -> new IdentityHashMap<>());
+		Integer number = numbers.get(id);
+		if (number != null) {
+			writeVarInt(number + 1);
+		} else {
+			int newNumber = numbers.size();
+			numbers.put(id, newNumber);
+			writeVarInt(newNumber + 1);
+			writeString(id.toString());
+		}
+	}
+
+	@Override
+	public void close() {
+		flush();
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,462 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import static org.matsim.core.scenario.ScenarioSnapshotWriter.*;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopArea;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.matsim.utils.objectattributes.ObjectAttributesConverter;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.vehicles.CostInformation;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleCapacity;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.Vehicles;
+
+/**
+ * Reads a snapshot written by {@link ScenarioSnapshotWriter} into the (empty) containers of a scenario.  The file is
+ * memory-mapped, see {@link ScenarioSnapshotInput}.
+ *
+ * @see ScenarioUtils#loadScenarioSnapshot(org.matsim.core.config.Config, String)
+ */
+public final class ScenarioSnapshotReader {
+
+	private static final Logger log = Logger.getLogger(ScenarioSnapshotReader.class);
+
+	private final Scenario scenario;
+	private final ObjectAttributesConverter converter = new ObjectAttributesConverter();
+	private final Map<String, Set<String>> allowedModesCache = new HashMap<>();
+	private ScenarioSnapshotInput in = null;
+
+	public ScenarioSnapshotReader(final Scenario scenario) {
+		this.scenario = scenario;
+	}
+
+	public void putAttributeConverter(final Class<?> clazz, final AttributeConverter<?> converter) {
+		this.converter.putAttributeConverter(clazz, converter);
+	}
+
+	public void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		this.converter.putAttributeConverters(converters);
+	}
+
+	public void readFile(final String filename) {
+		log.info(Gbl.aboutToRead("scenario snapshot", filename));
+		long start = System.currentTimeMillis();
+		try (ScenarioSnapshotInput input = new ScenarioSnapshotInput(Paths.get(filename))) {
+			this.in = input;
+			if (input.readInt() != MAGIC) {
+				throw new IllegalArgumentException(filename + " is not a scenario snapshot.");
+			}
+			int version = input.readInt();
+			if (version != VERSION) {
+				throw new IllegalArgumentException("Unsupported version " + version + " of scenario snapshot " + filename
+						+ ", only version " + VERSION + " is supported.");
+			}
+			byte section;
+			while ((section = input.readByte()) != SECTION_END) {
+				switch (section) {
+					case SECTION_NETWORK:
+						readNetwork(this.scenario.getNetwork());
+						break;
+					case SECTION_POPULATION:
+						readPopulation(this.scenario.getPopulation());
+						break;
+					case SECTION_TRANSIT_SCHEDULE:
+						readTransitSchedule(this.scenario.getTransitSchedule());
+						break;
+					case SECTION_VEHICLES:
+						readVehicles(this.scenario.getVehicles());
+						break;
+					case SECTION_TRANSIT_VEHICLES:
+						readVehicles(this.scenario.getTransitVehicles());
+						break;
+					default:
+						throw new IllegalStateException("Unknown section " + section + " in scenario snapshot " + filename);
+				}
+			}
+		} finally {
+			this.in = null;
+		}
+		log.info("read scenario snapshot with " + this.scenario.getNetwork().getLinks().size() + " links and "
+				+ this.scenario.getPopulation().getPersons().size() + " persons in "
+				+ (System.currentTimeMillis() - start) + " ms.");
+	}
+
+	private void readNetwork(final Network network) {
+		network.setName(this.in.readString());
+		network.setCapacityPeriod(this.in.readDouble());
+		network.setEffectiveLaneWidth(this.in.readDouble());
+		network.setEffectiveCellSize(this.in.readDouble());
+		readAttributes(network.getAttributes());
+
+		NetworkFactory factory = network.getFactory();
+		int nodeCount = this.in.readVarInt();
+		for (int i = 0; i < nodeCount; i++) {
+			Node node = factory.createNode(this.in.readId(Node.class), readCoord());
+			readAttributes(node.getAttributes());
+			network.addNode(node);
+		}
+
+		int linkCount = this.in.readVarInt();
+		Map<Id<Node>, ? extends Node> nodes = network.getNodes();
+		for (int i = 0; i < linkCount; i++) {
+			Id<Link> id = this.in.readId(Link.class);
+			Node fromNode = nodes.get(this.in.readId(Node.class));
+			Node toNode = nodes.get(this.in.readId(Node.class));
+			Link link = factory.createLink(id, fromNode, toNode);
+			link.setLength(this.in.readDouble());
+			link.setFreespeed(this.in.readDouble());
+			link.setCapacity(this.in.readDouble());
+			link.setNumberOfLanes(this.in.readDouble());
+			link.setAllowedModes(this.allowedModesCache.computeIfAbsent(this.in.readSharedString(),
+					modes -> modes.isEmpty() ? Collections.emptySet() : new HashSet<>(Arrays.asList(modes.split(",")))));
+			readAttributes(link.getAttributes());
+			network.addLink(link);
+		}
+	}
+
+	private void readPopulation(final Population population) {
+		population.setName(this.in.readString());
+		readAttributes(population.getAttributes());
+
+		PopulationFactory factory = population.getFactory();
+		RouteFactories routeFactories = factory.getRouteFactories();
+		int personCount = this.in.readVarInt();
+		for (int i = 0; i < personCount; i++) {
+			Person person = factory.createPerson(this.in.readId(Person.class));
+			readAttributes(person.getAttributes());
+			int planCount = this.in.readVarInt();
+			int selectedPlan = this.in.readVarInt() - 1;
+			for (int p = 0; p < planCount; p++) {
+				Plan plan = readPlan(factory, routeFactories);
+				person.addPlan(plan);
+				if (p == selectedPlan) {
+					person.setSelectedPlan(plan);
+				}
+			}
+			population.addPerson(person);
+		}
+	}
+
+	private Plan readPlan(final PopulationFactory factory, final RouteFactories routeFactories) {
+		Plan plan = factory.createPlan();
+		plan.setType(this.in.readSharedString());
+		if (this.in.readBoolean()) {
+			plan.setScore(this.in.readDouble());
+		}
+		readAttributes(plan.getAttributes());
+
+		int elementCount = this.in.readVarInt();
+		for (int i = 0; i < elementCount; i++) {
+			byte kind = this.in.readByte();
+			if (kind == ACTIVITY) {
+				String type = this.in.readSharedString();
+				Coord coord = readCoord();
+				Id<Link> linkId = this.in.readId(Link.class);
+				Id<ActivityFacility> facilityId = this.in.readId(ActivityFacility.class);
+				Activity activity;
+				if (coord != null) {
+					activity = factory.createActivityFromCoord(type, coord);
+					activity.setLinkId(linkId);
+					activity.setFacilityId(facilityId);
+				} else if (linkId != null) {
+					activity = factory.createActivityFromLinkId(type, linkId);
+					activity.setFacilityId(facilityId);
+				} else {
+					activity = factory.createActivityFromActivityFacilityId(type, facilityId);
+				}
+				activity.setStartTime(this.in.readDouble());
+				activity.setEndTime(this.in.readDouble());
+				activity.setMaximumDuration(this.in.readDouble());
+				readAttributes(activity.getAttributes());
+				plan.addActivity(activity);
+			} else if (kind == LEG) {
+				Leg leg = factory.createLeg(this.in.readSharedString());
+				leg.setDepartureTime(this.in.readDouble());
+				leg.setTravelTime(this.in.readDouble());
+				readAttributes(leg.getAttributes());
+				leg.setRoute(readRoute(routeFactories));
+				plan.addLeg(leg);
+			} else {
+				throw new IllegalStateException("Unknown plan element " + kind + " in scenario snapshot.");
+			}
+		}
+		return plan;
+	}
+
+	private Route readRoute(final RouteFactories routeFactories) {
+		byte kind = this.in.readByte();
+		if (kind == ROUTE_NONE) {
+			return null;
+		}
+		String routeType = this.in.readSharedString();
+		Id<Link> startLinkId = this.in.readId(Link.class);
+		Id<Link> endLinkId = this.in.readId(Link.class);
+		double distance = this.in.readDouble();
+		double travelTime = this.in.readDouble();
+
+		Route route = routeFactories.createRoute(routeFactories.getRouteClassForType(routeType), startLinkId, endLinkId);
+		if (kind == ROUTE_NETWORK) {
+			Id<Vehicle> vehicleId = this.in.readId(Vehicle.class);
+			List<Id<Link>> linkIds = readLinkIds();
+			if (!(route instanceof NetworkRoute)) {
+				// the route type is registered differently in this scenario, keep the data anyway
+				route = RouteUtils.createLinkNetworkRouteImpl(startLinkId, endLinkId);
+			}
+			((NetworkRoute) route).setLinkIds(startLinkId, linkIds, endLinkId);
+			((NetworkRoute) route).setVehicleId(vehicleId);
+		} else {
+			route.setRouteDescription(this.in.readString());
+		}
+		route.setDistance(distance);
+		route.setTravelTime(travelTime);
+		return route;
+	}
+
+	private List<Id<Link>> readLinkIds() {
+		int count = this.in.readVarInt();
+		List<Id<Link>> linkIds = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			linkIds.add(this.in.readId(Link.class));
+		}
+		return linkIds;
+	}
+
+	private void readTransitSchedule(final TransitSchedule schedule) {
+		readAttributes(schedule.getAttributes());
+		TransitScheduleFactory factory = schedule.getFactory();
+
+		int stopCount = this.in.readVarInt();
+		for (int i = 0; i < stopCount; i++) {
+			Id<TransitStopFacility> id = this.in.readId(TransitStopFacility.class);
+			Coord coord = readCoord();
+			boolean isBlocking = this.in.readBoolean();
+			TransitStopFacility stop = factory.createTransitStopFacility(id, coord, isBlocking);
+			stop.setLinkId(this.in.readId(Link.class));
+			stop.setName(this.in.readString());
+			stop.setStopAreaId(this.in.readId(TransitStopArea.class));
+			readAttributes(stop.getAttributes());
+			schedule.addStopFacility(stop);
+		}
+
+		while (this.in.readBoolean()) {
+			Id<TransitStopFacility> fromStopId = this.in.readId(TransitStopFacility.class);
+			Id<TransitStopFacility> toStopId = this.in.readId(TransitStopFacility.class);
+			schedule.getMinimalTransferTimes().set(fromStopId, toStopId, this.in.readDouble());
+		}
+
+		int lineCount = this.in.readVarInt();
+		for (int i = 0; i < lineCount; i++) {
+			TransitLine line = factory.createTransitLine(this.in.readId(TransitLine.class));
+			line.setName(this.in.readString());
+			readAttributes(line.getAttributes());
+			int routeCount = this.in.readVarInt();
+			for (int r = 0; r < routeCount; r++) {
+				line.addRoute(readTransitRoute(factory, schedule.getFacilities()));
+			}
+			schedule.addTransitLine(line);
+		}
+	}
+
+	private TransitRoute readTransitRoute(final TransitScheduleFactory factory,
+			final Map<Id<TransitStopFacility>, TransitStopFacility> stopFacilities) {
+		Id<TransitRoute> id = this.in.readId(TransitRoute.class);
+		String description = this.in.readString();
+		String transportMode = this.in.readSharedString();
+
+		int stopCount = this.in.readVarInt();
+		List<TransitRouteStop> stops = new ArrayList<>(stopCount);
+		for (int i = 0; i < stopCount; i++) {
+			TransitStopFacility stopFacility = stopFacilities.get(this.in.readId(TransitStopFacility.class));
+			double arrivalOffset = this.in.readDouble();
+			double departureOffset = this.in.readDouble();
+			TransitRouteStop stop = factory.createTransitRouteStop(stopFacility, arrivalOffset, departureOffset);
+			stop.setAwaitDepartureTime(this.in.readBoolean());
+			stops.add(stop);
+		}
+
+		NetworkRoute networkRoute = null;
+		if (this.in.readBoolean()) {
+			Id<Link> startLinkId = this.in.readId(Link.class);
+			Id<Link> endLinkId = this.in.readId(Link.class);
+			networkRoute = RouteUtils.createLinkNetworkRouteImpl(startLinkId, readLinkIds(), endLinkId);
+		}
+
+		TransitRoute route = factory.createTransitRoute(id, networkRoute, stops, transportMode);
+		route.setDescription(description);
+		readAttributes(route.getAttributes());
+
+		int departureCount = this.in.readVarInt();
+		for (int i = 0; i < departureCount; i++) {
+			Departure departure = factory.createDeparture(this.in.readId(Departure.class), this.in.readDouble());
+			departure.setVehicleId(this.in.readId(Vehicle.class));
+			readAttributes(departure.getAttributes());
+			route.addDeparture(departure);
+		}
+		return route;
+	}
+
+	private void readVehicles(final Vehicles vehicles) {
+		int typeCount = this.in.readVarInt();
+		for (int i = 0; i < typeCount; i++) {
+			VehicleType type = vehicles.getFactory().createVehicleType(this.in.readId(VehicleType.class));
+			type.setDescription(this.in.readString());
+			readAttributes(type.getAttributes());
+
+			VehicleCapacity capacity = type.getCapacity();
+			if (this.in.readBoolean()) {
+				capacity.setSeats(this.in.readInt());
+			} else {
+				capacity.setSeats(null);
+			}
+			if (this.in.readBoolean()) {
+				capacity.setStandingRoom(this.in.readInt());
+			} else {
+				capacity.setStandingRoom(null);
+			}
+			// the remaining capacity values cannot be reset to null, keep the defaults in that case
+			if (this.in.readBoolean()) {
+				capacity.setVolumeInCubicMeters(this.in.readDouble());
+			}
+			if (this.in.readBoolean()) {
+				capacity.setWeightInTons(this.in.readDouble());
+			}
+			if (this.in.readBoolean()) {
+				capacity.setOther(this.in.readDouble());
+			}
+			readAttributes(capacity.getAttributes());
+
+			type.setLength(this.in.readDouble());
+			type.setWidth(this.in.readDouble());
+			type.setMaximumVelocity(this.in.readDouble());
+			type.setPcuEquivalents(this.in.readDouble());
+			type.setFlowEfficiencyFactor(this.in.readDouble());
+			type.setNetworkMode(this.in.readSharedString());
+			readAttributes(type.getEngineInformation().getAttributes());
+
+			CostInformation costInformation = type.getCostInformation();
+			costInformation.setFixedCost(readNullableDouble());
+			costInformation.setCostsPerMeter(readNullableDouble());
+			costInformation.setCostsPerSecond(readNullableDouble());
+			readAttributes(costInformation.getAttributes());
+
+			vehicles.addVehicleType(type);
+		}
+
+		int vehicleCount = this.in.readVarInt();
+		for (int i = 0; i < vehicleCount; i++) {
+			Id<Vehicle> id = this.in.readId(Vehicle.class);
+			VehicleType type = vehicles.getVehicleTypes().get(this.in.readId(VehicleType.class));
+			vehicles.addVehicle(vehicles.getFactory().createVehicle(id, type));
+		}
+	}
+
+	private Double readNullableDouble() {
+		return this.in.readBoolean() ? this.in.readDouble() : null;
+	}
+
+	private Coord readCoord() {
+		byte kind = this.in.readByte();
+		switch (kind) {
+			case COORD_NONE:
+				return null;
+			case COORD_XY:
+				return new Coord(this.in.readDouble(), this.in.readDouble());
+			case COORD_XYZ:
+				return new Coord(this.in.readDouble(), this.in.readDouble(), this.in.readDouble());
+			default:
+				throw new IllegalStateException("Unknown coordinate type " + kind + " in scenario snapshot.");
+		}
+	}
+
+	private void readAttributes(final Attributes attributes) {
+		String name;
+		while ((name = this.in.readSharedString()) != null) {
+			byte kind = this.in.readByte();
+			Object value;
+			switch (kind) {
+				case ATTRIBUTE_STRING:
+					value = this.in.readString();
+					break;
+				case ATTRIBUTE_INTEGER:
+					value = this.in.readInt();
+					break;
+				case ATTRIBUTE_LONG:
+					value = this.in.readLong();
+					break;
+				case ATTRIBUTE_DOUBLE:
+					value = this.in.readDouble();
+					break;
+				case ATTRIBUTE_BOOLEAN:
+					value = this.in.readBoolean();
+					break;
+				case ATTRIBUTE_CONVERTED:
+					String className = this.in.readSharedString();
+					value = this.converter.convert(className, this.in.readString());
+					break;
+				default:
+					throw new IllegalStateException("Unknown attribute type " + kind + " in scenario snapshot.");
+			}
+			if (value != null) {
+				attributes.putAttribute(name, value);
+			}
+		}
+	}
+}
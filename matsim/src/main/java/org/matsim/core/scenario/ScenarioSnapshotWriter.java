@@ -0,0 +1,438 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.MinimalTransferTimes;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopArea;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.matsim.utils.objectattributes.ObjectAttributesConverter;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.vehicles.CostInformation;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleCapacity;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.Vehicles;
+
+/**
+ * Writes the network, the population, the transit schedule and the vehicles of a fully loaded scenario into a
+ * versioned binary snapshot, including all attributes and routes.  Reading it back with
+ * {@link ScenarioSnapshotReader} is much faster than parsing the xml files, so it is meant for restarting or forking
+ * runs, not as an exchange format:  the snapshot is only readable by a MATSim version understanding its format
+ * version.
+ * <p></p>
+ * Attribute values of other types than String, Integer, Long, Double and Boolean are written using the attribute
+ * converters, as in the xml files.
+ *
+ * @see ScenarioUtils#writeScenarioSnapshot(Scenario, String)
+ */
+public final class ScenarioSnapshotWriter {
+
+	private static final Logger log = Logger.getLogger(ScenarioSnapshotWriter.class);
+
+	/*package*/ static final int MAGIC = 0x4d53534e; // "MSSN"
+	/*package*/ static final int VERSION = 1;
+
+	/*package*/ static final byte SECTION_END = 0;
+	/*package*/ static final byte SECTION_NETWORK = 1;
+	/*package*/ static final byte SECTION_POPULATION = 2;
+	/*package*/ static final byte SECTION_TRANSIT_SCHEDULE = 3;
+	/*package*/ static final byte SECTION_VEHICLES = 4;
+	/*package*/ static final byte SECTION_TRANSIT_VEHICLES = 5;
+
+	/*package*/ static final byte ATTRIBUTE_STRING = 1;
+	/*package*/ static final byte ATTRIBUTE_INTEGER = 2;
+	/*package*/ static final byte ATTRIBUTE_LONG = 3;
+	/*package*/ static final byte ATTRIBUTE_DOUBLE = 4;
+	/*package*/ static final byte ATTRIBUTE_BOOLEAN = 5;
+	/*package*/ static final byte ATTRIBUTE_CONVERTED = 6;
+
+	/*package*/ static final byte COORD_NONE = 0;
+	/*package*/ static final byte COORD_XY = 1;
+	/*package*/ static final byte COORD_XYZ = 2;
+
+	/*package*/ static final byte ACTIVITY = 1;
+	/*package*/ static final byte LEG = 2;
+
+	/*package*/ static final byte ROUTE_NONE = 0;
+	/*package*/ static final byte ROUTE_NETWORK = 1;
+	/*package*/ static final byte ROUTE_DESCRIPTION = 2;
+
+	private final Scenario scenario;
+	private final ObjectAttributesConverter converter = new ObjectAttributesConverter();
+	private final Set<Class<?>> classesWithoutConverter = new HashSet<>();
+	private ScenarioSnapshotOutput out = null;
+
+	public ScenarioSnapshotWriter(final Scenario scenario) {
+		this.scenario = scenario;
+	}
+
+	public void putAttributeConverter(final Class<?> clazz, final AttributeConverter<?> converter) {
+		this.converter.putAttributeConverter(clazz, converter);
+	}
+
+	public void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		this.converter.putAttributeConverters(converters);
+	}
+
+	public void write(final String filename) {
+		log.info(Gbl.aboutToWrite("scenario snapshot", filename));
+		try (ScenarioSnapshotOutput output = new ScenarioSnapshotOutput(Paths.get(filename))) {
+			this.out = output;
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeByte(SECTION_NETWORK);
+			writeNetwork(this.scenario.getNetwork());
+			output.writeByte(SECTION_POPULATION);
+			writePopulation(this.scenario.getPopulation());
+			if (this.scenario.getTransitSchedule() != null) {
+				output.writeByte(SECTION_TRANSIT_SCHEDULE);
+				writeTransitSchedule(this.scenario.getTransitSchedule());
+			}
+			if (this.scenario.getVehicles() != null) {
+				output.writeByte(SECTION_VEHICLES);
+				writeVehicles(this.scenario.getVehicles());
+			}
+			if (this.scenario.getTransitVehicles() != null) {
+				output.writeByte(SECTION_TRANSIT_VEHICLES);
+				writeVehicles(this.scenario.getTransitVehicles());
+			}
+			output.writeByte(SECTION_END);
+		} finally {
+			this.out = null;
+		}
+	}
+
+	private void writeNetwork(final Network network) {
+		this.out.writeString(network.getName());
+		this.out.writeDouble(network.getCapacityPeriod());
+		this.out.writeDouble(network.getEffectiveLaneWidth());
+		this.out.writeDouble(network.getEffectiveCellSize());
+		writeAttributes(network.getAttributes());
+
+		this.out.writeVarInt(network.getNodes().size());
+		for (Node node : network.getNodes().values()) {
+			this.out.writeId(node.getId(), Node.class);
+			writeCoord(node.getCoord());
+			writeAttributes(node.getAttributes());
+		}
+
+		this.out.writeVarInt(network.getLinks().size());
+		for (Link link : network.getLinks().values()) {
+			this.out.writeId(link.getId(), Link.class);
+			this.out.writeId(link.getFromNode().getId(), Node.class);
+			this.out.writeId(link.getToNode().getId(), Node.class);
+			this.out.writeDouble(link.getLength());
+			this.out.writeDouble(link.getFreespeed());
+			this.out.writeDouble(link.getCapacity());
+			this.out.writeDouble(link.getNumberOfLanes());
+			this.out.writeSharedString(String.join(",", link.getAllowedModes()));
+			writeAttributes(link.getAttributes());
+		}
+	}
+
+	private void writePopulation(final Population population) {
+		this.out.writeString(population.getName());
+		writeAttributes(population.getAttributes());
+
+		this.out.writeVarInt(population.getPersons().size());
+		for (Person person : population.getPersons().values()) {
+			this.out.writeId(person.getId(), Person.class);
+			writeAttributes(person.getAttributes());
+			List<? extends Plan> plans = person.getPlans();
+			this.out.writeVarInt(plans.size());
+			this.out.writeVarInt(plans.indexOf(person.getSelectedPlan()) + 1);
+			for (Plan plan : plans) {
+				writePlan(plan);
+			}
+		}
+	}
+
+	private void writePlan(final Plan plan) {
+		this.out.writeSharedString(plan.getType());
+		Double score = plan.getScore();
+		this.out.writeBoolean(score != null);
+		if (score != null) {
+			this.out.writeDouble(score);
+		}
+		writeAttributes(plan.getAttributes());
+
+		List<PlanElement> planElements = plan.getPlanElements();
+		this.out.writeVarInt(planElements.size());
+		for (PlanElement pe : planElements) {
+			if (pe instanceof Activity) {
+				Activity activity = (Activity) pe;
+				this.out.writeByte(ACTIVITY);
+				this.out.writeSharedString(activity.getType());
+				writeCoord(activity.getCoord());
+				this.out.writeId(activity.getLinkId(), Link.class);
+				this.out.writeId(activity.getFacilityId(), ActivityFacility.class);
+				this.out.writeDouble(activity.getStartTime());
+				this.out.writeDouble(activity.getEndTime());
+				this.out.writeDouble(activity.getMaximumDuration());
+				writeAttributes(activity.getAttributes());
+			} else if (pe instanceof Leg) {
+				Leg leg = (Leg) pe;
+				this.out.writeByte(LEG);
+				this.out.writeSharedString(leg.getMode());
+				this.out.writeDouble(leg.getDepartureTime());
+				this.out.writeDouble(leg.getTravelTime());
+				writeAttributes(leg.getAttributes());
+				writeRoute(leg.getRoute());
+			} else {
+				throw new IllegalArgumentException("Unsupported plan element: " + pe.getClass().getName());
+			}
+		}
+	}
+
+	private void writeRoute(final Route route) {
+		if (route == null) {
+			this.out.writeByte(ROUTE_NONE);
+			return;
+		}
+		this.out.writeByte(route instanceof NetworkRoute ? ROUTE_NETWORK : ROUTE_DESCRIPTION);
+		this.out.writeSharedString(route.getRouteType());
+		this.out.writeId(route.getStartLinkId(), Link.class);
+		this.out.writeId(route.getEndLinkId(), Link.class);
+		this.out.writeDouble(route.getDistance());
+		this.out.writeDouble(route.getTravelTime());
+		if (route instanceof NetworkRoute) {
+			NetworkRoute networkRoute = (NetworkRoute) route;
+			this.out.writeId(networkRoute.getVehicleId(), Vehicle.class);
+			writeLinkIds(networkRoute);
+		} else {
+			this.out.writeString(route.getRouteDescription());
+		}
+	}
+
+	private void writeLinkIds(final NetworkRoute route) {
+		List<Id<Link>> linkIds = route.getLinkIds();
+		this.out.writeVarInt(linkIds.size());
+		for (Id<Link> linkId : linkIds) {
+			this.out.writeId(linkId, Link.class);
+		}
+	}
+
+	private void writeTransitSchedule(final TransitSchedule schedule) {
+		writeAttributes(schedule.getAttributes());
+
+		this.out.writeVarInt(schedule.getFacilities().size());
+		for (TransitStopFacility stop : schedule.getFacilities().values()) {
+			this.out.writeId(stop.getId(), TransitStopFacility.class);
+			writeCoord(stop.getCoord());
+			this.out.writeBoolean(stop.getIsBlockingLane());
+			this.out.writeId(stop.getLinkId(), Link.class);
+			this.out.writeString(stop.getName());
+			this.out.writeId(stop.getStopAreaId(), TransitStopArea.class);
+			writeAttributes(stop.getAttributes());
+		}
+
+		MinimalTransferTimes.MinimalTransferTimesIterator iter = schedule.getMinimalTransferTimes().iterator();
+		while (iter.hasNext()) {
+			iter.next();
+			this.out.writeBoolean(true);
+			this.out.writeId(iter.getFromStopId(), TransitStopFacility.class);
+			this.out.writeId(iter.getToStopId(), TransitStopFacility.class);
+			this.out.writeDouble(iter.getSeconds());
+		}
+		this.out.writeBoolean(false);
+
+		this.out.writeVarInt(schedule.getTransitLines().size());
+		for (TransitLine line : schedule.getTransitLines().values()) {
+			this.out.writeId(line.getId(), TransitLine.class);
+			this.out.writeString(line.getName());
+			writeAttributes(line.getAttributes());
+			this.out.writeVarInt(line.getRoutes().size());
+			for (TransitRoute route : line.getRoutes().values()) {
+				writeTransitRoute(route);
+			}
+		}
+	}
+
+	private void writeTransitRoute(final TransitRoute route) {
+		this.out.writeId(route.getId(), TransitRoute.class);
+		this.out.writeString(route.getDescription());
+		this.out.writeSharedString(route.getTransportMode());
+
+		this.out.writeVarInt(route.getStops().size());
+		for (TransitRouteStop stop : route.getStops()) {
+			this.out.writeId(stop.getStopFacility().getId(), TransitStopFacility.class);
+			this.out.writeDouble(stop.getArrivalOffset());
+			this.out.writeDouble(stop.getDepartureOffset());
+			this.out.writeBoolean(stop.isAwaitDepartureTime());
+		}
+
+		NetworkRoute networkRoute = route.getRoute();
+		this.out.writeBoolean(networkRoute != null);
+		if (networkRoute != null) {
+			this.out.writeId(networkRoute.getStartLinkId(), Link.class);
+			this.out.writeId(networkRoute.getEndLinkId(), Link.class);
+			writeLinkIds(networkRoute);
+		}
+		writeAttributes(route.getAttributes());
+
+		this.out.writeVarInt(route.getDepartures().size());
+		for (Departure departure : route.getDepartures().values()) {
+			this.out.writeId(departure.getId(), Departure.class);
+			this.out.writeDouble(departure.getDepartureTime());
+			this.out.writeId(departure.getVehicleId(), Vehicle.class);
+			writeAttributes(departure.getAttributes());
+		}
+	}
+
+	private void writeVehicles(final Vehicles vehicles) {
+		this.out.writeVarInt(vehicles.getVehicleTypes().size());
+		for (VehicleType type : vehicles.getVehicleTypes().values()) {
+			this.out.writeId(type.getId(), VehicleType.class);
+			this.out.writeString(type.getDescription());
+			writeAttributes(type.getAttributes());
+
+			VehicleCapacity capacity = type.getCapacity();
+			writeNullableInteger(capacity.getSeats());
+			writeNullableInteger(capacity.getStandingRoom());
+			writeNullableDouble(capacity.getVolumeInCubicMeters());
+			writeNullableDouble(capacity.getWeightInTons());
+			writeNullableDouble(capacity.getOther());
+			writeAttributes(capacity.getAttributes());
+
+			this.out.writeDouble(type.getLength());
+			this.out.writeDouble(type.getWidth());
+			this.out.writeDouble(type.getMaximumVelocity());
+			this.out.writeDouble(type.getPcuEquivalents());
+			this.out.writeDouble(type.getFlowEfficiencyFactor());
+			this.out.writeSharedString(type.getNetworkMode());
+			writeAttributes(type.getEngineInformation().getAttributes());
+
+			CostInformation costInformation = type.getCostInformation();
+			writeNullableDouble(costInformation.getFixedCosts());
+			writeNullableDouble(costInformation.getCostsPerMeter());
+			writeNullableDouble(costInformation.getCostsPerSecond());
+			writeAttributes(costInformation.getAttributes());
+		}
+
+		this.out.writeVarInt(vehicles.getVehicles().size());
+		for (Vehicle vehicle : vehicles.getVehicles().values()) {
+			this.out.writeId(vehicle.getId(), Vehicle.class);
+			this.out.writeId(vehicle.getType().getId(), VehicleType.class);
+		}
+	}
+
+	private void writeNullableInteger(final Integer value) {
+		this.out.writeBoolean(value != null);
+		if (value != null) {
+			this.out.writeInt(value);
+		}
+	}
+
+	private void writeNullableDouble(final Double value) {
+		this.out.writeBoolean(value != null);
+		if (value != null) {
+			this.out.writeDouble(value);
+		}
+	}
+
+	private void writeCoord(final Coord coord) {
+		if (coord == null) {
+			this.out.writeByte(COORD_NONE);
+		} else if (coord.hasZ()) {
+			this.out.writeByte(COORD_XYZ);
+			this.out.writeDouble(coord.getX());
+			this.out.writeDouble(coord.getY());
+			this.out.writeDouble(coord.getZ());
+		} else {
+			this.out.writeByte(COORD_XY);
+			this.out.writeDouble(coord.getX());
+			this.out.writeDouble(coord.getY());
+		}
+	}
+
+	/*
+	 * The entries are terminated by a null name.
+	 */
+	private void writeAttributes(final Attributes attributes) {
+		for (Map.Entry<String, Object> e : attributes.getAsMap().entrySet()) {
+			Object value = e.getValue();
+			Class<?> clazz = value.getClass();
+			if (clazz == String.class) {
+				this.out.writeSharedString(e.getKey());
+				this.out.writeByte(ATTRIBUTE_STRING);
+				this.out.writeString((String) value);
+			} else if (clazz == Integer.class) {
+				this.out.writeSharedString(e.getKey());
+				this.out.writeByte(ATTRIBUTE_INTEGER);
+				this.out.writeInt((Integer) value);
+			} else if (clazz == Long.class) {
+				this.out.writeSharedString(e.getKey());
+				this.out.writeByte(ATTRIBUTE_LONG);
+				this.out.writeLong((Long) value);
+			} else if (clazz == Double.class) {
+				this.out.writeSharedString(e.getKey());
+				this.out.writeByte(ATTRIBUTE_DOUBLE);
+				this.out.writeDouble((Double) value);
+			} else if (clazz == Boolean.class) {
+				this.out.writeSharedString(e.getKey());
+				this.out.writeByte(ATTRIBUTE_BOOLEAN);
+				this.out.writeBoolean((Boolean) value);
+			} else {
+				String converted = this.converter.convertToString(value);
+				if (converted == null) {
+					if (this.classesWithoutConverter.add(clazz)) {
+						log.warn("No converter for attributes of class " + clazz.getName() + ", they are not written to the snapshot.");
+					}
+					continue;
+				}
+				this.out.writeSharedString(e.getKey());
+				this.out.writeByte(ATTRIBUTE_CONVERTED);
+				this.out.writeSharedString(clazz.getName());
+				this.out.writeString(converted);
+			}
+		}
+		this.out.writeSharedString(null);
+	}
+}
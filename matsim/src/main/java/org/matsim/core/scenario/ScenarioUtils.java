@@ -91,6 +91,28 @@ public final class ScenarioUtils {
 		scenarioLoader.loadScenario();
 	}
 	
+	/**
+	 *
+	 * Writes the network, population, transit schedule and vehicles of a fully loaded scenario into a binary snapshot,
+	 * which can be loaded much faster than the input files, see {@link #loadScenarioSnapshot(Config, String)}.
+	 *
+	 */
+	public static void writeScenarioSnapshot(final Scenario scenario, final String filename) {
+		new ScenarioSnapshotWriter(scenario).write(filename);
+	}
+
+	/**
+	 *
+	 * Initializes a scenario and populates it with the data of a snapshot written by
+	 * {@link #writeScenarioSnapshot(Scenario, String)}.  The input files named in the config are not read.
+	 *
+	 */
+	public static Scenario loadScenarioSnapshot(final Config config, final String filename) {
+		Scenario scenario = createScenario(config);
+		new ScenarioSnapshotReader(scenario).readFile(filename);
+		return scenario;
+	}
+	
 	public final static class ScenarioBuilder {
 		private MutableScenario scenario;
 		public ScenarioBuilder( Config config ) {
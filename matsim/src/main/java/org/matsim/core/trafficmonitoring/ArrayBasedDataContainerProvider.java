@@ -78,5 +78,10 @@ class ArrayBasedDataContainerProvider implements DataContainerProvider {
 			return this.delegate.getTravelTimeData(link, createIfMissing);
 		}
 	}
+
+	@Override
+	public Iterable<TravelTimeData> getAllTravelTimeData() {
+		return this.delegate.getAllTravelTimeData();
+	}
 	
 }
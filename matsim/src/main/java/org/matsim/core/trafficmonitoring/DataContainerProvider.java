@@ -34,4 +34,9 @@ interface DataContainerProvider {
 	 * This method is called from the TravelTime part of the TravelTimeCalculator.
 	 */
 	/*package*/ TravelTimeData getTravelTimeData(final Link link, final boolean createIfMissing);
+
+	/*
+	 * This method is called when the TravelTimeCalculator is reset.
+	 */
+	/*package*/ Iterable<TravelTimeData> getAllTravelTimeData();
 }
@@ -0,0 +1,87 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdIndexedDataContainerProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Stores the TravelTimeData objects in an array indexed by {@link Id#index()} of the link, so
+ * neither the event handler part nor the router part of the TravelTimeCalculator needs a map lookup.
+ * <p></p>
+ * The array covers all link ids that exist when the provider is created, which includes the links of
+ * the network.  Data for link ids created later goes to a map.  Data objects are created lazily and
+ * may be requested concurrently by several routing threads.
+ */
+final class IdIndexedDataContainerProvider implements DataContainerProvider {
+
+	private final AtomicReferenceArray<TravelTimeData> linkData;
+	private final Map<Id<Link>, TravelTimeData> additionalLinkData = new ConcurrentHashMap<>();
+	private final TravelTimeDataFactory ttDataFactory;
+
+	IdIndexedDataContainerProvider(TravelTimeDataFactory ttDataFactory) {
+		this.linkData = new AtomicReferenceArray<>(Id.getNumberOfIds(Link.class));
+		this.ttDataFactory = ttDataFactory;
+	}
+
+	@Override
+	public TravelTimeData getTravelTimeData(final Id<Link> linkId, final boolean createIfMissing) {
+		int index = linkId.index();
+		if (index >= this.linkData.length()) {
+			if (createIfMissing) {
+				return this.additionalLinkData.computeIfAbsent(linkId, this.ttDataFactory::createTravelTimeData);
+			}
+			return this.additionalLinkData.get(linkId);
+		}
+		TravelTimeData data = this.linkData.get(index);
+		if (data == null && createIfMissing) {
+			data = this.ttDataFactory.createTravelTimeData(linkId);
+			if (!this.linkData.compareAndSet(index, null, data)) {
+				data = this.linkData.get(index);
+			}
+		}
+		return data;
+	}
+
+	@Override
+	public TravelTimeData getTravelTimeData(final Link link, final boolean createIfMissing) {
+		return this.getTravelTimeData(link.getId(), createIfMissing);
+	}
+
+	@Override
+	public Iterable<TravelTimeData> getAllTravelTimeData() {
+		List<TravelTimeData> all = new ArrayList<>();
+		for (int i = 0; i < this.linkData.length(); i++) {
+			TravelTimeData data = this.linkData.get(i);
+			if (data != null) {
+				all.add(data);
+			}
+		}
+		all.addAll(this.additionalLinkData.values());
+		return all;
+	}
+}
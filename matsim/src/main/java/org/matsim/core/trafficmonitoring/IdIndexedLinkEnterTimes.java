@@ -0,0 +1,94 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdIndexedLinkEnterTimes.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the link enter time and the index of the entered link in primitive arrays indexed by
+ * {@link Id#index()} of the vehicle, so handling an event neither hashes nor allocates.  A vehicle
+ * that is not on a link has the enter time <code>NaN</code>.
+ * <p></p>
+ * Not thread-safe; like every event handler, this is expected to be called by one thread at a time.
+ */
+final class IdIndexedLinkEnterTimes implements LinkEnterTimes {
+
+	private double[] enterTimes;
+	private int[] linkIndices;
+
+	IdIndexedLinkEnterTimes() {
+		int size = Math.max(Id.getNumberOfIds(Vehicle.class), 16);
+		this.enterTimes = new double[size];
+		this.linkIndices = new int[size];
+		Arrays.fill(this.enterTimes, Double.NaN);
+	}
+
+	@Override
+	public void put(LinkEnterEvent event) {
+		int index = event.getVehicleId().index();
+		if (index >= this.enterTimes.length) {
+			grow(index);
+		}
+		this.enterTimes[index] = event.getTime();
+		this.linkIndices[index] = event.getLinkId().index();
+	}
+
+	private void grow(int index) {
+		int oldSize = this.enterTimes.length;
+		int newSize = Math.max(index + 1, oldSize + (oldSize >> 1));
+		this.enterTimes = Arrays.copyOf(this.enterTimes, newSize);
+		this.linkIndices = Arrays.copyOf(this.linkIndices, newSize);
+		Arrays.fill(this.enterTimes, oldSize, newSize, Double.NaN);
+	}
+
+	@Override
+	public double getEnterTime(Id<Vehicle> vehicleId) {
+		int index = vehicleId.index();
+		return index < this.enterTimes.length ? this.enterTimes[index] : Double.NaN;
+	}
+
+	@Override
+	public Id<Link> getLinkId(Id<Vehicle> vehicleId) {
+		int index = vehicleId.index();
+		if (index >= this.enterTimes.length || Double.isNaN(this.enterTimes[index])) {
+			return null;
+		}
+		return Id.get(this.linkIndices[index], Link.class);
+	}
+
+	@Override
+	public void remove(Id<Vehicle> vehicleId) {
+		int index = vehicleId.index();
+		if (index < this.enterTimes.length) {
+			this.enterTimes[index] = Double.NaN;
+		}
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.enterTimes, Double.NaN);
+	}
+}
@@ -0,0 +1,116 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdIndexedLinkToLinkDataContainerProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.utils.collections.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Stores the link-to-link TravelTimeData objects in one array with a dense index over all turns of the network.
+ * <p></p>
+ * The turns from a link are the out-links of its to-node; they occupy the slots
+ * <code>firstTurn[fromLinkIndex] .. firstTurn[fromLinkIndex + 1] - 1</code>, and <code>turnToLink</code>
+ * holds the {@link Id#index()} of their to-links.  Since a node has only a handful of out-links, looking up a
+ * turn is a short linear scan and, unlike a map keyed by link pairs, does not allocate anything.  Pairs of links
+ * that are not a turn of the network, or that use link ids created after the provider, go to a map.
+ */
+final class IdIndexedLinkToLinkDataContainerProvider {
+
+	private final int[] firstTurn;
+	private final int[] turnToLink;
+	private final AtomicReferenceArray<TravelTimeData> turnData;
+	private final Map<Tuple<Id<Link>, Id<Link>>, TravelTimeData> additionalData = new ConcurrentHashMap<>();
+	private final TravelTimeDataFactory ttDataFactory;
+
+	IdIndexedLinkToLinkDataContainerProvider(Network network, TravelTimeDataFactory ttDataFactory) {
+		this.ttDataFactory = ttDataFactory;
+		int numberOfLinkIds = Id.getNumberOfIds(Link.class);
+		this.firstTurn = new int[numberOfLinkIds + 1];
+		int turns = 0;
+		for (int i = 0; i < numberOfLinkIds; i++) {
+			this.firstTurn[i] = turns;
+			Link link = network.getLinks().get(Id.get(i, Link.class));
+			if (link != null) {
+				turns += link.getToNode().getOutLinks().size();
+			}
+		}
+		this.firstTurn[numberOfLinkIds] = turns;
+		this.turnToLink = new int[turns];
+		for (int i = 0; i < numberOfLinkIds; i++) {
+			Link link = network.getLinks().get(Id.get(i, Link.class));
+			if (link != null) {
+				int turn = this.firstTurn[i];
+				for (Id<Link> toLinkId : link.getToNode().getOutLinks().keySet()) {
+					this.turnToLink[turn++] = toLinkId.index();
+				}
+			}
+		}
+		this.turnData = new AtomicReferenceArray<>(turns);
+	}
+
+	private int getTurnIndex(int fromLinkIndex, int toLinkIndex) {
+		if (fromLinkIndex + 1 >= this.firstTurn.length) {
+			return -1;
+		}
+		for (int turn = this.firstTurn[fromLinkIndex], end = this.firstTurn[fromLinkIndex + 1]; turn < end; turn++) {
+			if (this.turnToLink[turn] == toLinkIndex) {
+				return turn;
+			}
+		}
+		return -1;
+	}
+
+	TravelTimeData getTravelTimeData(final Id<Link> fromLinkId, final Id<Link> toLinkId) {
+		int turn = getTurnIndex(fromLinkId.index(), toLinkId.index());
+		if (turn < 0) {
+			return this.additionalData.computeIfAbsent(new Tuple<>(fromLinkId, toLinkId),
+					fromToLink -> this.ttDataFactory.createTravelTimeData(fromLinkId));
+		}
+		TravelTimeData data = this.turnData.get(turn);
+		if (data == null) {
+			data = this.ttDataFactory.createTravelTimeData(fromLinkId);
+			if (!this.turnData.compareAndSet(turn, null, data)) {
+				data = this.turnData.get(turn);
+			}
+		}
+		return data;
+	}
+
+	Iterable<TravelTimeData> getAllTravelTimeData() {
+		List<TravelTimeData> all = new ArrayList<>();
+		for (int i = 0; i < this.turnData.length(); i++) {
+			TravelTimeData data = this.turnData.get(i);
+			if (data != null) {
+				all.add(data);
+			}
+		}
+		all.addAll(this.additionalData.values());
+		return all;
+	}
+}
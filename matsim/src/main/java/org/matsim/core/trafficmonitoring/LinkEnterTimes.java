@@ -0,0 +1,48 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkEnterTimes.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Remembers, for every vehicle on the network, the link it entered last and when.
+ */
+interface LinkEnterTimes {
+
+	/*package*/ void put(final LinkEnterEvent event);
+
+	/**
+	 * @return the time the vehicle entered its current link, or <code>Double.NaN</code> if the vehicle is not on a link
+	 */
+	/*package*/ double getEnterTime(final Id<Vehicle> vehicleId);
+
+	/**
+	 * @return the link the vehicle entered last, or <code>null</code> if the vehicle is not on a link
+	 */
+	/*package*/ Id<Link> getLinkId(final Id<Vehicle> vehicleId);
+
+	/*package*/ void remove(final Id<Vehicle> vehicleId);
+
+	/*package*/ void clear();
+}
@@ -49,5 +49,10 @@ class MapBasedDataContainerProvider implements DataContainerProvider {
 	public TravelTimeData getTravelTimeData(Link link, boolean createIfMissing) {
 		return this.getTravelTimeData(link.getId(), createIfMissing);
 	}
+
+	@Override
+	public Iterable<TravelTimeData> getAllTravelTimeData() {
+		return this.linkData.values();
+	}
 	
 }
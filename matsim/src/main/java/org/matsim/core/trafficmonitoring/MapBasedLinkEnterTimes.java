@@ -0,0 +1,64 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MapBasedLinkEnterTimes.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the last {@link LinkEnterEvent} of every vehicle in a map keyed by the vehicle id.
+ */
+class MapBasedLinkEnterTimes implements LinkEnterTimes {
+
+	private final Map<Id<Vehicle>, LinkEnterEvent> linkEnterEvents = new ConcurrentHashMap<>();
+
+	@Override
+	public void put(LinkEnterEvent event) {
+		this.linkEnterEvents.put(event.getVehicleId(), event);
+	}
+
+	@Override
+	public double getEnterTime(Id<Vehicle> vehicleId) {
+		LinkEnterEvent event = this.linkEnterEvents.get(vehicleId);
+		return event == null ? Double.NaN : event.getTime();
+	}
+
+	@Override
+	public Id<Link> getLinkId(Id<Vehicle> vehicleId) {
+		LinkEnterEvent event = this.linkEnterEvents.get(vehicleId);
+		return event == null ? null : event.getLinkId();
+	}
+
+	@Override
+	public void remove(Id<Vehicle> vehicleId) {
+		this.linkEnterEvents.remove(vehicleId);
+	}
+
+	@Override
+	public void clear() {
+		this.linkEnterEvents.clear();
+	}
+}
@@ -32,6 +32,7 @@ import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.LinkDataStorage;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.router.util.LinkToLinkTravelTime;
 import org.matsim.core.router.util.TravelTime;
@@ -40,6 +41,8 @@ import org.matsim.core.utils.collections.Tuple;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleType;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -56,6 +59,10 @@ import java.util.concurrent.ConcurrentHashMap;
  * use {@link TravelTimeDataHashMap},}
  * as that one does not use any memory to time bins where no traffic occurred. By default,
  * {@link TravelTimeDataArray} is used.
+ * <br>
+ * With {@link LinkDataStorage#idIndexed}, the travel time data and the link enter times of the vehicles
+ * are kept in arrays indexed by {@link Id#index()} instead of maps, which saves several hash lookups and
+ * allocations per event and a good part of the memory on networks with millions of links.
  *
  * @author dgrether
  * @author mrieser
@@ -73,13 +80,13 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 	TimeSlotComputation aggregator;
 
 
-	private Map<Id<Link>, TravelTimeData> linkData;
-
 	private Map<Tuple<Id<Link>, Id<Link>>, TravelTimeData> linkToLinkData;
 
+	private IdIndexedLinkToLinkDataContainerProvider linkToLinkDataProvider;
+
 	private final DataContainerProvider dataContainerProvider;
 
-	private final Map<Id<Vehicle>, LinkEnterEvent> linkEnterEvents;
+	private final LinkEnterTimes linkEnterTimes;
 
 	private final Set<Id<Vehicle>> vehiclesToIgnore;
 	private final Set<String> analyzedModes;
@@ -114,6 +121,9 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 			case TravelTimeCalculatorHashMap:
 				calculator.ttDataFactory = new TravelTimeDataHashMapFactory(network);
 				break;
+			case TravelTimeCalculatorOffHeap:
+				calculator.ttDataFactory = new TravelTimeDataOffHeapFactory(network, calculator.numSlots, getOffHeapTravelTimesFile(calculator, config));
+				break;
 			default:
 				throw new RuntimeException(config.getTravelTimeCalculatorType() + " is unknown!");
 		}
@@ -132,12 +142,23 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		return calculator;
 	}
 
+	private static String getOffHeapTravelTimesFile(TravelTimeCalculator calculator, TravelTimeCalculatorConfigGroup config) {
+		String filename = config.getOffHeapTravelTimesFile();
+		if (filename != null && config.getSeparateModes() && calculator.filterAnalyzedModes && calculator.analyzedModes != null) {
+			// there is one calculator per mode, and each of them needs its own file:
+			Path file = Paths.get(filename);
+			filename = file.resolveSibling(String.join("_", calculator.analyzedModes) + "." + file.getFileName()).toString();
+		}
+		return filename;
+	}
+
 	@Deprecated // user builder instead.  kai, feb'19
 	@Inject // yyyy why is this needed?  In general, this class is NOT injected, but explicitly constructed in TravelTimeCalculatorModule.  kai, feb'19
 	TravelTimeCalculator(TravelTimeCalculatorConfigGroup ttconfigGroup, EventsManager eventsManager, Network network) {
 		// this injected constructor is not used when getSeparateModes is true
 		this(network, ttconfigGroup.getTraveltimeBinSize(), ttconfigGroup.getMaxTime(), ttconfigGroup.isCalculateLinkTravelTimes(),
-			  ttconfigGroup.isCalculateLinkToLinkTravelTimes(), ttconfigGroup.isFilterModes(), CollectionUtils.stringToSet(ttconfigGroup.getAnalyzedModesAsString() ) );
+			  ttconfigGroup.isCalculateLinkToLinkTravelTimes(), ttconfigGroup.isFilterModes(), CollectionUtils.stringToSet(ttconfigGroup.getAnalyzedModesAsString() ),
+			  ttconfigGroup.getLinkDataStorage() );
 		eventsManager.addHandler(this);
 		configure(this, ttconfigGroup, network);
 	}
@@ -152,7 +173,7 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 	@Deprecated // user builder instead.  kai, feb'19
 	public TravelTimeCalculator(final Network network, final int timeslice, final int maxTime, TravelTimeCalculatorConfigGroup ttconfigGroup) {
 		this(network, timeslice, maxTime, ttconfigGroup.isCalculateLinkTravelTimes(), ttconfigGroup.isCalculateLinkToLinkTravelTimes(), ttconfigGroup.isFilterModes(),
-			  CollectionUtils.stringToSet(ttconfigGroup.getAnalyzedModesAsString() ) );
+			  CollectionUtils.stringToSet(ttconfigGroup.getAnalyzedModesAsString() ), ttconfigGroup.getLinkDataStorage() );
 	}
 
 	public final static class Builder {
@@ -165,6 +186,7 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		private boolean calculateLinkToLinkTravelTimes = false ;
 		private boolean filterModes = false ;
 		private Set<String> analyzedModes = null ;
+		private LinkDataStorage linkDataStorage = LinkDataStorage.hashMap ;
 		private TravelTimeCalculatorConfigGroup ttcConfig;
 		private boolean toBeConfigured = false ;
 
@@ -196,18 +218,23 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 			this.analyzedModes = analyzedModes;
 		}
 
+		public void setLinkDataStorage( LinkDataStorage linkDataStorage ){
+			this.linkDataStorage = linkDataStorage;
+		}
+
 		public void configure ( TravelTimeCalculatorConfigGroup ttcConfig ) {
 			// yyyyyy this is a fix to get the outward API sorted out somewhat better.  kai, feb'19
 			// yyyyyy presumably would like to replace this with setters for {@link TravelTimeDataFactory} and {@link TravelTimeGetter}.  But it ain't that easy because
 			// they again depend on material that (currently) is only available _after_ construction of {@link TravelTimeCalculator}.  kai, feb'19
 
 			this.ttcConfig = ttcConfig ;
+			this.linkDataStorage = ttcConfig.getLinkDataStorage() ;
 			this.toBeConfigured = true ;
 		}
 
 		public TravelTimeCalculator build() {
 			TravelTimeCalculator abc = new TravelTimeCalculator( network, timeslice, maxTime, calculateLinkTravelTimes, calculateLinkToLinkTravelTimes, filterModes,
-				  analyzedModes );
+				  analyzedModes, linkDataStorage );
 			if( toBeConfigured ){
 				TravelTimeCalculator.configure( abc, this.ttcConfig, this.network );
 			}
@@ -217,7 +244,8 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 	}
 
 	private TravelTimeCalculator(final Network network, final int timeslice, final int maxTime,
-				   boolean calculateLinkTravelTimes, boolean calculateLinkToLinkTravelTimes, boolean filterModes, Set<String> analyzedModes) {
+				   boolean calculateLinkTravelTimes, boolean calculateLinkToLinkTravelTimes, boolean filterModes, Set<String> analyzedModes,
+				   LinkDataStorage linkDataStorage) {
 		this.calculateLinkTravelTimes = calculateLinkTravelTimes;
 		this.calculateLinkToLinkTravelTimes = calculateLinkToLinkTravelTimes;
 		this.filterAnalyzedModes = filterModes;
@@ -227,8 +255,13 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		this.aggregator = new TimeSlotComputation(this.numSlots, this.timeSlice);
 		this.travelTimeGetter = new AveragingTravelTimeGetter( this.aggregator ) ;
 		this.ttDataFactory = new TravelTimeDataArrayFactory(network, this.numSlots);
-		if (this.calculateLinkTravelTimes){
-			this.linkData = new ConcurrentHashMap<>((int) (network.getLinks().size() * 1.4));
+		// the factory may still be replaced when the calculator is configured, so the containers look it up on every creation:
+		TravelTimeDataFactory currentTtDataFactory = linkId -> this.ttDataFactory.createTravelTimeData(linkId);
+		final boolean idIndexed = linkDataStorage == LinkDataStorage.idIndexed;
+		if (this.calculateLinkTravelTimes && idIndexed){
+			this.dataContainerProvider = new IdIndexedDataContainerProvider(currentTtDataFactory);
+		} else if (this.calculateLinkTravelTimes){
+			Map<Id<Link>, TravelTimeData> linkData = new ConcurrentHashMap<>((int) (network.getLinks().size() * 1.4));
 
 			/*
 			 * So far, link data objects were stored in a HashMap. This lookup strategy is used
@@ -241,13 +274,16 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 			 * cdobler, oct'13
 			 */
 			//		this.dataContainerProvider = new MapBasedDataContainerProvider(linkData, ttDataFactory);
-			this.dataContainerProvider = new ArrayBasedDataContainerProvider(linkData, ttDataFactory, network);
+			this.dataContainerProvider = new ArrayBasedDataContainerProvider(linkData, currentTtDataFactory, network);
 		} else this.dataContainerProvider = null;
-		if (this.calculateLinkToLinkTravelTimes){
+		if (this.calculateLinkToLinkTravelTimes && idIndexed){
+			this.linkToLinkDataProvider = new IdIndexedLinkToLinkDataContainerProvider(network,
+					fromLinkId -> this.ttDataFactory.createLinkToLinkTravelTimeData(fromLinkId));
+		} else if (this.calculateLinkToLinkTravelTimes){
 			// assume that every link has 2 outgoing links as default
 			this.linkToLinkData = new ConcurrentHashMap<>((int) (network.getLinks().size() * 1.4 * 2));
 		}
-		this.linkEnterEvents = new ConcurrentHashMap<>();
+		this.linkEnterTimes = idIndexed ? new IdIndexedLinkEnterTimes() : new MapBasedLinkEnterTimes();
 
 		// if we just look at one mode, we need to ignore all vehicles with a different mode. However, the info re the mode is only in
 		// the vehicleEntersTraffic event.  So we need to memorize the ignored vehicles from there ...
@@ -264,26 +300,25 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		 * performs a trip with one of those modes. if not, we skip the event. */
 		if (filterAnalyzedModes && vehiclesToIgnore.contains(e.getVehicleId())) return;
 
-		LinkEnterEvent oldEvent = this.linkEnterEvents.remove(e.getVehicleId());
-		if ((oldEvent != null) && this.calculateLinkToLinkTravelTimes) {
-			Tuple<Id<Link>, Id<Link>> fromToLink = new Tuple<>(oldEvent.getLinkId(), e.getLinkId());
-			TravelTimeData data = getLinkToLinkTravelTimeData(fromToLink );
-			double enterTime = oldEvent.getTime();
+		if (this.calculateLinkToLinkTravelTimes) {
+			double enterTime = this.linkEnterTimes.getEnterTime(e.getVehicleId());
+			if (!Double.isNaN(enterTime)) {
+				TravelTimeData data = getLinkToLinkTravelTimeData(this.linkEnterTimes.getLinkId(e.getVehicleId()), e.getLinkId() );
 
-			final int timeSlot = this.aggregator.getTimeSlotIndex(enterTime );
-			data.addTravelTime(timeSlot, e.getTime() - enterTime );
-			data.setNeedsConsolidation( true );
+				final int timeSlot = this.aggregator.getTimeSlotIndex(enterTime );
+				data.addTravelTime(timeSlot, e.getTime() - enterTime );
+				data.setNeedsConsolidation( true );
+			}
 		}
-		this.linkEnterEvents.put(e.getVehicleId(), e);
+		this.linkEnterTimes.put(e);
 	}
 
 	@Override
 	public void handleEvent(final LinkLeaveEvent e) {
 		if (this.calculateLinkTravelTimes) {
-			LinkEnterEvent oldEvent = this.linkEnterEvents.get(e.getVehicleId());
-			if (oldEvent != null) {
+			double enterTime = this.linkEnterTimes.getEnterTime(e.getVehicleId());
+			if (!Double.isNaN(enterTime)) {
 				TravelTimeData data = this.dataContainerProvider.getTravelTimeData(e.getLinkId(), true);
-				double enterTime = oldEvent.getTime();
 
 				final int timeSlot = this.aggregator.getTimeSlotIndex(enterTime );
 				data.addTravelTime(timeSlot, e.getTime() - enterTime );
@@ -307,7 +342,7 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		/* remove EnterEvents from list when a vehicle arrives.
 		 * otherwise, the activity duration would counted as travel time, when the
 		 * vehicle departs again and leaves the link! */
-		this.linkEnterEvents.remove(event.getVehicleId());
+		this.linkEnterTimes.remove(event.getVehicleId());
 
 		// try to remove vehicles from set with filtered vehicles
 		if (filterAnalyzedModes) this.vehiclesToIgnore.remove(event.getVehicleId());
@@ -318,14 +353,15 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		/* remove EnterEvents from list when a bus stops on a link.
 		 * otherwise, the stop time would counted as travel time, when the
 		 * bus departs again and leaves the link! */
-		this.linkEnterEvents.remove(event.getVehicleId());
+		this.linkEnterTimes.remove(event.getVehicleId());
 	}
 
 	@Override
 	public void handleEvent(VehicleAbortsEvent event) {
-		LinkEnterEvent e = this.linkEnterEvents.remove(event.getVehicleId());
-		if (e != null) {
-			TravelTimeData data = this.dataContainerProvider.getTravelTimeData(e.getLinkId(), true);
+		Id<Link> linkId = this.linkEnterTimes.getLinkId(event.getVehicleId());
+		this.linkEnterTimes.remove(event.getVehicleId());
+		if (linkId != null) {
+			TravelTimeData data = this.dataContainerProvider.getTravelTimeData(linkId, true);
 			data.setNeedsConsolidation( true );
 
 			//			this.aggregator.addStuckEventTravelTime(data, e.getTime(), event.getTime());
@@ -344,10 +380,14 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		if (filterAnalyzedModes) this.vehiclesToIgnore.remove(event.getVehicleId());
 	}
 
-	private TravelTimeData getLinkToLinkTravelTimeData( Tuple<Id<Link>, Id<Link>> fromLinkToLink ) {
+	private TravelTimeData getLinkToLinkTravelTimeData( Id<Link> fromLinkId, Id<Link> toLinkId ) {
+		if ( this.linkToLinkDataProvider != null ) {
+			return this.linkToLinkDataProvider.getTravelTimeData( fromLinkId, toLinkId );
+		}
+		Tuple<Id<Link>, Id<Link>> fromLinkToLink = new Tuple<>( fromLinkId, toLinkId );
 		TravelTimeData data = this.linkToLinkData.get(fromLinkToLink);
 		if ( null == data ) {
-			data = this.ttDataFactory.createTravelTimeData(fromLinkToLink.getFirst()) ;
+			data = this.ttDataFactory.createLinkToLinkTravelTimeData(fromLinkToLink.getFirst()) ;
 			this.linkToLinkData.put(fromLinkToLink, data);
 		}
 		return data;
@@ -405,7 +445,7 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 			throw new IllegalStateException("No link to link travel time is available " +
 									    "if calculation is switched off by config option!");
 		}
-		TravelTimeData data = this.getLinkToLinkTravelTimeData(new Tuple<>(fromLinkId, toLinkId) );
+		TravelTimeData data = this.getLinkToLinkTravelTimeData(fromLinkId, toLinkId );
 		if ( data.isNeedingConsolidation() ) {
 			consolidateData(data);
 		}
@@ -415,18 +455,20 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 	@Override
 	public void reset(int iteration) {
 		if (this.calculateLinkTravelTimes) {
-			for (TravelTimeData data : this.linkData.values()){
+			for (TravelTimeData data : this.dataContainerProvider.getAllTravelTimeData()){
 				data.resetTravelTimes();
 				data.setNeedsConsolidation( false );
 			}
 		}
 		if (this.calculateLinkToLinkTravelTimes){
-			for (TravelTimeData data : this.linkToLinkData.values()){
+			Iterable<TravelTimeData> allLinkToLinkData = this.linkToLinkDataProvider != null ?
+					this.linkToLinkDataProvider.getAllTravelTimeData() : this.linkToLinkData.values();
+			for (TravelTimeData data : allLinkToLinkData){
 				data.resetTravelTimes();
 				data.setNeedsConsolidation( false );
 			}
 		}
-		this.linkEnterEvents.clear();
+		this.linkEnterTimes.clear();
 		this.vehiclesToIgnore.clear();
 	}
 
@@ -446,6 +488,11 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 	 * This method ensures that the travel time in a time bin
 	 * cannot be smaller than the travel time in the bin before minus the
 	 * bin size.
+	 * <p></p>
+	 * Since the consolidation writes to the data, it is synchronized.  The lock
+	 * is only taken while the data needs to be consolidated, i.e. by the first
+	 * readers of a link after its travel times have changed.  All later reads
+	 * only check the volatile flag of the data and do not lock.
 	 *
 	 */
 	private void consolidateData(final TravelTimeData data) {
@@ -24,7 +24,8 @@ abstract class TravelTimeData {
 	// yyyy My (relative strong) intuition would be that the methods of this should accept time in seconds, and do the conversion to bins internally.  Otherwise, we bind the
 	// information of TravelTimeData to uniform time slices forever.  kai, feb'19
 
-	private boolean needsConsolidation = true ;
+	// (volatile, so that a reader which sees that the data is consolidated also sees the consolidated travel times)
+	private volatile boolean needsConsolidation = true ;
 
 	public abstract void resetTravelTimes();
 	
@@ -60,7 +61,10 @@ abstract class TravelTimeData {
 	abstract double getTravelTime(final int timeSlot, final double now);
 
 	void setNeedsConsolidation( boolean flag ) {
-		this.needsConsolidation = flag ;
+		// only write the volatile field if the flag changes; it is set for every handled link leave event
+		if ( this.needsConsolidation != flag ) {
+			this.needsConsolidation = flag ;
+		}
 	}
 	boolean isNeedingConsolidation() {
 		return needsConsolidation ;
@@ -28,4 +28,12 @@ interface TravelTimeDataFactory extends MatsimFactory {
 	
 	public TravelTimeData createTravelTimeData(final Id<Link> linkId);
 
+	/**
+	 * Creates the data for the turns from the given link.  Implementations which keep exactly one data object per link
+	 * must create a separate one here.
+	 */
+	default TravelTimeData createLinkToLinkTravelTimeData(final Id<Link> fromLinkId) {
+		return createTravelTimeData(fromLinkId);
+	}
+
 }
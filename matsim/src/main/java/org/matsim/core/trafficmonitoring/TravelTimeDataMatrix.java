@@ -0,0 +1,202 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeDataMatrix.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A matrix of average travel times (as <code>float</code>) and counts (as <code>short</code>) with one row per link
+ * and one column per time slot, stored outside of the Java heap.
+ * <p></p>
+ * The matrix is either allocated in direct memory or mapped to a file.  Since a single buffer cannot hold more
+ * than 2 GB, the rows are distributed over several buffers.  Cells are accessed with absolute gets and puts only,
+ * so any number of threads can read the travel times without locking while the (single) events thread writes them.
+ * <p></p>
+ * A file keeps the travel times after the run and can be mapped again by a later run with the same number of rows
+ * and time slots, e.g. to route the initial plans or to analyze the travel times without parsing the events.  The
+ * header holds a fingerprint of the rows' link ids, so the travel times are only reused if every row still belongs
+ * to the same link.
+ * <p></p>
+ * File format: <code>MAGIC:long rows:int slots:int fingerprint:long</code>, followed by the rows, each being
+ * <code>travelTime:float[slots] count:short[slots]</code>, in native byte order.
+ */
+final class TravelTimeDataMatrix {
+
+	private static final Logger log = Logger.getLogger(TravelTimeDataMatrix.class);
+
+	private static final long MAGIC = 0x4d415453696d5454L; // "MATSimTT"
+	private static final int HEADER_LENGTH = 24;
+	private static final int MAX_CHUNK_SIZE = 1 << 30;
+
+	private final int rows;
+	private final int slots;
+	private final int rowLength;
+	private final int rowsPerChunk;
+	private final ByteBuffer[] chunks;
+
+	/**
+	 * Allocates the matrix in direct memory, with all travel times unset.
+	 */
+	TravelTimeDataMatrix(int rows, int slots) {
+		this.rows = rows;
+		this.slots = slots;
+		this.rowLength = slots * (Float.BYTES + Short.BYTES);
+		this.rowsPerChunk = Math.max(1, MAX_CHUNK_SIZE / this.rowLength);
+		this.chunks = new ByteBuffer[(rows + this.rowsPerChunk - 1) / this.rowsPerChunk];
+		for (int c = 0; c < this.chunks.length; c++) {
+			this.chunks[c] = ByteBuffer.allocateDirect(getChunkRows(c) * this.rowLength).order(ByteOrder.nativeOrder());
+			for (int row = 0; row < getChunkRows(c); row++) {
+				resetRow(c * this.rowsPerChunk + row);
+			}
+		}
+	}
+
+	/**
+	 * Maps the matrix to the given file.  If the file already holds a matrix of the same dimensions and row
+	 * fingerprint, its travel times are kept, otherwise the file is (re-)created with all travel times unset.
+	 *
+	 * @param fingerprint identifies the links of the rows, see {@link TravelTimeDataOffHeapFactory#getLinkIdsFingerprint(int)}
+	 */
+	TravelTimeDataMatrix(Path file, int rows, int slots, long fingerprint) {
+		this.rows = rows;
+		this.slots = slots;
+		this.rowLength = slots * (Float.BYTES + Short.BYTES);
+		this.rowsPerChunk = Math.max(1, MAX_CHUNK_SIZE / this.rowLength);
+		this.chunks = new ByteBuffer[(rows + this.rowsPerChunk - 1) / this.rowsPerChunk];
+		long fileLength = HEADER_LENGTH + (long) rows * this.rowLength;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			boolean reuse = channel.size() == fileLength && hasHeader(channel, rows, slots, fingerprint);
+			if (!reuse) {
+				channel.truncate(0);
+				ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.nativeOrder());
+				header.putLong(MAGIC).putInt(rows).putInt(slots).putLong(fingerprint).flip();
+				while (header.hasRemaining()) {
+					channel.write(header, HEADER_LENGTH - header.remaining());
+				}
+			} else {
+				log.info("reusing the travel times in " + file);
+			}
+			for (int c = 0; c < this.chunks.length; c++) {
+				long position = HEADER_LENGTH + (long) c * this.rowsPerChunk * this.rowLength;
+				MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) getChunkRows(c) * this.rowLength);
+				this.chunks[c] = chunk.order(ByteOrder.nativeOrder());
+				if (!reuse) {
+					for (int row = 0; row < getChunkRows(c); row++) {
+						resetRow(c * this.rowsPerChunk + row);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static boolean hasHeader(FileChannel channel, int rows, int slots, long fingerprint) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.nativeOrder());
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) < 0) {
+				return false;
+			}
+		}
+		return header.getLong(0) == MAGIC && header.getInt(8) == rows && header.getInt(12) == slots
+				&& header.getLong(16) == fingerprint;
+	}
+
+	private int getChunkRows(int chunk) {
+		return Math.min(this.rowsPerChunk, this.rows - chunk * this.rowsPerChunk);
+	}
+
+	int getNumberOfRows() {
+		return this.rows;
+	}
+
+	private ByteBuffer getChunk(int row) {
+		return this.chunks[row / this.rowsPerChunk];
+	}
+
+	private int getTravelTimeOffset(int row, int slot) {
+		return (row % this.rowsPerChunk) * this.rowLength + slot * Float.BYTES;
+	}
+
+	private int getCountOffset(int row, int slot) {
+		return (row % this.rowsPerChunk) * this.rowLength + this.slots * Float.BYTES + slot * Short.BYTES;
+	}
+
+	void resetRow(int row) {
+		ByteBuffer chunk = getChunk(row);
+		for (int slot = 0; slot < this.slots; slot++) {
+			chunk.putFloat(getTravelTimeOffset(row, slot), -1.0f);
+			chunk.putShort(getCountOffset(row, slot), (short) 0);
+		}
+	}
+
+	/**
+	 * @return the average travel time, or a negative value if no travel time was recorded
+	 */
+	float getTravelTime(int row, int slot) {
+		return getChunk(row).getFloat(getTravelTimeOffset(row, slot));
+	}
+
+	void setTravelTime(int row, int slot, double travelTime) {
+		ByteBuffer chunk = getChunk(row);
+		chunk.putShort(getCountOffset(row, slot), (short) 1);
+		chunk.putFloat(getTravelTimeOffset(row, slot), (float) travelTime);
+	}
+
+	void addTravelTime(int row, int slot, double travelTime) {
+		ByteBuffer chunk = getChunk(row);
+		int countOffset = getCountOffset(row, slot);
+		int travelTimeOffset = getTravelTimeOffset(row, slot);
+		short cnt = chunk.getShort(countOffset);
+		double average = chunk.getFloat(travelTimeOffset);
+		double sum;
+		if (cnt < Short.MAX_VALUE) {
+			sum = average * cnt + travelTime;
+			cnt++;
+		} else {
+			// keep the weight of new travel times constant instead of overflowing the count
+			sum = average * (cnt - 1) + travelTime;
+		}
+		chunk.putFloat(travelTimeOffset, (float) (sum / cnt));
+		chunk.putShort(countOffset, cnt);
+	}
+
+	/**
+	 * Writes the travel times of a mapped matrix to its file.
+	 */
+	void force() {
+		for (ByteBuffer chunk : this.chunks) {
+			if (chunk instanceof MappedByteBuffer) {
+				((MappedByteBuffer) chunk).force();
+			}
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeDataOffHeap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * The travel times of one link, stored in a row of a {@link TravelTimeDataMatrix}.
+ * <p></p>
+ * Unlike {@link TravelTimeDataArray}, reading a time slot without any data does not write the free speed
+ * travel time back, so readers never modify the shared matrix.
+ */
+class TravelTimeDataOffHeap extends TravelTimeData {
+
+	private final TravelTimeDataMatrix matrix;
+	private final int row;
+	private final Link link;
+
+	TravelTimeDataOffHeap(final TravelTimeDataMatrix matrix, final int row, final Link link) {
+		this.matrix = matrix;
+		this.row = row;
+		this.link = link;
+	}
+
+	@Override
+	public void resetTravelTimes() {
+		this.matrix.resetRow(this.row);
+	}
+
+	@Override
+	public void setTravelTime( final int timeSlot, final double traveltime ) {
+		this.matrix.setTravelTime(this.row, timeSlot, traveltime);
+	}
+
+	@Override
+	public void addTravelTime(final int timeSlot, final double traveltime) {
+		this.matrix.addTravelTime(this.row, timeSlot, traveltime);
+	}
+
+	@Override
+	public double getTravelTime(final int timeSlot, final double now) {
+		double ttime = this.matrix.getTravelTime(this.row, timeSlot);
+		if (ttime >= 0.0) return ttime; // negative values are invalid.
+
+		return this.link.getLength() / this.link.getFreespeed(now);
+	}
+
+}
@@ -0,0 +1,81 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeDataOffHeapFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+import java.nio.file.Paths;
+
+/**
+ * Creates {@link TravelTimeDataOffHeap} objects which share one {@link TravelTimeDataMatrix}, with the row of
+ * a link being its {@link Id#index()}.  Links with ids created after the factory, as well as the turns between links,
+ * get a {@link TravelTimeDataArray}.
+ */
+class TravelTimeDataOffHeapFactory implements TravelTimeDataFactory {
+
+	private final Network network;
+	private final int numSlots;
+	private final TravelTimeDataMatrix matrix;
+
+	/**
+	 * @param filename the file to map the matrix to, or <code>null</code> to keep it in direct memory
+	 */
+	public TravelTimeDataOffHeapFactory(final Network network, final int numSlots, final String filename) {
+		this.network = network;
+		this.numSlots = numSlots;
+		int rows = Id.getNumberOfIds(Link.class);
+		this.matrix = filename == null ? new TravelTimeDataMatrix(rows, numSlots)
+				: new TravelTimeDataMatrix(Paths.get(filename), rows, numSlots, getLinkIdsFingerprint(rows));
+	}
+
+	/**
+	 * @return a hash over the link ids with the indices <code>0</code> to <code>rows - 1</code>, in order
+	 */
+	static long getLinkIdsFingerprint(int rows) {
+		long fingerprint = 17;
+		for (int index = 0; index < rows; index++) {
+			String linkId = Id.get(index, Link.class).toString();
+			fingerprint = 1000003 * fingerprint + linkId.length();
+			fingerprint = 1000003 * fingerprint + linkId.hashCode();
+		}
+		return fingerprint;
+	}
+
+	@Override
+	public TravelTimeData createTravelTimeData(Id<Link> linkId) {
+		Link link = this.network.getLinks().get(linkId);
+		if (linkId.index() < this.matrix.getNumberOfRows()) {
+			return new TravelTimeDataOffHeap(this.matrix, linkId.index(), link);
+		}
+		return new TravelTimeDataArray(link, this.numSlots);
+	}
+
+	/*
+	 * The row of the from link already holds the link travel times.
+	 */
+	@Override
+	public TravelTimeData createLinkToLinkTravelTimeData(Id<Link> fromLinkId) {
+		return new TravelTimeDataArray(this.network.getLinks().get(fromLinkId), this.numSlots);
+	}
+
+}
@@ -0,0 +1,333 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PackedKdTree.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.matsim.api.core.v01.Coord;
+
+/**
+ * An immutable spatial index for data that does not change once it is loaded, e.g. the nodes of a network, the
+ * stops of a transit schedule or the facilities, as a faster alternative to {@link QuadTree} for bulk lookups.
+ * <p></p>
+ * The points are bulk-loaded into a balanced k-d tree that is stored implicitly in three flat arrays: the median of
+ * every range of the arrays splits the range alternately by x and y, and small ranges are scanned linearly. There
+ * are no node objects, so the tree needs only the memory of the arrays and the queries mostly read consecutive
+ * memory. The queries have the same semantics as those of the {@link QuadTree}, and as the tree cannot be
+ * modified, they can be run by any number of threads at the same time.
+ *
+ * @param <T> The type of data to be stored in the tree.
+ */
+public final class PackedKdTree<T> {
+
+	/** Ranges with at most this many points are not split any further, but scanned linearly. */
+	private static final int LEAF_SIZE = 8;
+	/** Number of queries a thread takes at once in the batched queries. */
+	private static final int BATCH_SIZE = 1024;
+
+	private final double[] xs;
+	private final double[] ys;
+	private final Object[] values;
+
+	/**
+	 * Loads all values into the tree. A value may be contained more than once in the collection.
+	 *
+	 * @param values the values to store in the tree
+	 * @param coordinate returns the location of every value
+	 */
+	public PackedKdTree(final Collection<? extends T> values, final Function<? super T, Coord> coordinate) {
+		int size = values.size();
+		this.xs = new double[size];
+		this.ys = new double[size];
+		this.values = new Object[size];
+		int i = 0;
+		for (T value : values) {
+			Coord coord = coordinate.apply(value);
+			this.xs[i] = coord.getX();
+			this.ys[i] = coord.getY();
+			this.values[i] = value;
+			i++;
+		}
+		build(0, size, 0);
+	}
+
+	private void build(final int lo, final int hi, final int axis) {
+		if (hi - lo <= LEAF_SIZE) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, axis == 0 ? this.xs : this.ys);
+		build(lo, mid, 1 - axis);
+		build(mid + 1, hi, 1 - axis);
+	}
+
+	/**
+	 * Rearranges the points between <code>left</code> and <code>right</code> (both inclusive), such that the point
+	 * at position k has the k-th smallest coordinate, all points before it have a smaller or equal coordinate, and
+	 * all points after it a larger or equal one.
+	 */
+	private void select(int left, int right, final int k, final double[] coords) {
+		while (right > left) {
+			double pivot = medianOfThree(coords[left], coords[(left + right) >>> 1], coords[right]);
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (coords[i] < pivot) {
+					i++;
+				}
+				while (coords[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private static double medianOfThree(final double a, final double b, final double c) {
+		return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+	}
+
+	private void swap(final int i, final int j) {
+		double x = this.xs[i];
+		this.xs[i] = this.xs[j];
+		this.xs[j] = x;
+		double y = this.ys[i];
+		this.ys[i] = this.ys[j];
+		this.ys[j] = y;
+		Object value = this.values[i];
+		this.values[i] = this.values[j];
+		this.values[j] = value;
+	}
+
+	/** @return the number of entries in this tree. */
+	public int size() {
+		return this.values.length;
+	}
+
+	/**
+	 * Gets the object closest to x/y
+	 *
+	 * @param x easting, left-right location, longitude
+	 * @param y northing, up-down location, latitude
+	 * @return the object found closest to x/y, or <code>null</code> if the tree is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public T getClosest(final double x, final double y) {
+		Nearest nearest = new Nearest();
+		findClosest(0, this.values.length, 0, x, y, nearest);
+		return nearest.index < 0 ? null : (T) this.values[nearest.index];
+	}
+
+	/**
+	 * Finds the closest objects for many locations at once, using several threads.
+	 *
+	 * @param x the easting of every location
+	 * @param y the northing of every location, in the same order
+	 * @param numberOfThreads the maximal number of threads to use
+	 * @return the object found closest to every location, in the same order as the locations
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> getClosest(final double[] x, final double[] y, final int numberOfThreads) {
+		if (x.length != y.length) {
+			throw new IllegalArgumentException("got " + x.length + " x-coordinates, but " + y.length + " y-coordinates.");
+		}
+		Object[] results = new Object[x.length];
+		int nOfThreads = Math.max(1, Math.min(numberOfThreads, (x.length + BATCH_SIZE - 1) / BATCH_SIZE));
+		AtomicInteger nextBatch = new AtomicInteger();
+		Runnable runner = () -> {
+			Nearest nearest = new Nearest();
+			for (int start = nextBatch.getAndIncrement() * BATCH_SIZE; start < x.length; start = nextBatch.getAndIncrement() * BATCH_SIZE) {
+				int end = Math.min(start + BATCH_SIZE, x.length);
+				for (int i = start; i < end; i++) {
+					nearest.index = -1;
+					nearest.distanceSquared = Double.POSITIVE_INFINITY;
+					findClosest(0, this.values.length, 0, x[i], y[i], nearest);
+					results[i] = nearest.index < 0 ? null : this.values[nearest.index];
+				}
+			}
+		};
+		if (nOfThreads == 1) {
+			runner.run();
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
+			try {
+				List<Future<?>> futures = new ArrayList<>();
+				for (int t = 0; t < nOfThreads; t++) {
+					futures.add(executor.submit(runner));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException(e);
+			} finally {
+				executor.shutdown();
+			}
+		}
+		return (List<T>) Arrays.asList(results);
+	}
+
+	private void findClosest(final int lo, final int hi, final int axis, final double x, final double y, final Nearest nearest) {
+		if (hi - lo <= LEAF_SIZE) {
+			for (int i = lo; i < hi; i++) {
+				nearest.check(i, distanceSquared(i, x, y));
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		nearest.check(mid, distanceSquared(mid, x, y));
+		double diff = axis == 0 ? x - this.xs[mid] : y - this.ys[mid];
+		if (diff < 0) {
+			findClosest(lo, mid, 1 - axis, x, y, nearest);
+			if (diff * diff < nearest.distanceSquared) {
+				findClosest(mid + 1, hi, 1 - axis, x, y, nearest);
+			}
+		} else {
+			findClosest(mid + 1, hi, 1 - axis, x, y, nearest);
+			if (diff * diff < nearest.distanceSquared) {
+				findClosest(lo, mid, 1 - axis, x, y, nearest);
+			}
+		}
+	}
+
+	/**
+	 * Gets all objects within a certain distance around x/y
+	 *
+	 * @param x left-right location, longitude
+	 * @param y up-down location, latitude
+	 * @param distance the maximal distance returned objects can be away from x/y
+	 * @return the objects found within distance to x/y
+	 */
+	public Collection<T> getDisk(final double x, final double y, final double distance) {
+		List<T> result = new ArrayList<>();
+		if (distance >= 0) {
+			getDisk(0, this.values.length, 0, x, y, distance, distance * distance, result);
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void getDisk(final int lo, final int hi, final int axis, final double x, final double y,
+			final double distance, final double distanceSquared, final Collection<T> result) {
+		if (hi - lo <= LEAF_SIZE) {
+			for (int i = lo; i < hi; i++) {
+				if (distanceSquared(i, x, y) <= distanceSquared) {
+					result.add((T) this.values[i]);
+				}
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		if (distanceSquared(mid, x, y) <= distanceSquared) {
+			result.add((T) this.values[mid]);
+		}
+		double diff = axis == 0 ? x - this.xs[mid] : y - this.ys[mid];
+		if (diff <= distance) {
+			getDisk(lo, mid, 1 - axis, x, y, distance, distanceSquared, result);
+		}
+		if (-diff <= distance) {
+			getDisk(mid + 1, hi, 1 - axis, x, y, distance, distanceSquared, result);
+		}
+	}
+
+	/**
+	 * Gets all objects inside the specified area, including the objects on its border.
+	 *
+	 * @param minX The minimum left-right location, longitude
+	 * @param minY The minimum up-down location, latitude
+	 * @param maxX The maximum left-right location, longitude
+	 * @param maxY The maximum up-down location, latitude
+	 * @param values1 A collection to store the found objects in.
+	 * @return The objects found within the area.
+	 */
+	public Collection<T> getRectangle(final double minX, final double minY, final double maxX, final double maxY, final Collection<T> values1) {
+		getRectangle(0, this.values.length, 0, minX, minY, maxX, maxY, values1);
+		return values1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void getRectangle(final int lo, final int hi, final int axis, final double minX, final double minY,
+			final double maxX, final double maxY, final Collection<T> result) {
+		if (hi - lo <= LEAF_SIZE) {
+			for (int i = lo; i < hi; i++) {
+				if (isInRectangle(i, minX, minY, maxX, maxY)) {
+					result.add((T) this.values[i]);
+				}
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		if (isInRectangle(mid, minX, minY, maxX, maxY)) {
+			result.add((T) this.values[mid]);
+		}
+		double split = axis == 0 ? this.xs[mid] : this.ys[mid];
+		if ((axis == 0 ? minX : minY) <= split) {
+			getRectangle(lo, mid, 1 - axis, minX, minY, maxX, maxY, result);
+		}
+		if ((axis == 0 ? maxX : maxY) >= split) {
+			getRectangle(mid + 1, hi, 1 - axis, minX, minY, maxX, maxY, result);
+		}
+	}
+
+	private boolean isInRectangle(final int i, final double minX, final double minY, final double maxX, final double maxY) {
+		return this.xs[i] >= minX && this.xs[i] <= maxX && this.ys[i] >= minY && this.ys[i] <= maxY;
+	}
+
+	private double distanceSquared(final int i, final double x, final double y) {
+		double dx = this.xs[i] - x;
+		double dy = this.ys[i] - y;
+		return dx * dx + dy * dy;
+	}
+
+	/** The best candidate of a nearest neighbour search. */
+	private static final class Nearest {
+		int index = -1;
+		double distanceSquared = Double.POSITIVE_INFINITY;
+
+		void check(final int i, final double distanceSquared) {
+			if (distanceSquared < this.distanceSquared) {
+				this.distanceSquared = distanceSquared;
+				this.index = i;
+			}
+		}
+	}
+
+}
@@ -176,6 +176,7 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 	}
 
 	public final void parse(final InputSource input) throws UncheckedIOException {
+		boolean finished = false;
 		try {
 			SAXParserFactory factory = SAXParserFactory.newInstance();
 			factory.setValidating(this.isValidating);
@@ -195,11 +196,23 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 				SAXParser parser = factory.newSAXParser();
 				parser.parse(input, this);
 			}
+			finished = true;
 		} catch (SAXException | ParserConfigurationException | IOException e) {
 			throw new UncheckedIOException(e);
+		} finally {
+			if (!finished) {
+				abortParsing();
+			}
 		}
 	}
 
+	/**
+	 * Called if the parsing ends with an exception, before the exception is passed on.  Readers which hand the tags over
+	 * to other threads can stop them here.  Does nothing by default.
+	 */
+	protected void abortParsing() {
+	}
+
 	// the following may be useful.  But it is nowhere used, so I am not sure if we fully understand its longterm maintenance implications, 
 	// so I rather comment it out. If it is needed somewhere, just comment it back in (and probably (**) above) 
 	// and leave a comment.  kai, jul'16
@@ -0,0 +1,303 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelGzipOutputStream.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A gzip compressing output stream that compresses blocks of the data on several threads, like
+ * <a href="https://zlib.net/pigz/">pigz</a>.  The thread producing the data only has to copy it into a buffer.
+ * Compression is usually the most expensive part of writing a large, text based file like the events; with this
+ * stream, it runs in parallel to the simulation and is not limited to the speed of a single core.
+ * <p></p>
+ * Every block is deflated on its own, with the end of the previous block as its dictionary, and ends with a sync
+ * flush.  The compressed blocks are written in order by another thread, so they form one deflate stream in a single
+ * gzip member which every gzip reader can decompress.  The file is only slightly larger than when compressing on a
+ * single thread, and the uncompressed content is exactly the same as when writing through a {@link GZIPOutputStream}.
+ * <p></p>
+ * The blocks are recycled, so writing does not allocate memory once their output buffers have grown large enough.
+ * Not thread-safe; all methods must be called from the same thread.
+ */
+public final class ParallelGzipOutputStream extends OutputStream {
+
+	private static final int BLOCK_SIZE = 1 << 17;
+	private static final int DICTIONARY_SIZE = 1 << 15;
+	private static final int DEFAULT_MAX_THREADS = 4;
+	private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	private final OutputStream target;
+	private final ExecutorService compressors;
+	private final BlockingQueue<Block> compressing = new LinkedBlockingQueue<>();
+	private final BlockingQueue<Block> empty;
+	private final Thread writer;
+
+	private volatile IOException failure = null;
+	private boolean failureThrown = false;
+	private Block current;
+	private boolean closed = false;
+
+	public ParallelGzipOutputStream(final String filename) throws FileNotFoundException {
+		this(new FileOutputStream(filename));
+	}
+
+	public ParallelGzipOutputStream(final OutputStream target) {
+		this(target, Math.min(DEFAULT_MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * @param numberOfThreads the number of threads compressing blocks at the same time.
+	 */
+	public ParallelGzipOutputStream(final OutputStream target, final int numberOfThreads) {
+		this.target = new BufferedOutputStream(target, BLOCK_SIZE);
+		this.compressors = Executors.newFixedThreadPool(numberOfThreads, runnable -> {
+			Thread thread = new Thread(runnable, "ParallelGzipOutputStream compressor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// enough blocks to keep all compressors busy while the writer waits for the oldest one
+		int blockCount = 2 * numberOfThreads + 2;
+		this.empty = new ArrayBlockingQueue<>(blockCount);
+		for (int i = 0; i < blockCount - 1; i++) {
+			this.empty.add(new Block());
+		}
+		this.current = new Block();
+		this.writer = new Thread(this::writeBlocks, "ParallelGzipOutputStream writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	private void writeBlocks() {
+		CRC32 crc = new CRC32();
+		long size = 0;
+		boolean lastBlockTaken = false;
+		try {
+			try {
+				this.target.write(HEADER);
+				while (!lastBlockTaken) {
+					Block block = this.compressing.take();
+					lastBlockTaken = block.last;
+					try {
+						block.compression.get();
+						crc.update(block.input, 0, block.inputLength);
+						size += block.inputLength;
+						this.target.write(block.output, 0, block.outputLength);
+					} finally {
+						recycle(block);
+					}
+				}
+				writeInt((int) crc.getValue());
+				writeInt((int) size);
+			} finally {
+				this.target.close();
+			}
+		} catch (IOException e) {
+			if (this.failure == null) {
+				this.failure = e;
+			}
+		} catch (ExecutionException e) {
+			this.failure = new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			this.failure = new IOException(e);
+		}
+		if (!lastBlockTaken) {
+			// keep on recycling the blocks so the writing thread does not block forever
+			drain();
+		}
+	}
+
+	private void drain() {
+		try {
+			while (true) {
+				Block block = this.compressing.take();
+				try {
+					block.compression.get();
+				} catch (ExecutionException e) {
+					// already failed
+				}
+				boolean last = block.last;
+				recycle(block);
+				if (last) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeInt(final int value) throws IOException {
+		// little endian, as all numbers in gzip
+		this.target.write(value);
+		this.target.write(value >>> 8);
+		this.target.write(value >>> 16);
+		this.target.write(value >>> 24);
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		if (this.current.inputLength == this.current.input.length) {
+			handOver();
+		}
+		this.current.input[this.current.inputLength++] = (byte) b;
+	}
+
+	@Override
+	public void write(final byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (this.current.inputLength == this.current.input.length) {
+				handOver();
+			}
+			int n = Math.min(len, this.current.input.length - this.current.inputLength);
+			System.arraycopy(b, off, this.current.input, this.current.inputLength, n);
+			this.current.inputLength += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Does not hand over the buffered data, as every block ends with a sync flush that makes the compressed file
+	 * larger.  Blocks are only compressed when they are full or the stream is closed.
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkFailure();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		// hand over the last block even after a failure, so the writer stops
+		this.current.last = true;
+		compress(this.current);
+		try {
+			this.writer.join();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} finally {
+			this.compressors.shutdown();
+		}
+		if (!this.failureThrown) {
+			// (not again, a try-with-resources statement cannot add an exception to itself as suppressed)
+			checkFailure();
+		}
+	}
+
+	private void handOver() throws IOException {
+		checkFailure();
+		if (this.closed) {
+			throw new IOException("stream is closed.");
+		}
+		Block next;
+		try {
+			next = this.empty.take();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+		// the window of deflate, so the next block can refer back to the data of this one
+		int dictionaryLength = Math.min(DICTIONARY_SIZE, this.current.inputLength);
+		System.arraycopy(this.current.input, this.current.inputLength - dictionaryLength, next.dictionary, 0, dictionaryLength);
+		next.dictionaryLength = dictionaryLength;
+		compress(this.current);
+		this.current = next;
+	}
+
+	private void compress(final Block block) {
+		block.compression = this.compressors.submit(block::compress);
+		this.compressing.add(block);
+	}
+
+	private void recycle(final Block block) {
+		block.inputLength = 0;
+		block.dictionaryLength = 0;
+		block.outputLength = 0;
+		block.last = false;
+		block.compression = null;
+		this.empty.add(block);
+	}
+
+	private void checkFailure() throws IOException {
+		if (this.failure != null) {
+			this.failureThrown = true;
+			throw this.failure;
+		}
+	}
+
+	private static final class Block {
+		final byte[] input = new byte[BLOCK_SIZE];
+		int inputLength = 0;
+		final byte[] dictionary = new byte[DICTIONARY_SIZE];
+		int dictionaryLength = 0;
+		byte[] output = new byte[BLOCK_SIZE / 4];
+		int outputLength = 0;
+		boolean last = false;
+		Future<?> compression = null;
+
+		void compress() {
+			Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			try {
+				if (this.dictionaryLength > 0) {
+					deflater.setDictionary(this.dictionary, 0, this.dictionaryLength);
+				}
+				deflater.setInput(this.input, 0, this.inputLength);
+				if (this.last) {
+					deflater.finish();
+					while (!deflater.finished()) {
+						deflate(deflater, Deflater.NO_FLUSH);
+					}
+				} else {
+					// the sync flush ends the compressed block at a byte boundary, so the next one can be appended
+					do {
+						deflate(deflater, Deflater.SYNC_FLUSH);
+					} while (this.outputLength == this.output.length);
+				}
+			} finally {
+				deflater.end();
+			}
+		}
+
+		private void deflate(final Deflater deflater, final int flush) {
+			if (this.outputLength == this.output.length) {
+				this.output = Arrays.copyOf(this.output, 2 * this.output.length);
+			}
+			this.outputLength += deflater.deflate(this.output, this.outputLength, this.output.length - this.outputLength, flush);
+		}
+	}
+
+}
@@ -0,0 +1,495 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorTransitRouter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.facilities.Facility;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+
+/**
+ * A round-based transit router (in the style of RAPTOR) working on the flat arrays of a {@link RaptorTransitRouterData}
+ * instead of the {@link TransitRouterNetwork}.
+ * <p></p>
+ * Round <i>k</i> scans every transit route that serves a stop that was improved in round <i>k-1</i> and finds the
+ * least-cost arrival at every stop using <i>k</i> vehicles. The arrivals are then extended by transfer walks (including
+ * the line switch at the same stop) to the stops where the next round may board. The costs are the same as those of
+ * {@link TransitRouterNetworkTravelTimeAndDisutility}: in-vehicle time, waiting time and distance of pt legs, walk time,
+ * distance, additional transfer time and line switch utility of transfers, and walk time and distance of access and
+ * egress legs. As all departures of a transit route share the same offsets, boarding the earliest reachable departure
+ * at a stop is always the least-cost choice, so one label per stop and round suffices. Transfers with a negative cost
+ * (i.e. a positive utility of line switch) count as free during the search, so that it cannot run into cycles; the
+ * cost of the found route still includes them.
+ * <p></p>
+ * The schedule data is immutable and can be shared by all threads; the search state is kept per router instance, so a
+ * single instance must not be used by more than one thread at a time. Like {@link TransitRouterImpl}, the cost
+ * parameters are read from the {@link TransitRouterConfig} for every request.
+ */
+public class RaptorTransitRouter extends AbstractTransitRouter implements TransitRouter {
+
+	private final RaptorTransitRouterData data;
+
+	private final List<Round> rounds = new ArrayList<>();
+	private final double[] bestArrivalCost;
+	private final double[] bestBoardingCost;
+	private final double[] egressCost;
+	private final int[] touchedStops;
+	private int touchedStopCount = 0;
+	private final boolean[] marked;
+	private final int[] markedStops;
+	private int markedStopCount = 0;
+	private final int[] routeScanStart;
+	private final int[] routesToScan;
+	private final int[] transferQueue;
+	private final boolean[] inTransferQueue;
+	private int queueStart;
+	private int queueSize;
+
+	// cost parameters of the current request
+	private double walkCostPerSecond;
+	private double walkDistanceCostPerMeter;
+	private double beelineWalkSpeed;
+	private double additionalTransferTime;
+	private double transferBaseCost;
+
+	public RaptorTransitRouter(final TransitRouterConfig trConfig, final TransitSchedule schedule) {
+		this(trConfig, new RaptorTransitRouterData(schedule, trConfig.getBeelineWalkConnectionDistance()));
+	}
+
+	public RaptorTransitRouter(final TransitRouterConfig trConfig, final RaptorTransitRouterData data) {
+		super(trConfig, new TransitRouterNetworkTravelTimeAndDisutility(trConfig, new PreparedTransitSchedule(data.schedule)));
+		this.data = data;
+		int stopCount = data.getStopCount();
+		this.bestArrivalCost = new double[stopCount];
+		this.bestBoardingCost = new double[stopCount];
+		this.egressCost = new double[stopCount];
+		Arrays.fill(this.bestArrivalCost, Double.POSITIVE_INFINITY);
+		Arrays.fill(this.bestBoardingCost, Double.POSITIVE_INFINITY);
+		Arrays.fill(this.egressCost, Double.POSITIVE_INFINITY);
+		this.touchedStops = new int[stopCount];
+		this.marked = new boolean[stopCount];
+		this.markedStops = new int[stopCount];
+		this.routeScanStart = new int[data.getRouteCount()];
+		Arrays.fill(this.routeScanStart, Integer.MAX_VALUE);
+		this.routesToScan = new int[data.getRouteCount()];
+		this.transferQueue = new int[stopCount];
+		this.inTransferQueue = new boolean[stopCount];
+	}
+
+	@Override
+	public List<Leg> calcRoute(final Facility fromFacility, final Facility toFacility, final double departureTime, final Person person) {
+		Coord fromCoord = fromFacility.getCoord();
+		Coord toCoord = toFacility.getCoord();
+		TransitRouterConfig config = getConfig();
+
+		double inVehicleCostPerSecond = -config.getMarginalUtilityOfTravelTimePt_utl_s();
+		double waitingCostPerSecond = -config.getMarginalUtilityOfWaitingPt_utl_s();
+		double ptDistanceCostPerMeter = -config.getMarginalUtilityOfTravelDistancePt_utl_m();
+		this.walkCostPerSecond = -config.getMarginalUtilityOfTravelTimeWalk_utl_s();
+		this.walkDistanceCostPerMeter = -config.getMarginalUtilityOfTravelDistanceWalk_utl_m();
+		this.beelineWalkSpeed = config.getBeelineWalkSpeed();
+		this.additionalTransferTime = config.getAdditionalTransferTime();
+		this.transferBaseCost = this.additionalTransferTime * waitingCostPerSecond - config.getUtilityOfLineSwitch_utl();
+
+		// access: all stops near the start may be boarded in the first round
+		Round round0 = getRound(0);
+		for (int stop : findNearbyStops(fromCoord)) {
+			Coord stopCoord = this.data.stops[stop].getCoord();
+			double cost = getWalkDisutility(person, fromCoord, stopCoord);
+			if (cost < round0.boardingCost[stop]) {
+				touch(stop);
+				round0.setBoarding(stop, cost, departureTime + getWalkTime(person, fromCoord, stopCoord), -1, false);
+				this.bestBoardingCost[stop] = Math.min(this.bestBoardingCost[stop], cost);
+				mark(stop);
+			}
+		}
+		// egress: all stops near the destination
+		Collection<Integer> egressStops = findNearbyStops(toCoord);
+		for (int stop : egressStops) {
+			this.egressCost[stop] = getWalkDisutility(person, this.data.stops[stop].getCoord(), toCoord);
+		}
+
+		double bestTotalCost = Double.POSITIVE_INFINITY;
+		int bestRound = -1;
+		int bestEgressStop = -1;
+
+		// every stop is boarded at most once on a sensible route, which bounds the number of rounds
+		for (int k = 1; this.markedStopCount > 0 && k <= this.data.getStopCount(); k++) {
+			Round prev = this.rounds.get(k - 1);
+			Round round = getRound(k);
+
+			// collect the routes serving any of the marked stops, and the first position to scan
+			int routeCount = 0;
+			for (int i = 0; i < this.markedStopCount; i++) {
+				int stop = this.markedStops[i];
+				this.marked[stop] = false;
+				for (int j = this.data.stopRouteStopsStart[stop]; j < this.data.stopRouteStopsStart[stop + 1]; j++) {
+					int routeStop = this.data.stopRouteStops[j];
+					int route = this.data.routeStopRoute[routeStop];
+					if (this.routeScanStart[route] == Integer.MAX_VALUE) {
+						this.routesToScan[routeCount++] = route;
+					}
+					this.routeScanStart[route] = Math.min(this.routeScanStart[route], routeStop);
+				}
+			}
+			this.markedStopCount = 0;
+
+			// scan the routes
+			for (int i = 0; i < routeCount; i++) {
+				int route = this.routesToScan[i];
+				int lastRouteStop = this.data.routeFirstRouteStop[route + 1] - 1;
+				int boardingRouteStop = -1;
+				double tripStart = 0;
+				double costAtBoardingDeparture = 0;
+				for (int routeStop = this.routeScanStart[route]; routeStop <= lastRouteStop; routeStop++) {
+					int stop = this.data.routeStopStop[routeStop];
+					double costAtDeparture = Double.POSITIVE_INFINITY;
+					if (boardingRouteStop >= 0) {
+						double inVehicleDistance = this.data.routeStopDistance[routeStop] - this.data.routeStopDistance[boardingRouteStop];
+						double arrivalTime = tripStart + this.data.routeStopArrivalOffset[routeStop];
+						double cost = costAtBoardingDeparture
+								+ (arrivalTime - tripStart - this.data.routeStopDepartureOffset[boardingRouteStop]) * inVehicleCostPerSecond
+								+ inVehicleDistance * ptDistanceCostPerMeter;
+						if (cost < this.bestArrivalCost[stop] && cost < bestTotalCost) {
+							touch(stop);
+							round.setArrival(stop, cost, arrivalTime, boardingRouteStop);
+							this.bestArrivalCost[stop] = cost;
+						}
+						costAtDeparture = costAtBoardingDeparture
+								+ (this.data.routeStopDepartureOffset[routeStop] - this.data.routeStopDepartureOffset[boardingRouteStop]) * inVehicleCostPerSecond
+								+ inVehicleDistance * ptDistanceCostPerMeter;
+					}
+					if (routeStop < lastRouteStop && prev.boardingCost[stop] < Double.POSITIVE_INFINITY && !isLineSwitchToSameLine(prev, stop, route)) {
+						double time = prev.boardingTime[stop];
+						double departureAtStop = getNextDepartureTime(route, routeStop, time);
+						double vehicleArrival = departureAtStop - this.data.routeStopDepartureOffset[routeStop] + this.data.routeStopArrivalOffset[routeStop];
+						double waitingTime = Math.max(0, vehicleArrival - time);
+						double cost = prev.boardingCost[stop]
+								+ waitingTime * waitingCostPerSecond
+								+ (departureAtStop - time - waitingTime) * inVehicleCostPerSecond;
+						if (cost < costAtDeparture) {
+							boardingRouteStop = routeStop;
+							tripStart = departureAtStop - this.data.routeStopDepartureOffset[routeStop];
+							costAtBoardingDeparture = cost;
+						}
+					}
+				}
+				this.routeScanStart[route] = Integer.MAX_VALUE;
+			}
+
+			// egress
+			for (int i = 0; i < round.arrivedStopCount; i++) {
+				int stop = round.arrivedStops[i];
+				double totalCost = round.arrivalCost[stop] + this.egressCost[stop];
+				if (totalCost < bestTotalCost) {
+					bestTotalCost = totalCost;
+					bestRound = k;
+					bestEgressStop = stop;
+				}
+			}
+
+			// transfers, including the line switch at the same stop. As in the transit router network, transfer walks
+			// may be chained over stops where agents could also arrive by vehicle.
+			this.queueStart = 0;
+			this.queueSize = 0;
+			for (int i = 0; i < round.arrivedStopCount; i++) {
+				int stop = round.arrivedStops[i];
+				double cost = round.arrivalCost[stop];
+				double time = round.arrivalTime[stop];
+				if (cost < bestTotalCost) {
+					relaxTransfer(round, stop, stop, 0, cost, time, false, bestTotalCost);
+					for (int t = this.data.stopTransfersStart[stop]; t < this.data.stopTransfersStart[stop + 1]; t++) {
+						relaxTransfer(round, stop, this.data.transferToStop[t], this.data.transferDistance[t], cost, time, false, bestTotalCost);
+					}
+				}
+			}
+			while (this.queueSize > 0) {
+				int stop = this.transferQueue[this.queueStart];
+				this.queueStart = (this.queueStart + 1) % this.transferQueue.length;
+				this.queueSize--;
+				this.inTransferQueue[stop] = false;
+				double cost = round.boardingCost[stop];
+				double time = round.boardingTime[stop];
+				for (int t = this.data.stopTransfersStart[stop]; t < this.data.stopTransfersStart[stop + 1]; t++) {
+					relaxTransfer(round, stop, this.data.transferToStop[t], this.data.transferDistance[t], cost, time, true, bestTotalCost);
+				}
+			}
+		}
+
+		TransitPassengerRoute passengerRoute = null;
+		if (bestRound > 0) {
+			List<RouteSegment> segments = new ArrayList<>();
+			double transferBonus = createRouteSegments(bestRound, bestEgressStop, segments);
+			passengerRoute = new TransitPassengerRoute(bestTotalCost + transferBonus, segments);
+		}
+		reset(egressStops);
+
+		if (passengerRoute == null) {
+			return null; // TripRouter / FallbackRoutingModule will create a direct walk leg
+		}
+		double directWalkCost = getWalkDisutility(person, fromCoord, toCoord);
+		if (directWalkCost * config.getDirectWalkFactor() < passengerRoute.getTravelCost()) {
+			return null; // TripRouter / FallbackRoutingModule will create a direct walk leg
+		}
+		return convertPassengerRouteToLegList(departureTime, passengerRoute, fromCoord, toCoord, person);
+	}
+
+	/**
+	 * Like the transit router network, this does not allow to leave a vehicle and board another one of the same line
+	 * at the same stop.
+	 */
+	private boolean isLineSwitchToSameLine(final Round prev, final int stop, final int route) {
+		if (prev.boardingFromStop[stop] != stop || prev.boardingFromTransfer[stop]) {
+			return false;
+		}
+		int arrivalRoute = this.data.routeStopRoute[prev.arrivalBoardingRouteStop[stop]];
+		return this.data.routeLines[arrivalRoute] == this.data.routeLines[route];
+	}
+
+	private Round getRound(final int k) {
+		while (this.rounds.size() <= k) {
+			this.rounds.add(new Round(this.data.getStopCount()));
+		}
+		return this.rounds.get(k);
+	}
+
+	/**
+	 * Remembers the stop for the cleanup after the request, must be called before any label of the stop is set.
+	 */
+	private void touch(final int stop) {
+		if (this.bestArrivalCost[stop] == Double.POSITIVE_INFINITY && this.bestBoardingCost[stop] == Double.POSITIVE_INFINITY) {
+			this.touchedStops[this.touchedStopCount++] = stop;
+		}
+	}
+
+	private void mark(final int stop) {
+		if (!this.marked[stop]) {
+			this.marked[stop] = true;
+			this.markedStops[this.markedStopCount++] = stop;
+		}
+	}
+
+	/**
+	 * Finds the stops within the search radius of the coordinate, in the same way as {@link TransitRouterImpl}: if they
+	 * are served by less than two route stops, the search is extended to the distance of the nearest stop plus the
+	 * extension radius.
+	 */
+	private Collection<Integer> findNearbyStops(final Coord coord) {
+		if (this.data.stopsIndex.size() == 0) {
+			return Collections.emptyList();
+		}
+		TransitRouterConfig config = getConfig();
+		Collection<Integer> stops = this.data.stopsIndex.getDisk(coord.getX(), coord.getY(), config.getSearchRadius());
+		int routeStopCount = 0;
+		for (int stop : stops) {
+			routeStopCount += this.data.stopRouteStopsStart[stop + 1] - this.data.stopRouteStopsStart[stop];
+		}
+		if (routeStopCount < 2) {
+			int nearestStop = this.data.stopsIndex.getClosest(coord.getX(), coord.getY());
+			double distance = CoordUtils.calcEuclideanDistance(coord, this.data.stops[nearestStop].getCoord());
+			stops = this.data.stopsIndex.getDisk(coord.getX(), coord.getY(), distance + config.getExtensionRadius());
+		}
+		return stops;
+	}
+
+	/**
+	 * @return the earliest departure of the route at the route stop at or after the given time, wrapping around
+	 * 		midnight like {@link PreparedTransitSchedule#getNextDepartureTime}.
+	 */
+	private double getNextDepartureTime(final int route, final int routeStop, final double time) {
+		double departureOffset = this.data.routeStopDepartureOffset[routeStop];
+		double earliestDepartureAtTerminus = time - departureOffset;
+		if (earliestDepartureAtTerminus >= TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT) {
+			earliestDepartureAtTerminus = earliestDepartureAtTerminus % TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		if (earliestDepartureAtTerminus < 0) {
+			earliestDepartureAtTerminus += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		int from = this.data.routeFirstDeparture[route];
+		int to = this.data.routeFirstDeparture[route + 1];
+		int pos = Arrays.binarySearch(this.data.departureTimes, from, to, earliestDepartureAtTerminus);
+		if (pos < 0) {
+			pos = -(pos + 1);
+		}
+		if (pos >= to) {
+			pos = from; // there is no later departure time, take the first in the morning
+		}
+		double departureTime = this.data.departureTimes[pos] + departureOffset;
+		while (departureTime < time) {
+			departureTime += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		return departureTime;
+	}
+
+	private double getTransferCost(final double distance) {
+		return distance / this.beelineWalkSpeed * this.walkCostPerSecond + distance * this.walkDistanceCostPerMeter + this.transferBaseCost;
+	}
+
+	private void relaxTransfer(final Round round, final int fromStop, final int toStop, final double distance,
+			final double cost, final double time, final boolean chained, final double bestTotalCost) {
+		double walkTime = distance / this.beelineWalkSpeed;
+		double newCost = cost + Math.max(0, getTransferCost(distance));
+		if (newCost < this.bestBoardingCost[toStop] && newCost < bestTotalCost) {
+			touch(toStop);
+			round.setBoarding(toStop, newCost, time + walkTime + this.additionalTransferTime, fromStop, chained);
+			this.bestBoardingCost[toStop] = newCost;
+			mark(toStop);
+			if (!this.inTransferQueue[toStop] && this.data.stopTransfersStart[toStop + 1] > this.data.stopTransfersStart[toStop]) {
+				this.inTransferQueue[toStop] = true;
+				this.transferQueue[(this.queueStart + this.queueSize) % this.transferQueue.length] = toStop;
+				this.queueSize++;
+			}
+		}
+	}
+
+	/**
+	 * Adds the segments of the route to the list.
+	 *
+	 * @return the sum of the negative transfer costs along the route, which the search counts as zero.
+	 */
+	private double createRouteSegments(final int bestRound, final int egressStop, final List<RouteSegment> segments) {
+		double transferBonus = 0;
+		int k = bestRound;
+		int stop = egressStop;
+		boolean isArrival = true;
+		while (true) {
+			Round round = this.rounds.get(k);
+			if (isArrival) {
+				int boardingRouteStop = round.arrivalBoardingRouteStop[stop];
+				int route = this.data.routeStopRoute[boardingRouteStop];
+				int boardingStop = this.data.routeStopStop[boardingRouteStop];
+				double travelTime = round.arrivalTime[stop] - this.rounds.get(k - 1).boardingTime[boardingStop];
+				segments.add(new RouteSegment(this.data.stops[boardingStop], this.data.stops[stop], travelTime,
+						this.data.routeLines[route].getId(), this.data.routes[route].getId()));
+				stop = boardingStop;
+				k--;
+				isArrival = false;
+			} else {
+				int fromStop = round.boardingFromStop[stop];
+				if (fromStop < 0) {
+					break; // access walk
+				}
+				boolean chained = round.boardingFromTransfer[stop];
+				double fromTime = chained ? round.boardingTime[fromStop] : round.arrivalTime[fromStop];
+				double travelTime = round.boardingTime[stop] - fromTime;
+				double distance = CoordUtils.calcEuclideanDistance(this.data.stops[fromStop].getCoord(), this.data.stops[stop].getCoord());
+				transferBonus += Math.min(0, getTransferCost(distance));
+				RouteSegment previous = segments.get(segments.size() - 1);
+				if (previous.getRouteTaken() == null) {
+					// merge chained transfer walks into a single one
+					segments.set(segments.size() - 1, new RouteSegment(this.data.stops[fromStop], previous.getToStop(),
+							travelTime + previous.getTravelTime(), null, null));
+				} else {
+					segments.add(new RouteSegment(this.data.stops[fromStop], this.data.stops[stop], travelTime, null, null));
+				}
+				stop = fromStop;
+				isArrival = !chained;
+			}
+		}
+		Collections.reverse(segments);
+		return transferBonus;
+	}
+
+	private void reset(final Collection<Integer> egressStops) {
+		for (Round round : this.rounds) {
+			for (int i = 0; i < this.touchedStopCount; i++) {
+				round.clear(this.touchedStops[i]);
+			}
+			round.arrivedStopCount = 0;
+		}
+		for (int i = 0; i < this.touchedStopCount; i++) {
+			int stop = this.touchedStops[i];
+			this.bestArrivalCost[stop] = Double.POSITIVE_INFINITY;
+			this.bestBoardingCost[stop] = Double.POSITIVE_INFINITY;
+		}
+		this.touchedStopCount = 0;
+		for (int stop : egressStops) {
+			this.egressCost[stop] = Double.POSITIVE_INFINITY;
+		}
+		for (int i = 0; i < this.markedStopCount; i++) {
+			this.marked[this.markedStops[i]] = false;
+		}
+		this.markedStopCount = 0;
+	}
+
+	/**
+	 * The labels of one round: the least-cost arrival at every stop using exactly as many vehicles as the number of the
+	 * round, and the least-cost way to be ready for boarding the next vehicle at every stop.
+	 */
+	private static final class Round {
+		final double[] arrivalCost;
+		final double[] arrivalTime;
+		final int[] arrivalBoardingRouteStop;
+		final int[] arrivedStops;
+		int arrivedStopCount = 0;
+
+		final double[] boardingCost;
+		final double[] boardingTime;
+		final int[] boardingFromStop;
+		final boolean[] boardingFromTransfer;
+
+		Round(final int stopCount) {
+			this.arrivalCost = new double[stopCount];
+			this.arrivalTime = new double[stopCount];
+			this.arrivalBoardingRouteStop = new int[stopCount];
+			this.arrivedStops = new int[stopCount];
+			this.boardingCost = new double[stopCount];
+			this.boardingTime = new double[stopCount];
+			this.boardingFromStop = new int[stopCount];
+			this.boardingFromTransfer = new boolean[stopCount];
+			Arrays.fill(this.arrivalCost, Double.POSITIVE_INFINITY);
+			Arrays.fill(this.boardingCost, Double.POSITIVE_INFINITY);
+		}
+
+		void setArrival(final int stop, final double cost, final double time, final int boardingRouteStop) {
+			if (this.arrivalCost[stop] == Double.POSITIVE_INFINITY) {
+				this.arrivedStops[this.arrivedStopCount++] = stop;
+			}
+			this.arrivalCost[stop] = cost;
+			this.arrivalTime[stop] = time;
+			this.arrivalBoardingRouteStop[stop] = boardingRouteStop;
+		}
+
+		/**
+		 * @param fromStop the stop the transfer walk starts at, or -1 for the access walk
+		 * @param fromTransfer whether the walk continues another transfer walk instead of starting at an arrival
+		 */
+		void setBoarding(final int stop, final double cost, final double time, final int fromStop, final boolean fromTransfer) {
+			this.boardingCost[stop] = cost;
+			this.boardingTime[stop] = time;
+			this.boardingFromStop[stop] = fromStop;
+			this.boardingFromTransfer[stop] = fromTransfer;
+		}
+
+		void clear(final int stop) {
+			this.arrivalCost[stop] = Double.POSITIVE_INFINITY;
+			this.boardingCost[stop] = Double.POSITIVE_INFINITY;
+		}
+	}
+}
@@ -0,0 +1,232 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorTransitRouterData.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.collections.PackedKdTree;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * An immutable, array-based representation of a transit schedule for the {@link RaptorTransitRouter}, meant to be
+ * shared by all routers of all threads.
+ * <p></p>
+ * Every transit route with at least two stops and one departure is stored as a consecutive block of route stops,
+ * holding the stop, the arrival and departure offsets and the beeline distance from the first stop. The departures
+ * of a route are stored sorted. For every stop, the route stops serving it and the stops that can be reached by a
+ * transfer walk of at most <code>beelineWalkConnectionDistance</code> are stored in compressed sparse rows.
+ * <p></p>
+ * Only the structure of the schedule is stored here; all costs are calculated by the router from the
+ * {@link TransitRouterConfig} at query time.
+ */
+public final class RaptorTransitRouterData {
+
+	private final static Logger log = Logger.getLogger(RaptorTransitRouterData.class);
+
+	final TransitSchedule schedule;
+
+	final TransitStopFacility[] stops;
+	final PackedKdTree<Integer> stopsIndex;
+	final int[] stopRouteStopsStart;
+	final int[] stopRouteStops;
+	final int[] stopTransfersStart;
+	final int[] transferToStop;
+	final double[] transferDistance;
+
+	final TransitLine[] routeLines;
+	final TransitRoute[] routes;
+	final int[] routeFirstRouteStop;
+	final int[] routeFirstDeparture;
+	final double[] departureTimes;
+
+	final int[] routeStopStop;
+	final int[] routeStopRoute;
+	final double[] routeStopArrivalOffset;
+	final double[] routeStopDepartureOffset;
+	final double[] routeStopDistance;
+
+	public RaptorTransitRouterData(final TransitSchedule schedule, final double beelineWalkConnectionDistance) {
+		this.schedule = schedule;
+
+		List<TransitLine> lines = new ArrayList<>();
+		List<TransitRoute> usedRoutes = new ArrayList<>();
+		int routeStopCount = 0;
+		int departureCount = 0;
+		for (TransitLine line : schedule.getTransitLines().values()) {
+			for (TransitRoute route : line.getRoutes().values()) {
+				if (route.getStops().size() < 2 || route.getDepartures().isEmpty()) {
+					continue;
+				}
+				lines.add(line);
+				usedRoutes.add(route);
+				routeStopCount += route.getStops().size();
+				departureCount += route.getDepartures().size();
+			}
+		}
+
+		int routeCount = usedRoutes.size();
+		this.routeLines = lines.toArray(new TransitLine[routeCount]);
+		this.routes = usedRoutes.toArray(new TransitRoute[routeCount]);
+		this.routeFirstRouteStop = new int[routeCount + 1];
+		this.routeFirstDeparture = new int[routeCount + 1];
+		this.departureTimes = new double[departureCount];
+		this.routeStopStop = new int[routeStopCount];
+		this.routeStopRoute = new int[routeStopCount];
+		this.routeStopArrivalOffset = new double[routeStopCount];
+		this.routeStopDepartureOffset = new double[routeStopCount];
+		this.routeStopDistance = new double[routeStopCount];
+
+		Map<TransitStopFacility, Integer> stopIndices = new IdentityHashMap<>();
+		List<TransitStopFacility> usedStops = new ArrayList<>();
+		int rs = 0;
+		int d = 0;
+		for (int r = 0; r < routeCount; r++) {
+			TransitRoute route = this.routes[r];
+			this.routeFirstRouteStop[r] = rs;
+			this.routeFirstDeparture[r] = d;
+			TransitStopFacility prevStop = null;
+			double distance = 0;
+			for (TransitRouteStop routeStop : route.getStops()) {
+				TransitStopFacility stop = routeStop.getStopFacility();
+				Integer stopIndex = stopIndices.get(stop);
+				if (stopIndex == null) {
+					stopIndex = usedStops.size();
+					stopIndices.put(stop, stopIndex);
+					usedStops.add(stop);
+				}
+				if (prevStop != null) {
+					distance += CoordUtils.calcEuclideanDistance(prevStop.getCoord(), stop.getCoord());
+				}
+				double arrivalOffset = routeStop.getArrivalOffset();
+				double departureOffset = routeStop.getDepartureOffset();
+				this.routeStopStop[rs] = stopIndex;
+				this.routeStopRoute[rs] = r;
+				this.routeStopArrivalOffset[rs] = Time.isUndefinedTime(arrivalOffset) ? departureOffset : arrivalOffset;
+				this.routeStopDepartureOffset[rs] = Time.isUndefinedTime(departureOffset) ? arrivalOffset : departureOffset;
+				this.routeStopDistance[rs] = distance;
+				prevStop = stop;
+				rs++;
+			}
+			for (Departure departure : route.getDepartures().values()) {
+				this.departureTimes[d++] = departure.getDepartureTime();
+			}
+			Arrays.sort(this.departureTimes, this.routeFirstDeparture[r], d);
+		}
+		this.routeFirstRouteStop[routeCount] = rs;
+		this.routeFirstDeparture[routeCount] = d;
+
+		int stopCount = usedStops.size();
+		this.stops = usedStops.toArray(new TransitStopFacility[stopCount]);
+
+		// route stops per stop; remember which stops can be reached by and which can be left with a vehicle
+		boolean[] canArrive = new boolean[stopCount];
+		boolean[] canDepart = new boolean[stopCount];
+		this.stopRouteStopsStart = new int[stopCount + 1];
+		for (int i = 0; i < routeStopCount; i++) {
+			this.stopRouteStopsStart[this.routeStopStop[i] + 1]++;
+		}
+		for (int s = 0; s < stopCount; s++) {
+			this.stopRouteStopsStart[s + 1] += this.stopRouteStopsStart[s];
+		}
+		this.stopRouteStops = new int[routeStopCount];
+		int[] fill = Arrays.copyOf(this.stopRouteStopsStart, stopCount);
+		for (int i = 0; i < routeStopCount; i++) {
+			int s = this.routeStopStop[i];
+			this.stopRouteStops[fill[s]++] = i;
+			int r = this.routeStopRoute[i];
+			if (i > this.routeFirstRouteStop[r]) {
+				canArrive[s] = true;
+			}
+			if (i < this.routeFirstRouteStop[r + 1] - 1) {
+				canDepart[s] = true;
+			}
+		}
+
+		// spatial index of the stops
+		List<Integer> allStops = new ArrayList<>(stopCount);
+		for (int s = 0; s < stopCount; s++) {
+			allStops.add(s);
+		}
+		this.stopsIndex = new PackedKdTree<>(allStops, s -> this.stops[s].getCoord());
+
+		// transfers from stops where agents can arrive to (other) stops where they can depart
+		this.stopTransfersStart = new int[stopCount + 1];
+		List<int[]> transfers = new ArrayList<>();
+		int transferCount = 0;
+		for (int s = 0; s < stopCount; s++) {
+			int[] toStops = null;
+			if (canArrive[s]) {
+				TransitStopFacility stop = this.stops[s];
+				Collection<Integer> nearbyStops = this.stopsIndex.getDisk(stop.getCoord().getX(), stop.getCoord().getY(), beelineWalkConnectionDistance);
+				toStops = new int[nearbyStops.size()];
+				int count = 0;
+				for (Integer toStop : nearbyStops) {
+					if (toStop != s && canDepart[toStop]) {
+						toStops[count++] = toStop;
+					}
+				}
+				toStops = Arrays.copyOf(toStops, count);
+				Arrays.sort(toStops);
+				transferCount += count;
+			}
+			transfers.add(toStops);
+			this.stopTransfersStart[s + 1] = transferCount;
+		}
+		this.transferToStop = new int[transferCount];
+		this.transferDistance = new double[transferCount];
+		int t = 0;
+		for (int s = 0; s < stopCount; s++) {
+			int[] toStops = transfers.get(s);
+			if (toStops != null) {
+				for (int toStop : toStops) {
+					this.transferToStop[t] = toStop;
+					this.transferDistance[t] = CoordUtils.calcEuclideanDistance(this.stops[s].getCoord(), this.stops[toStop].getCoord());
+					t++;
+				}
+			}
+		}
+
+		log.info("raptor transit router data: " + stopCount + " stops, " + routeCount + " routes, "
+				+ routeStopCount + " route stops, " + departureCount + " departures, " + transferCount + " transfers.");
+	}
+
+	public int getStopCount() {
+		return this.stops.length;
+	}
+
+	public int getRouteCount() {
+		return this.routes.length;
+	}
+
+}
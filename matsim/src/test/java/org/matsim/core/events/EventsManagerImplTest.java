@@ -22,8 +22,12 @@ package org.matsim.core.events;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.events.handler.EventHandler;
 
 /**
@@ -63,6 +67,52 @@ public class EventsManagerImplTest {
 		}
 	}
 
+	/**
+	 * Exceptions of the standard handler interfaces must reach the caller unchanged.
+	 */
+	@Test
+	public void testProcessEvent_ExceptionInStandardEventHandler() {
+		EventsManager manager = EventsUtils.createEventsManager();
+		final IllegalStateException exception = new IllegalStateException();
+		manager.addHandler((LinkEnterEventHandler) event -> {
+			throw exception;
+		});
+		try {
+			manager.processEvent(new LinkEnterEvent(123.45, Id.createVehicleId(1), Id.createLinkId(2)));
+			Assert.fail("expected exception, but got none.");
+		} catch (final IllegalStateException e) {
+			Assert.assertSame(exception, e);
+		}
+	}
+
+	@Test
+	public void testProcessEvent_Unsynchronized() {
+		EventsManager manager = new EventsManagerImpl(false);
+		CountingMyEventHandler handler = new CountingMyEventHandler();
+		CountingBasicEventHandler basicHandler = new CountingBasicEventHandler();
+		manager.addHandler(handler);
+		manager.addHandler(basicHandler);
+		manager.processEvent(new MyEvent(123.45));
+		manager.processEvent(new MyEvent(123.46));
+		Assert.assertEquals("EventHandler was not called.", 2, handler.counter);
+		Assert.assertEquals("BasicEventHandler was not called.", 2, basicHandler.counter);
+	}
+
+	/**
+	 * Two handler interfaces with a handleEvent method for the same event class must not get mixed up.
+	 */
+	@Test
+	public void testProcessEvent_SameEventClassInDifferentHandlerInterfaces() {
+		EventsManager manager = EventsUtils.createEventsManager();
+		CountingMyEventHandler handler = new CountingMyEventHandler();
+		CountingOtherMyEventHandler otherHandler = new CountingOtherMyEventHandler();
+		manager.addHandler(handler);
+		manager.addHandler(otherHandler);
+		manager.processEvent(new MyEvent(123.45));
+		Assert.assertEquals("EventHandler was not called.", 1, handler.counter);
+		Assert.assertEquals("other EventHandler was not called.", 1, otherHandler.counter);
+	}
+
 	/*package*/ static class MyEvent extends Event {
 		public MyEvent(final double time) {
 			super(time);
@@ -89,6 +139,34 @@ public class EventsManagerImplTest {
 		}
 	}
 
+	/*package*/ static interface OtherMyEventHandler extends EventHandler {
+		public void handleEvent(final MyEvent e);
+	}
+
+	/*package*/ static class CountingOtherMyEventHandler implements OtherMyEventHandler {
+		/*package*/ int counter = 0;
+		@Override
+		public void reset(final int iteration) {
+			this.counter = 0;
+		}
+		@Override
+		public void handleEvent(final MyEvent e) {
+			this.counter++;
+		}
+	}
+
+	/*package*/ static class CountingBasicEventHandler implements BasicEventHandler {
+		/*package*/ int counter = 0;
+		@Override
+		public void reset(final int iteration) {
+			this.counter = 0;
+		}
+		@Override
+		public void handleEvent(final Event e) {
+			this.counter++;
+		}
+	}
+
 	/*package*/ static class CrashingMyEventHandler implements MyEventHandler {
 		/*package*/ int counter = 0;
 		@Override
@@ -0,0 +1,224 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsReaderBinaryTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.EventAttributeSink;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class EventsReaderBinaryTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteRead() {
+		List<Event> written = new ArrayList<>();
+		Id<Person> person = Id.createPersonId("1");
+		Id<Link> link = Id.createLinkId("a<b");
+		Id<Vehicle> vehicle = Id.createVehicleId("car 1");
+		Id<ActivityFacility> facility = Id.create("f1", ActivityFacility.class);
+		written.add(new ActivityEndEvent(21600.0, person, link, facility, "home"));
+		written.add(new PersonDepartureEvent(21600.0, person, link, "car"));
+		written.add(new PersonEntersVehicleEvent(21600.0, person, vehicle));
+		written.add(new VehicleEntersTrafficEvent(21600.0, person, link, vehicle, "car", 1.0));
+		written.add(new LinkLeaveEvent(21601.0, vehicle, link));
+		written.add(new LinkEnterEvent(21601.0, vehicle, Id.createLinkId("2")));
+		written.add(new VehicleLeavesTrafficEvent(21658.25, person, Id.createLinkId("2"), vehicle, "car", 0.5));
+		written.add(new PersonLeavesVehicleEvent(21658.25, person, vehicle));
+		written.add(new PersonArrivalEvent(21658.25, person, Id.createLinkId("2"), "car"));
+		written.add(new ActivityStartEvent(21658.25, person, Id.createLinkId("2"), null, "work"));
+		written.add(new PersonDepartureEvent(21700.0, person, null, null));
+		written.add(new PersonMoneyEvent(21700.0, person, -3.5));
+		written.add(new TransitDriverStartsEvent(21000.0, Id.createPersonId("pt"), Id.createVehicleId("bus"),
+				Id.create("line", TransitLine.class), Id.create("route", TransitRoute.class), Id.create("dep", Departure.class)));
+		GenericEvent generic = new GenericEvent("custom", 0.1);
+		generic.getAttributes().put("key", "value & more");
+		written.add(generic);
+
+		String filename = this.utils.getOutputDirectory() + "events" + EventWriterBinary.FILE_EXTENSION;
+		EventWriterBinary writer = new EventWriterBinary(filename);
+		for (Event event : written) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new MatsimEventsReader(events).readFile(filename);
+
+		List<Event> read = collector.getEvents();
+		Assert.assertEquals(written.size(), read.size());
+		for (int i = 0; i < written.size(); i++) {
+			Assert.assertEquals(written.get(i).getClass(), read.get(i).getClass());
+			Assert.assertEquals(written.get(i).getAttributes(), read.get(i).getAttributes());
+		}
+	}
+
+	@Test
+	public void testManyBlocks() {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		EventWriterBinary writer = new EventWriterBinary(stream);
+		int count = 300000;
+		for (int i = 0; i < count; i++) {
+			writer.handleEvent(new LinkEnterEvent(i / 10, Id.createVehicleId(i % 1000), Id.createLinkId(i % 777)));
+		}
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		final int[] read = { 0 };
+		events.addHandler((LinkEnterEventHandler) event -> {
+			Assert.assertEquals(read[0] / 10, event.getTime(), 0.0);
+			Assert.assertEquals(Id.createVehicleId(read[0] % 1000), event.getVehicleId());
+			Assert.assertEquals(Id.createLinkId(read[0] % 777), event.getLinkId());
+			read[0]++;
+		});
+		new MatsimEventsReader(events).readStream(new ByteArrayInputStream(stream.toByteArray()));
+		Assert.assertEquals(count, read[0]);
+	}
+
+	@Test
+	public void testParallelRead() {
+		String filename = this.utils.getOutputDirectory() + "events" + EventWriterBinary.FILE_EXTENSION;
+		EventWriterBinary writer = new EventWriterBinary(filename);
+		int count = 1000000;
+		for (int i = 0; i < count; i++) {
+			writer.handleEvent(new LinkEnterEvent(i / 10, Id.createVehicleId(i % 1000), Id.createLinkId(i % 777)));
+		}
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		final int[] read = { 0 };
+		events.addHandler((LinkEnterEventHandler) event -> {
+			Assert.assertEquals("events must be passed on in the order of the file.", read[0] / 10, event.getTime(), 0.0);
+			Assert.assertEquals(Id.createVehicleId(read[0] % 1000), event.getVehicleId());
+			read[0]++;
+		});
+		MatsimEventsReader reader = new MatsimEventsReader(events);
+		reader.setNumberOfThreads(4);
+		reader.readFile(filename);
+		Assert.assertEquals(count, read[0]);
+	}
+
+	/**
+	 * Ids of different types with the same index under the same key must each be written only once.
+	 */
+	@Test
+	public void testIdsOfDifferentTypesWithSameIndex() {
+		Id<Person> person = Id.createPersonId("sameIndex");
+		Id<Vehicle> vehicle = Id.createVehicleId("sameIndex");
+		while (person.index() < vehicle.index()) {
+			person = Id.createPersonId("sameIndex" + person.index());
+		}
+		while (vehicle.index() < person.index()) {
+			vehicle = Id.createVehicleId("sameIndex" + vehicle.index());
+		}
+		Id<Person> otherPerson = Id.createPersonId("otherPerson");
+
+		int count = 100000;
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		EventWriterBinary writer = new EventWriterBinary(stream);
+		for (int i = 0; i < count; i++) {
+			writer.handleEvent(new AgentEvent(i, i % 2 == 0 ? person : vehicle));
+		}
+		writer.closeFile();
+		ByteArrayOutputStream referenceStream = new ByteArrayOutputStream();
+		EventWriterBinary referenceWriter = new EventWriterBinary(referenceStream);
+		for (int i = 0; i < count; i++) {
+			referenceWriter.handleEvent(new AgentEvent(i, i % 2 == 0 ? person : otherPerson));
+		}
+		referenceWriter.closeFile();
+		Assert.assertTrue("the ids are written again and again: " + stream.size() + " bytes instead of about " + referenceStream.size(),
+				stream.size() < 2 * referenceStream.size());
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new MatsimEventsReader(events).readStream(new ByteArrayInputStream(stream.toByteArray()));
+		Assert.assertEquals(count, collector.getEvents().size());
+		for (int i = 0; i < count; i++) {
+			Assert.assertEquals((i % 2 == 0 ? person : vehicle).toString(), collector.getEvents().get(i).getAttributes().get("agent"));
+		}
+	}
+
+	private static class AgentEvent extends Event {
+		private final Id<?> agent;
+
+		AgentEvent(final double time, final Id<?> agent) {
+			super(time);
+			this.agent = agent;
+		}
+
+		@Override
+		public String getEventType() {
+			return "agent";
+		}
+
+		@Override
+		public Map<String, String> getAttributes() {
+			Map<String, String> attributes = super.getAttributes();
+			attributes.put("agent", this.agent.toString());
+			return attributes;
+		}
+
+		@Override
+		public void writeAttributes(final EventAttributeSink sink) {
+			sink.attribute(ATTRIBUTE_TIME, getTime());
+			sink.attribute(ATTRIBUTE_TYPE, getEventType());
+			sink.attribute("agent", this.agent);
+		}
+	}
+
+}
@@ -19,18 +19,35 @@
 
 package org.matsim.core.events.algorithms;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.utils.io.IOUtils;
 import org.matsim.testcases.MatsimTestUtils;
 import org.matsim.testcases.utils.EventsCollector;
 import org.matsim.vehicles.Vehicle;
@@ -92,4 +109,92 @@ public class EventWriterXMLTest {
 		
 		Assert.assertEquals("there must be 1 event.", 1, collector.getEvents().size());
 	}
+
+	/**
+	 * Subclasses of the event types with their own {@link Event#writeAttributes} may only add attributes in
+	 * {@link Event#getAttributes()}; make sure these are written as well.
+	 */
+	@Test
+	public void testAttributesOfSubclass() throws IOException {
+		String filename = this.utils.getOutputDirectory() + "testEvents.xml";
+		EventWriterXML writer = new EventWriterXML(filename);
+		writer.handleEvent(new LinkEnterEvent(3600.0, Id.createVehicleId("v1"), Id.createLinkId("l1")) {
+			@Override
+			public Map<String, String> getAttributes() {
+				Map<String, String> attributes = super.getAttributes();
+				attributes.put("lane", "2");
+				return attributes;
+			}
+		});
+		writer.closeFile();
+
+		StringBuilder content = new StringBuilder();
+		try (BufferedReader reader = IOUtils.getBufferedReader(filename)) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				content.append(line).append('\n');
+			}
+		}
+		Assert.assertTrue(content.toString(), content.toString().contains(
+				"<event time=\"3600.0\" type=\"entered link\" vehicle=\"v1\" link=\"l1\" lane=\"2\"  />"));
+	}
+
+	/**
+	 * The events write their attributes directly into the writer instead of going through
+	 * {@link Event#getAttributes()}; make sure this results in exactly the same file.
+	 */
+	@Test
+	public void testSameOutputAsAttributes() throws IOException {
+		List<Event> events = new ArrayList<>();
+		double[] times = { 0.0, -0.0, 1.0, 21600.0, 0.5, 9999999.0, 1e7, -3.0, 1e-4, 123.456 };
+		for (double time : times) {
+			Id<Person> person = Id.createPersonId("p<1");
+			Id<Link> link = Id.createLinkId("l&2");
+			Id<Vehicle> vehicle = Id.createVehicleId("v\"3");
+			events.add(new LinkEnterEvent(time, vehicle, link));
+			events.add(new LinkLeaveEvent(time, vehicle, link));
+			events.add(new VehicleEntersTrafficEvent(time, person, link, vehicle, "car", 0.25));
+			events.add(new VehicleEntersTrafficEvent(time, person, link, null, null, 1.0));
+			events.add(new VehicleLeavesTrafficEvent(time, person, null, vehicle, "car", 1.0));
+			events.add(new PersonDepartureEvent(time, person, link, "car"));
+			events.add(new PersonDepartureEvent(time, person, null, null));
+			events.add(new PersonArrivalEvent(time, person, link, "walk"));
+			events.add(new ActivityStartEvent(time, person, null, null, "home>"));
+			events.add(new ActivityEndEvent(time, person, link, null, "work"));
+			events.add(new PersonEntersVehicleEvent(time, person, vehicle));
+			events.add(new PersonLeavesVehicleEvent(time, person, vehicle));
+			GenericEvent generic = new GenericEvent("TEST", time);
+			generic.getAttributes().put("dummy", null);
+			events.add(generic);
+		}
+
+		StringBuilder expected = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
+		for (Event event : events) {
+			expected.append("\t<event ");
+			for (Map.Entry<String, String> entry : event.getAttributes().entrySet()) {
+				String value = entry.getValue() == null ? "null" : entry.getValue().replace("&", "&amp;")
+						.replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+				expected.append(entry.getKey()).append("=\"").append(value).append("\" ");
+			}
+			expected.append(" />\n");
+		}
+		expected.append("</events>");
+
+		for (String filename : new String[] { "testEvents.xml", "testEvents.xml.gz" }) {
+			filename = this.utils.getOutputDirectory() + filename;
+			EventWriterXML writer = new EventWriterXML(filename);
+			for (Event event : events) {
+				writer.handleEvent(event);
+			}
+			writer.closeFile();
+
+			StringBuilder actual = new StringBuilder();
+			try (BufferedReader reader = IOUtils.getBufferedReader(filename)) {
+				char[] buffer = new char[1024];
+				for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+					actual.append(buffer, 0, read);
+				}
+			}
+			Assert.assertEquals(filename, expected.toString(), actual.toString());
+		}
+	}
 }
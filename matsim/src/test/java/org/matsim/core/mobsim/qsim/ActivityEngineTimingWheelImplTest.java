@@ -0,0 +1,239 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ActivityEngineTimingWheelImplTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup.ActivityEndQueue;
+import org.matsim.core.config.groups.QSimConfigGroup.TeleportationArrivalQueue;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class ActivityEngineTimingWheelImplTest {
+
+	/**
+	 * Tests that the timing wheel ends the activities at the same times and in the same order as the priority queue,
+	 * including activities that end at fractional times, at the same time, before the start of the simulation,
+	 * and after its end.
+	 */
+	@Test
+	public void testSameEventsAsPriorityQueue() {
+		List<Event> expected = runQSim(ActivityEndQueue.priorityQueue, 1);
+		List<Event> actual = runQSim(ActivityEndQueue.timingWheel, 1);
+
+		assertSameEvents(expected, actual);
+		Assert.assertTrue("expected some agents to be stuck at their activities.",
+				actual.stream().anyMatch(event -> event instanceof PersonStuckEvent));
+	}
+
+	/**
+	 * With several threads, only the order of the events within a time step may change.
+	 */
+	@Test
+	public void testSameEventsWithSeveralThreads() {
+		List<String> expected = toStrings(runQSim(ActivityEndQueue.priorityQueue, 1));
+		List<String> actual = toStrings(runQSim(ActivityEndQueue.timingWheel, 4));
+
+		Collections.sort(expected);
+		Collections.sort(actual);
+		Assert.assertEquals(expected, actual);
+	}
+
+	/**
+	 * Tests that the timing wheel of {@link TeleportationEngineTimingWheelImpl} lets the agents arrive at the same
+	 * times and in the same order as the priority queue of {@link DefaultTeleportationEngine}.
+	 */
+	@Test
+	public void testSameEventsWithTimingWheelTeleportation() {
+		List<Event> expected = runQSim(ActivityEndQueue.priorityQueue, 1, TeleportationArrivalQueue.priorityQueue);
+		List<Event> actual = runQSim(ActivityEndQueue.priorityQueue, 1, TeleportationArrivalQueue.timingWheel);
+		assertSameEvents(expected, actual);
+
+		actual = runQSim(ActivityEndQueue.timingWheel, 1, TeleportationArrivalQueue.timingWheel);
+		assertSameEvents(expected, actual);
+	}
+
+	private static List<Event> runQSim(ActivityEndQueue activityEndQueue, int numberOfThreads) {
+		return runQSim(activityEndQueue, numberOfThreads, TeleportationArrivalQueue.priorityQueue);
+	}
+
+	private static List<Event> runQSim(ActivityEndQueue activityEndQueue, int numberOfThreads,
+			TeleportationArrivalQueue teleportationArrivalQueue) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setStartTime(6.0 * 3600);
+		config.qsim().setEndTime(20.0 * 3600);
+		config.qsim().setActivityEndQueue(activityEndQueue);
+		config.qsim().setNumberOfActivityEndThreads(numberOfThreads);
+		config.qsim().setTeleportationArrivalQueue(teleportationArrivalQueue);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		Node node1 = network.getFactory().createNode(Id.create("1", Node.class), new Coord(0.0, 0.0));
+		Node node2 = network.getFactory().createNode(Id.create("2", Node.class), new Coord(1000.0, 0.0));
+		network.addNode(node1);
+		network.addNode(node2);
+		Link link = network.getFactory().createLink(Id.create("1", Link.class), node1, node2);
+		network.addLink(link);
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < 2000; i++) {
+			Person person = pf.createPerson(Id.create(i, Person.class));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", link.getId());
+			if (i < 1000) {
+				// many agents ending their activities in the same time step
+				home.setEndTime(8.0 * 3600);
+			} else {
+				home.setEndTime(5.0 * 3600 + (i % 97) * 601.5);
+			}
+			plan.addActivity(home);
+			Leg leg = pf.createLeg(TransportMode.walk);
+			TripStructureUtils.setRoutingMode(leg, TransportMode.walk);
+			Route route = RouteUtils.createGenericRouteImpl(link.getId(), link.getId());
+			route.setTravelTime(600.0 + i % 7);
+			route.setDistance(1000.0);
+			leg.setRoute(route);
+			plan.addLeg(leg);
+			Activity work = pf.createActivityFromLinkId("w", link.getId());
+			work.setEndTime(12.0 * 3600 + (i % 13) * 3600.25);
+			plan.addActivity(work);
+			Leg leg2 = pf.createLeg(TransportMode.walk);
+			TripStructureUtils.setRoutingMode(leg2, TransportMode.walk);
+			leg2.setRoute(route.clone());
+			plan.addLeg(leg2);
+			plan.addActivity(pf.createActivityFromLinkId("h", link.getId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+
+		SingleThreadedEventsManager events = new SingleThreadedEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		new QSimBuilder(config).useDefaults().build(scenario, events).run();
+		Assert.assertFalse("events were processed by several threads at once.", events.processedConcurrently.get());
+		return collector.getEvents();
+	}
+
+	/**
+	 * The stuck events at the end of the simulation come in the order in which the priority queues happen to iterate
+	 * over their agents, so only the events before them have to be in the same order.
+	 */
+	private static void assertSameEvents(List<Event> expected, List<Event> actual) {
+		List<String> expectedStrings = toStrings(expected);
+		List<String> actualStrings = toStrings(actual);
+		int firstStuck = 0;
+		while (firstStuck < expected.size() && !(expected.get(firstStuck) instanceof PersonStuckEvent)) {
+			firstStuck++;
+		}
+		Collections.sort(expectedStrings.subList(firstStuck, expectedStrings.size()));
+		Collections.sort(actualStrings.subList(Math.min(firstStuck, actualStrings.size()), actualStrings.size()));
+		Assert.assertEquals(expectedStrings, actualStrings);
+	}
+
+	/**
+	 * An events manager which may only be fed by one thread at a time, and which records whether it was not.
+	 */
+	private static class SingleThreadedEventsManager implements EventsManager {
+
+		private final EventsManager delegate = new EventsManagerImpl(false);
+		private final AtomicInteger processingThreads = new AtomicInteger();
+		private final AtomicBoolean processedConcurrently = new AtomicBoolean();
+
+		@Override
+		public void processEvent(Event event) {
+			if (this.processingThreads.incrementAndGet() > 1) {
+				this.processedConcurrently.set(true);
+			}
+			Thread.yield();
+			this.delegate.processEvent(event);
+			this.processingThreads.decrementAndGet();
+		}
+
+		@Override
+		public void addHandler(EventHandler handler) {
+			this.delegate.addHandler(handler);
+		}
+
+		@Override
+		public void removeHandler(EventHandler handler) {
+			this.delegate.removeHandler(handler);
+		}
+
+		@Override
+		public void resetHandlers(int iteration) {
+			this.delegate.resetHandlers(iteration);
+		}
+
+		@Override
+		public void initProcessing() {
+			this.delegate.initProcessing();
+		}
+
+		@Override
+		public void afterSimStep(double time) {
+			this.delegate.afterSimStep(time);
+		}
+
+		@Override
+		public void finishProcessing() {
+			this.delegate.finishProcessing();
+		}
+	}
+
+	private static List<String> toStrings(List<Event> events) {
+		List<String> strings = new ArrayList<>(events.size());
+		for (Event event : events) {
+			strings.add(event.toString());
+		}
+		return strings;
+	}
+
+}
@@ -0,0 +1,215 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SkippingIdleTimeStepsTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup.ActivityEndQueue;
+import org.matsim.core.config.groups.QSimConfigGroup.EndtimeInterpretation;
+import org.matsim.core.config.groups.QSimConfigGroup.TeleportationArrivalQueue;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class SkippingIdleTimeStepsTest {
+
+	/**
+	 * Tests that skipping the time steps in which nothing happens gives the same events, including the stuck events at
+	 * the end of the simulation, and that time steps are actually skipped.
+	 */
+	@Test
+	public void testSameEventsWithFewerTimeSteps() {
+		for (ActivityEndQueue activityEndQueue : ActivityEndQueue.values()) {
+			StepCounter expectedSteps = new StepCounter();
+			List<Event> expected = runQSim(false, activityEndQueue, EndtimeInterpretation.minOfEndtimeAndMobsimFinished, expectedSteps);
+			StepCounter actualSteps = new StepCounter();
+			List<Event> actual = runQSim(true, activityEndQueue, EndtimeInterpretation.minOfEndtimeAndMobsimFinished, actualSteps);
+
+			Assert.assertEquals(toStrings(expected), toStrings(actual));
+			Assert.assertTrue("expected some agents to be stuck at the end.",
+					actual.stream().anyMatch(event -> event instanceof PersonStuckEvent));
+			Assert.assertEquals(20 * 3600 - 6 * 3600 + 1, expectedSteps.steps);
+			Assert.assertTrue("expected less than a tenth of the time steps, but got " + actualSteps.steps,
+					actualSteps.steps < expectedSteps.steps / 10);
+			Assert.assertEquals(expectedSteps.lastTime, actualSteps.lastTime, 0.0);
+		}
+	}
+
+	@Test
+	public void testSameEventsWithOnlyUseEndtime() {
+		StepCounter expectedSteps = new StepCounter();
+		List<Event> expected = runQSim(false, ActivityEndQueue.timingWheel, EndtimeInterpretation.onlyUseEndtime, expectedSteps);
+		StepCounter actualSteps = new StepCounter();
+		List<Event> actual = runQSim(true, ActivityEndQueue.timingWheel, EndtimeInterpretation.onlyUseEndtime, actualSteps);
+
+		Assert.assertEquals(toStrings(expected), toStrings(actual));
+		Assert.assertTrue(actualSteps.steps < expectedSteps.steps / 10);
+		Assert.assertEquals(expectedSteps.lastTime, actualSteps.lastTime, 0.0);
+	}
+
+	/**
+	 * A sim step listener that cannot tell when it has something to do next needs all time steps.
+	 */
+	@Test
+	public void testNoSkippingWithOtherListeners() {
+		StepCounter steps = new StepCounter();
+		MobsimBeforeSimStepListener listener = event -> {};
+		runQSim(true, ActivityEndQueue.timingWheel, EndtimeInterpretation.minOfEndtimeAndMobsimFinished, steps, listener);
+		Assert.assertEquals(20 * 3600 - 6 * 3600 + 1, steps.steps);
+	}
+
+	private static List<Event> runQSim(boolean skippingIdleTimeSteps, ActivityEndQueue activityEndQueue,
+			EndtimeInterpretation endtimeInterpretation, StepCounter stepCounter, MobsimBeforeSimStepListener... listeners) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setStartTime(6.0 * 3600);
+		config.qsim().setEndTime(20.0 * 3600);
+		config.qsim().setSimEndtimeInterpretation(endtimeInterpretation);
+		config.qsim().setSkippingIdleTimeSteps(skippingIdleTimeSteps);
+		config.qsim().setActivityEndQueue(activityEndQueue);
+		config.qsim().setTeleportationArrivalQueue(activityEndQueue == ActivityEndQueue.timingWheel
+				? TeleportationArrivalQueue.timingWheel : TeleportationArrivalQueue.priorityQueue);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		Node node1 = network.getFactory().createNode(Id.create("1", Node.class), new Coord(0.0, 0.0));
+		Node node2 = network.getFactory().createNode(Id.create("2", Node.class), new Coord(1000.0, 0.0));
+		Node node3 = network.getFactory().createNode(Id.create("3", Node.class), new Coord(2000.0, 0.0));
+		network.addNode(node1);
+		network.addNode(node2);
+		network.addNode(node3);
+		Link link1 = network.getFactory().createLink(Id.create("1", Link.class), node1, node2);
+		Link link2 = network.getFactory().createLink(Id.create("2", Link.class), node2, node3);
+		for (Link link : Arrays.asList(link1, link2)) {
+			link.setLength(1000.0);
+			link.setFreespeed(10.0);
+			link.setCapacity(600.0);
+			link.setNumberOfLanes(1.0);
+			network.addLink(link);
+		}
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < 40; i++) {
+			Person person = pf.createPerson(Id.create(i, Person.class));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", link1.getId());
+			// a few agents at a time, some of them before the start of the simulation
+			home.setEndTime(5.5 * 3600 + (i % 10) * 1800.5);
+			plan.addActivity(home);
+			Leg leg;
+			if (i % 2 == 0) {
+				leg = pf.createLeg(TransportMode.car);
+				TripStructureUtils.setRoutingMode(leg, TransportMode.car);
+				NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(link1.getId(), link2.getId());
+				route.setTravelTime(100.0);
+				route.setDistance(1000.0);
+				leg.setRoute(route);
+			} else {
+				leg = pf.createLeg(TransportMode.walk);
+				TripStructureUtils.setRoutingMode(leg, TransportMode.walk);
+				Route route = RouteUtils.createGenericRouteImpl(link1.getId(), link2.getId());
+				route.setTravelTime(700.0 + i);
+				route.setDistance(1000.0);
+				leg.setRoute(route);
+			}
+			plan.addLeg(leg);
+			Activity work = pf.createActivityFromLinkId("w", link2.getId());
+			// some agents stay at work until after the end of the simulation
+			work.setEndTime(12.0 * 3600 + (i % 7) * 7200.25);
+			plan.addActivity(work);
+			Leg leg2 = pf.createLeg(TransportMode.walk);
+			TripStructureUtils.setRoutingMode(leg2, TransportMode.walk);
+			Route route2 = RouteUtils.createGenericRouteImpl(link2.getId(), link1.getId());
+			route2.setTravelTime(900.0);
+			route2.setDistance(1000.0);
+			leg2.setRoute(route2);
+			plan.addLeg(leg2);
+			plan.addActivity(pf.createActivityFromLinkId("h", link1.getId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		QSim qsim = new QSimBuilder(config).useDefaults().build(scenario, events);
+		qsim.addQueueSimulationListeners(stepCounter);
+		for (MobsimBeforeSimStepListener listener : listeners) {
+			qsim.addQueueSimulationListeners(listener);
+		}
+		qsim.run();
+		return collector.getEvents();
+	}
+
+	private static List<String> toStrings(List<Event> events) {
+		List<String> strings = new ArrayList<>(events.size());
+		for (Event event : events) {
+			strings.add(event.toString());
+		}
+		return strings;
+	}
+
+	private static class StepCounter implements MobsimBeforeSimStepListener, WakeUpTimeProvider {
+		private int steps = 0;
+		private double lastTime = Double.NaN;
+
+		@Override
+		public void notifyMobsimBeforeSimStep(MobsimBeforeSimStepEvent event) {
+			this.steps++;
+			this.lastTime = event.getSimulationTime();
+		}
+
+		@Override
+		public double getNextWakeUpTime(double now) {
+			return Double.POSITIVE_INFINITY;
+		}
+	}
+
+}
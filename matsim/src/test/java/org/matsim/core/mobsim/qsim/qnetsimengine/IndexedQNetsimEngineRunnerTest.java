@@ -0,0 +1,164 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IndexedQNetsimEngineRunnerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimActiveElements;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class IndexedQNetsimEngineRunnerTest {
+
+	private static final int SIZE = 6;
+
+	/**
+	 * Tests that the index arrays give the same events as the lists on a grid with crossing, congested flows.  Since
+	 * the nodes are moved in a different order, the events are only compared per time step.
+	 */
+	@Test
+	public void testSameEventsAsLists() {
+		List<List<String>> expected = runQSim(NetsimActiveElements.lists, 1);
+		List<List<String>> actual = runQSim(NetsimActiveElements.indexArrays, 1);
+		Assert.assertEquals(expected.size(), actual.size());
+		Assert.assertEquals(expected, actual);
+	}
+
+	/**
+	 * Tests that several runners give the same events as a single one, again compared per time step.
+	 */
+	@Test
+	public void testMultipleThreads() {
+		List<List<String>> expected = runQSim(NetsimActiveElements.indexArrays, 1);
+		List<List<String>> actual = runQSim(NetsimActiveElements.indexArrays, 4);
+		Assert.assertEquals(expected.size(), actual.size());
+		Assert.assertEquals(expected, actual);
+	}
+
+	/**
+	 * @return the events, sorted within each time step in which events happened
+	 */
+	private static List<List<String>> runQSim(NetsimActiveElements activeElements, int threads) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setNetsimActiveElements(activeElements);
+		config.qsim().setNumberOfThreads(threads);
+		config.qsim().setEndTime(24 * 3600.);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		createGridScenario(scenario);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		new QSimBuilder(config).useDefaults().build(scenario, events).run();
+
+		List<List<String>> eventsPerTimeStep = new ArrayList<>();
+		List<String> current = null;
+		double time = Double.NEGATIVE_INFINITY;
+		for (Event event : collector.getEvents()) {
+			if (event.getTime() != time) {
+				time = event.getTime();
+				current = new ArrayList<>();
+				eventsPerTimeStep.add(current);
+			}
+			current.add(event.toString());
+		}
+		for (List<String> timeStep : eventsPerTimeStep) {
+			Collections.sort(timeStep);
+		}
+		return eventsPerTimeStep;
+	}
+
+	/**
+	 * A grid of one-way rows from west to east and one-way columns from south to north, with platoons of agents along
+	 * every row and every column, which compete for the crossings.
+	 */
+	private static void createGridScenario(Scenario scenario) {
+		Network network = scenario.getNetwork();
+		Node[][] nodes = new Node[SIZE][SIZE];
+		for (int x = 0; x < SIZE; x++) {
+			for (int y = 0; y < SIZE; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(x * 100., y * 100.));
+			}
+		}
+		List<List<Id<Link>>> routes = new ArrayList<>();
+		for (int i = 0; i < SIZE; i++) {
+			List<Id<Link>> row = new ArrayList<>();
+			List<Id<Link>> column = new ArrayList<>();
+			for (int j = 1; j < SIZE; j++) {
+				row.add(NetworkUtils.createAndAddLink(network, Id.createLinkId("r" + i + "_" + j), nodes[j - 1][i], nodes[j][i],
+						100., 10., 900., 1.).getId());
+				column.add(NetworkUtils.createAndAddLink(network, Id.createLinkId("c" + i + "_" + j), nodes[i][j - 1], nodes[i][j],
+						100., 10., 900., 1.).getId());
+			}
+			routes.add(row);
+			routes.add(column);
+		}
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int r = 0; r < routes.size(); r++) {
+			List<Id<Link>> links = routes.get(r);
+			for (int i = 0; i < 30; i++) {
+				Person person = pf.createPerson(Id.createPersonId(r + "_" + i));
+				Plan plan = pf.createPlan();
+				Activity home = pf.createActivityFromLinkId("h", links.get(0));
+				home.setEndTime(6 * 3600. + i * 2. + r);
+				plan.addActivity(home);
+				Leg leg = pf.createLeg(TransportMode.car);
+				TripStructureUtils.setRoutingMode(leg, TransportMode.car);
+				NetworkRoute route = pf.getRouteFactories().createRoute(NetworkRoute.class, links.get(0), links.get(links.size() - 1));
+				route.setLinkIds(links.get(0), links.subList(1, links.size() - 1), links.get(links.size() - 1));
+				leg.setRoute(route);
+				plan.addLeg(leg);
+				plan.addActivity(pf.createActivityFromLinkId("w", links.get(links.size() - 1)));
+				person.addPlan(plan);
+				scenario.getPopulation().addPerson(person);
+			}
+		}
+	}
+
+}
@@ -656,6 +656,11 @@ public final class QLinkTest extends MatsimTestCase {
 
             }
 
+            @Override
+            void registerLinkForWakeUp(AbstractQLink link, double time) {
+
+            }
+
             @Override
             int getNumberOfSimulatedLinks() {
                 return 0;
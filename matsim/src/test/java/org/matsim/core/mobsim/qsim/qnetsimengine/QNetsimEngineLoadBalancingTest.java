@@ -0,0 +1,173 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetsimEngineLoadBalancingTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimPartitioning;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.mobsim.qsim.interfaces.NetsimNode;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+/**
+ * Runs a multi-threaded netsim with different partitionings and with load balancing and checks that no
+ * vehicle gets lost on the way, and that the load balancing actually moves nodes between the runners.
+ */
+public class QNetsimEngineLoadBalancingTest {
+
+	private static final int SIZE = 10;
+	private static final int AGENTS_PER_ROW = 20;
+
+	@Test
+	public void testRoundRobin() {
+		runAndCheck(NetsimPartitioning.roundRobin, 0.0, true);
+	}
+
+	@Test
+	public void testRecursiveBisection() {
+		runAndCheck(NetsimPartitioning.recursiveBisection, 0.0, true);
+	}
+
+	@Test
+	public void testRebalancingWithBarriers() {
+		runAndCheck(NetsimPartitioning.recursiveBisection, 1.0, false);
+	}
+
+	@Test
+	public void testRebalancingWithThreadpool() {
+		runAndCheck(NetsimPartitioning.roundRobin, 1.0, true);
+	}
+
+	private static void runAndCheck(NetsimPartitioning partitioning, double rebalancingPeriod, boolean usingThreadpool) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setNumberOfThreads(4);
+		config.qsim().setUsingThreadpool(usingThreadpool);
+		config.qsim().setNetsimPartitioning(partitioning);
+		config.qsim().setNetsimRebalancingPeriod(rebalancingPeriod);
+		config.qsim().setEndTime(24 * 3600.);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		createRowsScenario(scenario);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		AtomicInteger linkEnters = new AtomicInteger();
+		AtomicInteger arrivals = new AtomicInteger();
+		events.addHandler((LinkEnterEventHandler) event -> linkEnters.incrementAndGet());
+		events.addHandler((PersonArrivalEventHandler) event -> arrivals.incrementAndGet());
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		QSim qsim = new QSimBuilder(config).useDefaults().build(scenario, events);
+		Map<Id<Node>, NetElementActivationRegistry> initialRunners = new HashMap<>();
+		qsim.addQueueSimulationListeners((MobsimInitializedListener) e -> {
+			for (NetsimNode node : qsim.getNetsimNetwork().getNetsimNodes().values()) {
+				initialRunners.put(node.getNode().getId(), ((AbstractQNode) node).getNetElementActivationRegistry());
+			}
+		});
+		qsim.run();
+
+		Assert.assertEquals(SIZE * AGENTS_PER_ROW, arrivals.get());
+		Assert.assertEquals(SIZE * AGENTS_PER_ROW * (SIZE - 2), linkEnters.get());
+
+		int movedNodes = 0;
+		for (NetsimNode node : qsim.getNetsimNetwork().getNetsimNodes().values()) {
+			if (((AbstractQNode) node).getNetElementActivationRegistry() != initialRunners.get(node.getNode().getId())) {
+				movedNodes++;
+			}
+		}
+		if (rebalancingPeriod > 0) {
+			Assert.assertTrue("expected the load balancing to move nodes between the runners.", movedNodes > 0);
+		} else {
+			Assert.assertEquals(0, movedNodes);
+		}
+	}
+
+	/**
+	 * SIZE parallel one-way rows of SIZE nodes each; AGENTS_PER_ROW agents drive along every row.
+	 */
+	private static void createRowsScenario(Scenario scenario) {
+		Network network = scenario.getNetwork();
+		List<List<Id<Link>>> rows = new ArrayList<>();
+		for (int y = 0; y < SIZE; y++) {
+			Node previous = NetworkUtils.createAndAddNode(network, Id.create(y + "_0", Node.class), new Coord(0., y * 100.));
+			List<Id<Link>> row = new ArrayList<>();
+			for (int x = 1; x < SIZE; x++) {
+				Node node = NetworkUtils.createAndAddNode(network, Id.create(y + "_" + x, Node.class), new Coord(x * 100., y * 100.));
+				Link link = NetworkUtils.createAndAddLink(network, Id.create(y + "_" + x, Link.class), previous, node, 100., 10., 1800., 1.);
+				row.add(link.getId());
+				previous = node;
+			}
+			rows.add(row);
+		}
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int y = 0; y < SIZE; y++) {
+			List<Id<Link>> row = rows.get(y);
+			for (int i = 0; i < AGENTS_PER_ROW; i++) {
+				Person person = pf.createPerson(Id.create(y + "_" + i, Person.class));
+				Plan plan = pf.createPlan();
+				Activity home = pf.createActivityFromLinkId("h", row.get(0));
+				home.setEndTime(6 * 3600. + i * 10.);
+				plan.addActivity(home);
+				Leg leg = pf.createLeg(TransportMode.car);
+				TripStructureUtils.setRoutingMode(leg, TransportMode.car);
+				NetworkRoute route = pf.getRouteFactories().createRoute(NetworkRoute.class, row.get(0), row.get(row.size() - 1));
+				route.setLinkIds(row.get(0), row.subList(1, row.size() - 1), row.get(row.size() - 1));
+				leg.setRoute(route);
+				plan.addLeg(leg);
+				plan.addActivity(pf.createActivityFromLinkId("w", row.get(row.size() - 1)));
+				person.addPlan(plan);
+				scenario.getPopulation().addPerson(person);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,229 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QueueWithBufferEventDrivenTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup.TrafficDynamics;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class QueueWithBufferEventDrivenTest {
+
+	@Test
+	public void testIsEventDriven() {
+		Config config = ConfigUtils.createConfig();
+		Network network = createNetwork(ScenarioUtils.createScenario(config));
+		Link minor = network.getLinks().get(Id.createLinkId("1"));
+		Link major = network.getLinks().get(Id.createLinkId("3"));
+		Assert.assertFalse(QueueWithBuffer.isEventDriven(minor, config.qsim()));
+		Assert.assertFalse(QueueWithBuffer.isEventDriven(major, config.qsim()));
+
+		config.qsim().setEventDrivenLinkTypes(Collections.singleton("minor"));
+		Assert.assertTrue(QueueWithBuffer.isEventDriven(minor, config.qsim()));
+		Assert.assertFalse(QueueWithBuffer.isEventDriven(major, config.qsim()));
+
+		config.qsim().setEventDrivenLinkTypes(Collections.emptySet());
+		config.qsim().setEventDrivenLinkMinimumFlowCapacity(2000.0);
+		Assert.assertTrue(QueueWithBuffer.isEventDriven(minor, config.qsim()));
+		Assert.assertFalse(QueueWithBuffer.isEventDriven(major, config.qsim()));
+
+		// the flows are accumulated lazily, as with fast capacity update only
+		config.qsim().setUsingFastCapacityUpdate(false);
+		Assert.assertFalse(QueueWithBuffer.isEventDriven(minor, config.qsim()));
+		config.qsim().setUsingFastCapacityUpdate(true);
+
+		config.qsim().setTrafficDynamics(TrafficDynamics.withHoles);
+		Assert.assertFalse(QueueWithBuffer.isEventDriven(minor, config.qsim()));
+	}
+
+	/**
+	 * Tests that the event-driven links give the same events as regular links with fast capacity update, also
+	 * with a bottleneck, and with event-driven and regular links mixed.
+	 */
+	@Test
+	public void testSameEventsAsQueueWithBuffer() {
+		List<String> expected = runQSim(Collections.emptySet(), Double.POSITIVE_INFINITY, false, new StepCounter());
+		Assert.assertEquals(expected, runQSim(Collections.emptySet(), 0.0, false, new StepCounter()));
+		Assert.assertEquals(expected, runQSim(Collections.singleton("minor"), Double.POSITIVE_INFINITY, false, new StepCounter()));
+		Assert.assertEquals(expected, runQSim(Collections.singleton("major"), Double.POSITIVE_INFINITY, false, new StepCounter()));
+		// only the bottleneck is regular
+		Assert.assertEquals(expected, runQSim(Collections.emptySet(), 2000.0, false, new StepCounter()));
+	}
+
+	/**
+	 * Since the links sleep while the vehicles drive, time steps can be skipped.
+	 */
+	@Test
+	public void testSkippingIdleTimeSteps() {
+		StepCounter regularSteps = new StepCounter();
+		List<String> expected = runQSim(Collections.emptySet(), Double.POSITIVE_INFINITY, true, regularSteps);
+		StepCounter eventDrivenSteps = new StepCounter();
+		List<String> actual = runQSim(Collections.emptySet(), 0.0, true, eventDrivenSteps);
+
+		Assert.assertEquals(runQSim(Collections.emptySet(), Double.POSITIVE_INFINITY, false, new StepCounter()), expected);
+		Assert.assertEquals(expected, actual);
+		Assert.assertTrue("expected less time steps, but got " + eventDrivenSteps.steps + " instead of " + regularSteps.steps,
+				eventDrivenSteps.steps < regularSteps.steps / 2);
+	}
+
+	private static List<String> runQSim(Collection<String> linkTypes, double minimumFlowCapacity, boolean skippingIdleTimeSteps,
+			StepCounter stepCounter) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setStartTime(6.0 * 3600);
+		config.qsim().setEndTime(12.0 * 3600);
+		config.qsim().setUsingFastCapacityUpdate(true);
+		config.qsim().setEventDrivenLinkTypes(linkTypes);
+		config.qsim().setEventDrivenLinkMinimumFlowCapacity(minimumFlowCapacity);
+		config.qsim().setSkippingIdleTimeSteps(skippingIdleTimeSteps);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Network network = createNetwork(scenario);
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < 50; i++) {
+			Person person = pf.createPerson(Id.create(i, Person.class));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", Id.createLinkId("1"));
+			// first a dense platoon, which is congested at the bottleneck, then single vehicles
+			home.setEndTime(i < 30 ? 7.0 * 3600 + i : 8.0 * 3600 + (i - 30) * 600);
+			plan.addActivity(home);
+			Leg leg = pf.createLeg(TransportMode.car);
+			TripStructureUtils.setRoutingMode(leg, TransportMode.car);
+			// some end on the bottleneck, the others leave it
+			NetworkRoute route = i % 3 == 0
+					? RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId("1"), Collections.singletonList(Id.createLinkId("2")), Id.createLinkId("3"))
+					: RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId("1"), Arrays.asList(Id.createLinkId("2"), Id.createLinkId("3")), Id.createLinkId("4"));
+			leg.setRoute(route);
+			plan.addLeg(leg);
+			plan.addActivity(pf.createActivityFromLinkId("w", route.getEndLinkId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		QSim qsim = new QSimBuilder(config).useDefaults().build(scenario, events);
+		qsim.addQueueSimulationListeners(stepCounter);
+		qsim.run();
+		List<String> strings = new ArrayList<>();
+		List<Double> bottleneckLeaveTimes = new ArrayList<>();
+		for (Event event : collector.getEvents()) {
+			Assert.assertFalse("unexpected " + event, event instanceof PersonStuckEvent);
+			if (event instanceof LinkLeaveEvent && ((LinkLeaveEvent) event).getLinkId().equals(Id.createLinkId("3"))) {
+				bottleneckLeaveTimes.add(event.getTime());
+			}
+			strings.add(event.toString());
+		}
+		Assert.assertEquals(33, bottleneckLeaveTimes.size());
+		assertLeavingAtFlowCapacity(bottleneckLeaveTimes);
+		return strings;
+	}
+
+	/**
+	 * The bottleneck lets one vehicle leave every two seconds.  The platoon is congested there, so most of its vehicles
+	 * leave exactly at that rate.
+	 */
+	private static void assertLeavingAtFlowCapacity(List<Double> leaveTimes) {
+		int atFlowCapacity = 0;
+		for (int i = 1; i < leaveTimes.size(); i++) {
+			double headway = leaveTimes.get(i) - leaveTimes.get(i - 1);
+			Assert.assertTrue("vehicles left the bottleneck " + headway + " seconds apart", headway >= 2.0);
+			if (headway == 2.0) {
+				atFlowCapacity++;
+			}
+		}
+		Assert.assertTrue("only " + atFlowCapacity + " vehicles left the bottleneck at its flow capacity", atFlowCapacity >= 15);
+	}
+
+	/**
+	 * A chain of four links: the minor links 1 and 2, the major bottleneck 3 with 1800 vehicles per hour, and the major
+	 * link 4.
+	 */
+	private static Network createNetwork(Scenario scenario) {
+		Network network = scenario.getNetwork();
+		for (int n = 0; n <= 4; n++) {
+			network.addNode(network.getFactory().createNode(Id.createNodeId(n), new Coord(n * 1000.0, 0.0)));
+		}
+		for (int l = 1; l <= 4; l++) {
+			Link link = network.getFactory().createLink(Id.createLinkId(l), network.getNodes().get(Id.createNodeId(l - 1)),
+					network.getNodes().get(Id.createNodeId(l)));
+			link.setLength(1000.0);
+			link.setFreespeed(l <= 2 ? 10.0 : 25.0);
+			link.setCapacity(l == 3 ? 1800.0 : 3600.0);
+			link.setNumberOfLanes(1.0);
+			NetworkUtils.setType(link, l <= 2 ? "minor" : "major");
+			network.addLink(link);
+		}
+		return network;
+	}
+
+	private static class StepCounter implements MobsimBeforeSimStepListener, WakeUpTimeProvider {
+		private int steps = 0;
+
+		@Override
+		public void notifyMobsimBeforeSimStep(MobsimBeforeSimStepEvent event) {
+			this.steps++;
+		}
+
+		@Override
+		public double getNextWakeUpTime(double now) {
+			return Double.POSITIVE_INFINITY;
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RecursiveBisectionNetsimNetworkPartitionerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.partitioning;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+public class RecursiveBisectionNetsimNetworkPartitionerTest {
+
+	private static final int SIZE = 8;
+
+	@Test
+	public void testGridIsSplitIntoQuadrants() {
+		Network network = createGrid(1000.0);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+
+		int[] parts = new RecursiveBisectionNetsimNetworkPartitioner().partition(nodes, 4);
+
+		int[] count = new int[4];
+		int[] quadrantPart = new int[] {-1, -1, -1, -1};
+		for (int i = 0; i < nodes.size(); i++) {
+			Assert.assertTrue(parts[i] >= 0 && parts[i] < 4);
+			count[parts[i]]++;
+			Coord c = nodes.get(i).getCoord();
+			int quadrant = (c.getX() < SIZE * 50. ? 0 : 1) + (c.getY() < SIZE * 50. ? 0 : 2);
+			if (quadrantPart[quadrant] == -1) {
+				quadrantPart[quadrant] = parts[i];
+			}
+			Assert.assertEquals("all nodes of a quadrant should be on the same runner", quadrantPart[quadrant], parts[i]);
+		}
+		for (int c : count) {
+			Assert.assertEquals(SIZE * SIZE / 4, c);
+		}
+	}
+
+	@Test
+	public void testCapacityWeighting() {
+		// the left half of the grid has ten times the capacity of the right half
+		Network network = createGrid(1000.0);
+		for (Link link : network.getLinks().values()) {
+			if (link.getFromNode().getCoord().getX() < SIZE * 50.) {
+				link.setCapacity(10000.0);
+			}
+		}
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+
+		int[] parts = new RecursiveBisectionNetsimNetworkPartitioner().partition(nodes, 2);
+
+		int[] count = new int[2];
+		for (int part : parts) {
+			count[part]++;
+		}
+		Assert.assertTrue("the runner with the high-capacity links should get fewer nodes", Math.min(count[0], count[1]) < SIZE * SIZE / 3);
+	}
+
+	@Test
+	public void testMorePartsThanNodes() {
+		Network network = createGrid(1000.0);
+		List<Node> nodes = new ArrayList<Node>(network.getNodes().values()).subList(0, 3);
+
+		int[] parts = new RecursiveBisectionNetsimNetworkPartitioner().partition(nodes, 5);
+
+		Assert.assertEquals(3, parts.length);
+		for (int part : parts) {
+			Assert.assertTrue(part >= 0 && part < 5);
+		}
+	}
+
+	private static Network createGrid(double capacity) {
+		Network network = NetworkUtils.createNetwork();
+		Node[][] grid = new Node[SIZE][SIZE];
+		for (int x = 0; x < SIZE; x++) {
+			for (int y = 0; y < SIZE; y++) {
+				grid[x][y] = NetworkUtils.createAndAddNode(network, Id.create(x + "_" + y, Node.class), new Coord(x * 100., y * 100.));
+			}
+		}
+		int linkId = 0;
+		for (int x = 0; x < SIZE; x++) {
+			for (int y = 0; y < SIZE; y++) {
+				if (x + 1 < SIZE) {
+					NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), grid[x][y], grid[x + 1][y], 100., 10., capacity, 1.);
+					NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), grid[x + 1][y], grid[x][y], 100., 10., capacity, 1.);
+				}
+				if (y + 1 < SIZE) {
+					NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), grid[x][y], grid[x][y + 1], 100., 10., capacity, 1.);
+					NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), grid[x][y + 1], grid[x][y], 100., 10., capacity, 1.);
+				}
+			}
+		}
+		return network;
+	}
+
+}
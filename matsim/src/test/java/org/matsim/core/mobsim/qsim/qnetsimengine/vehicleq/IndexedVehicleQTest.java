@@ -0,0 +1,216 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IndexedVehicleQTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimVehicleStorage;
+import org.matsim.core.config.groups.QSimConfigGroup.VehiclesSource;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicleImpl;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+public class IndexedVehicleQTest {
+
+	@Test
+	public void testSameOrderAsFIFOVehicleQ() {
+		QVehicleStore store = new QVehicleStore();
+		compareRandomOperations(new FIFOVehicleQ(), new IndexedFIFOVehicleQ(store), store);
+	}
+
+	@Test
+	public void testSameOrderAsPassingVehicleQ() {
+		QVehicleStore store = new QVehicleStore();
+		compareRandomOperations(new PassingVehicleQ(), new IndexedPassingVehicleQ(store), store);
+	}
+
+	@Test
+	public void testStoreKeepsVehicleFields() {
+		VehicleType type = VehicleUtils.createVehicleType(Id.create("truck", VehicleType.class));
+		type.setPcuEquivalents(2.5);
+		QVehicle vehicle = new QVehicleImpl(VehicleUtils.createVehicle(Id.create("v", Vehicle.class), type));
+		vehicle.setEarliestLinkExitTime(17.);
+
+		QVehicleStore store = new QVehicleStore();
+		int index = store.indexOf(vehicle);
+		Assert.assertEquals(index, store.indexOf(vehicle));
+		Assert.assertSame(vehicle, store.getVehicle(index));
+		Assert.assertEquals(17., store.getEarliestLinkExitTime(index), 0.);
+
+		vehicle.setEarliestLinkExitTime(23.);
+		Assert.assertEquals(23., store.getEarliestLinkExitTime(index), 0.);
+		store.setEarliestLinkExitTime(index, 42.);
+		Assert.assertEquals(42., vehicle.getEarliestLinkExitTime(), 0.);
+
+		// the size is not kept in the store, so it follows the vehicle type
+		type.setPcuEquivalents(3.5);
+		Assert.assertEquals(3.5, vehicle.getSizeInEquivalents(), 0.);
+
+		// a new store, e.g. in the next iteration, takes over the current values
+		QVehicleStore next = new QVehicleStore();
+		int nextIndex = next.indexOf(vehicle);
+		Assert.assertEquals(42., next.getEarliestLinkExitTime(nextIndex), 0.);
+		vehicle.setEarliestLinkExitTime(50.);
+		Assert.assertEquals(50., next.getEarliestLinkExitTime(nextIndex), 0.);
+		Assert.assertEquals(42., store.getEarliestLinkExitTime(index), 0.);
+	}
+
+	private static void compareRandomOperations(VehicleQ<QVehicle> expected, IndexedVehicleQ actual, QVehicleStore store) {
+		VehicleType type = VehicleUtils.getDefaultVehicleType();
+		Random random = new Random(20200301);
+		List<QVehicle> vehicles = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			int operation = random.nextInt(10);
+			if (operation < 5) {
+				QVehicle vehicle = new QVehicleImpl(VehicleUtils.createVehicle(Id.create(i, Vehicle.class), type));
+				// few distinct times, to have ties:
+				vehicle.setEarliestLinkExitTime(random.nextInt(50));
+				vehicles.add(vehicle);
+				expected.add(vehicle);
+				actual.add(vehicle);
+			} else if (operation < 8) {
+				Assert.assertSame(expected.poll(), actual.poll());
+			} else if (operation < 9 && !vehicles.isEmpty()) {
+				QVehicle vehicle = vehicles.get(random.nextInt(vehicles.size()));
+				Assert.assertEquals(expected.remove(vehicle), actual.remove(vehicle));
+			} else {
+				QVehicle vehicle = new QVehicleImpl(VehicleUtils.createVehicle(Id.create("first" + i, Vehicle.class), type));
+				// the same vehicle in both queues, so that both see the changed earliest link exit time of the passing queue
+				expected.addFirst(vehicle);
+				actual.addFirst(vehicle);
+			}
+			Assert.assertEquals(expected.size(), actual.size());
+			Assert.assertSame(expected.peek(), actual.peek());
+			QVehicle first = expected.peek();
+			Assert.assertEquals(first == null ? Double.POSITIVE_INFINITY : first.getEarliestLinkExitTime(),
+					actual.peekEarliestLinkExitTime(), 0.);
+			Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+		}
+		actual.clear();
+		Assert.assertTrue(actual.isEmpty());
+		Assert.assertNull(actual.poll());
+		Assert.assertTrue(store.size() > 0);
+	}
+
+	@Test
+	public void testSameEventsInQSim() {
+		for (LinkDynamics linkDynamics : new LinkDynamics[] { LinkDynamics.FIFO, LinkDynamics.PassingQ }) {
+			List<Event> expected = runQSim(NetsimVehicleStorage.objects, linkDynamics);
+			List<Event> actual = runQSim(NetsimVehicleStorage.primitiveArrays, linkDynamics);
+			Assert.assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				Assert.assertEquals(linkDynamics + ", event " + i, expected.get(i).toString(), actual.get(i).toString());
+			}
+		}
+	}
+
+	/**
+	 * Cars and slower trucks of 2.5 PCU through a bottleneck in the middle of a corridor.
+	 */
+	private static List<Event> runQSim(NetsimVehicleStorage storage, LinkDynamics linkDynamics) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setNetsimVehicleStorage(storage);
+		config.qsim().setLinkDynamics(linkDynamics);
+		config.qsim().setVehiclesSource(VehiclesSource.fromVehiclesData);
+		config.qsim().setEndTime(24 * 3600.);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		Node[] nodes = new Node[5];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(i * 1000., 0.));
+		}
+		List<Id<Link>> links = new ArrayList<>();
+		for (int i = 1; i < nodes.length; i++) {
+			double capacity = i == 2 ? 600. : 3600.;
+			links.add(NetworkUtils.createAndAddLink(network, Id.createLinkId(i), nodes[i - 1], nodes[i], 1000., 30., capacity, 2.).getId());
+		}
+
+		VehicleType car = VehicleUtils.createVehicleType(Id.create("car", VehicleType.class));
+		car.setMaximumVelocity(30.);
+		VehicleType truck = VehicleUtils.createVehicleType(Id.create("truck", VehicleType.class));
+		truck.setMaximumVelocity(15.);
+		truck.setPcuEquivalents(2.5);
+		scenario.getVehicles().addVehicleType(car);
+		scenario.getVehicles().addVehicleType(truck);
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < 200; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Vehicle vehicle = VehicleUtils.createVehicle(Id.create(i, Vehicle.class), i % 5 == 0 ? truck : car);
+			scenario.getVehicles().addVehicle(vehicle);
+			VehicleUtils.insertVehicleIdIntoAttributes(person, TransportMode.car, vehicle.getId());
+
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", links.get(0));
+			home.setEndTime(6 * 3600. + i * 3.);
+			plan.addActivity(home);
+			Leg leg = pf.createLeg(TransportMode.car);
+			TripStructureUtils.setRoutingMode(leg, TransportMode.car);
+			NetworkRoute route = pf.getRouteFactories().createRoute(NetworkRoute.class, links.get(0), links.get(links.size() - 1));
+			route.setLinkIds(links.get(0), links.subList(1, links.size() - 1), links.get(links.size() - 1));
+			leg.setRoute(route);
+			plan.addLeg(leg);
+			plan.addActivity(pf.createActivityFromLinkId("w", links.get(links.size() - 1)));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		new QSimBuilder(config).useDefaults().build(scenario, events).run();
+		return collector.getEvents();
+	}
+
+}
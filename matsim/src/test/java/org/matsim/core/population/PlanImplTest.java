@@ -24,6 +24,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
@@ -42,6 +46,8 @@ import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.pt.routes.ExperimentalTransitRouteFactory;
 
 public class PlanImplTest {
 
@@ -378,4 +384,78 @@ public class PlanImplTest {
 		Assert.assertTrue(p.getPlanElements().get(3) instanceof Activity);
 	}
 
+	@Test
+	public void testCompact() {
+		Plan plan = PopulationUtils.createPlan();
+		Activity home = PopulationUtils.createAndAddActivityFromLinkId(plan, "h", Id.create("1", Link.class));
+		home.setCoord(new Coord(100.5, -200));
+		home.setEndTime(7.5 * 3600);
+		home.getAttributes().putAttribute("a", 1);
+		Leg car = PopulationUtils.createAndAddLeg(plan, TransportMode.car);
+		car.setDepartureTime(7.5 * 3600);
+		car.setTravelTime(1234.5);
+		NetworkRoute networkRoute = RouteUtils.createLinkNetworkRouteImpl(Id.create("1", Link.class),
+				new Id[] {Id.create("7", Link.class), Id.create("3", Link.class), Id.create("3x", Link.class)}, Id.create("2", Link.class));
+		networkRoute.setDistance(4567.8);
+		networkRoute.setTravelCost(12.3);
+		car.setRoute(networkRoute);
+		Activity work = PopulationUtils.createAndAddActivityFromCoord(plan, "w", new Coord(1, 2, 3));
+		work.setMaximumDuration(8 * 3600);
+		Leg walk = PopulationUtils.createAndAddLeg(plan, TransportMode.walk);
+		Route genericRoute = RouteUtils.createGenericRouteImpl(Id.create("2", Link.class), Id.create("1", Link.class));
+		genericRoute.setRouteDescription("some description");
+		walk.setRoute(genericRoute);
+		PopulationUtils.createAndAddActivityFromLinkId(plan, "h", Id.create("1", Link.class));
+		String expected = plan.getPlanElements().toString();
+
+		Assert.assertTrue(((PlanImpl) plan).compact(null));
+		Assert.assertNotNull(((PlanImpl) plan).getCompactPlanElements());
+
+		Assert.assertEquals(expected, plan.getPlanElements().toString());
+		Assert.assertNull(((PlanImpl) plan).getCompactPlanElements());
+		Activity home2 = (Activity) plan.getPlanElements().get(0);
+		Assert.assertNotSame(home, home2);
+		Assert.assertEquals(1, home2.getAttributes().getAttribute("a"));
+		Assert.assertEquals(3.0, ((Activity) plan.getPlanElements().get(2)).getCoord().getZ(), 0.0);
+		NetworkRoute networkRoute2 = (NetworkRoute) ((Leg) plan.getPlanElements().get(1)).getRoute();
+		Assert.assertEquals(networkRoute.getLinkIds(), networkRoute2.getLinkIds());
+		Assert.assertEquals(4567.8, networkRoute2.getDistance(), 0.0);
+		Assert.assertEquals("some description", ((Leg) plan.getPlanElements().get(3)).getRoute().getRouteDescription());
+		Assert.assertEquals(Time.getUndefinedTime(), ((Leg) plan.getPlanElements().get(3)).getDepartureTime(), 0.0);
+	}
+
+	@Test
+	public void testCompact_NonStandardPlanElements() {
+		Plan plan = PopulationUtils.createPlan();
+		PopulationUtils.createAndAddActivity(plan, "h");
+		Leg leg = PopulationUtils.createAndAddLeg(plan, TransportMode.pt);
+		leg.setRoute(new ExperimentalTransitRouteFactory().createRoute(Id.create("1", Link.class), Id.create("2", Link.class)));
+		PopulationUtils.createAndAddActivity(plan, "w");
+
+		Assert.assertFalse(((PlanImpl) plan).compact(null));
+		Assert.assertSame(leg, plan.getPlanElements().get(1));
+	}
+
+	@Test
+	public void testCompact_InStore() throws IOException {
+		Path file = Files.createTempFile("compactedPlans", ".bin");
+		try (CompactPlanElementsStore store = new CompactPlanElementsStore(file)) {
+			Plan plan = PopulationUtils.createPlan();
+			PopulationUtils.createAndAddActivityFromLinkId(plan, "h", Id.create("1", Link.class)).setEndTime(8 * 3600);
+			Leg leg = PopulationUtils.createAndAddLeg(plan, TransportMode.car);
+			leg.setRoute(RouteUtils.createLinkNetworkRouteImpl(Id.create("1", Link.class), new Id[] {Id.create("3", Link.class)}, Id.create("2", Link.class)));
+			PopulationUtils.createAndAddActivityFromLinkId(plan, "w", Id.create("2", Link.class));
+			String expected = plan.getPlanElements().toString();
+
+			Assert.assertTrue(((PlanImpl) plan).compact(store));
+			Assert.assertTrue(((PlanImpl) plan).getCompactPlanElements().isInStore(store));
+			Assert.assertTrue(store.getSize() > 0);
+			((PlanImpl) plan).moveCompactPlanElements(null);
+			Assert.assertFalse(((PlanImpl) plan).getCompactPlanElements().isInStore(store));
+			((PlanImpl) plan).moveCompactPlanElements(store);
+			Assert.assertEquals(expected, plan.getPlanElements().toString());
+		}
+		Assert.assertFalse(Files.exists(file));
+	}
+
 }
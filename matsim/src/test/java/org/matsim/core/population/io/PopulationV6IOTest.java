@@ -34,6 +34,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.routes.GenericRouteImpl;
@@ -42,6 +43,8 @@ import org.matsim.testcases.MatsimTestUtils;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
 
 /**
  * @author thibautd
@@ -321,4 +324,108 @@ public class PopulationV6IOTest {
 
 		Assert.assertEquals(route.getRouteDescription(), ((Leg) scenario.getPopulation().getPersons().get(person1.getId()).getSelectedPlan().getPlanElements().get(1)).getRoute().getRouteDescription());
 	}
+
+	@Test
+	public void testParallelReading() {
+		Population population = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+		PopulationFactory pf = population.getFactory();
+
+		int numberOfPersons = 2 * ParallelPopulationReaderMatsimV6.PERSONS_PER_BATCH + 17;
+		for (int i = 0; i < numberOfPersons; i++) {
+			// ids not in the order of the indices, to check that the order of the persons in the file is preserved
+			Person person = pf.createPerson(Id.create((i * 7919) % 1000 + "_" + i, Person.class));
+			person.getAttributes().putAttribute("index", i);
+			for (int j = 0; j < 2; j++) {
+				Plan plan = pf.createPlan();
+				plan.setScore(i + 0.5 * j);
+				Activity act1 = pf.createActivityFromLinkId("home", Id.create(i, Link.class));
+				act1.setEndTime(8 * 3600 + i);
+				act1.getAttributes().putAttribute("plan", j);
+				Leg leg = pf.createLeg("walk");
+				GenericRouteImpl route = new GenericRouteImpl(Id.create(i, Link.class), Id.create(i + 1, Link.class));
+				route.setRouteDescription("route " + i);
+				leg.setRoute(route);
+				Activity act2 = pf.createActivityFromCoord("work", new Coord(i, j));
+				plan.addActivity(act1);
+				plan.addLeg(leg);
+				plan.addActivity(act2);
+				person.addPlan(plan);
+			}
+			person.setSelectedPlan(person.getPlans().get(i % 2));
+			population.addPerson(person);
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new PopulationWriter(population).write(out);
+
+		// ----
+
+		Config sequentialConfig = ConfigUtils.createConfig();
+		sequentialConfig.global().setNumberOfThreads(1);
+		Scenario sequentialScenario = ScenarioUtils.createScenario(sequentialConfig);
+		new PopulationReader(sequentialScenario).parse(new ByteArrayInputStream(out.toByteArray()));
+
+		Config parallelConfig = ConfigUtils.createConfig();
+		parallelConfig.global().setNumberOfThreads(4);
+		Scenario parallelScenario = ScenarioUtils.createScenario(parallelConfig);
+		new PopulationReader(parallelScenario).parse(new ByteArrayInputStream(out.toByteArray()));
+
+		Assert.assertEquals(numberOfPersons, parallelScenario.getPopulation().getPersons().size());
+		Iterator<? extends Person> expectedIter = sequentialScenario.getPopulation().getPersons().values().iterator();
+		Iterator<? extends Person> actualIter = parallelScenario.getPopulation().getPersons().values().iterator();
+		// (the writer sorts the persons by id, so compare with the sequentially read population only)
+		while (expectedIter.hasNext()) {
+			Person expected = expectedIter.next();
+			Person actual = actualIter.next();
+			Assert.assertEquals(expected.getId(), actual.getId());
+			Assert.assertEquals(expected.getAttributes().getAttribute("index"), actual.getAttributes().getAttribute("index"));
+			Assert.assertEquals(expected.getPlans().size(), actual.getPlans().size());
+			Assert.assertEquals(expected.getPlans().indexOf(expected.getSelectedPlan()), actual.getPlans().indexOf(actual.getSelectedPlan()));
+			for (int j = 0; j < expected.getPlans().size(); j++) {
+				Plan expectedPlan = expected.getPlans().get(j);
+				Plan actualPlan = actual.getPlans().get(j);
+				Assert.assertEquals(expectedPlan.getScore(), actualPlan.getScore());
+				Assert.assertEquals(expectedPlan.getPlanElements().size(), actualPlan.getPlanElements().size());
+				for (int k = 0; k < expectedPlan.getPlanElements().size(); k++) {
+					Assert.assertEquals(expectedPlan.getPlanElements().get(k).toString(), actualPlan.getPlanElements().get(k).toString());
+				}
+				Activity expectedAct = (Activity) expectedPlan.getPlanElements().get(0);
+				Activity actualAct = (Activity) actualPlan.getPlanElements().get(0);
+				Assert.assertEquals(expectedAct.getAttributes().getAttribute("plan"), actualAct.getAttributes().getAttribute("plan"));
+				Assert.assertEquals(
+						((Leg) expectedPlan.getPlanElements().get(1)).getRoute().getRouteDescription(),
+						((Leg) actualPlan.getPlanElements().get(1)).getRoute().getRouteDescription());
+			}
+		}
+	}
+
+	@Test
+	public void testParallelReadingStopsThreadsAfterParseError() {
+		Population population = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+		PopulationFactory pf = population.getFactory();
+		for (int i = 0; i < 3 * ParallelPopulationReaderMatsimV6.PERSONS_PER_BATCH; i++) {
+			Person person = pf.createPerson(Id.create(i, Person.class));
+			Plan plan = pf.createPlan();
+			plan.addActivity(pf.createActivityFromLinkId("home", Id.create(i, Link.class)));
+			person.addPlan(plan);
+			population.addPerson(person);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new PopulationWriter(population).write(out);
+		byte[] truncated = Arrays.copyOf(out.toByteArray(), 2 * out.size() / 3);
+
+		Config config = ConfigUtils.createConfig();
+		config.global().setNumberOfThreads(4);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		try {
+			new PopulationReader(scenario).parse(new ByteArrayInputStream(truncated));
+			Assert.fail("expected exception, but got none.");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			Assert.assertFalse("reader thread still running: " + thread.getName(),
+					thread.getName().startsWith(ParallelPopulationReaderMatsimV6Runner.class.getSimpleName()));
+		}
+	}
 }
@@ -0,0 +1,185 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.costcalculators.RandomizingTimeDistanceTravelDisutilityFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.RandomizedTravelDisutility;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class ContractionHierarchiesTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new ContractionHierarchiesFactory(900, 30 * 3600).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	/**
+	 * Tests that the paths between all pairs of nodes cost as much as those found by Dijkstra, also after the link
+	 * costs have changed and the customizations have been invalidated.
+	 */
+	public void testSameCostsAsDijkstra() {
+		Scenario scenario = ScenarioUtils.createScenario(loadConfig(null));
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).parse(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "network.xml"));
+
+		final double[] congestion = { 1.0 };
+		TravelTime travelTime = new TravelTime() {
+			@Override
+			public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+				// the links get congested in the afternoon, some more than others
+				double factor = time < 12 * 3600 ? 1.0 : 1.0 + congestion[0] * (link.getId().index() % 5);
+				return factor * link.getLength() / link.getFreespeed();
+			}
+		};
+		TravelDisutility travelDisutility = new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+				return travelTime.getLinkTravelTime(link, time, person, vehicle) + 0.01 * link.getLength();
+			}
+			@Override
+			public double getLinkMinimumTravelDisutility(Link link) {
+				return link.getLength() / link.getFreespeed() + 0.01 * link.getLength();
+			}
+		};
+
+		ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory(900, 30 * 3600);
+		Dijkstra dijkstra = new Dijkstra(network, travelDisutility, travelTime);
+		assertSameCosts(network, dijkstra, factory.createPathCalculator(network, travelDisutility, travelTime));
+
+		congestion[0] = 10.0;
+		factory.invalidateCustomizations();
+		assertSameCosts(network, dijkstra, factory.createPathCalculator(network, travelDisutility, travelTime));
+	}
+
+	/**
+	 * Tests that the link costs are customized without the randomization of the travel disutility, and that the
+	 * routers of all persons share these customizations until the next iteration.
+	 */
+	public void testCustomizedWithoutRandomization() {
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[6][6];
+		for (int x = 0; x < 6; x++) {
+			for (int y = 0; y < 6; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(x * 1000, y * 1000));
+			}
+		}
+		for (int x = 0; x < 6; x++) {
+			for (int y = 0; y < 6; y++) {
+				for (int[] next : new int[][] { { x + 1, y }, { x, y + 1 } }) {
+					if (next[0] < 6 && next[1] < 6) {
+						// the slower links are shorter, so the costs depend on the cost of distance
+						double freespeed = 5.0 + (x * 7 + y * 3) % 11;
+						double length = 500.0 + 100.0 * freespeed;
+						Node other = nodes[next[0]][next[1]];
+						NetworkUtils.createAndAddLink(network, Id.createLinkId(nodes[x][y].getId() + "-" + other.getId()), nodes[x][y], other, length, freespeed, 1000, 1);
+						NetworkUtils.createAndAddLink(network, Id.createLinkId(other.getId() + "-" + nodes[x][y].getId()), other, nodes[x][y], length, freespeed, 1000, 1);
+					}
+				}
+			}
+		}
+
+		PlanCalcScoreConfigGroup scoring = new PlanCalcScoreConfigGroup();
+		scoring.getModes().get(TransportMode.car).setMonetaryDistanceRate(-0.001);
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility expectedCosts = new RandomizingTimeDistanceTravelDisutilityFactory(TransportMode.car, scoring).createTravelDisutility(travelTime);
+		RandomizingTimeDistanceTravelDisutilityFactory randomizingFactory = new RandomizingTimeDistanceTravelDisutilityFactory(TransportMode.car, scoring).setSigma(3.0);
+		RandomizedTravelDisutility costs1 = (RandomizedTravelDisutility) randomizingFactory.createTravelDisutility(travelTime);
+		RandomizedTravelDisutility costs2 = (RandomizedTravelDisutility) randomizingFactory.createTravelDisutility(travelTime);
+
+		ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory(900, 30 * 3600);
+		Dijkstra dijkstra = new Dijkstra(network, expectedCosts, travelTime);
+		LeastCostPathCalculator router1 = factory.createPathCalculator(network, costs1, travelTime);
+		LeastCostPathCalculator router2 = factory.createPathCalculator(network, costs2, travelTime);
+		Person person = PopulationUtils.getFactory().createPerson(Id.createPersonId("1"));
+		for (Node fromNode : network.getNodes().values()) {
+			for (Node toNode : network.getNodes().values()) {
+				double expectedCost = dijkstra.calcLeastCostPath(fromNode, toNode, 8 * 3600, person, null).travelCost;
+				for (LeastCostPathCalculator router : new LeastCostPathCalculator[] { router1, router2 }) {
+					double cost = 0.0;
+					for (Link link : router.calcLeastCostPath(fromNode, toNode, 8 * 3600, person, null).links) {
+						cost += expectedCosts.getLinkTravelDisutility(link, 8 * 3600, person, null);
+					}
+					assertEquals("from node " + fromNode.getId() + " to node " + toNode.getId(), expectedCost, cost, 1e-3);
+				}
+			}
+		}
+		assertSame(((ContractionHierarchies) router1).customizations, ((ContractionHierarchies) router2).customizations);
+
+		// another mode with other costs
+		scoring.getModes().get(TransportMode.car).setMonetaryDistanceRate(-0.002);
+		TravelDisutility otherCosts = new RandomizingTimeDistanceTravelDisutilityFactory(TransportMode.car, scoring).setSigma(3.0).createTravelDisutility(travelTime);
+		LeastCostPathCalculator otherRouter = factory.createPathCalculator(network, otherCosts, travelTime);
+		assertNotSame(((ContractionHierarchies) router1).customizations, ((ContractionHierarchies) otherRouter).customizations);
+
+		// travel disutilities which do not define equality by their parameters only share the customizations with themselves
+		FreespeedTravelTimeAndDisutility freespeedCosts = new FreespeedTravelTimeAndDisutility(scoring);
+		LeastCostPathCalculator freespeedRouter1 = factory.createPathCalculator(network, freespeedCosts, travelTime);
+		LeastCostPathCalculator freespeedRouter2 = factory.createPathCalculator(network, freespeedCosts, travelTime);
+		LeastCostPathCalculator freespeedRouter3 = factory.createPathCalculator(network, new FreespeedTravelTimeAndDisutility(scoring), travelTime);
+		assertSame(((ContractionHierarchies) freespeedRouter1).customizations, ((ContractionHierarchies) freespeedRouter2).customizations);
+		assertNotSame(((ContractionHierarchies) freespeedRouter1).customizations, ((ContractionHierarchies) freespeedRouter3).customizations);
+
+		factory.notifyIterationStarts(null);
+		LeastCostPathCalculator router3 = factory.createPathCalculator(network, costs1, travelTime);
+		assertNotSame(((ContractionHierarchies) router1).customizations, ((ContractionHierarchies) router3).customizations);
+	}
+
+	private static void assertSameCosts(Network network, LeastCostPathCalculator expected, LeastCostPathCalculator actual) {
+		for (double time : new double[] { 8 * 3600, 16 * 3600 }) {
+			for (Node fromNode : network.getNodes().values()) {
+				for (Node toNode : network.getNodes().values()) {
+					Path expectedPath = expected.calcLeastCostPath(fromNode, toNode, time, null, null);
+					Path actualPath = actual.calcLeastCostPath(fromNode, toNode, time, null, null);
+					String message = "from node " + fromNode.getId() + " to node " + toNode.getId() + " at " + time;
+					assertEquals(message, expectedPath.travelCost, actualPath.travelCost, 1e-3);
+					assertEquals(message, actualPath.links.size() + 1, actualPath.nodes.size());
+					for (int i = 0; i < actualPath.links.size(); i++) {
+						assertEquals(message, actualPath.nodes.get(i), actualPath.links.get(i).getFromNode());
+						assertEquals(message, actualPath.nodes.get(i + 1), actualPath.links.get(i).getToNode());
+					}
+				}
+			}
+		}
+	}
+
+}
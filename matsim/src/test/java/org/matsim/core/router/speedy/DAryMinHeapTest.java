@@ -0,0 +1,87 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DAryMinHeapTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DAryMinHeapTest {
+
+	@Test
+	public void testInsertOrDecreaseAndPoll() {
+		DAryMinHeap pq = new DAryMinHeap(10, 4);
+		Assert.assertTrue(pq.isEmpty());
+		pq.insertOrDecrease(5, 3.0);
+		pq.insertOrDecrease(3, 2.0);
+		pq.insertOrDecrease(6, 4.0);
+		Assert.assertEquals(3, pq.size());
+		Assert.assertTrue(pq.contains(6));
+
+		pq.insertOrDecrease(6, 1.0); // decrease
+		pq.insertOrDecrease(5, 5.0); // no increase
+		Assert.assertEquals(3, pq.size());
+		Assert.assertEquals(1.0, pq.peekCost(), 0.0);
+		Assert.assertEquals(6, pq.poll());
+		Assert.assertFalse(pq.contains(6));
+		Assert.assertEquals(3, pq.poll());
+		Assert.assertEquals(5, pq.poll());
+		Assert.assertTrue(pq.isEmpty());
+	}
+
+	@Test
+	public void testClear() {
+		DAryMinHeap pq = new DAryMinHeap(10, 4);
+		pq.insertOrDecrease(1, 1.0);
+		pq.insertOrDecrease(2, 2.0);
+		pq.clear();
+		Assert.assertTrue(pq.isEmpty());
+		Assert.assertFalse(pq.contains(1));
+		pq.insertOrDecrease(2, 3.0);
+		Assert.assertEquals(1, pq.size());
+		Assert.assertEquals(3.0, pq.peekCost(), 0.0);
+	}
+
+	@Test
+	public void testRandomOrder() {
+		Random random = new Random(20190301);
+		int n = 1000;
+		double[] costs = new double[n];
+		DAryMinHeap pq = new DAryMinHeap(n, 6);
+		for (int i = 0; i < n; i++) {
+			costs[i] = random.nextDouble();
+			pq.insertOrDecrease(i, costs[i]);
+		}
+		for (int i = 0; i < n; i += 3) {
+			costs[i] /= 2;
+			pq.insertOrDecrease(i, costs[i]);
+		}
+		double[] sorted = costs.clone();
+		Arrays.sort(sorted);
+		for (int i = 0; i < n; i++) {
+			Assert.assertEquals(sorted[i], pq.peekCost(), 0.0);
+			Assert.assertEquals(sorted[i], costs[pq.poll()], 0.0);
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ManyToManyCalculatorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+
+public class ManyToManyCalculatorTest {
+
+	@Test
+	public void testSameAsSpeedyDijkstra() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).parse(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "network.xml"));
+		Node isolatedNode = NetworkUtils.createAndAddNode(network, Id.create("isolated", Node.class), new Coord(0, 0));
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		SpeedyGraph graph = new SpeedyGraph(network);
+
+		List<Node> origins = new ArrayList<>(network.getNodes().values());
+		List<Node> destinations = new ArrayList<>(origins);
+		destinations.add(origins.get(3)); // duplicate destinations are allowed
+		ManyToManyMatrix matrix = new ManyToManyCalculator(graph, travelTimeCostCalculator, travelTimeCostCalculator, 3)
+				.calculate(origins, destinations, 7.0 * 3600);
+
+		Assert.assertEquals(origins, matrix.getOrigins());
+		Assert.assertEquals(destinations, matrix.getDestinations());
+		SpeedyDijkstra dijkstra = new SpeedyDijkstra(graph, travelTimeCostCalculator, travelTimeCostCalculator);
+		for (int i = 0; i < origins.size(); i++) {
+			for (int j = 0; j < destinations.size(); j++) {
+				Node origin = origins.get(i);
+				Node destination = destinations.get(j);
+				if ((origin == isolatedNode) != (destination == isolatedNode)) {
+					Assert.assertEquals(Double.POSITIVE_INFINITY, matrix.getTravelTime(i, j), 0.0);
+					Assert.assertEquals(Double.POSITIVE_INFINITY, matrix.getTravelCost(i, j), 0.0);
+				} else {
+					Path path = dijkstra.calcLeastCostPath(origin, destination, 7.0 * 3600, null, null);
+					Assert.assertEquals(path.travelTime, matrix.getTravelTime(i, j), 1e-2);
+					Assert.assertEquals(path.travelCost, matrix.getTravelCost(i, j), 1e-4);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyOriginsOrDestinations() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).parse(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "network.xml"));
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		ManyToManyCalculator calculator = new ManyToManyCalculator(new SpeedyGraph(network), travelTimeCostCalculator, travelTimeCostCalculator, 2);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+
+		Assert.assertTrue(calculator.calculate(nodes, new ArrayList<>(), 0).getDestinations().isEmpty());
+		Assert.assertTrue(calculator.calculate(new ArrayList<>(), nodes, 0).getOrigins().isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManyOriginsAndDestinations() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		Node node = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		ManyToManyCalculator calculator = new ManyToManyCalculator(new SpeedyGraph(network), travelTimeCostCalculator, travelTimeCostCalculator, 2);
+
+		// 70000 * 70000 pairs do not fit into an int
+		List<Node> nodes = Collections.nCopies(70000, node);
+		calculator.calculate(nodes, nodes, 0);
+	}
+}
@@ -0,0 +1,90 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpeedyALTTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import org.junit.Assert;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.AbstractLeastCostPathCalculatorTest;
+import org.matsim.core.router.DijkstraFactory;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+
+public class SpeedyALTTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new SpeedyALTFactory(1, 0.1).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testRefreshOfLandmarkDistances() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).parse(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "network.xml"));
+		SpeedyALTFactory factory = new SpeedyALTFactory(2, 0.1);
+
+		FreespeedTravelTimeAndDisutility costs = new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, 0.0);
+		SpeedyALTData data = factory.getALTData(network, costs);
+		Node[] landmarks = data.getLandmarks();
+
+		// same and slightly higher minimum costs: the distances remain valid
+		Assert.assertSame(data, factory.getALTData(network, costs));
+		Assert.assertEquals("the same travel disutility must only be checked once per iteration", 0, factory.checkCount);
+		Assert.assertSame(data, factory.getALTData(network, new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, 0.0)));
+		Assert.assertEquals(1, factory.checkCount);
+		Assert.assertSame(data, factory.getALTData(network, new FreespeedTravelTimeAndDisutility(-6.5 / 3600, 6.0 / 3600, 0.0)));
+		Assert.assertEquals(2, factory.checkCount);
+		factory.notifyIterationStarts(null);
+		Assert.assertSame(data, factory.getALTData(network, costs));
+		Assert.assertEquals(3, factory.checkCount);
+
+		// much higher minimum costs: the distances are valid, but too loose
+		SpeedyALTData higher = factory.getALTData(network, new FreespeedTravelTimeAndDisutility(-12.0 / 3600, 6.0 / 3600, 0.0));
+		Assert.assertNotSame(data, higher);
+		Assert.assertArrayEquals(landmarks, higher.getLandmarks());
+
+		// lower minimum costs: the distances are no longer lower bounds
+		FreespeedTravelTimeAndDisutility lowerCosts = new FreespeedTravelTimeAndDisutility(-1.0 / 3600, 6.0 / 3600, 0.0);
+		SpeedyALTData lower = factory.getALTData(network, lowerCosts);
+		Assert.assertNotSame(higher, lower);
+		Assert.assertArrayEquals(landmarks, lower.getLandmarks());
+
+		LeastCostPathCalculator dijkstra = new DijkstraFactory().createPathCalculator(network, lowerCosts, lowerCosts);
+		LeastCostPathCalculator alt = factory.createPathCalculator(network, lowerCosts, lowerCosts);
+		for (Node fromNode : network.getNodes().values()) {
+			for (Node toNode : network.getNodes().values()) {
+				Path expected = dijkstra.calcLeastCostPath(fromNode, toNode, 7.0 * 3600, null, null);
+				Path actual = alt.calcLeastCostPath(fromNode, toNode, 7.0 * 3600, null, null);
+				Assert.assertEquals(expected.travelCost, actual.travelCost, 1e-6);
+			}
+		}
+	}
+
+}
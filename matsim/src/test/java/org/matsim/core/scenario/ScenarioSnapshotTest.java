@@ -0,0 +1,201 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+
+public class ScenarioSnapshotTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteAndRead() {
+		Config config = this.utils.loadConfig(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("pt-tutorial"), "0.config.xml"));
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		// add some data which is not part of the input files
+		Link link = scenario.getNetwork().getLinks().values().iterator().next();
+		link.getAttributes().putAttribute("lengthInFeet", link.getLength() / 0.3048);
+		Person firstPerson = scenario.getPopulation().getPersons().values().iterator().next();
+		firstPerson.getAttributes().putAttribute("age", 42);
+		firstPerson.getAttributes().putAttribute("stupid", new StupidClass());
+		Leg leg = (Leg) firstPerson.getSelectedPlan().getPlanElements().get(1);
+		NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(Id.create("1", Link.class),
+				Arrays.asList(Id.create("2", Link.class), Id.create("3", Link.class)), Id.create("4", Link.class));
+		route.setDistance(1234.5);
+		route.setVehicleId(Id.create("car_1", Vehicle.class));
+		leg.setRoute(route);
+		((Activity) firstPerson.getSelectedPlan().getPlanElements().get(0)).setCoord(new Coord(1.0, 2.0, 3.0));
+		firstPerson.getSelectedPlan().setScore(98.7);
+
+		String filename = this.utils.getOutputDirectory() + "scenario.snapshot";
+		ScenarioSnapshotWriter writer = new ScenarioSnapshotWriter(scenario);
+		writer.putAttributeConverter(StupidClass.class, new StupidClassConverter());
+		writer.write(filename);
+
+		Scenario snapshot = ScenarioUtils.createScenario(config);
+		ScenarioSnapshotReader reader = new ScenarioSnapshotReader(snapshot);
+		reader.putAttributeConverter(StupidClass.class, new StupidClassConverter());
+		reader.readFile(filename);
+
+		// network
+		// (the key sets of IdMap do not implement equals)
+		Assert.assertEquals(new HashSet<>(scenario.getNetwork().getNodes().keySet()), new HashSet<>(snapshot.getNetwork().getNodes().keySet()));
+		Assert.assertEquals(scenario.getNetwork().getLinks().size(), snapshot.getNetwork().getLinks().size());
+		for (Link expected : scenario.getNetwork().getLinks().values()) {
+			Link actual = snapshot.getNetwork().getLinks().get(expected.getId());
+			Assert.assertEquals(expected.getFromNode().getId(), actual.getFromNode().getId());
+			Assert.assertEquals(expected.getToNode().getId(), actual.getToNode().getId());
+			Assert.assertEquals(expected.getLength(), actual.getLength(), 0.0);
+			Assert.assertEquals(expected.getFreespeed(), actual.getFreespeed(), 0.0);
+			Assert.assertEquals(expected.getCapacity(), actual.getCapacity(), 0.0);
+			Assert.assertEquals(expected.getNumberOfLanes(), actual.getNumberOfLanes(), 0.0);
+			Assert.assertEquals(expected.getAllowedModes(), actual.getAllowedModes());
+			Assert.assertEquals(expected.getAttributes().toString(), actual.getAttributes().toString());
+		}
+		Assert.assertEquals(link.getLength() / 0.3048,
+				(Double) snapshot.getNetwork().getLinks().get(link.getId()).getAttributes().getAttribute("lengthInFeet"), 0.0);
+
+		// population, in the same order
+		Assert.assertEquals(scenario.getPopulation().getPersons().size(), snapshot.getPopulation().getPersons().size());
+		Iterator<? extends Person> actualPersons = snapshot.getPopulation().getPersons().values().iterator();
+		for (Person expected : scenario.getPopulation().getPersons().values()) {
+			Person actual = actualPersons.next();
+			Assert.assertEquals(expected.getId(), actual.getId());
+			Assert.assertEquals(expected.getPlans().size(), actual.getPlans().size());
+			Assert.assertEquals(expected.getPlans().indexOf(expected.getSelectedPlan()), actual.getPlans().indexOf(actual.getSelectedPlan()));
+			for (int i = 0; i < expected.getPlans().size(); i++) {
+				Plan expectedPlan = expected.getPlans().get(i);
+				Plan actualPlan = actual.getPlans().get(i);
+				Assert.assertEquals(expectedPlan.getScore(), actualPlan.getScore());
+				Assert.assertEquals(describe(expectedPlan), describe(actualPlan));
+			}
+		}
+		Person readPerson = snapshot.getPopulation().getPersons().get(firstPerson.getId());
+		Assert.assertEquals(42, readPerson.getAttributes().getAttribute("age"));
+		Assert.assertTrue(readPerson.getAttributes().getAttribute("stupid") instanceof StupidClass);
+		NetworkRoute readRoute = (NetworkRoute) ((Leg) readPerson.getSelectedPlan().getPlanElements().get(1)).getRoute();
+		Assert.assertEquals(route.getLinkIds(), readRoute.getLinkIds());
+		Assert.assertEquals(route.getVehicleId(), readRoute.getVehicleId());
+		Assert.assertEquals(1234.5, readRoute.getDistance(), 0.0);
+		Assert.assertEquals(3.0, ((Activity) readPerson.getSelectedPlan().getPlanElements().get(0)).getCoord().getZ(), 0.0);
+
+		// transit schedule
+		Assert.assertEquals(scenario.getTransitSchedule().getFacilities().size(), snapshot.getTransitSchedule().getFacilities().size());
+		for (TransitStopFacility expected : scenario.getTransitSchedule().getFacilities().values()) {
+			TransitStopFacility actual = snapshot.getTransitSchedule().getFacilities().get(expected.getId());
+			Assert.assertEquals(expected.getCoord(), actual.getCoord());
+			Assert.assertEquals(expected.getLinkId(), actual.getLinkId());
+			Assert.assertEquals(expected.getName(), actual.getName());
+			Assert.assertEquals(expected.getIsBlockingLane(), actual.getIsBlockingLane());
+		}
+		Assert.assertEquals(scenario.getTransitSchedule().getTransitLines().size(), snapshot.getTransitSchedule().getTransitLines().size());
+		for (TransitLine expectedLine : scenario.getTransitSchedule().getTransitLines().values()) {
+			TransitLine actualLine = snapshot.getTransitSchedule().getTransitLines().get(expectedLine.getId());
+			Assert.assertEquals(expectedLine.getRoutes().keySet(), actualLine.getRoutes().keySet());
+			for (TransitRoute expected : expectedLine.getRoutes().values()) {
+				TransitRoute actual = actualLine.getRoutes().get(expected.getId());
+				Assert.assertEquals(expected.getTransportMode(), actual.getTransportMode());
+				Assert.assertEquals(expected.getRoute().getLinkIds(), actual.getRoute().getLinkIds());
+				Assert.assertEquals(describe(expected.getStops()), describe(actual.getStops()));
+				Assert.assertEquals(expected.getDepartures().size(), actual.getDepartures().size());
+				for (Departure departure : expected.getDepartures().values()) {
+					Departure actualDeparture = actual.getDepartures().get(departure.getId());
+					Assert.assertEquals(departure.getDepartureTime(), actualDeparture.getDepartureTime(), 0.0);
+					Assert.assertEquals(departure.getVehicleId(), actualDeparture.getVehicleId());
+				}
+			}
+		}
+
+		// transit vehicles
+		Assert.assertEquals(new HashSet<>(scenario.getTransitVehicles().getVehicles().keySet()), new HashSet<>(snapshot.getTransitVehicles().getVehicles().keySet()));
+		for (VehicleType expected : scenario.getTransitVehicles().getVehicleTypes().values()) {
+			VehicleType actual = snapshot.getTransitVehicles().getVehicleTypes().get(expected.getId());
+			Assert.assertEquals(expected.getCapacity().getSeats(), actual.getCapacity().getSeats());
+			Assert.assertEquals(expected.getCapacity().getStandingRoom(), actual.getCapacity().getStandingRoom());
+			Assert.assertEquals(expected.getLength(), actual.getLength(), 0.0);
+			Assert.assertEquals(expected.getPcuEquivalents(), actual.getPcuEquivalents(), 0.0);
+			Assert.assertEquals(expected.getAttributes().toString(), actual.getAttributes().toString());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReadOtherFile() throws IOException {
+		String filename = this.utils.getOutputDirectory() + "network.xml";
+		Files.write(Paths.get(filename), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>".getBytes(StandardCharsets.UTF_8));
+		new ScenarioSnapshotReader(ScenarioUtils.createScenario(ConfigUtils.createConfig())).readFile(filename);
+	}
+
+	private static List<String> describe(Plan plan) {
+		List<String> list = new ArrayList<>();
+		for (PlanElement pe : plan.getPlanElements()) {
+			list.add(pe.toString() + pe.getAttributes().toString());
+			if (pe instanceof Leg && ((Leg) pe).getRoute() != null) {
+				list.add(((Leg) pe).getRoute().getRouteType() + ((Leg) pe).getRoute().getRouteDescription());
+			}
+		}
+		return list;
+	}
+
+	private static List<String> describe(List<TransitRouteStop> stops) {
+		List<String> list = new ArrayList<>();
+		for (TransitRouteStop stop : stops) {
+			list.add(stop.getStopFacility().getId() + " " + stop.getArrivalOffset() + " " + stop.getDepartureOffset() + " " + stop.isAwaitDepartureTime());
+		}
+		return list;
+	}
+}
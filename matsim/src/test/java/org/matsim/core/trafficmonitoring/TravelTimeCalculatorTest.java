@@ -22,8 +22,11 @@ package org.matsim.core.trafficmonitoring;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -53,6 +56,7 @@ import org.matsim.core.network.io.MatsimNetworkReader;
 import org.matsim.core.scenario.MutableScenario;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 import org.matsim.testcases.MatsimTestCase;
 import org.matsim.testcases.utils.EventsCollector;
@@ -357,6 +361,120 @@ public class TravelTimeCalculatorTest extends MatsimTestCase {
 		assertEquals("wrong link travel time at 06:15.", 359.9712023038157, ttCalc.getLinkTravelTimes().getLinkTravelTime(link10, 6.25 * 3600, null, null), EPSILON);
 	}
 
+	/**
+	 * Tests that storing the data in arrays indexed by the ids gives the same link and link-to-link travel times as the maps.
+	 */
+	public void testIdIndexedLinkDataStorage() {
+		String eventsFilename = getClassInputDirectory() + "link10_events.xml";
+
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(scenario.getNetwork()).parse(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "network.xml"));
+
+		TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+		config.setCalculateLinkToLinkTravelTimes(true);
+		TravelTimeCalculator hashMapCalc = new TravelTimeCalculator(network, config);
+		config.setLinkDataStorage(TravelTimeCalculatorConfigGroup.LinkDataStorage.idIndexed);
+		TravelTimeCalculator idIndexedCalc = new TravelTimeCalculator(network, config);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(hashMapCalc);
+		events.addHandler(idIndexedCalc);
+		new MatsimEventsReader(events).readFile(eventsFilename);
+
+		Link link10 = network.getLinks().get(Id.create("10", Link.class));
+		assertEquals("wrong link travel time at 06:15.", 359.9712023038157, idIndexedCalc.getLinkTravelTimes().getLinkTravelTime(link10, 6.25 * 3600, null, null), EPSILON);
+
+		for (Link link : network.getLinks().values()) {
+			for (double time = 0; time < 30 * 3600; time += 450) {
+				assertEquals(hashMapCalc.getLinkTravelTimes().getLinkTravelTime(link, time, null, null),
+						idIndexedCalc.getLinkTravelTimes().getLinkTravelTime(link, time, null, null), EPSILON);
+				for (Link toLink : link.getToNode().getOutLinks().values()) {
+					assertEquals(hashMapCalc.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link, toLink, time, null, null),
+							idIndexedCalc.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link, toLink, time, null, null), EPSILON);
+				}
+				// not a turn of the network
+				assertEquals(hashMapCalc.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link, link, time, null, null),
+						idIndexedCalc.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link, link, time, null, null), EPSILON);
+			}
+		}
+	}
+
+	/**
+	 * Tests that the off-heap matrix gives the same travel times as the arrays on the heap, and that a mapped matrix
+	 * can be used by a later run.
+	 */
+	public void testOffHeapTravelTimes() {
+		String eventsFilename = getClassInputDirectory() + "link10_events.xml";
+		String matrixFile = getOutputDirectory() + "traveltimes.bin";
+
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(scenario.getNetwork()).parse(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("equil"), "network.xml"));
+
+		TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+		TravelTimeCalculator arrayCalc = TravelTimeCalculator.create(network, config);
+		config.setTravelTimeCalculatorType(TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorOffHeap.toString());
+		config.setOffHeapTravelTimesFile(matrixFile);
+		TravelTimeCalculator offHeapCalc = TravelTimeCalculator.create(network, config);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(arrayCalc);
+		events.addHandler(offHeapCalc);
+		new MatsimEventsReader(events).readFile(eventsFilename);
+
+		for (Link link : network.getLinks().values()) {
+			for (double time = 0; time < 30 * 3600; time += 450) {
+				// the matrix stores floats
+				assertEquals(arrayCalc.getLinkTravelTimes().getLinkTravelTime(link, time, null, null),
+						offHeapCalc.getLinkTravelTimes().getLinkTravelTime(link, time, null, null), 1e-3);
+			}
+		}
+
+		TravelTimeCalculator reloadedCalc = TravelTimeCalculator.create(network, config);
+		Link link10 = network.getLinks().get(Id.create("10", Link.class));
+		assertEquals("wrong link travel time at 06:15.", 359.9712023038157, reloadedCalc.getLinkTravelTimes().getLinkTravelTime(link10, 6.25 * 3600, null, null), 1e-3);
+	}
+
+	/**
+	 * Tests that the calculators of separate modes map their matrices to different files, and that a file is only
+	 * reused for the same links.
+	 */
+	public void testOffHeapTravelTimesFiles() {
+		String matrixFile = getOutputDirectory() + "traveltimes.bin";
+
+		Network network = NetworkUtils.createNetwork();
+		Node n1 = network.getFactory().createNode(Id.create(1, Node.class), new Coord(0, 0));
+		Node n2 = network.getFactory().createNode(Id.create(2, Node.class), new Coord(1000, 0));
+		network.addNode(n1);
+		network.addNode(n2);
+		Link link1 = network.getFactory().createLink(Id.create(1, Link.class), n1, n2);
+		network.addLink(link1);
+
+		TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+		config.setTravelTimeCalculatorType(TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorOffHeap.toString());
+		config.setOffHeapTravelTimesFile(matrixFile);
+		config.setSeparateModes(true);
+		for (String mode : new String[] {TransportMode.car, TransportMode.bike}) {
+			TravelTimeCalculator.Builder builder = new TravelTimeCalculator.Builder(network);
+			builder.setFilterModes(true);
+			builder.setAnalyzedModes(Collections.singleton(mode));
+			builder.configure(config);
+			builder.build();
+			assertTrue(new File(getOutputDirectory() + mode + ".traveltimes.bin").exists());
+		}
+		assertFalse(new File(matrixFile).exists());
+
+		int rows = Id.getNumberOfIds(Link.class);
+		long fingerprint = TravelTimeDataOffHeapFactory.getLinkIdsFingerprint(rows);
+		TravelTimeDataMatrix matrix = new TravelTimeDataMatrix(Paths.get(matrixFile), rows, 4, fingerprint);
+		matrix.setTravelTime(link1.getId().index(), 2, 100.0);
+		matrix.force();
+		assertEquals(100.0f, new TravelTimeDataMatrix(Paths.get(matrixFile), rows, 4, fingerprint).getTravelTime(link1.getId().index(), 2), 0.0f);
+		// the same dimensions, but other links:
+		assertTrue(new TravelTimeDataMatrix(Paths.get(matrixFile), rows, 4, fingerprint + 1).getTravelTime(link1.getId().index(), 2) < 0);
+	}
+
 	/**
 	 * @author mrieser / senozon
 	 */
@@ -0,0 +1,117 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PackedKdTreeTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.geometry.CoordUtils;
+
+public class PackedKdTreeTest {
+
+	@Test
+	public void testEmptyTree() {
+		PackedKdTree<Coord> tree = new PackedKdTree<>(Collections.emptyList(), c -> c);
+		Assert.assertEquals(0, tree.size());
+		Assert.assertNull(tree.getClosest(0, 0));
+		Assert.assertTrue(tree.getDisk(0, 0, 100).isEmpty());
+		Assert.assertTrue(tree.getRectangle(-1, -1, 1, 1, new ArrayList<>()).isEmpty());
+		Assert.assertEquals(Collections.singletonList(null), tree.getClosest(new double[] {0}, new double[] {0}, 2));
+	}
+
+	@Test
+	public void testSmallTree() {
+		List<Coord> coords = new ArrayList<>();
+		coords.add(new Coord(10.0, 10.0));
+		coords.add(new Coord(15.0, 15.0));
+		coords.add(new Coord(-15.0, 0.0));
+		coords.add(new Coord(20.0, 10.0));
+		coords.add(new Coord(100.0, 0.0));
+		coords.add(new Coord(15.0, 15.0));
+		PackedKdTree<Coord> tree = new PackedKdTree<>(coords, c -> c);
+
+		Assert.assertEquals(6, tree.size());
+		Assert.assertSame(coords.get(2), tree.getClosest(-20, 0));
+		Assert.assertSame(coords.get(4), tree.getClosest(90, 10));
+		Assert.assertEquals(2, tree.getDisk(15, 15, 0).size());
+		Assert.assertEquals(4, tree.getDisk(10, 10, 10).size());
+		// the border is included, like in the QuadTree
+		Assert.assertEquals(3, tree.getRectangle(10, 10, 15, 15, new ArrayList<>()).size());
+	}
+
+	@Test
+	public void testSameResultsAsQuadTree() {
+		Random random = new Random(20190601);
+		int n = 5000;
+		List<Coord> coords = new ArrayList<>(n);
+		List<Integer> indices = new ArrayList<>(n);
+		QuadTree<Integer> qt = new QuadTree<>(0, 0, 10000, 10000);
+		for (int i = 0; i < n; i++) {
+			// use a coarse grid, so there are many points with the same coordinates
+			Coord coord = new Coord(random.nextInt(200) * 50.0, random.nextInt(200) * 50.0);
+			coords.add(coord);
+			indices.add(i);
+			qt.put(coord.getX(), coord.getY(), i);
+		}
+		PackedKdTree<Integer> tree = new PackedKdTree<>(indices, coords::get);
+		Assert.assertEquals(n, tree.size());
+
+		int queries = 2000;
+		double[] xs = new double[queries];
+		double[] ys = new double[queries];
+		for (int i = 0; i < queries; i++) {
+			xs[i] = random.nextDouble() * 12000 - 1000;
+			ys[i] = random.nextDouble() * 12000 - 1000;
+			Coord query = new Coord(xs[i], ys[i]);
+
+			int closest = tree.getClosest(xs[i], ys[i]);
+			Assert.assertEquals(CoordUtils.calcEuclideanDistance(query, coords.get(qt.getClosest(xs[i], ys[i]))),
+					CoordUtils.calcEuclideanDistance(query, coords.get(closest)), 0.0);
+
+			double distance = random.nextDouble() * 500;
+			assertSameElements(qt.getDisk(xs[i], ys[i], distance), tree.getDisk(xs[i], ys[i], distance));
+
+			double width = random.nextDouble() * 1000;
+			double height = random.nextDouble() * 1000;
+			assertSameElements(qt.getRectangle(xs[i], ys[i], xs[i] + width, ys[i] + height, new ArrayList<>()),
+					tree.getRectangle(xs[i], ys[i], xs[i] + width, ys[i] + height, new ArrayList<>()));
+		}
+
+		List<Integer> batch = tree.getClosest(xs, ys, 4);
+		Assert.assertEquals(queries, batch.size());
+		for (int i = 0; i < queries; i++) {
+			Assert.assertSame(tree.getClosest(xs[i], ys[i]), batch.get(i));
+		}
+	}
+
+	private static void assertSameElements(Collection<Integer> expected, Collection<Integer> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		Assert.assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+	}
+
+}
@@ -0,0 +1,117 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelGzipOutputStreamTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.utils.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelGzipOutputStreamTest {
+
+	/**
+	 * Tests that data of many blocks, written in pieces of all sizes, is decompressed to the same bytes by a regular
+	 * gzip reader, and that the blocks are compressed about as well as on a single thread.
+	 */
+	@Test
+	public void testSameContentAsGzip() throws IOException {
+		byte[] data = createEventsLikeData(3_000_000);
+
+		ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+		try (OutputStream out = new ParallelGzipOutputStream(parallel, 3)) {
+			Random random = new Random(4711);
+			int position = 0;
+			while (position < data.length) {
+				if (random.nextInt(10) == 0) {
+					out.write(data[position++]);
+				} else {
+					int length = Math.min(data.length - position, random.nextInt(100_000));
+					out.write(data, position, length);
+					position += length;
+				}
+			}
+		}
+		Assert.assertArrayEquals(data, decompress(parallel.toByteArray()));
+
+		ByteArrayOutputStream single = new ByteArrayOutputStream();
+		try (OutputStream out = new GZIPOutputStream(single)) {
+			out.write(data);
+		}
+		Assert.assertTrue("compressed " + parallel.size() + " bytes instead of " + single.size(),
+				parallel.size() < 1.05 * single.size());
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		new ParallelGzipOutputStream(compressed, 2).close();
+		Assert.assertEquals(0, decompress(compressed.toByteArray()).length);
+	}
+
+	@Test(timeout = 10000)
+	public void testFailingTarget() {
+		OutputStream failing = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("disk full");
+			}
+		};
+		byte[] data = createEventsLikeData(1_000_000);
+		try (OutputStream out = new ParallelGzipOutputStream(failing, 2)) {
+			for (int i = 0; i < 10; i++) {
+				out.write(data);
+			}
+			Assert.fail("expected an IOException");
+		} catch (IOException e) {
+			Assert.assertEquals("disk full", e.getMessage());
+		}
+	}
+
+	private static byte[] createEventsLikeData(int size) {
+		Random random = new Random(42);
+		StringBuilder text = new StringBuilder(size + 100);
+		while (text.length() < size) {
+			text.append("\t<event time=\"").append(random.nextInt(86400)).append(".0\" type=\"left link\" link=\"")
+					.append(random.nextInt(10000)).append("\" vehicle=\"").append(random.nextInt(100000)).append("\"  />\n");
+		}
+		return text.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] decompress(byte[] compressed) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) >= 0) {
+				result.write(buffer, 0, n);
+			}
+		}
+		return result.toByteArray();
+	}
+
+}